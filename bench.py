@@ -0,0 +1,234 @@
+"""
+IPEDManager Benchmark Script
+Esegue i benchmark JMH in bench/ sul codice compilato da build.py.
+
+Uso:
+  python bench.py                     tutti i benchmark
+  python bench.py Config Log          solo quelli il cui nome contiene "Config" o "Log"
+  python bench.py --quick             un fork e poche iterazioni, per una prova veloce
+  python bench.py --list              elenco dei benchmark
+  python bench.py --compare A.json B.json
+                                      confronta due risultati (prima/dopo una modifica)
+  python bench.py Log -- -prof gc     opzioni dopo "--" passate a JMH
+"""
+import argparse
+import datetime
+import hashlib
+import json
+import os
+import shutil
+import subprocess
+import sys
+import urllib.request
+
+import build
+
+# Paths
+JAVAC = "javac"  # Serve un JDK: il processore di annotazioni JMH genera il codice dei benchmark
+BENCH_SRC = "bench/src"
+BENCH_OUT = "bench/out"
+BENCH_WORK = "bench/work"
+RESULTS_DIR = "bench/results"
+
+MAVEN_CENTRAL = "https://repo1.maven.org/maven2/"
+# Artefatto e SHA-256 atteso: un jar diverso non finisce nel classpath
+JMH_JARS = [
+    ("org/openjdk/jmh/jmh-core/1.37/jmh-core-1.37.jar",
+     "dc0eaf2bbf0036a70b60798c785d6e03a9daf06b68b8edb0f1ba9eb3421baeb3"),
+    ("org/openjdk/jmh/jmh-generator-annprocess/1.37/jmh-generator-annprocess-1.37.jar",
+     "6a5604b5b804e0daca1145df1077609321687734a8b49387e49f10557c186c77"),
+    ("net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar",
+     "df26cc58f235f477db07f753ba5a3ab243ebe5789d9f89ecf68dd62ea9a66c28"),
+    ("org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar",
+     "1e56d7b058d28b65abd256b8458e3885b674c1d588fa43cd7d1cbb9c7ef2b308"),
+]
+
+
+def sha256(path):
+    digest = hashlib.sha256()
+    with open(path, "rb") as f:
+        for block in iter(lambda: f.read(1 << 20), b""):
+            digest.update(block)
+    return digest.hexdigest()
+
+
+def jmh_classpath():
+    """Jar di JMH in lib/, scaricati da Maven Central se mancano e verificati con SHA-256."""
+    jars = []
+    for artifact, expected in JMH_JARS:
+        jar = os.path.join("lib", os.path.basename(artifact))
+        if not os.path.exists(jar):
+            print(f"  Download {os.path.basename(artifact)}...")
+            os.makedirs("lib", exist_ok=True)
+            part = jar + ".part"
+            try:
+                urllib.request.urlretrieve(MAVEN_CENTRAL + artifact, part)
+            except OSError as e:
+                if os.path.exists(part):
+                    os.remove(part)
+                print(f"ERRORE: download non riuscito ({e}). Copiare a mano {MAVEN_CENTRAL + artifact} in lib/")
+                return None
+            actual = sha256(part)
+            if actual != expected:
+                os.remove(part)
+                print(f"ERRORE: SHA-256 di {os.path.basename(artifact)} non corrisponde "
+                      f"(atteso {expected}, scaricato {actual})")
+                return None
+            os.replace(part, jar)
+        elif sha256(jar) != expected:
+            print(f"ERRORE: SHA-256 di {jar} non corrisponde a quello atteso ({expected}): eliminarlo e riprovare")
+            return None
+        jars.append(jar)
+    return jars
+
+
+def compile_benchmarks(jars):
+    """Compila i benchmark con javac (genera anche le classi JMH)."""
+    print("[bench] Compilazione benchmark...")
+    if os.path.exists(BENCH_OUT):
+        shutil.rmtree(BENCH_OUT)
+    os.makedirs(BENCH_OUT)
+
+    sources = []
+    for root, dirs, files in os.walk(BENCH_SRC):
+        for f in files:
+            if f.endswith(".java"):
+                sources.append(os.path.join(root, f))
+
+    cmd = [
+        JAVAC, "-nowarn",
+        "-classpath", os.pathsep.join(["out"] + jars),
+        "-d", BENCH_OUT, "-encoding", "UTF-8"
+    ] + sources
+    result = subprocess.run(cmd, capture_output=True, text=True)
+    if result.returncode != 0:
+        print(f"ERRORE: {result.stderr}")
+        return False
+    print(f"  {len(sources)} file compilati.")
+    return True
+
+
+def run_benchmarks(jars, filters, quick, list_only, extra):
+    """Esegue JMH e salva i risultati in JSON in bench/results."""
+    print("[bench] Esecuzione benchmark...", flush=True)
+    os.makedirs(os.path.join(BENCH_WORK, "home"), exist_ok=True)
+    os.makedirs(RESULTS_DIR, exist_ok=True)
+
+    # Fixture e cache dei metadati in bench/work, non nella cartella dell'utente
+    work = os.path.abspath(BENCH_WORK)
+    jvm_args = f"-Dipedmanager.bench.work={work} -Duser.home={os.path.join(work, 'home')}"
+
+    cmd = [
+        build.IPED_JRE, "-cp", os.pathsep.join(["out", BENCH_OUT] + jars),
+        "org.openjdk.jmh.Main"
+    ] + [f".*{f}.*" for f in filters]
+    if list_only:
+        cmd.append("-l")
+        return subprocess.run(cmd).returncode == 0, None
+
+    result_file = os.path.join(RESULTS_DIR, f"{datetime.datetime.now():%Y%m%d-%H%M%S}-{git_revision()}.json")
+    cmd += ["-jvmArgsPrepend", jvm_args, "-rf", "json", "-rff", result_file]
+    if quick:
+        cmd += ["-f", "1", "-wi", "1", "-i", "2"]
+    cmd += extra
+    ok = subprocess.run(cmd).returncode == 0
+    return ok, result_file if ok else None
+
+
+def git_revision():
+    try:
+        result = subprocess.run(["git", "rev-parse", "--short", "HEAD"], capture_output=True, text=True)
+        rev = result.stdout.strip()
+        dirty = subprocess.run(["git", "diff", "--quiet", "HEAD", "--", "src"]).returncode != 0
+        return (rev + "-dirty" if dirty else rev) or "norev"
+    except OSError:
+        return "norev"
+
+
+def to_float(value):
+    """Errore di JMH: "NaN" con una sola iterazione."""
+    try:
+        value = float(value)
+        return 0.0 if value != value else value
+    except (TypeError, ValueError):
+        return 0.0
+
+
+def load_results(path):
+    with open(path, encoding="utf-8") as f:
+        data = json.load(f)
+    results = {}
+    for r in data:
+        params = ",".join(f"{k}={v}" for k, v in sorted(r.get("params", {}).items()))
+        name = r["benchmark"].replace("it.ipedmanager.bench.", "")
+        metric = r["primaryMetric"]
+        results[f"{name}({params})" if params else name] = (
+            metric["score"], to_float(metric.get("scoreError")), metric["scoreUnit"])
+    return results
+
+
+def compare(before_path, after_path):
+    """Tabella prima/dopo; le differenze entro gli errori sono marcate con '~'."""
+    before = load_results(before_path)
+    after = load_results(after_path)
+    print(f"{'Benchmark':<60} {'Prima':>14} {'Dopo':>14} {'Unita':>8} {'Diff':>9}")
+    for key in sorted(set(before) | set(after)):
+        if key not in before or key not in after:
+            only = "dopo" if key in after else "prima"
+            print(f"{key:<60} solo {only}")
+            continue
+        b, b_err, unit = before[key]
+        a, a_err, _ = after[key]
+        diff = (a - b) / b * 100 if b else 0.0
+        noise = "~" if abs(a - b) <= b_err + a_err else " "
+        print(f"{key:<60} {b:>14.3f} {a:>14.3f} {unit:>8} {diff:>+8.1f}%{noise}")
+
+
+def main():
+    args = sys.argv[1:]
+    extra = []
+    if "--" in args:
+        extra = args[args.index("--") + 1:]
+        args = args[:args.index("--")]
+
+    parser = argparse.ArgumentParser(description="IPEDManager benchmark (JMH)")
+    parser.add_argument("filters", nargs="*", help="parti del nome dei benchmark da eseguire")
+    parser.add_argument("--quick", action="store_true", help="un fork e poche iterazioni")
+    parser.add_argument("--list", action="store_true", help="elenca i benchmark")
+    parser.add_argument("--skip-build", action="store_true", help="usa le classi gia' compilate in out/")
+    parser.add_argument("--compare", nargs=2, metavar=("PRIMA", "DOPO"), help="confronta due risultati JSON")
+    opts = parser.parse_args(args)
+
+    if opts.compare:
+        compare(*opts.compare)
+        return
+
+    print("=" * 50)
+    print("  IPEDManager Benchmark Script")
+    print("=" * 50)
+    print()
+
+    print("[bench] Verifica jar JMH in lib/...")
+    jars = jmh_classpath()
+    if jars is None:
+        sys.exit(1)
+    if not opts.skip_build:
+        if not build.compile_sources():
+            sys.exit(1)
+        build.copy_resources()
+    if not compile_benchmarks(jars):
+        sys.exit(1)
+
+    ok, result_file = run_benchmarks(jars, opts.filters, opts.quick, opts.list, extra)
+    if not ok:
+        sys.exit(1)
+    if result_file:
+        print()
+        print("=" * 50)
+        print(f"  Risultati: {result_file}")
+        print(f"  Confronto: python bench.py --compare <prima.json> {result_file}")
+        print("=" * 50)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,73 @@
+package it.ipedmanager.bench;
+
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.IpedExecutor;
+import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Costruzione della riga di comando di IPED per casi con molte evidenze.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class CommandBenchmark {
+
+    @Param({ "1", "500" })
+    public int evidences;
+
+    private IpedExecutor executor;
+    private List<Evidence> list;
+    private ProcessingOptions options;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = new IpedExecutor();
+        executor.setIpedJarPath("/opt/iped/iped.jar");
+        executor.setJrePath("java");
+        list = new ArrayList<>();
+        for (int i = 0; i < evidences; i++) {
+            Evidence ev = new Evidence(new File("/evidence/case/image" + i + ".E01"), "Disk " + i);
+            if (i % 3 == 0) {
+                ev.setTimezone("Europe/Rome");
+            }
+            if (i % 5 == 0) {
+                ev.setPassword("secret" + i);
+            }
+            list.add(ev);
+        }
+        options = new ProcessingOptions();
+        options.maxMemoryGB = 32;
+        options.maxThreads = 16;
+        options.nogui = true;
+        options.portable = true;
+    }
+
+    @Benchmark
+    public List<String> buildCommand() {
+        return executor.buildCommand(list, "/cases/output", "forensic", options);
+    }
+
+    @Benchmark
+    public String commandString() {
+        return executor.getCommandString(executor.buildCommand(list, "/cases/output", "forensic", options));
+    }
+}
@@ -0,0 +1,82 @@
+package it.ipedmanager.bench;
+
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.config.PropertiesConfigFile;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lettura e scrittura dei file di configurazione di IPED e applicazione di un
+ * profilo ({@link ConfigManager#loadProfileConfig}) su un albero conf/ grande.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class ConfigBenchmark {
+
+    @Param({ "40" })
+    public int files;
+
+    @Param({ "100", "2000" })
+    public int keys;
+
+    private Path ipedJar;
+    private Path configFile;
+    private PropertiesConfigFile loaded;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ipedJar = Fixtures.ipedInstall(files, keys);
+        configFile = ipedJar.resolveSibling("conf").resolve("BenchConfig0.txt");
+        loaded = new PropertiesConfigFile(configFile);
+        loaded.load();
+    }
+
+    @Benchmark
+    public PropertiesConfigFile load() {
+        PropertiesConfigFile config = new PropertiesConfigFile(configFile);
+        config.load();
+        return config;
+    }
+
+    @Benchmark
+    public String get() {
+        return loaded.get("benchconfig0.key" + (counter++ % keys));
+    }
+
+    /**
+     * Modifica di una chiave e salvataggio, come alla conferma di un pannello.
+     */
+    @Benchmark
+    public boolean setAndSave() {
+        loaded.set("benchconfig0.key1", Integer.toString(counter++ & 1));
+        return loaded.save();
+    }
+
+    /**
+     * Cache svuotata e profilo applicato: il caso del cambio profilo nella
+     * finestra principale.
+     */
+    @Benchmark
+    public boolean loadProfileConfig() {
+        ConfigManager manager = ConfigManager.getInstance();
+        manager.initialize(ipedJar.toString());
+        return manager.loadProfileConfig(Fixtures.PROFILE);
+    }
+}
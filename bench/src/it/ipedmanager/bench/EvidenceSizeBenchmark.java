@@ -0,0 +1,56 @@
+package it.ipedmanager.bench;
+
+import it.ipedmanager.service.EvidenceMetadataCache;
+import it.ipedmanager.service.FolderSizeCalculator;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calcolo della dimensione di una cartella di evidenze: scansione completa e
+ * scansione con la cache dei metadati gia' popolata. Dopo la prima
+ * iterazione la cache del file system del sistema operativo e' calda, come
+ * quando l'utente aggiunge di nuovo la stessa cartella.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class EvidenceSizeBenchmark {
+
+    /** Profondita' x sottocartelle x file per cartella. */
+    @Param({ "3x8x20", "6x4x5" })
+    public String tree;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        String[] p = tree.split("x");
+        root = Fixtures.evidenceTree(Integer.parseInt(p[0]), Integer.parseInt(p[1]), Integer.parseInt(p[2]));
+        new FolderSizeCalculator(root, EvidenceMetadataCache.getInstance()).calculate();
+    }
+
+    @Benchmark
+    public long fullScan() {
+        return new FolderSizeCalculator(root, null).calculate();
+    }
+
+    @Benchmark
+    public long cachedScan() {
+        return new FolderSizeCalculator(root, EvidenceMetadataCache.getInstance()).calculate();
+    }
+}
@@ -0,0 +1,69 @@
+package it.ipedmanager.bench;
+
+import it.ipedmanager.service.IpedExecutor;
+import it.ipedmanager.service.IpedProgressParser;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link IpedExecutor#execute} su un processo che produce output ad alta
+ * velocita' ({@link FakeIpedOutput}): lettura della pipe e callback come
+ * durante un'elaborazione. Il tempo include l'avvio della JVM figlia.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 8)
+@Fork(value = 1, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class ExecuteBenchmark {
+
+    @Param({ "500000" })
+    public int lines;
+
+    private IpedExecutor executor;
+    private List<String> command;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path dir = Fixtures.workDir();
+        executor = new IpedExecutor();
+        // execute() avvia il processo nella cartella di iped.jar
+        executor.setIpedJarPath(dir.resolve("iped.jar").toString());
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        // Il processo parte in un'altra cartella: classpath con percorsi assoluti
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparator);
+            }
+            classPath.append(new File(entry).getAbsolutePath());
+        }
+        command = Arrays.asList(java, "-cp", classPath.toString(), FakeIpedOutput.class.getName(),
+                Integer.toString(lines));
+    }
+
+    @Benchmark
+    public Object execute() throws Exception {
+        IpedProgressParser parser = new IpedProgressParser();
+        int exitCode = executor.execute(command, parser);
+        if (exitCode != 0)
+            throw new IllegalStateException("FakeIpedOutput exit code " + exitCode);
+        return parser.getProgress();
+    }
+}
@@ -0,0 +1,26 @@
+package it.ipedmanager.bench;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+
+/**
+ * Processo che scrive su stdout le righe di {@link Fixtures#ipedOutput} il
+ * piu' velocemente possibile, al posto di IPED.
+ *
+ * <pre>
+ * java -cp ... it.ipedmanager.bench.FakeIpedOutput LINES
+ * </pre>
+ */
+public class FakeIpedOutput {
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : LogBenchmark.LINES;
+        String[] output = Fixtures.ipedOutput(lines);
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16)) {
+            for (String line : output) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package it.ipedmanager.bench;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Dati sintetici per i benchmark: installazione IPED con molti file di
+ * configurazione e un profilo, albero di evidenze profondo, output di IPED.
+ * <p>
+ * Tutto e' generato da un seed fisso, quindi due esecuzioni con gli stessi
+ * parametri lavorano sugli stessi dati. Le fixture su disco vengono create
+ * una volta sola in {@link #WORK_PROPERTY} (default
+ * {@code java.io.tmpdir/ipedmanager-bench}) e riusate tra i fork.
+ */
+public final class Fixtures {
+
+    /** Proprieta' di sistema con la cartella delle fixture. */
+    public static final String WORK_PROPERTY = "ipedmanager.bench.work";
+
+    public static final String PROFILE = "forensic";
+
+    private static final long SEED = 20240917L;
+    private static final String DONE_MARKER = ".complete";
+
+    private Fixtures() {
+    }
+
+    public static Path workDir() throws IOException {
+        String dir = System.getProperty(WORK_PROPERTY);
+        Path path = dir != null ? Paths.get(dir)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "ipedmanager-bench");
+        Files.createDirectories(path);
+        return path;
+    }
+
+    /**
+     * Installazione IPED finta: {@code iped.jar} vuoto, {@code IPEDConfig.txt},
+     * {@code conf/} con {@code files} file da {@code keys} chiavi e il profilo
+     * {@value #PROFILE} che ne sovrascrive una parte.
+     *
+     * @return percorso di iped.jar
+     */
+    public static Path ipedInstall(int files, int keys) throws IOException {
+        Path root = workDir().resolve("iped-" + files + "x" + keys);
+        Path jar = root.resolve("iped.jar");
+        if (Files.exists(root.resolve(DONE_MARKER)))
+            return jar;
+
+        Random random = new Random(SEED);
+        Path conf = root.resolve("conf");
+        Path profile = root.resolve("profiles").resolve(PROFILE);
+        Files.createDirectories(conf);
+        Files.createDirectories(profile.resolve("conf"));
+        Files.write(jar, new byte[0]);
+
+        writeConfig(root.resolve("IPEDConfig.txt"), "IPEDConfig", keys, 0, random);
+        // Poche differenze su IPEDConfig: ogni chiave cambiata viene stampata
+        writeConfig(profile.resolve("IPEDConfig.txt"), "IPEDConfig", Math.min(10, keys), 1, random);
+        for (int f = 0; f < files; f++) {
+            String name = "BenchConfig" + f + ".txt";
+            writeConfig(conf.resolve(name), "BenchConfig" + f, keys, 0, random);
+            if (f % 2 == 0) {
+                writeConfig(profile.resolve("conf").resolve(name), "BenchConfig" + f, keys / 4, 1, random);
+            }
+        }
+        Files.createFile(root.resolve(DONE_MARKER));
+        return jar;
+    }
+
+    /**
+     * File di configurazione nello stile di IPED: commenti di spiegazione
+     * prima di ogni chiave e qualche chiave commentata.
+     */
+    public static void writeConfig(Path file, String prefix, int keys, int variant, Random random)
+            throws IOException {
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("########################################################################\n");
+            w.write("# " + prefix + " - synthetic configuration for benchmarks\n");
+            w.write("########################################################################\n\n");
+            for (int k = 0; k < keys; k++) {
+                w.write("# Setting " + k + " of " + prefix + ": controls a processing option.\n");
+                w.write("# Accepted values: true, false or a number.\n");
+                String value = variant == 0 ? randomValue(random) : randomValue(random) + "_p";
+                w.write((k % 17 == 0 ? "#" : "") + prefix.toLowerCase() + ".key" + k + " = " + value + "\n\n");
+            }
+        }
+    }
+
+    private static String randomValue(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return Boolean.toString(random.nextBoolean());
+            case 1:
+                return Integer.toString(random.nextInt(100_000));
+            default:
+                return "/data/path/" + Long.toHexString(random.nextLong());
+        }
+    }
+
+    /**
+     * Albero di evidenze: {@code depth} livelli con {@code fanout}
+     * sottocartelle e {@code filesPerDir} file ciascuno. I file sono sparsi
+     * (dimensione impostata, nessun dato scritto).
+     *
+     * @return radice dell'albero
+     */
+    public static Path evidenceTree(int depth, int fanout, int filesPerDir) throws IOException {
+        Path root = workDir().resolve("evidence-" + depth + "x" + fanout + "x" + filesPerDir);
+        if (Files.exists(root.resolve(DONE_MARKER)))
+            return root;
+        Random random = new Random(SEED);
+        Files.createDirectories(root);
+        createLevel(root, depth, fanout, filesPerDir, random);
+        Files.createFile(root.resolve(DONE_MARKER));
+        return root;
+    }
+
+    private static void createLevel(Path dir, int depth, int fanout, int filesPerDir, Random random)
+            throws IOException {
+        for (int i = 0; i < filesPerDir; i++) {
+            try (RandomAccessFile f = new RandomAccessFile(dir.resolve("file" + i + ".bin").toFile(), "rw")) {
+                f.setLength(1 + random.nextInt(1 << 20));
+            }
+        }
+        if (depth == 0)
+            return;
+        for (int i = 0; i < fanout; i++) {
+            Path sub = dir.resolve("dir" + i);
+            Files.createDirectories(sub);
+            createLevel(sub, depth - 1, fanout, filesPerDir, random);
+        }
+    }
+
+    /**
+     * Righe di output di IPED: avanzamento, volumi, velocita', nomi di file e
+     * avvisi mescolati come in un'elaborazione reale.
+     */
+    public static String[] ipedOutput(int lines) {
+        Random random = new Random(SEED);
+        String[] out = new String[lines];
+        long total = lines * 3L;
+        for (int i = 0; i < lines; i++) {
+            long processed = i * 3L;
+            switch (random.nextInt(7)) {
+                case 0:
+                    out[i] = "[INFO] [ProgressConsole] Processing " + processed + "/" + total + " items (" + processed * 100 / total
+                            + "%)";
+                    break;
+                case 1:
+                    out[i] = "[INFO] [ProgressConsole] Processed volume: " + processed * 300 / total + " GB / 300 GB";
+                    break;
+                case 2:
+                    out[i] = "[INFO] [ProgressConsole] Speed: " + (20 + random.nextInt(40)) + " GB/h";
+                    break;
+                case 3:
+                    out[i] = "[WARN] [ExportFileTask] Error exporting item " + i
+                            + ": java.io.IOException: read error at sector " + random.nextInt(100_000_000);
+                    break;
+                case 4:
+                    out[i] = "[INFO] Queue: " + random.nextInt(10_000) + " items, 05/10/2024 12:" + i % 60;
+                    break;
+                default:
+                    out[i] = "[INFO] [ParsingTask] Parsing /evidence/image.E01/vol_" + random.nextInt(4)
+                            + "/Users/user" + random.nextInt(20) + "/Documents/file" + i + ".docx";
+                    break;
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,83 @@
+package it.ipedmanager.bench;
+
+import it.ipedmanager.service.IpedProgressParser;
+import it.ipedmanager.service.LogRingBuffer;
+import it.ipedmanager.service.SpillingLogStore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Gestione dell'output di IPED riga per riga: parser dell'avanzamento, buffer
+ * verso la UI e log su disco del monitor. I risultati sono in nanosecondi per
+ * riga.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class LogBenchmark {
+
+    static final int LINES = 100_000;
+    private static final int DRAIN_BATCH = 1024;
+
+    private String[] output;
+    private LogRingBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        output = Fixtures.ipedOutput(LINES);
+        buffer = new LogRingBuffer(8192, LogRingBuffer.OverflowPolicy.DROP);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public Object progressParser() {
+        IpedProgressParser parser = new IpedProgressParser();
+        for (String line : output) {
+            parser.accept(line);
+        }
+        return parser.getProgress();
+    }
+
+    /**
+     * Inserimento e prelievo a blocchi, come tra il lettore dell'output e il
+     * timer del monitor.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void ringBuffer(Blackhole bh) {
+        for (int i = 0; i < output.length; i++) {
+            buffer.offer(output[i]);
+            if ((i & (DRAIN_BATCH - 1)) == DRAIN_BATCH - 1) {
+                buffer.drain(bh::consume, DRAIN_BATCH);
+            }
+        }
+        buffer.drain(bh::consume, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public int spillingStore() {
+        try (SpillingLogStore store = new SpillingLogStore(10_000)) {
+            for (String line : output) {
+                store.append(line);
+            }
+            store.flush();
+            return store.getLineCount();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package it.ipedmanager;
 
 import com.formdev.flatlaf.FlatLightLaf;
 import it.ipedmanager.ui.MainFrame;
+import it.ipedmanager.utils.PerfEvents;
 import javax.swing.*;
 import java.awt.Color;
 import java.io.*;
@@ -66,12 +67,26 @@ public class Main {
             : "Error during restart: ";
 
     public static void main(String[] args) {
+        // Registrazione JFR dall'avvio (-Dipedmanager.jfr=file.jfr)
+        PerfEvents.startRecordingFromProperty();
+        PerfEvents.Span startup = PerfEvents.begin(PerfEvents.Kind.STARTUP);
+
+        // Modalita' batch: nessuna inizializzazione di Swing/AWT
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            System.exit(it.ipedmanager.cli.BatchMain.run(java.util.Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // Agente worker: riceve i casi da altri IPEDManager
+        if (args.length > 0 && "--worker".equals(args[0])) {
+            System.exit(it.ipedmanager.cli.WorkerMain.run(java.util.Arrays.copyOfRange(args, 1, args.length)));
+        }
+
         // Controlla se dobbiamo riavviarci con la JRE corretta
         if (shouldRestartWithCorrectJre()) {
             return; // L'app si riavvierà con la JRE corretta
         }
 
         // Configura Look and Feel moderno - IntelliJ theme
+        PerfEvents.Span lookAndFeel = PerfEvents.begin(PerfEvents.Kind.STARTUP);
         try {
             FlatLightLaf.setup();
             JFrame.setDefaultLookAndFeelDecorated(true);
@@ -104,11 +119,15 @@ public class Main {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        lookAndFeel.end("lookAndFeel");
 
         // Avvia UI nel thread EDT
         SwingUtilities.invokeLater(() -> {
+            PerfEvents.Span window = PerfEvents.begin(PerfEvents.Kind.STARTUP);
             MainFrame frame = new MainFrame();
             frame.setVisible(true);
+            window.end("mainFrame");
+            startup.end("total");
         });
     }
 
@@ -0,0 +1,370 @@
+package it.ipedmanager.cli;
+
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.model.RunRecord;
+import it.ipedmanager.service.CaseArchiver;
+import it.ipedmanager.service.EvidenceStager;
+import it.ipedmanager.service.FolderSizeCalculator;
+import it.ipedmanager.service.IpedExecutor;
+import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
+import it.ipedmanager.service.IpedProgress;
+import it.ipedmanager.service.IpedProgressParser;
+import it.ipedmanager.service.IpedWatchdog;
+import it.ipedmanager.service.JobManifest;
+import it.ipedmanager.service.ProcessSampler;
+import it.ipedmanager.service.ResourceGovernor;
+import it.ipedmanager.service.RunHistoryStore;
+import it.ipedmanager.service.SampleRing;
+import it.ipedmanager.service.ShardedRun;
+import it.ipedmanager.utils.ProcessUtils;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Esecuzione senza interfaccia grafica per i server di elaborazione.
+ * <p>
+ * Legge uno o piu' {@link JobManifest} e li elabora in sequenza lanciando IPED
+ * direttamente, con l'output di IPED e righe periodiche di avanzamento su
+ * stdout. Non usa classi AWT/Swing: avviabile anche senza display. I crash di
+ * IPED vengono ripresi con {@code --continue} dal {@link IpedWatchdog}, con le
+ * impostazioni di LocalConfig. Con l'archivio configurato
+ * ({@code managerArchiveDir}) ogni caso concluso viene spostato mentre si
+ * elabora il successivo; prima di uscire si attende la fine degli spostamenti.
+ *
+ * <pre>
+ * java -cp IPEDManager.jar it.ipedmanager.cli.BatchMain [opzioni] manifest...
+ * IPEDManager --batch [opzioni] manifest...
+ *
+ *   -q, --quiet             solo righe di avanzamento, non l'output di IPED
+ *   --progress-interval N   secondi tra le righe di avanzamento (default 30)
+ * </pre>
+ */
+public class BatchMain {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_IPED_FAILED = 1;
+    public static final int EXIT_BAD_MANIFEST = 2;
+    public static final int EXIT_IPED_NOT_FOUND = 3;
+    public static final int EXIT_ERROR = 4;
+
+    private static final String PROGRESS_PREFIX = "[progress] ";
+
+    private boolean quiet = false;
+    private int progressIntervalSec = 30;
+    private volatile Process currentProcess;
+    // Cartella di output del caso in elaborazione
+    private volatile Path currentOutput;
+    private volatile boolean shuttingDown = false;
+    // CPU e memoria di IPED nelle righe di avanzamento (solo Linux)
+    private final ProcessSampler sampler = new ProcessSampler(60);
+    // Copia locale delle evidenze (managerStagingDir in LocalConfig)
+    private final EvidenceStager stager = new EvidenceStager();
+    // Spostamento dei casi conclusi (managerArchiveDir in LocalConfig)
+    private final CaseArchiver archiver = new CaseArchiver();
+    private final List<CaseArchiver.Migration> migrations = new ArrayList<>();
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Elabora i manifest indicati. Un caso fallito non ferma i successivi.
+     *
+     * @return il codice di uscita piu' grave tra quelli dei casi
+     */
+    public static int run(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        BatchMain batch = new BatchMain();
+        List<String> manifests = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-q".equals(arg) || "--quiet".equals(arg)) {
+                batch.quiet = true;
+            } else if ("--progress-interval".equals(arg) && i + 1 < args.length) {
+                try {
+                    batch.progressIntervalSec = Math.max(1, Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid progress interval: " + args[i]);
+                    return EXIT_BAD_MANIFEST;
+                }
+            } else if ("-h".equals(arg) || "--help".equals(arg)) {
+                printUsage();
+                return EXIT_OK;
+            } else if (arg.startsWith("-")) {
+                System.err.println("Unknown option: " + arg);
+                printUsage();
+                return EXIT_BAD_MANIFEST;
+            } else {
+                manifests.add(arg);
+            }
+        }
+        if (manifests.isEmpty()) {
+            printUsage();
+            return EXIT_BAD_MANIFEST;
+        }
+
+        // Con Ctrl+C o kill termina anche IPED: il caso restera' riprendibile con --continue
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            batch.shuttingDown = true;
+            Process p = batch.currentProcess;
+            if (p != null && p.isAlive()) {
+                ProcessUtils.destroyTree(p, false);
+            }
+        }, "batch-shutdown"));
+
+        int worst = EXIT_OK;
+        for (int i = 0; i < manifests.size(); i++) {
+            String next = i + 1 < manifests.size() ? manifests.get(i + 1) : null;
+            worst = Math.max(worst, batch.process(manifests.get(i), next));
+        }
+        return Math.max(worst, batch.awaitMigrations());
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: IPEDManager --batch [-q] [--progress-interval SECONDS] MANIFEST...");
+        System.out.println("Exit codes: 0 ok, 1 IPED failed, 2 invalid arguments/manifest, "
+                + "3 IPED not found, 4 execution error");
+    }
+
+    /**
+     * @param nextManifestPath manifest successivo, le cui evidenze vengono
+     *                         copiate nella cache locale durante questo caso
+     */
+    private int process(String manifestPath, String nextManifestPath) {
+        System.out.println("=== " + manifestPath);
+
+        JobManifest manifest;
+        try {
+            manifest = JobManifest.load(Paths.get(manifestPath));
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + manifestPath + ": " + e.getMessage());
+            return EXIT_BAD_MANIFEST;
+        }
+
+        IpedExecutor executor = new IpedExecutor();
+        if (manifest.getIpedJar() != null) {
+            executor.setIpedJarPath(manifest.getIpedJar());
+        }
+        if (manifest.getJava() != null) {
+            executor.setJrePath(manifest.getJava());
+        }
+        if (!executor.isIpedConfigured()) {
+            System.err.println("ERROR: iped.jar not found (set 'ipedJar' in the manifest)");
+            return EXIT_IPED_NOT_FOUND;
+        }
+
+        ConfigManager cm = ConfigManager.getInstance();
+        cm.initialize(executor.getIpedJarPath());
+        PropertiesConfigFile lc = cm.isValid() ? cm.getLocalConfig() : null;
+
+        ProcessingOptions options = manifest.getOptions();
+        if (options.maxMemoryGB <= 0) {
+            // Come l'interfaccia: memoria da LocalConfig
+            options.maxMemoryGB = lc != null ? lc.getInt("maxMemoryGB", 8) : 8;
+        }
+
+        // Un caso precedente ancora in archiviazione tiene occupata la cartella
+        Path outputDir = Paths.get(manifest.getOutput()).toAbsolutePath().normalize();
+        for (CaseArchiver.Migration m : migrations) {
+            if (!m.isFinished() && m.getSource().equals(outputDir)) {
+                System.out.println("Waiting for the archive copy of " + outputDir + " before reusing it");
+                try {
+                    m.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return EXIT_ERROR;
+                }
+            }
+        }
+        currentOutput = outputDir;
+
+        List<Evidence> evidences = manifest.getEvidences();
+        // Il manifest non riporta le dimensioni delle cartelle
+        FolderSizeCalculator.resolveSizes(evidences);
+        RunRecord record = RunHistoryStore.startRecord(evidences, manifest.getOutput(), manifest.getProfile(),
+                executor.getIpedJarPath());
+        record.setThreads(lc != null ? lc.getInt("numThreads", Runtime.getRuntime().availableProcessors())
+                : Runtime.getRuntime().availableProcessors());
+        int[] attempts = { 0 };
+        int exitCode = -1;
+
+        // Aumento di memoria dopo un OutOfMemoryError limitato dalla RAM fisica
+        int memoryCap = new ResourceGovernor().getAutomaticMemoryBudgetGB();
+        IpedWatchdog watchdog = new IpedWatchdog(executor)
+                .loadSettings(lc)
+                .setCancelled(() -> shuttingDown)
+                .setProcessListener(p -> {
+                    currentProcess = p;
+                    sampler.attach(p);
+                })
+                .setMemoryLimiter(gb -> memoryCap > 0 ? Math.min(gb, memoryCap) : gb)
+                .setLaunchListener((cmd, attempt) -> {
+                    attempts[0] = attempt;
+                    System.out.println("Command: " + executor.getCommandString(cmd));
+                });
+
+        IpedProgressParser parser = new IpedProgressParser();
+        Thread reporter = startProgressReporter(parser.getProgress());
+        long start = System.currentTimeMillis();
+        stager.loadSettings(lc);
+        Consumer<String> output = line -> {
+            parser.accept(line);
+            // Le righe del watchdog anche in modalita' silenziosa
+            if (!quiet || line.startsWith("[watchdog]") || line.startsWith("[shards]")) {
+                System.out.println(line);
+            }
+        };
+        try {
+            if (options.shards > 1) {
+                // La copia dei blocchi e' gestita blocco per blocco
+                ShardedRun sharded = new ShardedRun(evidences, manifest.getOutput(), options, options.shards)
+                        .setStager(stager, manifestPath)
+                        .setCancelled(() -> shuttingDown);
+                exitCode = sharded.run((shard, shardOptions) -> watchdog.run(shard, manifest.getOutput(),
+                        manifest.getProfile(), shardOptions, output), output);
+            } else {
+                List<Evidence> staged = stager.await(manifestPath, evidences, System.out::println);
+                prefetch(nextManifestPath);
+                if (shuttingDown)
+                    return EXIT_ERROR;
+                exitCode = watchdog.run(staged, manifest.getOutput(), manifest.getProfile(), options, output);
+            }
+
+            long elapsed = (System.currentTimeMillis() - start) / 1000;
+            printProgress(parser.getProgress());
+            if (exitCode == 0) {
+                System.out.println("Completed in " + IpedProgress.formatDuration(elapsed));
+                return EXIT_OK;
+            }
+            System.err.println("ERROR: IPED exited with code " + exitCode + " after "
+                    + IpedProgress.formatDuration(elapsed));
+            return EXIT_IPED_FAILED;
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getMessage());
+            return EXIT_ERROR;
+        } finally {
+            stager.release(manifestPath);
+            currentProcess = null;
+            currentOutput = null;
+            reporter.interrupt();
+            sampler.stop();
+            record.setMemoryGB(options.maxMemoryGB);
+            String status = exitCode == 0 ? "COMPLETED" : shuttingDown ? "CANCELLED" : "FAILED";
+            RunHistoryStore.finishRecord(record, status, exitCode, Math.max(1, attempts[0]), parser.getProgress(),
+                    sampler.getSamples());
+            RunHistoryStore.getInstance().append(record);
+            sampler.getSamples().clear();
+            if (exitCode == 0) {
+                archive(manifest.getOutput(), record, lc);
+            }
+        }
+    }
+
+    /**
+     * Avvia in background lo spostamento del caso concluso nell'archivio, se
+     * configurato.
+     */
+    private void archive(String outputPath, RunRecord record, PropertiesConfigFile lc) {
+        if (!archiver.loadSettings(lc).isEnabled() || shuttingDown)
+            return;
+        migrations.add(archiver.submit(Paths.get(outputPath), System.out::println, m -> {
+            if (m.getState() == CaseArchiver.Migration.State.DONE) {
+                record.setArchivePath(m.getTarget().toString());
+                RunHistoryStore.getInstance().update(record);
+            }
+        }, () -> Paths.get(outputPath).toAbsolutePath().normalize().equals(currentOutput)));
+    }
+
+    /**
+     * Attende gli spostamenti in corso.
+     *
+     * @return {@link #EXIT_ERROR} se almeno uno e' fallito
+     */
+    private int awaitMigrations() {
+        int result = EXIT_OK;
+        for (CaseArchiver.Migration m : migrations) {
+            try {
+                if (m.getState() != CaseArchiver.Migration.State.DONE) {
+                    System.out.println("Waiting for the archive copy of " + m.getSource());
+                }
+                if (!m.await()) {
+                    System.err.println("ERROR: archiving failed, the case stays in " + m.getSource());
+                    result = EXIT_ERROR;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return EXIT_ERROR;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Avvia la copia locale delle evidenze del manifest successivo, con le
+     * impostazioni di cache del caso in corso.
+     */
+    private void prefetch(String manifestPath) {
+        if (manifestPath == null || !stager.isEnabled())
+            return;
+        try {
+            JobManifest next = JobManifest.load(Paths.get(manifestPath));
+            stager.prefetch(manifestPath, next.getEvidences(), System.out::println);
+        } catch (IllegalArgumentException e) {
+            // Il manifest verra' segnalato quando sara' il suo turno
+        }
+    }
+
+    private Thread startProgressReporter(IpedProgress progress) {
+        Thread t = new Thread(() -> {
+            long last = 0;
+            try {
+                while (true) {
+                    Thread.sleep(progressIntervalSec * 1000L);
+                    // Solo se e' arrivato qualcosa di nuovo
+                    if (progress.getLastUpdate() != last) {
+                        last = progress.getLastUpdate();
+                        printProgress(progress);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Fine elaborazione
+            }
+        }, "batch-progress");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private void printProgress(IpedProgress p) {
+        if (p.getLastUpdate() == 0)
+            return;
+        StringBuilder sb = new StringBuilder(PROGRESS_PREFIX);
+        sb.append(p.hasPercent() ? String.format("%.1f%%", p.getPercent()) : "-");
+        if (p.getItemsTotal() > 0) {
+            sb.append(" items ").append(p.getItemsProcessed()).append('/').append(p.getItemsTotal());
+        }
+        if (p.getBytesTotal() > 0) {
+            sb.append(" bytes ").append(Evidence.formatSize(p.getBytesProcessed())).append('/')
+                    .append(Evidence.formatSize(p.getBytesTotal()));
+        }
+        if (p.getItemsPerSecond() >= 0) {
+            sb.append(String.format(" %.1f items/s", p.getItemsPerSecond()));
+        }
+        if (p.getBytesPerSecond() >= 0) {
+            sb.append(' ').append(Evidence.formatSize(Math.round(p.getBytesPerSecond()))).append("/s");
+        }
+        sb.append(" ETA ").append(IpedProgress.formatDuration(p.getEtaSeconds()));
+        SampleRing samples = sampler.getSamples();
+        if (samples.size() > 0) {
+            sb.append(String.format(" cpu %.0f%%", samples.getLast(ProcessSampler.CPU_PERCENT)));
+            sb.append(" rss ").append(Evidence.formatSize(Math.round(samples.getLast(ProcessSampler.RSS_BYTES))));
+        }
+        System.out.println(sb);
+    }
+}
@@ -0,0 +1,326 @@
+package it.ipedmanager.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Processo che si finge IPED, per provare monitor, parser dell'avanzamento,
+ * watchdog e code senza elaborazioni reali di ore. Viene avviato da
+ * {@link it.ipedmanager.service.IpedExecutor} in modalita' simulatore al
+ * posto di {@code iped.jar}, con gli stessi argomenti di IPED dopo
+ * {@code --}.
+ *
+ * <pre>
+ * java -cp IPEDManager.jar it.ipedmanager.cli.IpedSimulator [opzioni] -- [argomenti IPED]
+ *
+ *   --rate N            righe di output al secondo (default 500)
+ *   --duration S        durata dell'elaborazione in secondi (default 120)
+ *   --items N           item totali dell'avanzamento (default 100000)
+ *   --replay FILE       ripete un log di IPED registrato invece di generarlo
+ *   --stall-at P:S      nessun output per S secondi al P% (ripetibile)
+ *   --oom-at P[:GB]     OutOfMemoryError al P%, solo se -Xmx e' sotto GB
+ *   --crash-at P:CODE   uscita improvvisa con CODE al P%
+ *   --exit CODE         exit code finale (default 0)
+ *   --seed N            seed dei dati generati (default fisso)
+ * </pre>
+ *
+ * Degli argomenti di IPED usa {@code -o} (crea {@code <out>/iped} come IPED,
+ * con lo stato del simulatore), {@code --continue} (riprende dall'ultimo
+ * punto salvato) e {@code -Xmx}. Crash e stalli scattano una sola volta per
+ * cartella di output; l'OutOfMemoryError con soglia si ripete finche' la
+ * memoria non viene aumentata, come per il watchdog con IPED reale.
+ */
+public class IpedSimulator {
+
+    private static final int EXIT_OOM = 1;
+    private static final String STATE_FILE = "simulator.state";
+    private static final long TICK_MS = 20;
+    // Punti di ripresa salvati ogni 2% come i checkpoint di IPED
+    private static final double CHECKPOINT_STEP = 0.02;
+
+    private double rate = 500;
+    private int durationSec = 120;
+    private long items = 100_000;
+    private Path replay;
+    private long seed = 1L;
+    private int exitCode = 0;
+    private final List<double[]> stalls = new ArrayList<>();
+    private final List<double[]> crashes = new ArrayList<>();
+    private double oomAt = -1;
+    private int oomBelowGB = 0;
+
+    private Path outputDir;
+    private boolean resume;
+    private int heapGB = 0;
+
+    private final Properties state = new Properties();
+    private Writer out;
+
+    public static void main(String[] args) {
+        IpedSimulator simulator = new IpedSimulator();
+        try {
+            simulator.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("IPED simulator: " + e.getMessage());
+            System.exit(BatchMain.EXIT_BAD_MANIFEST);
+        }
+        try {
+            System.exit(simulator.run());
+        } catch (InterruptedException e) {
+            System.exit(BatchMain.EXIT_ERROR);
+        } catch (IOException e) {
+            System.err.println("IPED simulator: " + e.getMessage());
+            System.exit(BatchMain.EXIT_ERROR);
+        }
+    }
+
+    void parseArgs(String[] args) {
+        int i = 0;
+        for (; i < args.length && !"--".equals(args[i]); i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("missing value for " + arg);
+            String value = args[++i];
+            try {
+                if ("--rate".equals(arg)) {
+                    rate = Math.max(1, Double.parseDouble(value));
+                } else if ("--duration".equals(arg)) {
+                    durationSec = Math.max(1, Integer.parseInt(value));
+                } else if ("--items".equals(arg)) {
+                    items = Math.max(1, Long.parseLong(value));
+                } else if ("--replay".equals(arg)) {
+                    replay = Paths.get(value);
+                } else if ("--stall-at".equals(arg)) {
+                    stalls.add(parsePair(value));
+                } else if ("--crash-at".equals(arg)) {
+                    crashes.add(parsePair(value));
+                } else if ("--oom-at".equals(arg)) {
+                    double[] p = value.indexOf(':') >= 0 ? parsePair(value)
+                            : new double[] { Double.parseDouble(value), 0 };
+                    oomAt = p[0];
+                    oomBelowGB = (int) p[1];
+                } else if ("--exit".equals(arg)) {
+                    exitCode = Integer.parseInt(value);
+                } else if ("--seed".equals(arg)) {
+                    seed = Long.parseLong(value);
+                } else {
+                    throw new IllegalArgumentException("unknown option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid value for " + arg + ": " + value);
+            }
+        }
+        // Argomenti di IPED
+        for (i++; i < args.length; i++) {
+            String arg = args[i];
+            if ("-o".equals(arg) && i + 1 < args.length) {
+                outputDir = Paths.get(args[++i]);
+            } else if ("--continue".equals(arg)) {
+                resume = true;
+            } else if (arg.startsWith("-Xmx") && arg.toUpperCase().endsWith("G")) {
+                try {
+                    heapGB = Integer.parseInt(arg.substring(4, arg.length() - 1));
+                } catch (NumberFormatException e) {
+                    // Unita' diverse da G: soglia OOM non valutabile
+                }
+            }
+        }
+    }
+
+    private static double[] parsePair(String value) {
+        int sep = value.indexOf(':');
+        if (sep < 0)
+            throw new NumberFormatException(value);
+        return new double[] { Double.parseDouble(value.substring(0, sep)),
+                Double.parseDouble(value.substring(sep + 1)) };
+    }
+
+    int run() throws IOException, InterruptedException {
+        out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        List<String> replayLines = replay != null ? readReplay(replay) : null;
+        long totalLines = replayLines != null ? replayLines.size() : (long) (rate * durationSec);
+        Path stateFile = loadState();
+        long line = resume ? Long.parseLong(state.getProperty("line", "0")) : 0;
+        long checkpoint = Math.max(1, (long) (totalLines * CHECKPOINT_STEP));
+        Random random = new Random(seed + line);
+
+        print("IPED simulator (IPEDManager) - not a real IPED run");
+        print("[INFO] Output folder: " + (outputDir != null ? outputDir : "(none)")
+                + (resume ? ", resuming from line " + line + "/" + totalLines : ""));
+        flush();
+
+        long started = System.currentTimeMillis();
+        long emitted = 0;
+        double budget = 0;
+        long lastTick = System.nanoTime();
+        while (line < totalLines) {
+            double before = line * 100.0 / totalLines;
+            double after = (line + 1) * 100.0 / totalLines;
+
+            for (int s = 0; s < stalls.size(); s++) {
+                if (crossed(stalls.get(s)[0], before, after) && fireOnce(stateFile, "stall" + s)) {
+                    flush();
+                    Thread.sleep((long) (stalls.get(s)[1] * 1000));
+                    lastTick = System.nanoTime();
+                }
+            }
+            for (int c = 0; c < crashes.size(); c++) {
+                if (crossed(crashes.get(c)[0], before, after) && fireOnce(stateFile, "crash" + c)) {
+                    print("[ERROR] Simulated crash at " + formatPercent(after) + "%");
+                    flush();
+                    return (int) crashes.get(c)[1];
+                }
+            }
+            if (oomAt >= 0 && crossed(oomAt, before, after)
+                    && (oomBelowGB > 0 ? heapGB < oomBelowGB : fireOnce(stateFile, "oom"))) {
+                printOutOfMemory(random);
+                flush();
+                return EXIT_OOM;
+            }
+
+            if (replayLines != null) {
+                print(replayLines.get((int) line));
+            } else if (line % Math.max(1, (long) rate) == 0) {
+                print(progressLine(line, totalLines, started));
+            } else {
+                print(randomLine(random, line));
+            }
+            line++;
+            emitted++;
+            if (line % checkpoint == 0) {
+                state.setProperty("line", Long.toString(line));
+                saveState(stateFile);
+            }
+
+            // Limite di velocita': righe a blocchi ogni TICK_MS
+            budget -= 1;
+            if (budget < 0) {
+                flush();
+                long now = System.nanoTime();
+                long sleepMs = TICK_MS - (now - lastTick) / 1_000_000;
+                if (sleepMs > 0) {
+                    Thread.sleep(sleepMs);
+                }
+                lastTick = System.nanoTime();
+                budget += rate * TICK_MS / 1000.0;
+            }
+        }
+
+        if (replayLines == null) {
+            print(progressLine(totalLines, totalLines, started));
+        }
+        print("[INFO] IPED finished (" + emitted + " lines).");
+        flush();
+        state.setProperty("line", Long.toString(totalLines));
+        saveState(stateFile);
+        return exitCode;
+    }
+
+    private static boolean crossed(double percent, double before, double after) {
+        return before < percent && after >= percent || (before == 0 && percent <= 0);
+    }
+
+    /**
+     * Vero la prima volta che l'evento scatta per questa cartella di output.
+     */
+    private boolean fireOnce(Path stateFile, String event) throws IOException {
+        if (state.getProperty("fired." + event) != null)
+            return false;
+        state.setProperty("fired." + event, "true");
+        saveState(stateFile);
+        return true;
+    }
+
+    private String progressLine(long line, long totalLines, long started) {
+        long processed = items * line / totalLines;
+        double percent = line * 100.0 / totalLines;
+        double volumeGB = 300.0 * line / totalLines;
+        double hours = Math.max(1, System.currentTimeMillis() - started) / 3_600_000.0;
+        return "[INFO] [ProgressConsole] Processing " + processed + "/" + items + " items (" + formatPercent(percent) + "%) - "
+                + String.format("%.1f", volumeGB) + " GB / 300 GB - "
+                + String.format("%.1f", Math.min(999, volumeGB / hours)) + " GB/h";
+    }
+
+    private static String randomLine(Random random, long line) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return "[WARN] [ExportFileTask] Error exporting item " + line
+                        + ": java.io.IOException: read error at sector " + random.nextInt(100_000_000);
+            case 1:
+                return "[INFO] [HashTask] " + Long.toHexString(random.nextLong()) + " computed in "
+                        + random.nextInt(200) + " ms";
+            default:
+                return "[INFO] [ParsingTask] Parsing /evidence/image.E01/vol_" + random.nextInt(4) + "/Users/user"
+                        + random.nextInt(20) + "/Documents/file" + line + ".docx";
+        }
+    }
+
+    private void printOutOfMemory(Random random) throws IOException {
+        print("Exception in thread \"Worker-" + random.nextInt(16) + "\" java.lang.OutOfMemoryError: Java heap space");
+        print("\tat java.util.Arrays.copyOf(Arrays.java:3332)");
+        print("\tat iped.engine.task.ParsingTask.process(ParsingTask.java:412)");
+        print("\tat iped.engine.task.AbstractTask.processAndSendToNextTask(AbstractTask.java:213)");
+        print("\tat iped.engine.core.Worker.run(Worker.java:151)");
+        print("[FATAL] Processing aborted (heap " + (heapGB > 0 ? heapGB + " GB" : "default") + ")");
+    }
+
+    private static String formatPercent(double percent) {
+        return Integer.toString((int) Math.min(100, Math.floor(percent)));
+    }
+
+    private void print(String text) throws IOException {
+        out.write(text);
+        out.write(System.lineSeparator());
+    }
+
+    private void flush() throws IOException {
+        out.flush();
+    }
+
+    private static List<String> readReplay(Path file) throws IOException {
+        try {
+            return Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (MalformedInputException e) {
+            // Log registrati su Windows
+            return Files.readAllLines(file, Charset.forName("windows-1252"));
+        }
+    }
+
+    private Path loadState() throws IOException {
+        if (outputDir == null)
+            return null;
+        Path ipedDir = outputDir.resolve("iped");
+        Files.createDirectories(ipedDir);
+        Path file = ipedDir.resolve(STATE_FILE);
+        if (Files.exists(file)) {
+            try (java.io.Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                state.load(r);
+            }
+        }
+        if (!resume) {
+            // Nuova elaborazione: crash e stalli possono scattare di nuovo
+            state.clear();
+        }
+        return file;
+    }
+
+    private void saveState(Path file) throws IOException {
+        if (file == null)
+            return;
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            state.store(w, "IPED simulator");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package it.ipedmanager.cli;
+
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.service.IpedExecutor;
+import it.ipedmanager.service.Job;
+import it.ipedmanager.service.JobManifest;
+import it.ipedmanager.service.JobScheduler;
+import it.ipedmanager.service.JobSpool;
+import it.ipedmanager.service.StatusServer;
+import it.ipedmanager.service.WorkerAgent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Avvio dell'agente worker senza interfaccia grafica: riceve i casi inviati
+ * dagli IPEDManager configurati con {@code managerWorkers} e li elabora con
+ * l'IPED di questa macchina. Con {@code --spool} prende anche i casi da una
+ * coda su cartella condivisa ({@link JobSpool}); senza {@code --port} in
+ * quel caso non apre nessuna porta.
+ *
+ * <pre>
+ * IPEDManager --worker [opzioni]
+ *
+ *   --port N        porta HTTP (default 8765)
+ *   --bind ADDR     indirizzo di ascolto (default 127.0.0.1; 0.0.0.0 per
+ *                   tutte le interfacce, solo con un token)
+ *   --token T       token richiesto ai client (default: variabile
+ *                   d'ambiente IPEDMANAGER_TOKEN)
+ *   --keystore PATH keystore (.jks o .p12) per servire HTTPS; password con
+ *                   --keystore-password o IPEDMANAGER_KEYSTORE_PASSWORD
+ *   --iped PATH     iped.jar da usare (default: rilevato come nell'interfaccia)
+ *   --java PATH     eseguibile java per IPED
+ *   --spool DIR     prende i casi dalla coda condivisa DIR
+ *   --submit        con --spool: accoda i manifest indicati ed esce
+ * </pre>
+ *
+ * Piu' agenti sulla stessa macchina (es. per le prove) vanno avviati su porte
+ * diverse. Senza {@code --keystore} token e manifest viaggiano in chiaro: i
+ * manager non inviano casi con password delle evidenze a un worker HTTP in
+ * rete.
+ */
+public class WorkerMain {
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Avvia l'agente e resta in esecuzione fino alla terminazione del
+     * processo.
+     *
+     * @return codice di uscita in caso di errore di avvio
+     */
+    public static int run(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        int port = WorkerAgent.DEFAULT_PORT;
+        boolean portSet = false;
+        String bind = WorkerAgent.DEFAULT_BIND;
+        Path spoolDir = null;
+        boolean submit = false;
+        List<String> manifests = new ArrayList<>();
+        String token = System.getenv("IPEDMANAGER_TOKEN");
+        Path keystore = null;
+        String keystorePassword = System.getenv("IPEDMANAGER_KEYSTORE_PASSWORD");
+        IpedExecutor executor = new IpedExecutor();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if ("--port".equals(arg) && hasValue) {
+                try {
+                    port = Integer.parseInt(args[++i]);
+                    portSet = true;
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid port: " + args[i]);
+                    return BatchMain.EXIT_BAD_MANIFEST;
+                }
+            } else if ("--bind".equals(arg) && hasValue) {
+                bind = args[++i];
+            } else if ("--token".equals(arg) && hasValue) {
+                token = args[++i];
+            } else if ("--keystore".equals(arg) && hasValue) {
+                keystore = Paths.get(args[++i]);
+            } else if ("--keystore-password".equals(arg) && hasValue) {
+                keystorePassword = args[++i];
+            } else if ("--iped".equals(arg) && hasValue) {
+                executor.setIpedJarPath(args[++i]);
+            } else if ("--java".equals(arg) && hasValue) {
+                executor.setJrePath(args[++i]);
+            } else if ("--spool".equals(arg) && hasValue) {
+                spoolDir = Paths.get(args[++i]);
+            } else if ("--submit".equals(arg)) {
+                submit = true;
+            } else if ("-h".equals(arg) || "--help".equals(arg)) {
+                printUsage();
+                return BatchMain.EXIT_OK;
+            } else if (submit && !arg.startsWith("-")) {
+                manifests.add(arg);
+            } else {
+                System.err.println("Unknown option: " + arg);
+                printUsage();
+                return BatchMain.EXIT_BAD_MANIFEST;
+            }
+        }
+        if (submit) {
+            if (spoolDir == null || manifests.isEmpty()) {
+                printUsage();
+                return BatchMain.EXIT_BAD_MANIFEST;
+            }
+            return submit(spoolDir, manifests);
+        }
+        if (!executor.isIpedConfigured()) {
+            System.err.println("ERROR: iped.jar not found (use --iped)");
+            return BatchMain.EXIT_IPED_NOT_FOUND;
+        }
+        ConfigManager.getInstance().initialize(executor.getIpedJarPath());
+
+        try {
+            JobScheduler scheduler;
+            if (spoolDir == null || portSet) {
+                InetSocketAddress address = new InetSocketAddress(bind, port);
+                WorkerAgent agent;
+                try {
+                    SSLContext ssl = keystore != null ? WorkerAgent.loadSslContext(keystore,
+                            keystorePassword != null ? keystorePassword.toCharArray() : new char[0]) : null;
+                    agent = new WorkerAgent(executor, address, token, ssl);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("ERROR: " + e.getMessage());
+                    return BatchMain.EXIT_BAD_MANIFEST;
+                }
+                agent.start();
+                scheduler = agent.getScheduler();
+                System.out.println("IPEDManager worker listening on " + (agent.isHttps() ? "https" : "http") + "://"
+                        + address.getHostString() + ":" + agent.getPort() + " (IPED " + executor.getIpedJarPath()
+                        + ")");
+                if (address.getAddress().isLoopbackAddress()) {
+                    System.out.println("Only this machine can submit jobs: use --bind 0.0.0.0 and --token "
+                            + "to accept other hosts");
+                } else if (!agent.isHttps()) {
+                    System.out.println("WARNING: plain HTTP, the token and the manifests travel in cleartext; "
+                            + "cases with evidence passwords will not be sent here (use --keystore)");
+                }
+            } else {
+                scheduler = new JobScheduler(executor);
+            }
+            ConfigManager cm = ConfigManager.getInstance();
+            StatusServer.startFromSettings(scheduler, cm.isValid() ? cm.getLocalConfig() : null);
+            if (spoolDir != null) {
+                JobSpool spool = new JobSpool(scheduler).setRoot(spoolDir);
+                scheduler.addListener(WorkerMain::printStatus);
+                spool.start();
+                System.out.println("IPEDManager worker taking cases from " + spoolDir + " as " + spool.getNode()
+                        + " (IPED " + executor.getIpedJarPath() + ")");
+            }
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getMessage());
+            return BatchMain.EXIT_ERROR;
+        }
+        return BatchMain.EXIT_OK;
+    }
+
+    /**
+     * Accoda i manifest nella coda condivisa, dopo averli validati.
+     */
+    private static int submit(Path spoolDir, List<String> manifests) {
+        JobSpool spool = new JobSpool(null).setRoot(spoolDir);
+        int worst = BatchMain.EXIT_OK;
+        for (String manifest : manifests) {
+            Path file = Paths.get(manifest);
+            try {
+                JobManifest.load(file);
+                Path queued = spool.submit(file.getFileName().toString(),
+                        new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                System.out.println("Queued " + manifest + " as " + queued.getFileName());
+            } catch (IllegalArgumentException e) {
+                System.err.println("ERROR: " + manifest + ": " + e.getMessage());
+                worst = Math.max(worst, BatchMain.EXIT_BAD_MANIFEST);
+            } catch (IOException e) {
+                System.err.println("ERROR: " + manifest + ": " + e.getMessage());
+                worst = Math.max(worst, BatchMain.EXIT_ERROR);
+            }
+        }
+        return worst;
+    }
+
+    private static void printStatus(Job job) {
+        if (job.getStatus() != Job.Status.QUEUED) {
+            System.out.println("Job #" + job.getId() + " " + job.getOutputPath() + ": " + job.getStatus()
+                    + (job.getStatus().isFinished() ? " (exit code " + job.getExitCode() + ")" : ""));
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: IPEDManager --worker [--port N] [--bind ADDRESS] [--token TOKEN] "
+                + "[--keystore KEYSTORE [--keystore-password PASSWORD]] [--iped IPED_JAR] [--java JAVA] "
+                + "[--spool DIR]");
+        System.out.println("       IPEDManager --worker --spool DIR --submit MANIFEST...");
+    }
+}
@@ -1,17 +1,30 @@
 package it.ipedmanager.config;
 
+import it.ipedmanager.utils.PerfEvents;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Singleton che gestisce le configurazioni IPED.
+ * <p>
+ * I file letti restano in una cache concorrente: le letture gia' in cache non
+ * prendono lock e possono arrivare da UI, scheduler e thread di servizio.
+ * Le cartelle di IPED (radice, {@code conf/}, {@code profiles/}) sono osservate
+ * con un {@link WatchService}: un file modificato da fuori viene tolto dalla
+ * cache (e riletto al prossimo accesso) e i listener ricevono il percorso
+ * cambiato. I file con modifiche non salvate restano in cache; al salvataggio
+ * vengono comunque applicate sul contenuto attuale del file.
  */
 public class ConfigManager {
 
-    private static ConfigManager instance;
-    private Path confPath;
-    private Path ipedPath;
-    private Map<String, PropertiesConfigFile> configFiles;
+    private volatile Path confPath;
+    private volatile Path ipedPath;
+    private final Map<String, PropertiesConfigFile> configFiles = new ConcurrentHashMap<>();
+    private final List<Consumer<Path>> listeners = new CopyOnWriteArrayList<>();
+    private ConfigWatcher watcher;
 
     // Nomi file configurazione
     public static final String LOCAL_CONFIG = "LocalConfig.txt";
@@ -26,24 +39,31 @@ public class ConfigManager {
     public static final String FACE_CONFIG = "FaceRecognitionConfig.txt";
     public static final String PHOTODNA_CONFIG = "PhotoDNAConfig.txt";
     public static final String HTML_REPORT_CONFIG = "HTMLReportConfig.txt";
+    public static final String FILESYSTEM_CONFIG = "FileSystemConfig.txt";
+    public static final String PARSING_CONFIG = "ParsingTaskConfig.txt";
 
     private ConfigManager() {
-        configFiles = new HashMap<>();
+    }
+
+    // Creato al primo uso, senza sincronizzare getInstance()
+    private static class Holder {
+        static final ConfigManager INSTANCE = new ConfigManager();
     }
 
     public static ConfigManager getInstance() {
-        if (instance == null) {
-            instance = new ConfigManager();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
     /**
      * Inizializza con il path di iped.jar
      */
-    public void initialize(String ipedJarPath) {
+    public synchronized void initialize(String ipedJarPath) {
         try {
-            this.ipedPath = Paths.get(ipedJarPath).getParent();
+            Path newIpedPath = Paths.get(ipedJarPath).getParent();
+            if (watcher == null || !newIpedPath.equals(ipedPath)) {
+                startWatcher(newIpedPath);
+            }
+            this.ipedPath = newIpedPath;
             this.confPath = ipedPath.resolve("conf");
             configFiles.clear();
         } catch (Exception e) {
@@ -55,53 +75,124 @@ public class ConfigManager {
         configFiles.clear();
     }
 
-    public PropertiesConfigFile getConfigFile(String fileName) {
-        if (!configFiles.containsKey(fileName)) {
-            Path path = confPath.resolve(fileName);
-            PropertiesConfigFile config = new PropertiesConfigFile(path);
-            if (config.load()) {
-                configFiles.put(fileName, config);
-            } else {
-                return null;
-            }
+    /**
+     * Registra un listener chiamato (dal thread di osservazione) con il
+     * percorso di ogni file o cartella di configurazione cambiato da fuori;
+     * con la radice di IPED se i cambiamenti non sono noti.
+     */
+    public void addListener(Consumer<Path> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Path> listener) {
+        listeners.remove(listener);
+    }
+
+    private void startWatcher(Path newIpedPath) {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        if (newIpedPath == null || !Files.isDirectory(newIpedPath))
+            return;
+        try {
+            watcher = new ConfigWatcher(newIpedPath, this::onFilesChanged);
+            watcher.start();
+        } catch (Exception e) {
+            System.err.println("Config file watching disabled: " + e.getMessage());
         }
-        return configFiles.get(fileName);
     }
 
-    public PropertiesConfigFile getLocalConfig() {
-        if (ipedPath == null)
-            return null;
-        if (!configFiles.containsKey(LOCAL_CONFIG)) {
-            // Prima cerca in root IPED
-            Path path = ipedPath.resolve(LOCAL_CONFIG);
-            PropertiesConfigFile config = new PropertiesConfigFile(path);
-            if (config.load()) {
-                configFiles.put(LOCAL_CONFIG, config);
-            } else {
-                // Poi in conf
-                path = confPath.resolve(LOCAL_CONFIG);
-                config = new PropertiesConfigFile(path);
-                if (config.load()) {
-                    configFiles.put(LOCAL_CONFIG, config);
-                } else {
-                    return null;
+    /**
+     * Toglie dalla cache i file cambiati da fuori e avvisa i listener. I
+     * salvataggi di IPEDManager stesso non risultano cambiati e vengono
+     * ignorati.
+     */
+    private void onFilesChanged(Set<Path> paths) {
+        Path root = ipedPath;
+        for (Path path : paths) {
+            String name = String.valueOf(path.getFileName());
+            // File temporanei e backup dei salvataggi
+            if (name.endsWith(".tmp") || name.endsWith(".bak"))
+                continue;
+            boolean all = root != null && path.equals(root.toAbsolutePath().normalize());
+            boolean cached = false;
+            boolean stale = false;
+            for (Map.Entry<String, PropertiesConfigFile> e : configFiles.entrySet()) {
+                PropertiesConfigFile config = e.getValue();
+                if (!all && !config.getPath().toAbsolutePath().normalize().equals(path))
+                    continue;
+                cached = true;
+                if (config.isStale()) {
+                    stale = true;
+                    if (!config.isDirty()) {
+                        configFiles.remove(e.getKey(), config);
+                    }
                 }
             }
+            if (all || stale || !cached) {
+                notifyListeners(path);
+            }
         }
-        return configFiles.get(LOCAL_CONFIG);
     }
 
-    public PropertiesConfigFile getIpedConfig() {
-        if (!configFiles.containsKey(IPED_CONFIG)) {
-            Path path = ipedPath.resolve(IPED_CONFIG);
-            PropertiesConfigFile config = new PropertiesConfigFile(path);
-            if (config.load()) {
-                configFiles.put(IPED_CONFIG, config);
-            } else {
-                return null;
+    private void notifyListeners(Path path) {
+        for (Consumer<Path> listener : listeners) {
+            try {
+                listener.accept(path);
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
-        return configFiles.get(IPED_CONFIG);
+    }
+
+    public PropertiesConfigFile getConfigFile(String fileName) {
+        PropertiesConfigFile cached = configFiles.get(fileName);
+        if (cached != null)
+            return cached;
+
+        PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.CONFIG_GET);
+        PropertiesConfigFile config = null;
+        try {
+            Path dir = confPath;
+            config = configFiles.computeIfAbsent(fileName, name -> {
+                PropertiesConfigFile c = new PropertiesConfigFile(dir.resolve(name));
+                return c.load() ? c : null;
+            });
+            return config;
+        } finally {
+            span.end(fileName, config != null ? 1 : 0);
+        }
+    }
+
+    public PropertiesConfigFile getLocalConfig() {
+        Path root = ipedPath;
+        if (root == null)
+            return null;
+        PropertiesConfigFile cached = configFiles.get(LOCAL_CONFIG);
+        if (cached != null)
+            return cached;
+        Path conf = confPath;
+        return configFiles.computeIfAbsent(LOCAL_CONFIG, name -> {
+            // Prima cerca in root IPED
+            PropertiesConfigFile config = new PropertiesConfigFile(root.resolve(name));
+            if (config.load())
+                return config;
+            // Poi in conf
+            config = new PropertiesConfigFile(conf.resolve(name));
+            return config.load() ? config : null;
+        });
+    }
+
+    public PropertiesConfigFile getIpedConfig() {
+        PropertiesConfigFile cached = configFiles.get(IPED_CONFIG);
+        if (cached != null)
+            return cached;
+        Path root = ipedPath;
+        return configFiles.computeIfAbsent(IPED_CONFIG, name -> {
+            PropertiesConfigFile config = new PropertiesConfigFile(root.resolve(name));
+            return config.load() ? config : null;
+        });
     }
 
     // Alias per compatibilità con la nuova API
@@ -113,14 +204,24 @@ public class ConfigManager {
         return getConfigFile(HTML_REPORT_CONFIG);
     }
 
+    /**
+     * Salva i file con modifiche (backup .bak prima di ciascuno); quelli
+     * invariati non vengono toccati.
+     */
     public boolean saveAll() {
+        PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.CONFIG_SAVE_ALL);
         boolean success = true;
+        int saved = 0;
         for (PropertiesConfigFile config : configFiles.values()) {
+            if (!config.isDirty())
+                continue;
             config.backup();
             if (!config.save()) {
                 success = false;
             }
+            saved++;
         }
+        span.end(String.valueOf(confPath), saved);
         return success;
     }
 
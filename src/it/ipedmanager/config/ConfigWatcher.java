@@ -0,0 +1,140 @@
+package it.ipedmanager.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Osserva le cartelle di configurazione di un'installazione IPED (radice,
+ * {@code conf/}, {@code profiles/} con ogni profilo e il suo {@code conf/}) e
+ * segnala i percorsi modificati.
+ * <p>
+ * Gli eventi vengono raccolti per {@value #SETTLE_MS} ms prima di essere
+ * consegnati, cosi' un salvataggio da editor (che genera piu' eventi) arriva
+ * come una sola notifica. Un overflow della coda viene segnalato con la
+ * radice di IPED: il chiamante deve considerare cambiato tutto.
+ */
+class ConfigWatcher implements Closeable {
+
+    private static final long SETTLE_MS = 300;
+
+    private final Path ipedPath;
+    private final WatchService watchService;
+    private final Consumer<Set<Path>> onChange;
+    private final Thread thread;
+
+    ConfigWatcher(Path ipedPath, Consumer<Set<Path>> onChange) throws IOException {
+        this.ipedPath = ipedPath.toAbsolutePath().normalize();
+        this.watchService = this.ipedPath.getFileSystem().newWatchService();
+        this.onChange = onChange;
+        this.thread = new Thread(this::loop, "config-watcher");
+        this.thread.setDaemon(true);
+        register(this.ipedPath);
+        register(this.ipedPath.resolve("conf"));
+        registerProfiles();
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void registerProfiles() {
+        Path profiles = ipedPath.resolve("profiles");
+        if (!register(profiles))
+            return;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(profiles)) {
+            for (Path profile : stream) {
+                registerProfile(profile);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot watch " + profiles + ": " + e.getMessage());
+        }
+    }
+
+    private void registerProfile(Path profile) {
+        if (register(profile)) {
+            register(profile.resolve("conf"));
+        }
+    }
+
+    private boolean register(Path dir) {
+        if (!Files.isDirectory(dir))
+            return false;
+        try {
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Cannot watch " + dir + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void loop() {
+        try {
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                Thread.sleep(SETTLE_MS);
+                while (key != null) {
+                    collect(key, changed);
+                    key = watchService.poll();
+                }
+                if (!changed.isEmpty()) {
+                    onChange.accept(changed);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Osservazione terminata
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.add(ipedPath);
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            changed.add(path);
+            // Nuove cartelle da osservare: conf/, profiles/ o un profilo
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                if (dir.equals(ipedPath)) {
+                    if (path.getFileName().toString().equals("profiles")) {
+                        registerProfiles();
+                    } else if (path.getFileName().toString().equals("conf")) {
+                        register(path);
+                    }
+                } else if (dir.equals(ipedPath.resolve("profiles"))) {
+                    registerProfile(path);
+                } else if (dir.getParent().equals(ipedPath.resolve("profiles"))
+                        && path.getFileName().toString().equals("conf")) {
+                    register(path);
+                }
+            }
+        }
+        key.reset();
+    }
+}
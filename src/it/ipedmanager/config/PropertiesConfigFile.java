@@ -1,11 +1,22 @@
 package it.ipedmanager.config;
 
+import it.ipedmanager.utils.PerfEvents;
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
 
 /**
  * Gestisce un file di configurazione IPED (formato properties).
+ * <p>
+ * Le righe lette da {@link #load} restano in memoria con l'indice della riga
+ * di ogni chiave: {@link #save} riscrive solo le chiavi modificate (commenti e
+ * formattazione del resto restano identici) e non scrive nulla se non ci sono
+ * modifiche. Il file viene scritto in un file temporaneo e poi sostituito con
+ * uno spostamento atomico, cosi' un'interruzione durante il salvataggio non
+ * lascia a IPED un file troncato. Se il file e' cambiato su disco dopo la
+ * lettura viene riletto prima di applicare le modifiche.
  */
 public class PropertiesConfigFile {
 
@@ -13,40 +24,39 @@ public class PropertiesConfigFile {
     private Properties properties;
     private boolean loaded;
 
+    // Righe del file come lette (BOM compreso) e riga di ogni chiave attiva
+    private final List<String> lines = new ArrayList<>();
+    private final Map<String, Integer> keyLines = new HashMap<>();
+    private final Set<String> dirtyKeys = new LinkedHashSet<>();
+    private FileTime loadedModified;
+    private long loadedSize = -1;
+
     public PropertiesConfigFile(Path path) {
         this.filePath = path;
         this.properties = new Properties();
         this.loaded = false;
     }
 
-    public boolean load() {
+    public synchronized boolean load() {
+        PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.CONFIG_LOAD);
+        try {
+            return read();
+        } finally {
+            span.end(filePath.toString(), properties.size());
+        }
+    }
+
+    private boolean read() {
         if (!Files.exists(filePath)) {
             return false;
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
+        try {
+            readLines();
             properties.clear();
-            String line;
-            boolean firstLine = true;
-            while ((line = reader.readLine()) != null) {
-                // Remove UTF-8 BOM from first line if present
-                if (firstLine) {
-                    if (line.startsWith("\uFEFF")) {
-                        line = line.substring(1);
-                    }
-                    firstLine = false;
-                }
-
-                line = line.trim();
-                if (line.isEmpty() || line.startsWith("#"))
-                    continue;
-
-                int eq = line.indexOf('=');
-                if (eq > 0) {
-                    String key = line.substring(0, eq).trim();
-                    String value = line.substring(eq + 1).trim();
-                    properties.setProperty(key, value);
-                }
+            dirtyKeys.clear();
+            for (Map.Entry<String, Integer> e : keyLines.entrySet()) {
+                properties.setProperty(e.getKey(), valueAt(e.getValue()));
             }
             loaded = true;
             return true;
@@ -56,41 +66,82 @@ public class PropertiesConfigFile {
         }
     }
 
-    public boolean save() {
+    /**
+     * Legge le righe del file e ricostruisce l'indice delle chiavi (a parita'
+     * di chiave vale l'ultima riga, come per la lettura dei valori).
+     */
+    private void readLines() throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        List<String> read = Files.readAllLines(filePath);
+        lines.clear();
+        lines.addAll(read);
+        keyLines.clear();
+        for (int i = 0; i < lines.size(); i++) {
+            String key = keyAt(i);
+            if (key != null) {
+                keyLines.put(key, i);
+            }
+        }
+        loadedModified = attrs.lastModifiedTime();
+        loadedSize = attrs.size();
+    }
+
+    private String keyAt(int index) {
+        String line = lines.get(index);
+        // Remove UTF-8 BOM from first line if present
+        if (index == 0 && line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#"))
+            return null;
+        int eq = line.indexOf('=');
+        return eq > 0 ? line.substring(0, eq).trim() : null;
+    }
+
+    private String valueAt(int index) {
+        String line = lines.get(index);
+        return line.substring(line.indexOf('=') + 1).trim();
+    }
+
+    public synchronized boolean save() {
+        PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.CONFIG_SAVE);
+        int changed = dirtyKeys.size();
         try {
-            // Leggi tutto il file originale per preservare commenti
-            List<String> lines = Files.readAllLines(filePath);
-            List<String> output = new ArrayList<>();
-            Set<String> written = new HashSet<>();
-
-            for (String line : lines) {
-                String trimmed = line.trim();
-                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
-                    output.add(line);
-                } else {
-                    int eq = trimmed.indexOf('=');
-                    if (eq > 0) {
-                        String key = trimmed.substring(0, eq).trim();
-                        if (properties.containsKey(key)) {
-                            output.add(key + " = " + properties.getProperty(key));
-                            written.add(key);
-                        } else {
-                            output.add(line);
-                        }
-                    } else {
-                        output.add(line);
+            return write();
+        } finally {
+            span.end(filePath.toString(), changed);
+        }
+    }
+
+    private boolean write() {
+        if (dirtyKeys.isEmpty())
+            return true;
+        try {
+            if (Files.exists(filePath) && isChangedOnDisk()) {
+                // Modificato da fuori (es. a mano): si parte dal contenuto attuale
+                readLines();
+                for (Map.Entry<String, Integer> e : keyLines.entrySet()) {
+                    if (!dirtyKeys.contains(e.getKey())) {
+                        properties.setProperty(e.getKey(), valueAt(e.getValue()));
                     }
                 }
             }
 
-            // Aggiungi nuove proprieta' non esistenti
-            for (String key : properties.stringPropertyNames()) {
-                if (!written.contains(key)) {
-                    output.add(key + " = " + properties.getProperty(key));
+            for (String key : dirtyKeys) {
+                String line = key + " = " + properties.getProperty(key);
+                Integer index = keyLines.get(key);
+                if (index != null) {
+                    lines.set(index, line);
+                } else {
+                    // Aggiungi nuove proprieta' non esistenti
+                    keyLines.put(key, lines.size());
+                    lines.add(line);
                 }
             }
 
-            Files.write(filePath, output);
+            writeAtomically();
+            dirtyKeys.clear();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -98,6 +149,58 @@ public class PropertiesConfigFile {
         }
     }
 
+    private boolean isChangedOnDisk() throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        return !attrs.lastModifiedTime().equals(loadedModified) || attrs.size() != loadedSize;
+    }
+
+    /**
+     * Scrive in un file temporaneo nella stessa cartella (con gli stessi
+     * permessi) e lo sostituisce all'originale.
+     */
+    private void writeAtomically() throws IOException {
+        Path temp = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        try {
+            Files.write(temp, lines);
+            if (Files.exists(filePath)) {
+                try {
+                    Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(filePath));
+                } catch (UnsupportedOperationException e) {
+                    // Windows: permessi ereditati dalla cartella
+                }
+            }
+            try {
+                Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        loadedModified = attrs.lastModifiedTime();
+        loadedSize = attrs.size();
+    }
+
+    /**
+     * Vero se il file su disco non corrisponde piu' a quello letto o salvato
+     * da questo oggetto (modificato o cancellato da fuori).
+     */
+    synchronized boolean isStale() {
+        try {
+            return !Files.exists(filePath) || isChangedOnDisk();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Vero se ci sono modifiche non ancora salvate.
+     */
+    public synchronized boolean isDirty() {
+        return !dirtyKeys.isEmpty();
+    }
+
     public void backup() {
         try {
             Path backupPath = Paths.get(filePath.toString() + ".bak");
@@ -121,13 +224,16 @@ public class PropertiesConfigFile {
         return val != null ? val : "";
     }
 
-    public void set(String key, String value) {
-        properties.setProperty(key, value);
+    public synchronized void set(String key, String value) {
+        if (!value.equals(properties.getProperty(key))) {
+            properties.setProperty(key, value);
+            dirtyKeys.add(key);
+        }
     }
 
     // Alias per compatibilità
     public void setString(String key, String value) {
-        properties.setProperty(key, value != null ? value : "");
+        set(key, value != null ? value : "");
     }
 
     public boolean getBoolean(String key) {
@@ -7,12 +7,16 @@ import java.io.File;
  */
 public class Evidence {
 
+    /** Dimensione non ancora nota (cartella in fase di calcolo). */
+    public static final long SIZE_UNKNOWN = -1;
+
     private File file;
     private String dname;
     private String additionalCommands;
     private String password;
     private String timezone;
     private long size;
+    private long fileCount;
     private String format;
     private boolean isDirectory;
 
@@ -24,6 +28,7 @@ public class Evidence {
         this.timezone = "";
         this.isDirectory = file.isDirectory();
         this.size = calculateSize(file);
+        this.fileCount = isDirectory ? 0 : 1;
         this.format = isDirectory ? "FOLDER" : getFormat(file.getName());
     }
 
@@ -33,33 +38,40 @@ public class Evidence {
     }
 
     /**
-     * Calculate size - for files returns file size, for directories calculates
-     * total recursively
+     * Copia dell'evidenza (senza accessi al disco), usata per fotografare i
+     * parametri di un caso al momento dell'accodamento.
+     */
+    public Evidence copy() {
+        Evidence c = new Evidence();
+        c.file = file;
+        c.dname = dname;
+        c.additionalCommands = additionalCommands;
+        c.password = password;
+        c.timezone = timezone;
+        c.size = size;
+        c.fileCount = fileCount;
+        c.format = format;
+        c.isDirectory = isDirectory;
+        return c;
+    }
+
+    private Evidence() {
+    }
+
+    /**
+     * Calculate size - for files returns file size, for directories returns
+     * SIZE_UNKNOWN: the recursive total is computed in background by
+     * FolderSizeCalculator and set later with setSize()
      */
     private long calculateSize(File f) {
         if (f.isFile()) {
             return f.length();
         } else if (f.isDirectory()) {
-            return calculateFolderSize(f);
+            return SIZE_UNKNOWN;
         }
         return 0;
     }
 
-    private long calculateFolderSize(File folder) {
-        long totalSize = 0;
-        File[] files = folder.listFiles();
-        if (files != null) {
-            for (File f : files) {
-                if (f.isFile()) {
-                    totalSize += f.length();
-                } else if (f.isDirectory()) {
-                    totalSize += calculateFolderSize(f);
-                }
-            }
-        }
-        return totalSize;
-    }
-
     private String getFormat(String name) {
         int i = name.lastIndexOf('.');
         if (i > 0) {
@@ -69,14 +81,22 @@ public class Evidence {
     }
 
     public String getSizeReadable() {
+        return formatSize(size);
+    }
+
+    public static String formatSize(long size) {
         if (size <= 0)
             return "0 B";
-        final String[] units = new String[] { "B", "KB", "MB", "GB", "TB" };
+        final String[] units = new String[] { "B", "KB", "MB", "GB", "TB", "PB" };
         int digitGroups = (int) (Math.log10(size) / Math.log10(1024));
         return new java.text.DecimalFormat("#,##0.#").format(size / Math.pow(1024, digitGroups)) + " "
                 + units[digitGroups];
     }
 
+    public boolean isSizeKnown() {
+        return size != SIZE_UNKNOWN;
+    }
+
     public boolean isDirectory() {
         return isDirectory;
     }
@@ -114,6 +134,10 @@ public class Evidence {
         return size;
     }
 
+    public long getFileCount() {
+        return fileCount;
+    }
+
     public String getFormat() {
         return format;
     }
@@ -139,6 +163,14 @@ public class Evidence {
         this.timezone = timezone;
     }
 
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public void setFileCount(long fileCount) {
+        this.fileCount = fileCount;
+    }
+
     @Override
     public String toString() {
         return file.getName();
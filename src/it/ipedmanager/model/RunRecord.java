@@ -0,0 +1,223 @@
+package it.ipedmanager.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Riepilogo delle prestazioni di un'elaborazione IPED conclusa, conservato
+ * nello storico per confrontare macchine, profili e versioni di IPED.
+ */
+public class RunRecord {
+
+    private long startTime;
+    private long endTime;
+    private String host = "";
+    private String ipedVersion = "";
+    private String caseName = "";
+    private String outputPath = "";
+    private String profile = "";
+    private String status = "";
+    private int exitCode = -1;
+    private int attempts = 1;
+    private int evidenceCount;
+    private long evidenceBytes;
+    private List<String> enabledTasks = new ArrayList<>();
+    private long itemsProcessed;
+    private long bytesProcessed;
+    private long peakRssBytes;
+    private int threads;
+    private int memoryGB;
+    private String archivePath = "";
+
+    /**
+     * Durata in secondi (dall'avvio del primo tentativo alla fine).
+     */
+    public long getWallSeconds() {
+        return Math.max(0, (endTime - startTime) / 1000);
+    }
+
+    /**
+     * Item elaborati al secondo sull'intera durata, 0 se non noti.
+     */
+    public double getItemsPerSecond() {
+        long wall = getWallSeconds();
+        return wall > 0 ? (double) itemsProcessed / wall : 0;
+    }
+
+    /**
+     * MB elaborati al secondo sull'intera durata. Se IPED non ha riportato i
+     * byte elaborati si usa la dimensione delle evidenze.
+     */
+    public double getMBPerSecond() {
+        long wall = getWallSeconds();
+        long bytes = bytesProcessed > 0 ? bytesProcessed : evidenceBytes;
+        return wall > 0 ? bytes / (1024.0 * 1024.0) / wall : 0;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host != null ? host : "";
+    }
+
+    public String getIpedVersion() {
+        return ipedVersion;
+    }
+
+    public void setIpedVersion(String ipedVersion) {
+        this.ipedVersion = ipedVersion != null ? ipedVersion : "";
+    }
+
+    public String getCaseName() {
+        return caseName;
+    }
+
+    public void setCaseName(String caseName) {
+        this.caseName = caseName != null ? caseName : "";
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath != null ? outputPath : "";
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile != null ? profile : "";
+    }
+
+    /**
+     * Stato finale (nome di {@code Job.Status}: COMPLETED, FAILED, CANCELLED).
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status != null ? status : "";
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public void setExitCode(int exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getEvidenceCount() {
+        return evidenceCount;
+    }
+
+    public void setEvidenceCount(int evidenceCount) {
+        this.evidenceCount = evidenceCount;
+    }
+
+    public long getEvidenceBytes() {
+        return evidenceBytes;
+    }
+
+    public void setEvidenceBytes(long evidenceBytes) {
+        this.evidenceBytes = evidenceBytes;
+    }
+
+    /**
+     * Task abilitati in IPEDConfig.txt (chiavi enableXxx = true), profilo
+     * compreso.
+     */
+    public List<String> getEnabledTasks() {
+        return enabledTasks;
+    }
+
+    public void setEnabledTasks(List<String> enabledTasks) {
+        this.enabledTasks = enabledTasks != null ? enabledTasks : new ArrayList<>();
+    }
+
+    public long getItemsProcessed() {
+        return itemsProcessed;
+    }
+
+    public void setItemsProcessed(long itemsProcessed) {
+        this.itemsProcessed = itemsProcessed;
+    }
+
+    public long getBytesProcessed() {
+        return bytesProcessed;
+    }
+
+    public void setBytesProcessed(long bytesProcessed) {
+        this.bytesProcessed = bytesProcessed;
+    }
+
+    /**
+     * Picco di memoria residente di IPED e dei processi figli, 0 se non
+     * campionato (sistemi diversi da Linux).
+     */
+    public long getPeakRssBytes() {
+        return peakRssBytes;
+    }
+
+    public void setPeakRssBytes(long peakRssBytes) {
+        this.peakRssBytes = peakRssBytes;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getMemoryGB() {
+        return memoryGB;
+    }
+
+    public void setMemoryGB(int memoryGB) {
+        this.memoryGB = memoryGB;
+    }
+
+    /**
+     * Cartella del caso nell'archivio dopo lo spostamento dal disco di
+     * lavoro, vuoto se non archiviato.
+     */
+    public String getArchivePath() {
+        return archivePath;
+    }
+
+    public void setArchivePath(String archivePath) {
+        this.archivePath = archivePath != null ? archivePath : "";
+    }
+}
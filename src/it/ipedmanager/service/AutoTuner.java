@@ -0,0 +1,259 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.service.StorageBenchmark.VolumeResult;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Propone i parametri di prestazione di IPED a partire dalle misure di
+ * {@link HostProbe}. Ogni proposta riporta valore attuale, valore proposto e
+ * il motivo (chiave del bundle con argomenti), mostrati prima di applicarla.
+ * <p>
+ * Regole:
+ * <ul>
+ * <li>numThreads: un thread per core logico</li>
+ * <li>maxMemoryGB: meta' della RAM libera dopo la riserva per il sistema,
+ * tra 4 e 31 GB (oltre 32 GB la JVM perde i compressed oops)</li>
+ * <li>numExternalParsers: meta' dei core, nei limiti della RAM rimasta per le
+ * JVM dei parser esterni (externalParsingMaxMem ciascuna)</li>
+ * <li>numImageReaders: meta' dei core, da 2 a 16; 2 se le evidenze sono su un
+ * disco meccanico o di rete (piu' letture parallele fanno solo saltare la
+ * testina)</li>
+ * <li>indexTemp: il volume candidato con piu' scritture sincrone al secondo;
+ * indexTempOnSSD/outputOnSSD secondo il comportamento misurato</li>
+ * </ul>
+ */
+public class AutoTuner {
+
+    private static final int MIN_RESERVE_GB = 2;
+    private static final double RESERVE_FRACTION = 0.15;
+    private static final int MIN_HEAP_GB = 4;
+    private static final int MAX_HEAP_GB = 31;
+    private static final double DEFAULT_PARSER_MEMORY_GB = 0.5;
+    private static final int MIN_IMAGE_READERS = 2;
+    private static final int MAX_IMAGE_READERS = 16;
+
+    private final int cores;
+    private final int physicalMemoryGB;
+    private final List<VolumeResult> tempCandidates = new ArrayList<>();
+    private VolumeResult output;
+    private VolumeResult evidence;
+
+    public AutoTuner(int cores, int physicalMemoryGB) {
+        this.cores = cores;
+        this.physicalMemoryGB = physicalMemoryGB;
+    }
+
+    public void addTempCandidate(VolumeResult result) {
+        tempCandidates.add(result);
+    }
+
+    public void setOutput(VolumeResult output) {
+        this.output = output;
+    }
+
+    public void setEvidence(VolumeResult evidence) {
+        this.evidence = evidence;
+    }
+
+    /**
+     * Calcola le proposte confrontandole con la configurazione attuale.
+     *
+     * @param localConfig   LocalConfig.txt
+     * @param fsConfig      FileSystemConfig.txt (null se assente)
+     * @param parsingConfig ParsingTaskConfig.txt (null se assente)
+     */
+    public List<Recommendation> recommend(PropertiesConfigFile localConfig, PropertiesConfigFile fsConfig,
+            PropertiesConfigFile parsingConfig) {
+        List<Recommendation> result = new ArrayList<>();
+
+        result.add(new Recommendation(ConfigManager.LOCAL_CONFIG, "numThreads", get(localConfig, "numThreads"),
+                String.valueOf(cores), "autotune.reason.threads", cores));
+
+        int available = getAvailableMemoryGB();
+        int heap = getRecommendedHeapGB();
+        if (physicalMemoryGB > 0) {
+            result.add(new Recommendation(ConfigManager.LOCAL_CONFIG, "maxMemoryGB",
+                    get(localConfig, "maxMemoryGB"), String.valueOf(heap), "autotune.reason.memory",
+                    physicalMemoryGB, available, heap));
+        }
+
+        if (parsingConfig != null) {
+            double parserGB = parseMemoryGB(parsingConfig.get("externalParsingMaxMem"), DEFAULT_PARSER_MEMORY_GB);
+            int byCores = Math.max(1, cores / 2);
+            int parsers = byCores;
+            if (physicalMemoryGB > 0) {
+                int byMemory = (int) Math.max(1, (available - heap) / parserGB);
+                parsers = Math.min(byCores, byMemory);
+            }
+            result.add(new Recommendation(ConfigManager.PARSING_CONFIG, "numExternalParsers",
+                    get(parsingConfig, "numExternalParsers"), String.valueOf(parsers),
+                    "autotune.reason.externalParsers", byCores, formatGB(parserGB)));
+        }
+
+        if (fsConfig != null) {
+            if (evidence != null && evidence.hasReadResults() && !evidence.isSsdLike()) {
+                result.add(new Recommendation(ConfigManager.FILESYSTEM_CONFIG, "numImageReaders",
+                        get(fsConfig, "numImageReaders"), String.valueOf(MIN_IMAGE_READERS),
+                        "autotune.reason.imageReadersHdd", Math.round(evidence.getRandomReadIops())));
+            } else {
+                int readers = Math.max(MIN_IMAGE_READERS, Math.min(MAX_IMAGE_READERS, cores / 2));
+                result.add(new Recommendation(ConfigManager.FILESYSTEM_CONFIG, "numImageReaders",
+                        get(fsConfig, "numImageReaders"), String.valueOf(readers), "autotune.reason.imageReaders",
+                        cores));
+            }
+        }
+
+        VolumeResult temp = getBestTemp();
+        if (temp != null) {
+            result.add(new Recommendation(ConfigManager.LOCAL_CONFIG, "indexTemp", get(localConfig, "indexTemp"),
+                    toIndexTempValue(temp.getPath()), "autotune.reason.indexTemp", temp.getPath(),
+                    Math.round(temp.getSyncWriteIops()), Math.round(temp.getSequentialWriteMBps())));
+            result.add(new Recommendation(ConfigManager.LOCAL_CONFIG, "indexTempOnSSD",
+                    get(localConfig, "indexTempOnSSD"), String.valueOf(temp.isSsdLike()),
+                    temp.isSsdLike() ? "autotune.reason.ssd" : "autotune.reason.hdd",
+                    Math.round(temp.getSyncWriteIops())));
+        }
+        if (output != null) {
+            result.add(new Recommendation(ConfigManager.LOCAL_CONFIG, "outputOnSSD",
+                    get(localConfig, "outputOnSSD"), String.valueOf(output.isSsdLike()),
+                    output.isSsdLike() ? "autotune.reason.ssd" : "autotune.reason.hdd",
+                    Math.round(output.getSyncWriteIops())));
+        }
+        return result;
+    }
+
+    /**
+     * RAM fisica meno la riserva per sistema operativo e cache dei file.
+     */
+    int getAvailableMemoryGB() {
+        int reserve = Math.max(MIN_RESERVE_GB, (int) Math.ceil(physicalMemoryGB * RESERVE_FRACTION));
+        return Math.max(0, physicalMemoryGB - reserve);
+    }
+
+    int getRecommendedHeapGB() {
+        return Math.max(MIN_HEAP_GB, Math.min(MAX_HEAP_GB, getAvailableMemoryGB() / 2));
+    }
+
+    private VolumeResult getBestTemp() {
+        VolumeResult best = null;
+        for (VolumeResult r : tempCandidates) {
+            if (best == null || r.getSyncWriteIops() > best.getSyncWriteIops()) {
+                best = r;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * "default" se il volume scelto e' la cartella temporanea di sistema (il
+     * default di IPED).
+     */
+    private static String toIndexTempValue(String path) {
+        Path systemTemp = Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize();
+        return Paths.get(path).toAbsolutePath().normalize().equals(systemTemp) ? "default" : path;
+    }
+
+    private static String get(PropertiesConfigFile config, String key) {
+        String value = config != null ? config.get(key) : null;
+        return value != null ? value : "";
+    }
+
+    /**
+     * Converte valori come "512M" o "2G" in GB.
+     */
+    static double parseMemoryGB(String value, double defaultGB) {
+        if (value == null || value.trim().isEmpty())
+            return defaultGB;
+        String v = value.trim().toUpperCase(Locale.ROOT);
+        try {
+            char unit = v.charAt(v.length() - 1);
+            if (Character.isDigit(unit))
+                return Long.parseLong(v) / (1024.0 * 1024.0 * 1024.0);
+            double n = Double.parseDouble(v.substring(0, v.length() - 1));
+            switch (unit) {
+                case 'G':
+                    return n;
+                case 'M':
+                    return n / 1024.0;
+                case 'K':
+                    return n / (1024.0 * 1024.0);
+                default:
+                    return defaultGB;
+            }
+        } catch (NumberFormatException e) {
+            return defaultGB;
+        }
+    }
+
+    private static String formatGB(double gb) {
+        return gb >= 1 ? String.format("%.0f GB", gb) : String.format("%.0f MB", gb * 1024);
+    }
+
+    /**
+     * Proposta per una chiave di configurazione.
+     */
+    public static class Recommendation {
+
+        private final String configFile;
+        private final String key;
+        private final String currentValue;
+        private final String proposedValue;
+        private final String reasonKey;
+        private final Object[] reasonArgs;
+
+        Recommendation(String configFile, String key, String currentValue, String proposedValue, String reasonKey,
+                Object... reasonArgs) {
+            this.configFile = configFile;
+            this.key = key;
+            this.currentValue = currentValue;
+            this.proposedValue = proposedValue;
+            this.reasonKey = reasonKey;
+            this.reasonArgs = reasonArgs;
+        }
+
+        public String getConfigFile() {
+            return configFile;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getCurrentValue() {
+            return currentValue;
+        }
+
+        public String getProposedValue() {
+            return proposedValue;
+        }
+
+        /**
+         * Chiave del bundle con la spiegazione, da formattare con
+         * {@link #getReasonArgs()}.
+         */
+        public String getReasonKey() {
+            return reasonKey;
+        }
+
+        public Object[] getReasonArgs() {
+            return reasonArgs;
+        }
+
+        public boolean isChange() {
+            return !proposedValue.equalsIgnoreCase(currentValue.trim());
+        }
+
+        /**
+         * Scrive il valore proposto nel file di configurazione (non salvato).
+         */
+        public void apply(PropertiesConfigFile config) {
+            config.set(key, proposedValue);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.model.Evidence;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Spostamento dei casi conclusi dal disco di lavoro (SSD locale) a un
+ * archivio (NAS), in background mentre parte l'elaborazione successiva.
+ * <p>
+ * I file del caso vengono copiati in parallelo da piu' thread, con un limite
+ * complessivo di velocita' per non saturare la rete. Durante la copia si
+ * calcola lo SHA-256 dell'originale. La copia avviene in una cartella
+ * temporanea, rinominata quando tutti i file sono scritti; solo dopo tutti i
+ * file vengono riaperti dal percorso definitivo e il loro hash confrontato, e
+ * solo a verifica riuscita, se richiesto, il caso viene cancellato dal disco
+ * di lavoro. Gli hash vengono salvati nel caso archiviato
+ * ({@value #CHECKSUM_FILE}, formato sha256sum). In caso di errore l'originale
+ * resta intatto.
+ * <p>
+ * La verifica e' un controllo del percorso di scrittura, non una rilettura
+ * garantita dal NAS: Java non permette di aggirare la cache, quindi i dati
+ * possono arrivare dalla page cache locale o dalla cache del client NFS/SMB.
+ * Rileva copie troncate o corrotte in scrittura; per un controllo sui dischi
+ * del NAS va usato {@value #CHECKSUM_FILE} in un secondo momento (es.
+ * {@code sha256sum -c} dal NAS stesso). Se durante lo spostamento un
+ * altro job usa la stessa cartella (es. un'aggiunta con {@code --append}) il
+ * caso non viene copiato, o l'originale non viene cancellato se la copia era
+ * gia' iniziata. Impostazioni in LocalConfig:
+ * <ul>
+ * <li>{@code managerArchiveDir}: cartella di archivio (vuoto =
+ * disattivato)</li>
+ * <li>{@code managerArchiveThreads}: file copiati in parallelo (default
+ * 4)</li>
+ * <li>{@code managerArchiveMaxMBps}: limite di velocita' in MB/s (0 = nessun
+ * limite)</li>
+ * <li>{@code managerArchiveDeleteSource}: cancella il caso dal disco di
+ * lavoro dopo la verifica (default true)</li>
+ * </ul>
+ */
+public class CaseArchiver {
+
+    public static final String KEY_ARCHIVE_DIR = "managerArchiveDir";
+    public static final String KEY_ARCHIVE_THREADS = "managerArchiveThreads";
+    public static final String KEY_ARCHIVE_MAX_MBPS = "managerArchiveMaxMBps";
+    public static final String KEY_ARCHIVE_DELETE_SOURCE = "managerArchiveDeleteSource";
+
+    public static final String CHECKSUM_FILE = "IPEDManager-archive.sha256";
+
+    private static final String LOG_PREFIX = "[archive] ";
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long PROGRESS_INTERVAL_MS = 500;
+
+    private volatile Path archiveDir;
+    private volatile int threads = 4;
+    private volatile long maxBytesPerSecond;
+    private volatile boolean deleteSource = true;
+
+    // Un caso alla volta: i thread di copia sono gia' paralleli
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "case-archiver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Legge le impostazioni da LocalConfig (null = disattivato).
+     */
+    public CaseArchiver loadSettings(PropertiesConfigFile localConfig) {
+        String dir = localConfig != null ? localConfig.get(KEY_ARCHIVE_DIR) : null;
+        archiveDir = dir != null && !dir.trim().isEmpty() ? Paths.get(dir.trim()).toAbsolutePath() : null;
+        if (localConfig != null) {
+            threads = Math.max(1, Math.min(32, localConfig.getInt(KEY_ARCHIVE_THREADS, 4)));
+            maxBytesPerSecond = Math.max(0, localConfig.getInt(KEY_ARCHIVE_MAX_MBPS, 0)) * (1L << 20);
+            deleteSource = localConfig.getBoolean(KEY_ARCHIVE_DELETE_SOURCE, true);
+        }
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return archiveDir != null;
+    }
+
+    /**
+     * Accoda lo spostamento di un caso. {@code onChange} viene chiamato (dal
+     * thread di archiviazione) a ogni cambio di stato e, durante la copia, al
+     * massimo ogni {@value #PROGRESS_INTERVAL_MS} ms.
+     *
+     * @param inUse vero se un altro job usa la cartella del caso: valutato
+     *              prima della copia e prima di cancellare l'originale
+     */
+    public Migration submit(Path caseDir, Consumer<String> log, Consumer<Migration> onChange, BooleanSupplier inUse) {
+        Migration m = new Migration(caseDir.toAbsolutePath().normalize(), archiveDir, threads, maxBytesPerSecond,
+                deleteSource, inUse);
+        m.future = runner.submit(() -> {
+            m.migrate(log, onChange);
+            return m.state == Migration.State.DONE;
+        });
+        return m;
+    }
+
+    /**
+     * Spostamento di un caso con il suo stato.
+     */
+    public static class Migration {
+
+        public enum State {
+            PENDING, COPYING, DONE, FAILED
+        }
+
+        private final Path source;
+        private final Path archiveDir;
+        private final int threads;
+        private final Throttle throttle;
+        private final boolean deleteSource;
+        private final BooleanSupplier inUse;
+        private final AtomicLong bytesCopied = new AtomicLong();
+        private final AtomicLong lastProgress = new AtomicLong();
+        private volatile long bytesTotal;
+        private volatile State state = State.PENDING;
+        private volatile Path target;
+        private volatile String error;
+        private volatile Future<Boolean> future;
+
+        Migration(Path source, Path archiveDir, int threads, long maxBytesPerSecond, boolean deleteSource,
+                BooleanSupplier inUse) {
+            this.source = source;
+            this.archiveDir = archiveDir;
+            this.threads = threads;
+            this.throttle = new Throttle(maxBytesPerSecond);
+            this.deleteSource = deleteSource;
+            this.inUse = inUse;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        /**
+         * Cartella del caso nell'archivio, null finche' non e' scelta.
+         */
+        public Path getTarget() {
+            return target;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * Vero se lo spostamento e' concluso, riuscito o no.
+         */
+        public boolean isFinished() {
+            return state == State.DONE || state == State.FAILED;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getBytesTotal() {
+            return bytesTotal;
+        }
+
+        public long getBytesCopied() {
+            return bytesCopied.get();
+        }
+
+        /**
+         * Attende la fine dello spostamento: true se il caso e' stato archiviato
+         * e verificato.
+         */
+        public boolean await() throws InterruptedException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                return false;
+            }
+        }
+
+        private void migrate(Consumer<String> log, Consumer<Migration> onChange) {
+            Path partial = null;
+            try {
+                if (inUse.getAsBoolean())
+                    throw new IOException("the case folder is used by another job");
+                Files.createDirectories(archiveDir);
+                target = uniqueTarget(archiveDir, source.getFileName().toString());
+                partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+
+                List<Path> files = new ArrayList<>();
+                List<Path> dirs = new ArrayList<>();
+                long total = collect(source, files, dirs);
+                bytesTotal = total;
+                state = State.COPYING;
+                onChange.accept(this);
+                log.accept(LOG_PREFIX + "moving " + source + " to " + target + " (" + files.size() + " files, "
+                        + Evidence.formatSize(total) + ")");
+
+                long start = System.currentTimeMillis();
+                for (Path d : dirs) {
+                    Files.createDirectories(partial.resolve(source.relativize(d).toString()));
+                }
+                Map<String, String> hashes = copyAll(files, partial, onChange);
+                writeChecksums(partial.resolve(CHECKSUM_FILE), hashes);
+                Files.move(partial, target);
+                // Rilettura a copie concluse, dal percorso definitivo; se fallisce la copia va eliminata
+                partial = target;
+                verifyAll(hashes, target);
+                partial = null;
+                long millis = Math.max(1, System.currentTimeMillis() - start);
+                log.accept(LOG_PREFIX + "copied and verified " + files.size() + " files in "
+                        + IpedProgress.formatDuration(millis / 1000) + " ("
+                        + Evidence.formatSize(total * 1000 / millis) + "/s)");
+
+                if (deleteSource && inUse.getAsBoolean()) {
+                    // Un job partito durante la copia scrive nell'originale: non va perso
+                    log.accept(LOG_PREFIX + source + " kept: used by another job during the copy");
+                } else if (deleteSource) {
+                    deleteTree(source);
+                    log.accept(LOG_PREFIX + "removed " + source);
+                }
+                state = State.DONE;
+            } catch (Exception e) {
+                e.printStackTrace();
+                error = e.getMessage();
+                state = State.FAILED;
+                log.accept(LOG_PREFIX + "failed, the case stays in " + source + ": " + e.getMessage());
+                if (partial != null) {
+                    try {
+                        deleteTree(partial);
+                    } catch (IOException ex) {
+                        System.err.println("Cannot remove " + partial + ": " + ex.getMessage());
+                    }
+                }
+            }
+            onChange.accept(this);
+        }
+
+        /**
+         * Copia i file con {@code threads} thread; restituisce gli hash per
+         * percorso relativo.
+         */
+        private Map<String, String> copyAll(List<Path> files, Path partial, Consumer<Migration> onChange)
+                throws Exception {
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "case-archiver-copy");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<CompletableFuture<String>> results = new ArrayList<>();
+                for (Path f : files) {
+                    Path target = partial.resolve(source.relativize(f).toString());
+                    results.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            String hash = copy(f, target);
+                            long now = System.currentTimeMillis();
+                            long last = lastProgress.get();
+                            if (now - last >= PROGRESS_INTERVAL_MS && lastProgress.compareAndSet(last, now)) {
+                                onChange.accept(this);
+                            }
+                            return hash;
+                        } catch (IOException e) {
+                            throw new IllegalStateException(f + ": " + e.getMessage(), e);
+                        }
+                    }, pool));
+                }
+                Map<String, String> hashes = new TreeMap<>();
+                for (int i = 0; i < files.size(); i++) {
+                    hashes.put(source.relativize(files.get(i)).toString().replace('\\', '/'), join(results, i));
+                }
+                return hashes;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        /**
+         * Riapre i file copiati in {@code dir} e ne confronta lo SHA-256 con
+         * quello degli originali, con {@code threads} thread.
+         */
+        private void verifyAll(Map<String, String> hashes, Path dir) throws Exception {
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "case-archiver-verify");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<CompletableFuture<String>> results = new ArrayList<>();
+                for (Map.Entry<String, String> e : hashes.entrySet()) {
+                    Path copy = dir.resolve(e.getKey());
+                    results.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            if (!e.getValue().equals(hashFile(copy)))
+                                throw new IOException("hash mismatch after copy: " + copy);
+                            return e.getValue();
+                        } catch (IOException ex) {
+                            throw new IllegalStateException(ex.getMessage(), ex);
+                        }
+                    }, pool));
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    join(results, i);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        private static String join(List<CompletableFuture<String>> results, int i) throws Exception {
+            try {
+                return results.get(i).get();
+            } catch (ExecutionException e) {
+                // Al primo errore si interrompono i file rimasti
+                for (CompletableFuture<String> r : results) {
+                    r.cancel(false);
+                }
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        /**
+         * Copia un file calcolando lo SHA-256 dell'originale.
+         */
+        private String copy(Path from, Path to) throws IOException {
+            MessageDigest md = sha256();
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                while (in.read(buf) >= 0 || buf.position() > 0) {
+                    buf.flip();
+                    int n = buf.remaining();
+                    throttle.acquire(n);
+                    md.update(buf.duplicate());
+                    while (buf.hasRemaining()) {
+                        out.write(buf);
+                    }
+                    buf.clear();
+                    bytesCopied.addAndGet(n);
+                }
+                out.force(false);
+            }
+            Files.setLastModifiedTime(to, Files.getLastModifiedTime(from));
+            return hex(md.digest());
+        }
+
+        private static String hashFile(Path file) throws IOException {
+            MessageDigest md = sha256();
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (in.read(buf) > 0) {
+                    buf.flip();
+                    md.update(buf);
+                    buf.clear();
+                }
+            }
+            return hex(md.digest());
+        }
+
+        private static long collect(Path root, List<Path> files, List<Path> dirs) throws IOException {
+            long[] total = { 0 };
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    dirs.add(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        files.add(file);
+                        total[0] += attrs.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return total[0];
+        }
+
+        /**
+         * Cartella nell'archivio con il nome del caso, con suffisso -2, -3...
+         * se esiste gia'.
+         */
+        private static Path uniqueTarget(Path archiveDir, String name) {
+            Path p = archiveDir.resolve(name);
+            for (int i = 2; Files.exists(p) || Files.exists(p.resolveSibling(p.getFileName() + PARTIAL_SUFFIX)); i++) {
+                p = archiveDir.resolve(name + "-" + i);
+            }
+            return p;
+        }
+
+        private static void writeChecksums(Path file, Map<String, String> hashes) throws IOException {
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> e : hashes.entrySet()) {
+                    w.write(e.getValue() + "  " + e.getKey());
+                    w.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Limite di velocita' condiviso dai thread di copia.
+     */
+    static class Throttle {
+
+        private final long bytesPerSecond;
+        private long nextFree = System.nanoTime();
+
+        Throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(long bytes) throws IOException {
+            if (bytesPerSecond <= 0)
+                return;
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                // Nessun credito accumulato oltre un secondo di inattivita'
+                nextFree = Math.max(nextFree, now - 1_000_000_000L);
+                nextFree += bytes * 1_000_000_000L / bytesPerSecond;
+                wait = nextFree - now;
+            }
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted");
+                }
+            }
+        }
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir))
+            return;
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.model.Evidence;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Pipeline asincrona per l'aggiunta massiva di evidenze.
+ * I file vengono messi in una coda limitata, le Evidence costruite in parallelo
+ * da piu' thread e pubblicate a blocchi (nell'ordine di inserimento) ogni
+ * {@value #FLUSH_INTERVAL_MS} ms, cosi' la UI riceve pochi aggiornamenti grandi
+ * invece di migliaia di singoli inserimenti.
+ * <p>
+ * Un file resta in {@link #getPendingCount()} finche' il blocco che lo contiene
+ * non e' stato consegnato al publisher: con zero file in sospeso la lista
+ * ricevuta e' completa.
+ */
+public class EvidenceIngestor {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long FLUSH_INTERVAL_MS = 250;
+
+    // Segnaposto per i file scartati dal filtro o non leggibili
+    private static final Object SKIPPED = new Object();
+
+    private final Consumer<List<Evidence>> publisher;
+    private final Executor publishExecutor;
+    private final BlockingQueue<Item> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<Long, Object> built = new ConcurrentSkipListMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ExecutorService feeder;
+    private final ScheduledExecutorService flusher;
+
+    private long nextSeq = 0; // Solo thread feeder
+    private long publishedSeq = 0; // Solo thread flusher
+
+    /**
+     * @param publisher       riceve i blocchi di evidenze pronte (anche vuoti, se
+     *                        i file sono stati tutti scartati)
+     * @param publishExecutor thread su cui chiamare il publisher (es.
+     *                        {@code SwingUtilities::invokeLater} per la UI); il
+     *                        conteggio dei file in sospeso scende nello stesso
+     *                        passo, prima della chiamata
+     */
+    public EvidenceIngestor(Consumer<List<Evidence>> publisher, Executor publishExecutor) {
+        this.publisher = publisher;
+        this.publishExecutor = publishExecutor;
+        this.feeder = Executors.newSingleThreadExecutor(r -> daemon(r, "evidence-feeder"));
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "evidence-publisher"));
+
+        int builders = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        for (int i = 0; i < builders; i++) {
+            daemon(this::buildLoop, "evidence-builder-" + i).start();
+        }
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Accoda i file da trasformare in evidenze. Non blocca il chiamante.
+     *
+     * @param filter se non null, i file per cui restituisce false vengono scartati
+     *               (valutato nei thread di background)
+     */
+    public void submit(List<File> files, Predicate<File> filter) {
+        if (files == null || files.isEmpty())
+            return;
+        List<File> copy = new ArrayList<>(files);
+        pending.addAndGet(copy.size());
+        feeder.execute(() -> {
+            for (File f : copy) {
+                try {
+                    queue.put(new Item(nextSeq++, f, filter));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Numero di file accodati non ancora pubblicati.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private void buildLoop() {
+        while (true) {
+            Item item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Object result = SKIPPED;
+            try {
+                if (item.filter == null || item.filter.test(item.file)) {
+                    result = new Evidence(item.file);
+                }
+            } catch (Throwable t) {
+                // Anche un Error (es. StackOverflowError) salta solo questo file
+                result = SKIPPED;
+                System.err.println("Error adding evidence " + item.file + ": " + t);
+            } finally {
+                // Senza questo elemento flush() si fermerebbe per sempre a questa sequenza
+                built.put(item.seq, result);
+            }
+        }
+    }
+
+    private void flush() {
+        List<Evidence> batch = new ArrayList<>();
+        int drained = 0;
+        Object next;
+        // Pubblica solo il prefisso contiguo, per mantenere l'ordine di inserimento
+        while ((next = built.remove(publishedSeq)) != null) {
+            publishedSeq++;
+            drained++;
+            if (next != SKIPPED) {
+                batch.add((Evidence) next);
+            }
+        }
+        if (drained == 0)
+            return;
+        int count = drained;
+        publishExecutor.execute(() -> {
+            pending.addAndGet(-count);
+            try {
+                publisher.accept(batch);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static class Item {
+        final long seq;
+        final File file;
+        final Predicate<File> filter;
+
+        Item(long seq, File file, Predicate<File> filter) {
+            this.seq = seq;
+            this.file = file;
+            this.filter = filter;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.utils.AppPaths;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cache persistente dei metadati delle cartelle di evidenza.
+ * <p>
+ * Per ogni cartella vengono salvati dimensione e numero dei file diretti e i
+ * nomi delle sottocartelle, con chiave percorso canonico + mtime + fileKey.
+ * La mtime di una cartella cambia solo quando cambiano le sue voci dirette,
+ * quindi una nuova scansione rilegge solo le cartelle modificate: per le altre
+ * basta uno stat. Le modifiche "in place" di un file esistente che non
+ * aggiornano la mtime della cartella non vengono rilevate (i repository di
+ * evidenze sono normalmente in sola lettura). Su Windows il fileKey non e'
+ * disponibile (NTFS e condivisioni SMB restituiscono null): la validazione si
+ * basa solo sulla mtime, quindi una cartella sostituita da un'altra con la
+ * stessa mtime e lo stesso percorso non viene riconosciuta.
+ * <p>
+ * Il file e' un journal: ogni salvataggio aggiunge in coda solo le voci
+ * cambiate dall'ultimo, e il file viene riscritto compatto quando il journal
+ * supera il doppio delle voci vive. In compattazione vengono scartate le voci
+ * non usate da {@value #MAX_AGE_DAYS} giorni, quelle delle cartelle radice
+ * non piu' presenti (evidenze cancellate o dischi non montati) e, oltre
+ * {@value #MAX_ENTRIES} voci, le meno usate di recente.
+ */
+public class EvidenceMetadataCache {
+
+    private static final String CACHE_FILE = "evidence-cache.bin";
+    private static final int MAGIC = 0x49504D43; // "IPMC"
+    private static final int VERSION = 2;
+
+    static final int MAX_ENTRIES = 1_000_000;
+    static final int MAX_AGE_DAYS = 90;
+    // Sotto questa soglia il journal non viene mai compattato
+    private static final int MIN_COMPACT_RECORDS = 10_000;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    // Una voce letta dalla cache aggiorna l'ultimo uso al massimo una volta al giorno
+    private static final long TOUCH_INTERVAL_MS = DAY_MS;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE_SUBTREE = 2;
+
+    private static EvidenceMetadataCache instance;
+
+    private final Path cacheFile;
+    private final ConcurrentSkipListMap<String, DirectoryEntry> entries = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    // Modifiche non ancora scritte in coda al file
+    private final ConcurrentLinkedQueue<JournalOp> journal = new ConcurrentLinkedQueue<>();
+    // Record presenti nel file (voci compattate + operazioni aggiunte)
+    private long recordsOnDisk;
+    private boolean compactNeeded;
+    private boolean rootsChecked;
+    private final ExecutorService saver = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "evidence-cache-saver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private EvidenceMetadataCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    public static synchronized EvidenceMetadataCache getInstance() {
+        if (instance == null) {
+            instance = new EvidenceMetadataCache(AppPaths.resolve(CACHE_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * Restituisce la voce della cartella se ancora valida (stessa mtime e
+     * fileKey), altrimenti null.
+     */
+    public DirectoryEntry lookup(Path dir, BasicFileAttributes attrs) {
+        DirectoryEntry e = entries.get(dir.toString());
+        if (e != null && e.mtime == attrs.lastModifiedTime().toMillis() && e.fileKey.equals(fileKeyOf(attrs))) {
+            long now = System.currentTimeMillis();
+            if (now - e.lastUsed >= TOUCH_INTERVAL_MS) {
+                e.lastUsed = now;
+                journal.add(new JournalOp(OP_PUT, dir.toString(), e));
+                dirty.set(true);
+            }
+            return e;
+        }
+        return null;
+    }
+
+    /**
+     * Memorizza il risultato della lettura di una cartella. Le sottocartelle
+     * scomparse rispetto alla voce precedente vengono invalidate con tutto il
+     * loro sottoalbero.
+     */
+    public void store(Path dir, BasicFileAttributes attrs, long size, long fileCount, List<String> subdirs) {
+        DirectoryEntry entry = new DirectoryEntry(attrs.lastModifiedTime().toMillis(), fileKeyOf(attrs), size,
+                fileCount, subdirs.toArray(new String[0]), System.currentTimeMillis());
+        DirectoryEntry old = entries.put(dir.toString(), entry);
+        journal.add(new JournalOp(OP_PUT, dir.toString(), entry));
+        if (old != null && old.subdirs.length > 0) {
+            Set<String> current = new HashSet<>(subdirs);
+            for (String name : old.subdirs) {
+                if (!current.contains(name)) {
+                    invalidateSubtree(dir.resolve(name));
+                }
+            }
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * Rimuove la cartella e tutte le sue discendenti dalla cache.
+     */
+    public void invalidateSubtree(Path dir) {
+        removeSubtree(dir.toString());
+        journal.add(new JournalOp(OP_REMOVE_SUBTREE, dir.toString(), null));
+        dirty.set(true);
+    }
+
+    private void removeSubtree(String key) {
+        entries.remove(key);
+        String prefix = key.endsWith(File.separator) ? key : key + File.separator;
+        ConcurrentNavigableMap<String, DirectoryEntry> sub = entries.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (!sub.isEmpty()) {
+            sub.clear();
+        }
+    }
+
+    /**
+     * Salva la cache su disco in background (se modificata).
+     */
+    public void saveAsync() {
+        saver.execute(this::save);
+    }
+
+    private void load() {
+        if (!Files.exists(cacheFile))
+            return;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(cacheFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Evidence cache: unsupported format, ignoring " + cacheFile);
+                compactNeeded = true;
+                return;
+            }
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException eof) {
+                    break;
+                }
+                String key = in.readUTF();
+                if (op == OP_PUT) {
+                    entries.put(key, readEntry(in));
+                } else if (op == OP_REMOVE_SUBTREE) {
+                    removeSubtree(key);
+                } else {
+                    throw new IOException("unknown record type " + op);
+                }
+                recordsOnDisk++;
+            }
+        } catch (EOFException e) {
+            // Coda troncata (chiusura durante un salvataggio): restano le voci lette
+            System.err.println("Evidence cache: truncated " + cacheFile + ", keeping the complete records");
+            compactNeeded = true;
+        } catch (Exception e) {
+            System.err.println("Evidence cache: error loading " + cacheFile + ": " + e.getMessage());
+            compactNeeded = true;
+        }
+        long cutoff = System.currentTimeMillis() - MAX_AGE_DAYS * DAY_MS;
+        if (entries.values().removeIf(e -> e.lastUsed < cutoff) || entries.size() > MAX_ENTRIES) {
+            compactNeeded = true;
+        }
+    }
+
+    private synchronized void save() {
+        if (!dirty.getAndSet(false))
+            return;
+        if (!rootsChecked) {
+            // Una volta per sessione, in background: lo stat di un disco di
+            // rete non raggiungibile puo' richiedere secondi
+            rootsChecked = true;
+            pruneMissingRoots();
+        }
+        try {
+            if (compactNeeded || !Files.exists(cacheFile) || entries.size() > MAX_ENTRIES
+                    || (recordsOnDisk > MIN_COMPACT_RECORDS && recordsOnDisk > 2L * entries.size())) {
+                compact();
+            } else {
+                append();
+            }
+        } catch (Exception e) {
+            System.err.println("Evidence cache: error saving " + cacheFile + ": " + e.getMessage());
+            // Il file puo' avere una coda parziale: la prossima volta si riscrive
+            compactNeeded = true;
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Aggiunge in coda al file le modifiche dall'ultimo salvataggio.
+     */
+    private void append() throws IOException {
+        List<JournalOp> ops = drainJournal();
+        if (ops.isEmpty())
+            return;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(cacheFile, StandardOpenOption.APPEND), 1 << 16))) {
+            for (JournalOp op : ops) {
+                out.writeByte(op.type);
+                out.writeUTF(op.key);
+                if (op.type == OP_PUT) {
+                    writeEntry(out, op.entry);
+                }
+            }
+        }
+        recordsOnDisk += ops.size();
+    }
+
+    /**
+     * Riscrive il file con le sole voci vive, scartando le piu' vecchie oltre
+     * {@value #MAX_ENTRIES}.
+     */
+    private void compact() throws IOException {
+        drainJournal();
+        // Snapshot: la mappa puo' cambiare durante la scrittura
+        Map<String, DirectoryEntry> snapshot = entries.clone();
+        if (snapshot.size() > MAX_ENTRIES) {
+            List<Long> used = new ArrayList<>(snapshot.size());
+            for (DirectoryEntry e : snapshot.values()) {
+                used.add(e.lastUsed);
+            }
+            used.sort(null);
+            long cutoff = used.get(used.size() - MAX_ENTRIES);
+            int excess = snapshot.size() - MAX_ENTRIES;
+            for (Map.Entry<String, DirectoryEntry> me : new ArrayList<>(snapshot.entrySet())) {
+                if (excess > 0 && me.getValue().lastUsed <= cutoff) {
+                    snapshot.remove(me.getKey());
+                    entries.remove(me.getKey(), me.getValue());
+                    excess--;
+                }
+            }
+        }
+        Path tmp = cacheFile.resolveSibling(CACHE_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<String, DirectoryEntry> me : snapshot.entrySet()) {
+                out.writeByte(OP_PUT);
+                out.writeUTF(me.getKey());
+                writeEntry(out, me.getValue());
+            }
+        }
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        recordsOnDisk = snapshot.size();
+        compactNeeded = false;
+    }
+
+    /**
+     * Scarta i sottoalberi la cui cartella radice (voce senza padre in cache)
+     * non esiste piu'.
+     */
+    private void pruneMissingRoots() {
+        String root = null;
+        for (String key : entries.keySet()) {
+            if (root != null && key.startsWith(root.endsWith(File.separator) ? root : root + File.separator))
+                continue;
+            Path parent = Paths.get(key).getParent();
+            if (parent != null && entries.containsKey(parent.toString()))
+                continue;
+            root = key;
+            if (!Files.isDirectory(Paths.get(key))) {
+                removeSubtree(key);
+                compactNeeded = true;
+            }
+        }
+    }
+
+    private List<JournalOp> drainJournal() {
+        List<JournalOp> ops = new ArrayList<>();
+        JournalOp op;
+        while ((op = journal.poll()) != null) {
+            ops.add(op);
+        }
+        return ops;
+    }
+
+    private static DirectoryEntry readEntry(DataInputStream in) throws IOException {
+        long mtime = in.readLong();
+        String fileKey = in.readUTF();
+        long size = in.readLong();
+        long fileCount = in.readLong();
+        long lastUsed = in.readLong();
+        String[] subdirs = new String[in.readInt()];
+        for (int j = 0; j < subdirs.length; j++) {
+            subdirs[j] = in.readUTF();
+        }
+        return new DirectoryEntry(mtime, fileKey, size, fileCount, subdirs, lastUsed);
+    }
+
+    private static void writeEntry(DataOutputStream out, DirectoryEntry e) throws IOException {
+        out.writeLong(e.mtime);
+        out.writeUTF(e.fileKey);
+        out.writeLong(e.size);
+        out.writeLong(e.fileCount);
+        out.writeLong(e.lastUsed);
+        out.writeInt(e.subdirs.length);
+        for (String s : e.subdirs) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String fileKeyOf(BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        return key != null ? key.toString() : "";
+    }
+
+    /**
+     * Metadati di una singola cartella (solo contenuto diretto).
+     */
+    public static class DirectoryEntry {
+        final long mtime;
+        final String fileKey;
+        final long size;
+        final long fileCount;
+        final String[] subdirs;
+        // Ultima scansione o lettura (precisione di un giorno, vedi lookup)
+        volatile long lastUsed;
+
+        DirectoryEntry(long mtime, String fileKey, long size, long fileCount, String[] subdirs, long lastUsed) {
+            this.mtime = mtime;
+            this.fileKey = fileKey;
+            this.size = size;
+            this.fileCount = fileCount;
+            this.subdirs = subdirs;
+            this.lastUsed = lastUsed;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getFileCount() {
+            return fileCount;
+        }
+
+        public String[] getSubdirs() {
+            return subdirs;
+        }
+    }
+
+    private static class JournalOp {
+        final byte type;
+        final String key;
+        final DirectoryEntry entry;
+
+        JournalOp(byte type, String key, DirectoryEntry entry) {
+            this.type = type;
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.model.Evidence;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Copia locale delle evidenze prima dell'elaborazione.
+ * <p>
+ * Con le evidenze su condivisioni SMB/NFS IPED legge l'immagine in modo
+ * casuale attraverso la rete; copiandola prima su un SSD locale la lettura
+ * casuale diventa locale e la rete viene usata solo in sequenza. La copia usa
+ * {@link FileChannel#transferTo} a blocchi grandi (copia nel kernel, senza
+ * passare dalla JVM) e comprende i segmenti delle immagini divise (E01, E02...,
+ * 001, 002...). Dopo la copia si confrontano dimensione e blocchi campione
+ * con l'originale (o l'intero contenuto con la verifica completa), poi IPED
+ * riceve i percorsi locali in {@code -d}.
+ * <p>
+ * La copia del job successivo parte mentre il precedente e' in elaborazione
+ * ({@link #prefetch}); un solo thread copia alla volta, perche' il limite e'
+ * la rete. Le copie restano nella cache e vengono riusate finche' l'originale
+ * non cambia (percorso, dimensione e data di modifica); quando manca spazio
+ * si eliminano quelle usate meno di recente, tranne quelle dei job in corso o
+ * gia' preparati. Se lo spazio non basta l'evidenza viene elaborata
+ * dall'originale. Impostazioni in LocalConfig:
+ * <ul>
+ * <li>{@code managerStagingDir}: cartella della cache (vuoto =
+ * disattivato)</li>
+ * <li>{@code managerStagingMaxGB}: dimensione massima della cache (0 = fino
+ * allo spazio libero)</li>
+ * <li>{@code managerStagingFullVerify}: confronto dell'intero contenuto invece
+ * dei blocchi campione (rilegge l'originale dalla rete)</li>
+ * </ul>
+ * Il caso IPED registra i percorsi della copia locale: dopo l'eliminazione
+ * dalla cache, per aprire le evidenze dal caso va indicata la posizione
+ * originale.
+ */
+public class EvidenceStager {
+
+    public static final String KEY_STAGING_DIR = "managerStagingDir";
+    public static final String KEY_STAGING_MAX_GB = "managerStagingMaxGB";
+    public static final String KEY_STAGING_FULL_VERIFY = "managerStagingFullVerify";
+
+    private static final String LOG_PREFIX = "[staging] ";
+    private static final String MARKER = ".staged";
+    private static final long TRANSFER_CHUNK = 64L << 20;
+    private static final int VERIFY_BLOCK = 1 << 20;
+    private static final int VERIFY_SAMPLES = 16;
+    // Spazio lasciato comunque libero sul volume della cache
+    private static final long MIN_FREE_BYTES = 1L << 30;
+    // Estensioni dei segmenti: E01, Ex01, L01, 001, s01...
+    private static final Pattern SEGMENT_EXTENSION = Pattern.compile("(?i)[a-z]{0,2}\\d{2,3}");
+
+    private volatile Path stagingDir;
+    private volatile long maxBytes;
+    private volatile boolean fullVerify;
+
+    // Copie complete per chiave (cartella nella cache), protette da this
+    private final Map<String, Entry> entries = new HashMap<>();
+    private Path scannedDir;
+    private final Map<Object, Task> tasks = new ConcurrentHashMap<>();
+    private final ExecutorService copier = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "evidence-stager");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Legge le impostazioni da LocalConfig (null = disattivato).
+     */
+    public EvidenceStager loadSettings(PropertiesConfigFile localConfig) {
+        String dir = localConfig != null ? localConfig.get(KEY_STAGING_DIR) : null;
+        stagingDir = dir != null && !dir.trim().isEmpty() ? Paths.get(dir.trim()).toAbsolutePath() : null;
+        maxBytes = localConfig != null ? Math.max(0, localConfig.getInt(KEY_STAGING_MAX_GB, 0)) * (1L << 30) : 0;
+        fullVerify = localConfig != null && localConfig.getBoolean(KEY_STAGING_FULL_VERIFY, false);
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return stagingDir != null;
+    }
+
+    /**
+     * Avvia in background la copia delle evidenze di un job (se non gia'
+     * avviata). {@code owner} identifica il job in {@link #await} e
+     * {@link #release}.
+     */
+    public void prefetch(Object owner, List<Evidence> evidences, Consumer<String> log) {
+        if (!isEnabled())
+            return;
+        tasks.computeIfAbsent(owner, k -> {
+            Task task = new Task();
+            task.future = copier.submit(() -> stageAll(task, evidences, log));
+            return task;
+        });
+    }
+
+    /**
+     * Attende la copia e restituisce le evidenze da passare a IPED: quelle
+     * copiate puntano alla cache, le altre all'originale. Le copie restano
+     * protette dall'eliminazione fino a {@link #release}.
+     */
+    public List<Evidence> await(Object owner, List<Evidence> evidences, Consumer<String> log)
+            throws InterruptedException {
+        if (!isEnabled())
+            return evidences;
+        prefetch(owner, evidences, log);
+        Task task = tasks.get(owner);
+        if (task == null)
+            return evidences;
+        try {
+            return task.future.get();
+        } catch (ExecutionException | CancellationException e) {
+            log.accept(LOG_PREFIX + "failed, using the original evidence paths: " + e.getMessage());
+            return evidences;
+        }
+    }
+
+    /**
+     * Fine del job (o annullamento): interrompe la copia se ancora in corso e
+     * rende eliminabili le sue copie.
+     */
+    public void release(Object owner) {
+        Task task = tasks.remove(owner);
+        if (task == null)
+            return;
+        task.future.cancel(false);
+        synchronized (this) {
+            task.cancelled = true;
+            for (Entry e : task.pinned) {
+                e.pins--;
+            }
+        }
+    }
+
+    private List<Evidence> stageAll(Task task, List<Evidence> evidences, Consumer<String> log) throws IOException {
+        Path root = stagingDir;
+        Files.createDirectories(root);
+        synchronized (this) {
+            if (!root.equals(scannedDir)) {
+                scan(root);
+            }
+        }
+        List<Evidence> result = new ArrayList<>();
+        for (Evidence ev : evidences) {
+            Evidence staged = ev;
+            if (!task.cancelled) {
+                try {
+                    Path local = stage(task, root, ev.getFile().toPath(), log);
+                    if (local != null) {
+                        staged = ev.copy();
+                        staged.setFile(local.toFile());
+                        // Nel caso resta il nome dell'evidenza originale
+                        if (ev.getDname() == null || ev.getDname().trim().isEmpty()) {
+                            staged.setDname(ev.getFileName());
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    log.accept(LOG_PREFIX + ev.getFilePath() + ": " + e.getMessage()
+                            + ", using the original path");
+                }
+            }
+            result.add(staged);
+        }
+        return result;
+    }
+
+    /**
+     * Copia una evidenza (file con i suoi segmenti, oppure cartella) e
+     * restituisce il percorso locale, null se non c'e' spazio.
+     */
+    private Path stage(Task task, Path root, Path source, Consumer<String> log) throws IOException {
+        List<Path> files = collectFiles(source);
+        long size = 0;
+        long newest = 0;
+        for (Path f : files) {
+            size += Files.size(f);
+            newest = Math.max(newest, Files.getLastModifiedTime(f).toMillis());
+        }
+        String key = keyOf(source, size, newest);
+        Path entryDir = root.resolve(key);
+        Path local = entryDir.resolve(source.getFileName().toString());
+
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null) {
+                pin(task, cached);
+                touch(entryDir);
+                log.accept(LOG_PREFIX + "using cached copy of " + source);
+                return local;
+            }
+            if (!reserve(root, size)) {
+                log.accept(LOG_PREFIX + "not enough space for " + source + " (" + Evidence.formatSize(size)
+                        + "), using the original path");
+                return null;
+            }
+        }
+
+        deleteTree(entryDir);
+        Files.createDirectories(entryDir);
+        log.accept(LOG_PREFIX + "copying " + source + " (" + files.size() + " file, " + Evidence.formatSize(size)
+                + ")");
+        long start = System.currentTimeMillis();
+        Path base = Files.isDirectory(source) ? source : source.getParent();
+        Path localBase = Files.isDirectory(source) ? local : entryDir;
+        for (Path f : files) {
+            Path target = localBase.resolve(base.relativize(f).toString());
+            Files.createDirectories(target.getParent());
+            try {
+                copy(task, f, target);
+                verify(f, target);
+            } catch (IOException e) {
+                deleteTree(entryDir);
+                throw e;
+            }
+        }
+        long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+        log.accept(LOG_PREFIX + "copied and verified " + source + " in " + IpedProgress.formatDuration(seconds)
+                + " (" + Evidence.formatSize(size / seconds) + "/s)");
+
+        // Il marcatore rende la copia riusabile: scritto solo dopo la verifica
+        Properties p = new Properties();
+        p.setProperty("source", source.toString());
+        p.setProperty("size", Long.toString(size));
+        try (OutputStream out = Files.newOutputStream(entryDir.resolve(MARKER))) {
+            p.store(out, "IPEDManager staged evidence");
+        }
+        synchronized (this) {
+            Entry e = new Entry(key, size, System.currentTimeMillis());
+            entries.put(key, e);
+            pin(task, e);
+        }
+        return local;
+    }
+
+    private void pin(Task task, Entry e) {
+        e.lastAccess = System.currentTimeMillis();
+        // Job gia' rilasciato: nessuno sbloccherebbe la copia
+        if (task.cancelled)
+            return;
+        e.pins++;
+        task.pinned.add(e);
+    }
+
+    /**
+     * File da copiare: il contenuto della cartella, oppure il file con gli
+     * altri segmenti della stessa immagine.
+     */
+    static List<Path> collectFiles(Path source) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile())
+                        files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return files;
+        }
+        files.add(source);
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0 || !SEGMENT_EXTENSION.matcher(name.substring(dot + 1)).matches())
+            return files;
+        String base = name.substring(0, dot + 1);
+        String ext = name.substring(dot + 1);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(source.getParent())) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                if (p.equals(source) || !n.regionMatches(true, 0, base, 0, base.length()))
+                    continue;
+                String e = n.substring(base.length());
+                // Stessa lunghezza e stessa lettera iniziale: E01 -> E02..E99, EAA...
+                if (e.length() == ext.length() && Character.toUpperCase(e.charAt(0)) == Character
+                        .toUpperCase(ext.charAt(0)) && Files.isRegularFile(p)) {
+                    files.add(p);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(Path::toString));
+        return files;
+    }
+
+    private static void copy(Task task, Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                if (task.cancelled)
+                    throw new IOException("cancelled");
+                long n = in.transferTo(pos, Math.min(TRANSFER_CHUNK, size - pos), out);
+                if (n <= 0 && in.size() <= pos)
+                    break;
+                pos += n;
+            }
+            out.force(false);
+        }
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+    }
+
+    /**
+     * Confronta la copia con l'originale: dimensione, primo e ultimo blocco e
+     * blocchi campione distribuiti sul file (tutto il contenuto con la verifica
+     * completa).
+     */
+    private void verify(Path source, Path target) throws IOException {
+        long size = Files.size(source);
+        if (Files.size(target) != size)
+            throw new IOException("size mismatch after copy: " + target);
+        if (fullVerify) {
+            if (!digest(source).equals(digest(target)))
+                throw new IOException("content mismatch after copy: " + target);
+            return;
+        }
+        ByteBuffer a = ByteBuffer.allocateDirect(VERIFY_BLOCK);
+        ByteBuffer b = ByteBuffer.allocateDirect(VERIFY_BLOCK);
+        try (FileChannel src = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel dst = FileChannel.open(target, StandardOpenOption.READ)) {
+            long blocks = Math.max(1, (size + VERIFY_BLOCK - 1) / VERIFY_BLOCK);
+            int samples = (int) Math.min(blocks, VERIFY_SAMPLES + 2);
+            for (int i = 0; i < samples; i++) {
+                long block = samples > 1 ? i * (blocks - 1) / (samples - 1) : 0;
+                long pos = block * VERIFY_BLOCK;
+                readFully(src, a, pos);
+                readFully(dst, b, pos);
+                if (!a.equals(b))
+                    throw new IOException("content mismatch after copy: " + target + " at offset " + pos);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        buf.clear();
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + buf.position());
+            if (n < 0)
+                break;
+        }
+        buf.flip();
+    }
+
+    private static String digest(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[VERIFY_BLOCK];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte x : md.digest()) {
+                sb.append(String.format("%02x", x));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Libera spazio per {@code size} byte eliminando le copie non in uso dalla
+     * meno recente. false se non basta.
+     */
+    private boolean reserve(Path root, long size) throws IOException {
+        List<Entry> candidates = new ArrayList<>();
+        long used = 0;
+        for (Entry e : entries.values()) {
+            used += e.size;
+            if (e.pins == 0)
+                candidates.add(e);
+        }
+        candidates.sort(Comparator.comparingLong(e -> e.lastAccess));
+        long free = Files.getFileStore(root).getUsableSpace() - MIN_FREE_BYTES;
+        long limit = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        int next = 0;
+        while (size > free || used + size > limit) {
+            if (next >= candidates.size())
+                return false;
+            Entry victim = candidates.get(next++);
+            deleteTree(root.resolve(victim.key));
+            entries.remove(victim.key);
+            used -= victim.size;
+            free += victim.size;
+        }
+        return true;
+    }
+
+    /**
+     * Rilegge le copie presenti nella cache; le cartelle senza marcatore
+     * (copie interrotte) vengono eliminate.
+     */
+    private void scan(Path root) throws IOException {
+        entries.clear();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(root)) {
+            for (Path dir : ds) {
+                if (!Files.isDirectory(dir))
+                    continue;
+                Path marker = dir.resolve(MARKER);
+                if (!Files.exists(marker)) {
+                    deleteTree(dir);
+                    continue;
+                }
+                Properties p = new Properties();
+                try (InputStream in = Files.newInputStream(marker)) {
+                    p.load(in);
+                    String key = dir.getFileName().toString();
+                    entries.put(key, new Entry(key, Long.parseLong(p.getProperty("size", "0")),
+                            Files.getLastModifiedTime(marker).toMillis()));
+                } catch (IOException | NumberFormatException e) {
+                    deleteTree(dir);
+                }
+            }
+        }
+        scannedDir = root;
+    }
+
+    private static void touch(Path entryDir) {
+        try {
+            Files.setLastModifiedTime(entryDir.resolve(MARKER), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Solo l'ordine di eliminazione dopo un riavvio
+        }
+    }
+
+    private static String keyOf(Path source, long size, long lastModified) {
+        String id = source.toAbsolutePath().normalize() + "|" + size + "|" + lastModified;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            StringBuilder sb = new StringBuilder();
+            for (byte x : md.digest(id.getBytes(StandardCharsets.UTF_8))) {
+                sb.append(String.format("%02x", x));
+            }
+            return sb.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(id.hashCode());
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir))
+            return;
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Copia nella cache, protetta dall'eliminazione finche' {@code pins > 0}.
+     */
+    private static class Entry {
+        final String key;
+        final long size;
+        long lastAccess;
+        int pins;
+
+        Entry(String key, long size, long lastAccess) {
+            this.key = key;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static class Task {
+        volatile Future<List<Evidence>> future;
+        volatile boolean cancelled;
+        final List<Entry> pinned = new ArrayList<>();
+    }
+}
@@ -0,0 +1,258 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.utils.PerfEvents;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Calcola la dimensione di una cartella in parallelo (fork/join).
+ * Ogni sottocartella diventa un task separato, cosi' alberi con milioni di file
+ * vengono distribuiti su tutti i core invece di essere visitati in sequenza.
+ * Supporta annullamento e pubblica totali parziali durante la scansione.
+ * Le cartelle non modificate dall'ultima scansione vengono lette dalla
+ * {@link EvidenceMetadataCache}.
+ */
+public class FolderSizeCalculator {
+
+    // Pool condiviso: i worker fork/join sono daemon e non bloccano l'uscita
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final long PUBLISH_INTERVAL_MS = 250;
+
+    private final Path root;
+    private final EvidenceMetadataCache cache;
+    private final LongAdder total = new LongAdder();
+    private final LongAdder fileCount = new LongAdder();
+    private final AtomicLong lastPublish = new AtomicLong();
+    private volatile boolean cancelled = false;
+    private LongConsumer partialListener;
+
+    public FolderSizeCalculator(Path root) {
+        this(root, EvidenceMetadataCache.getInstance());
+    }
+
+    /**
+     * @param cache cache dei metadati, oppure null per una scansione completa
+     */
+    public FolderSizeCalculator(Path root, EvidenceMetadataCache cache) {
+        this.root = root;
+        this.cache = cache;
+    }
+
+    /**
+     * Avvia il calcolo in background.
+     *
+     * @param partialListener riceve i totali parziali (chiamato dai thread worker,
+     *                        al massimo ogni {@value #PUBLISH_INTERVAL_MS} ms); puo'
+     *                        essere null
+     * @return future completato con la dimensione totale, oppure annullato
+     */
+    public CompletableFuture<Long> start(LongConsumer partialListener) {
+        this.partialListener = partialListener;
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        POOL.execute(() -> {
+            PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.EVIDENCE_SIZE);
+            try {
+                createRootTask().invoke();
+                if (cancelled) {
+                    result.cancel(false);
+                } else {
+                    saveCache();
+                    result.complete(total.sum());
+                }
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                span.end(root.toString(), total.sum());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Calcola la dimensione in modo sincrono (usato fuori dall'EDT).
+     */
+    public long calculate() {
+        PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.EVIDENCE_SIZE);
+        POOL.invoke(createRootTask());
+        saveCache();
+        span.end(root.toString(), total.sum());
+        return total.sum();
+    }
+
+    /**
+     * Calcola in modo sincrono la dimensione delle cartelle ancora ignote
+     * (usato fuori dall'EDT). Le copie delle evidenze in un job non ricevono i
+     * totali calcolati dalla tabella: senza questo passaggio la suddivisione a
+     * blocchi e lo storico delle esecuzioni vedrebbero dimensioni mancanti.
+     * Le cartelle gia' scansionate vengono lette dalla cache dei metadati.
+     */
+    public static void resolveSizes(List<Evidence> evidences) {
+        for (Evidence ev : evidences) {
+            if (ev.isSizeKnown() || !ev.isDirectory() || !ev.getFile().isDirectory())
+                continue;
+            FolderSizeCalculator calc = new FolderSizeCalculator(ev.getFile().toPath());
+            try {
+                ev.setSize(calc.calculate());
+                ev.setFileCount(calc.getFileCount());
+            } catch (RuntimeException e) {
+                // Dimensione lasciata ignota: la suddivisione usa la media
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getPartialSize() {
+        return total.sum();
+    }
+
+    public long getFileCount() {
+        return fileCount.sum();
+    }
+
+    private DirectoryTask createRootTask() {
+        Path dir = root;
+        try {
+            // Chiave canonica: stessa cartella raggiunta da percorsi diversi
+            dir = root.toRealPath();
+        } catch (IOException e) {
+            // Usa il percorso cosi' com'e'
+        }
+        return new DirectoryTask(dir, null);
+    }
+
+    private void saveCache() {
+        if (cache != null && !cancelled) {
+            cache.saveAsync();
+        }
+    }
+
+    private void publishPartial() {
+        LongConsumer listener = partialListener;
+        if (listener == null || cancelled)
+            return;
+        long now = System.currentTimeMillis();
+        long last = lastPublish.get();
+        if (now - last >= PUBLISH_INTERVAL_MS && lastPublish.compareAndSet(last, now)) {
+            listener.accept(total.sum());
+        }
+    }
+
+    /**
+     * Task per una singola cartella: somma i file diretti e crea un sottotask
+     * per ogni sottocartella.
+     */
+    private class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private BasicFileAttributes attrs;
+
+        DirectoryTask(Path dir, BasicFileAttributes attrs) {
+            this.dir = dir;
+            this.attrs = attrs;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled)
+                return;
+
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            if (!computeFromCache(subtasks)) {
+                scanDirectory(subtasks);
+            }
+
+            publishPartial();
+            if (!subtasks.isEmpty() && !cancelled) {
+                invokeAll(subtasks);
+            }
+        }
+
+        private boolean computeFromCache(List<DirectoryTask> subtasks) {
+            if (cache == null)
+                return false;
+            try {
+                if (attrs == null) {
+                    attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+                }
+            } catch (IOException e) {
+                return false;
+            }
+            EvidenceMetadataCache.DirectoryEntry entry = cache.lookup(dir, attrs);
+            if (entry == null)
+                return false;
+
+            total.add(entry.getSize());
+            fileCount.add(entry.getFileCount());
+            for (String name : entry.getSubdirs()) {
+                // Attributi letti dal sottotask: basta uno stat per cartella
+                subtasks.add(new DirectoryTask(dir.resolve(name), null));
+            }
+            return true;
+        }
+
+        private void scanDirectory(List<DirectoryTask> subtasks) {
+            long[] direct = new long[2]; // size, count
+            List<String> subdirNames = new ArrayList<>();
+            boolean complete;
+            try {
+                // maxDepth = 1: le sottocartelle arrivano in visitFile con i loro attributi
+                Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes fileAttrs) {
+                        if (fileAttrs.isDirectory()) {
+                            subtasks.add(new DirectoryTask(file, fileAttrs));
+                            subdirNames.add(file.getFileName().toString());
+                        } else if (fileAttrs.isRegularFile()) {
+                            direct[0] += fileAttrs.size();
+                            direct[1]++;
+                        }
+                        return cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        // File non accessibile: ignora e prosegui
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                complete = !cancelled;
+            } catch (IOException e) {
+                System.err.println("Error sizing " + dir + ": " + e.getMessage());
+                complete = false;
+            }
+
+            total.add(direct[0]);
+            fileCount.add(direct[1]);
+            if (complete && cache != null && attrs != null) {
+                cache.store(dir, attrs, direct[0], direct[1], subdirNames);
+            }
+        }
+    }
+}
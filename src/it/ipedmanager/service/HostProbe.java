@@ -0,0 +1,34 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.service.StorageBenchmark.VolumeResult;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Misura le caratteristiche della macchina usate dall'{@link AutoTuner}: core,
+ * RAM fisica e velocita' dei volumi di evidenze, temporanei e output.
+ */
+public class HostProbe {
+
+    private HostProbe() {
+    }
+
+    public static int getCores() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * RAM fisica in GB, 0 se non rilevabile.
+     */
+    public static int getPhysicalMemoryGB() {
+        return ResourceGovernor.detectPhysicalMemoryGB();
+    }
+
+    /**
+     * Prova di un volume con {@link StorageBenchmark} (il risultato resta
+     * nella cache dei volumi). Per le evidenze la prova e' in sola lettura.
+     */
+    public static VolumeResult probeDisk(Path path, boolean readOnly) throws IOException {
+        return StorageBenchmark.getInstance().run(path, readOnly);
+    }
+}
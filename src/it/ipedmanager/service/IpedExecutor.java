@@ -1,26 +1,48 @@
 package it.ipedmanager.service;
 
+import it.ipedmanager.cli.IpedSimulator;
 import it.ipedmanager.model.Evidence;
 import it.ipedmanager.Main;
+import it.ipedmanager.utils.AppPaths;
+import it.ipedmanager.utils.PerfEvents;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 
 /**
  * Servizio per eseguire IPED con le evidenze configurate.
+ * <p>
+ * In modalita' simulatore ({@code -Dipedmanager.simulator="opzioni"} o la
+ * variabile d'ambiente {@code IPEDMANAGER_SIMULATOR}) al posto di iped.jar
+ * viene avviato {@link IpedSimulator} con le opzioni indicate (es.
+ * {@code "--rate 2000 --duration 600 --oom-at 40:16"}) e gli argomenti del
+ * comando IPED: serve a provare monitor, parser e code senza IPED.
  */
 public class IpedExecutor {
 
+    public static final String SIMULATOR_PROPERTY = "ipedmanager.simulator";
+    public static final String SIMULATOR_ENV = "IPEDMANAGER_SIMULATOR";
+
     private String ipedJarPath;
     private String jrePath;
+    private String simulatorArgs;
     private static final String PREF_IPED_PATH = "ipedPath";
 
     public IpedExecutor() {
         detectIpedPaths();
+        String simulator = System.getProperty(SIMULATOR_PROPERTY, System.getenv(SIMULATOR_ENV));
+        if (simulator != null) {
+            setSimulatorArgs(simulator);
+        }
     }
 
     /**
@@ -82,12 +104,58 @@ public class IpedExecutor {
         this.ipedJarPath = path;
     }
 
+    public void setJrePath(String path) {
+        this.jrePath = path;
+    }
+
     public String getIpedJarPath() {
         return ipedJarPath;
     }
 
     public boolean isIpedConfigured() {
-        return ipedJarPath != null && new File(ipedJarPath).exists();
+        return isSimulated() || (ipedJarPath != null && new File(ipedJarPath).exists());
+    }
+
+    /**
+     * Attiva la modalita' simulatore con le opzioni di {@link IpedSimulator}
+     * separate da spazi (null = IPED reale). Senza iped.jar si usa una
+     * cartella IPED vuota nella cartella dati.
+     */
+    public void setSimulatorArgs(String args) {
+        this.simulatorArgs = args != null ? args.trim() : null;
+        if (isSimulated() && (ipedJarPath == null || !new File(ipedJarPath).exists())) {
+            Path dir = AppPaths.resolve("iped-simulator");
+            try {
+                Files.createDirectories(dir.resolve("conf"));
+            } catch (IOException e) {
+                System.err.println("Cannot create " + dir + ": " + e.getMessage());
+            }
+            this.ipedJarPath = dir.resolve("iped.jar").toString();
+        }
+    }
+
+    public boolean isSimulated() {
+        return simulatorArgs != null;
+    }
+
+    /**
+     * Comando del simulatore con gli argomenti IPED di {@code command} (quelli
+     * dopo {@code -jar iped.jar}).
+     */
+    List<String> simulatorCommand(List<String> command) throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.add("-cp");
+        cmd.add(Paths.get(IpedSimulator.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .toString());
+        cmd.add(IpedSimulator.class.getName());
+        if (!simulatorArgs.isEmpty()) {
+            cmd.addAll(Arrays.asList(simulatorArgs.split("\\s+")));
+        }
+        cmd.add("--");
+        int jar = command.indexOf("-jar");
+        cmd.addAll(command.subList(jar >= 0 ? Math.min(jar + 2, command.size()) : 1, command.size()));
+        return cmd;
     }
 
     /**
@@ -101,6 +169,12 @@ public class IpedExecutor {
         // Java executable
         cmd.add(jrePath);
 
+        // Limite dei core visti dalla JVM: con numThreads=default IPED usa
+        // tutti i core disponibili, qui quelli assegnati al caso
+        if (options.maxThreads > 0) {
+            cmd.add("-XX:ActiveProcessorCount=" + options.maxThreads);
+        }
+
         // JAR
         cmd.add("-jar");
         cmd.add(ipedJarPath);
@@ -199,25 +273,50 @@ public class IpedExecutor {
 
     /**
      * Esegue IPED con output in tempo reale.
+     *
+     * @return exit code del processo IPED
      */
-    public void execute(List<String> command, Consumer<String> outputCallback) throws Exception {
-        ProcessBuilder pb = new ProcessBuilder(command);
+    public int execute(List<String> command, Consumer<String> outputCallback) throws Exception {
+        return execute(command, outputCallback, null);
+    }
+
+    /**
+     * Esegue IPED con output in tempo reale, notificando il processo avviato
+     * (usato per poterlo terminare).
+     *
+     * @return exit code del processo IPED
+     */
+    public int execute(List<String> command, Consumer<String> outputCallback,
+            Consumer<Process> processListener) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(isSimulated() ? simulatorCommand(command) : command);
         pb.redirectErrorStream(true);
         pb.directory(new File(ipedJarPath).getParentFile());
 
-        Process process = pb.start();
+        PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.IPED_EXECUTE);
+        long lines = 0;
+        try {
+            Process process = pb.start();
+            if (processListener != null) {
+                processListener.accept(process);
+            }
 
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (outputCallback != null) {
-                    outputCallback.accept(line);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines++;
+                    if (outputCallback != null) {
+                        outputCallback.accept(line);
+                    }
                 }
             }
-        }
 
-        process.waitFor();
+            return process.waitFor();
+        } finally {
+            // Solo la destinazione: il comando puo' contenere password delle evidenze
+            int out = command.indexOf("-o");
+            span.end(out >= 0 && out + 1 < command.size() ? command.get(out + 1) : ipedJarPath, lines);
+        }
     }
 
     /**
@@ -234,7 +333,29 @@ public class IpedExecutor {
         public boolean noPstAttachs = false;
         public boolean downloadInternetData = false;
         public int maxMemoryGB = 0;
+        public int maxThreads = 0;
+        // Elaborazione a blocchi con --append (0 o 1 = un'unica esecuzione)
+        public int shards = 0;
         public String extraParams = "";
         public String splashMessage = "";
+
+        public ProcessingOptions copy() {
+            ProcessingOptions o = new ProcessingOptions();
+            o.continueProcessing = continueProcessing;
+            o.restart = restart;
+            o.append = append;
+            o.nogui = nogui;
+            o.nolog = nolog;
+            o.portable = portable;
+            o.addOwner = addOwner;
+            o.noPstAttachs = noPstAttachs;
+            o.downloadInternetData = downloadInternetData;
+            o.maxMemoryGB = maxMemoryGB;
+            o.maxThreads = maxThreads;
+            o.shards = shards;
+            o.extraParams = extraParams;
+            o.splashMessage = splashMessage;
+            return o;
+        }
     }
 }
@@ -0,0 +1,168 @@
+package it.ipedmanager.service;
+
+/**
+ * Stato di avanzamento di un'elaborazione IPED, aggiornato da
+ * {@link IpedProgressParser} e letto dalla UI. I valori negativi indicano un
+ * dato non ancora disponibile.
+ */
+public class IpedProgress {
+
+    // Peso dell'ultimo campione nella media mobile delle velocita'
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final long MIN_SAMPLE_MS = 1000;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile long itemsProcessed = -1;
+    private volatile long itemsTotal = -1;
+    private volatile long bytesProcessed = -1;
+    private volatile long bytesTotal = -1;
+    private volatile double percent = -1;
+    private volatile double itemsPerSecond = -1;
+    private volatile double bytesPerSecond = -1;
+    private volatile long etaSeconds = -1;
+    private volatile long lastUpdate = 0;
+
+    // Stato per il calcolo delle velocita' (solo thread del parser)
+    private long sampleTime = 0;
+    private long sampleItems = -1;
+    private long sampleBytes = -1;
+    private double samplePercent = -1;
+    private double percentPerSecond = -1;
+    private boolean explicitByteRate = false;
+
+    void updateItems(long processed, long total, long now) {
+        itemsProcessed = processed;
+        itemsTotal = total;
+        if (total > 0) {
+            percent = Math.min(100.0, processed * 100.0 / total);
+        }
+        touch(now);
+    }
+
+    void updateBytes(long processed, long total, long now) {
+        bytesProcessed = processed;
+        bytesTotal = total;
+        if (itemsTotal <= 0 && total > 0) {
+            percent = Math.min(100.0, processed * 100.0 / total);
+        }
+        touch(now);
+    }
+
+    void updatePercent(double value, long now) {
+        // La percentuale esplicita di IPED prevale su quella calcolata
+        percent = value;
+        touch(now);
+    }
+
+    void updateByteRate(double value, long now) {
+        explicitByteRate = true;
+        bytesPerSecond = value;
+        touch(now);
+    }
+
+    private void touch(long now) {
+        lastUpdate = now;
+        if (sampleTime == 0) {
+            sampleTime = now;
+            sampleItems = itemsProcessed;
+            sampleBytes = bytesProcessed;
+            samplePercent = percent;
+            return;
+        }
+        long dt = now - sampleTime;
+        if (dt < MIN_SAMPLE_MS)
+            return;
+
+        if (itemsProcessed >= 0 && sampleItems >= 0 && itemsProcessed >= sampleItems) {
+            itemsPerSecond = smooth(itemsPerSecond, (itemsProcessed - sampleItems) * 1000.0 / dt);
+        }
+        if (!explicitByteRate && bytesProcessed >= 0 && sampleBytes >= 0 && bytesProcessed >= sampleBytes) {
+            bytesPerSecond = smooth(bytesPerSecond, (bytesProcessed - sampleBytes) * 1000.0 / dt);
+        }
+        if (percent >= 0 && samplePercent >= 0 && percent >= samplePercent) {
+            percentPerSecond = smooth(percentPerSecond, (percent - samplePercent) * 1000.0 / dt);
+        }
+        sampleTime = now;
+        sampleItems = itemsProcessed;
+        sampleBytes = bytesProcessed;
+        samplePercent = percent;
+        etaSeconds = computeEta();
+    }
+
+    private long computeEta() {
+        if (itemsTotal > 0 && itemsPerSecond > 0) {
+            return Math.round((itemsTotal - itemsProcessed) / itemsPerSecond);
+        }
+        if (bytesTotal > 0 && bytesPerSecond > 0 && bytesProcessed >= 0) {
+            return Math.round((bytesTotal - bytesProcessed) / bytesPerSecond);
+        }
+        if (percent >= 0 && percentPerSecond > 0) {
+            return Math.round((100.0 - percent) / percentPerSecond);
+        }
+        return -1;
+    }
+
+    private static double smooth(double previous, double sample) {
+        return previous < 0 ? sample : previous + RATE_SMOOTHING * (sample - previous);
+    }
+
+    public long getItemsProcessed() {
+        return itemsProcessed;
+    }
+
+    public long getItemsTotal() {
+        return itemsTotal;
+    }
+
+    public long getBytesProcessed() {
+        return bytesProcessed;
+    }
+
+    public long getBytesTotal() {
+        return bytesTotal;
+    }
+
+    public double getPercent() {
+        return percent;
+    }
+
+    public boolean hasPercent() {
+        return percent >= 0;
+    }
+
+    public double getItemsPerSecond() {
+        return itemsPerSecond;
+    }
+
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Istante (ms) dell'ultimo dato di avanzamento ricevuto, 0 se nessuno.
+     */
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * Formatta una durata in secondi come [Nd ]hh:mm:ss.
+     */
+    public static String formatDuration(long seconds) {
+        if (seconds < 0)
+            return "--:--:--";
+        long days = seconds / 86400;
+        long rest = seconds % 86400;
+        String hms = String.format("%02d:%02d:%02d", rest / 3600, (rest % 3600) / 60, rest % 60);
+        return days > 0 ? days + "d " + hms : hms;
+    }
+}
@@ -0,0 +1,254 @@
+package it.ipedmanager.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Parser in streaming dell'output di IPED che estrae l'avanzamento.
+ * <p>
+ * Legge solo le righe di avanzamento di IPED, cioe' quelle del logger
+ * {@code ProgressConsole} ({@code [ProgressConsole]}, anche con il nome del
+ * package intero o abbreviato, dopo data e livello). Le altre righe (nomi di
+ * file in elaborazione, avvisi, messaggi dei task) vengono ignorate: un
+ * "10%" o un "3/7" in un nome di file non sposta l'avanzamento. Sulle righe di
+ * avanzamento riconosce, in qualunque lingua dei messaggi di IPED:
+ * <ul>
+ * <li>percentuali ("45%")</li>
+ * <li>conteggi elaborati/totali ("1.234/56.789"; le date come 05/10/2024
+ * vengono ignorate)</li>
+ * <li>volumi elaborati/totali ("12,5 GB / 300 GB")</li>
+ * <li>velocita' esplicite ("35 GB/h", "120 MB/s")</li>
+ * </ul>
+ * Le velocita' in item/s e l'ETA vengono calcolate da {@link IpedProgress}.
+ * La scansione avviene carattere per carattere senza regex ne' split, per non
+ * generare garbage sulle esecuzioni con milioni di righe.
+ */
+public class IpedProgressParser implements Consumer<String> {
+
+    // Logger di IPED che scrive l'avanzamento (iped.app.processing.ProgressConsole)
+    private static final String PROGRESS_LOGGER = "ProgressConsole";
+
+    private final IpedProgress progress = new IpedProgress();
+
+    @Override
+    public void accept(String line) {
+        if (line != null) {
+            parse(line, System.currentTimeMillis());
+        }
+    }
+
+    public IpedProgress getProgress() {
+        return progress;
+    }
+
+    void parse(String line, long now) {
+        int i = progressMessageStart(line);
+        if (i < 0)
+            return;
+        int len = line.length();
+        long sizeA = -1;
+        long sizeB = -1;
+        int sizes = 0;
+
+        while (i < len) {
+            char c = line.charAt(i);
+            if (!isDigit(c) || (i > 0 && Character.isLetterOrDigit(line.charAt(i - 1)))) {
+                i++;
+                continue;
+            }
+
+            int end = scanNumber(line, i);
+            double value = parseNumber(line, i, end);
+            int j = skipSpaces(line, end);
+
+            // Percentuale
+            if (j < len && line.charAt(j) == '%') {
+                if (value <= 100) {
+                    progress.updatePercent(value, now);
+                }
+                i = j + 1;
+                continue;
+            }
+
+            // Conteggio elaborati/totali
+            if (end + 1 < len && line.charAt(end) == '/' && isDigit(line.charAt(end + 1))) {
+                int end2 = scanNumber(line, end + 1);
+                boolean date = end2 < len && (line.charAt(end2) == '/' || line.charAt(end2) == '-');
+                if (!date) {
+                    long processed = (long) value;
+                    long total = (long) parseNumber(line, end + 1, end2);
+                    if (total > 0 && processed <= total) {
+                        progress.updateItems(processed, total, now);
+                    }
+                }
+                i = end2;
+                continue;
+            }
+
+            // Volumi e velocita'
+            int unitEnd = scanUnit(line, j);
+            if (unitEnd > 0) {
+                double bytes = value * unitMultiplier(line, j);
+                if (unitEnd + 1 < len && line.charAt(unitEnd) == '/' && !isLetterAt(line, unitEnd + 2)) {
+                    char per = Character.toLowerCase(line.charAt(unitEnd + 1));
+                    if (per == 's') {
+                        progress.updateByteRate(bytes, now);
+                    } else if (per == 'h') {
+                        progress.updateByteRate(bytes / 3600.0, now);
+                    }
+                    i = unitEnd + 2;
+                    continue;
+                }
+                if (sizes == 0) {
+                    sizeA = (long) bytes;
+                } else if (sizes == 1) {
+                    sizeB = (long) bytes;
+                }
+                sizes++;
+                i = unitEnd;
+                continue;
+            }
+            i = end;
+        }
+
+        if (sizes == 2 && sizeA >= 0 && sizeA <= sizeB) {
+            progress.updateBytes(sizeA, sizeB, now);
+        }
+    }
+
+    /**
+     * Inizio del messaggio se la riga e' del logger {@value #PROGRESS_LOGGER},
+     * altrimenti -1. Prima del messaggio possono esserci solo data, ora e tag
+     * tra parentesi quadre ({@code [INFO]}, nome del logger).
+     */
+    static int progressMessageStart(String line) {
+        int len = line.length();
+        boolean progress = false;
+        int i = 0;
+        while (i < len) {
+            char c = line.charAt(i);
+            if (c == ' ' || c == '\t') {
+                i++;
+            } else if (c == '[') {
+                int close = line.indexOf(']', i + 1);
+                if (close < 0)
+                    return -1;
+                int start = close - PROGRESS_LOGGER.length();
+                if (start > i && line.regionMatches(start, PROGRESS_LOGGER, 0, PROGRESS_LOGGER.length())
+                        && (start == i + 1 || line.charAt(start - 1) == '.')) {
+                    progress = true;
+                }
+                i = close + 1;
+            } else if (isDigit(c)) {
+                // Data e ora: 2024-05-10 12:00:00,123
+                int end = i;
+                while (end < len && (isDigit(line.charAt(end)) || "-:.,/T".indexOf(line.charAt(end)) >= 0)) {
+                    end++;
+                }
+                if (end < len && line.charAt(end) != ' ' && line.charAt(end) != '\t')
+                    break;
+                i = end;
+            } else {
+                break;
+            }
+        }
+        return progress ? i : -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetterAt(String s, int i) {
+        return i < s.length() && Character.isLetter(s.charAt(i));
+    }
+
+    private static int skipSpaces(String s, int i) {
+        while (i < s.length() && s.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Fine del numero che inizia in start: cifre, con '.' o ',' solo se seguiti
+     * da una cifra.
+     */
+    private static int scanNumber(String s, int start) {
+        int i = start;
+        int len = s.length();
+        while (i < len) {
+            char c = s.charAt(i);
+            if (isDigit(c)) {
+                i++;
+            } else if ((c == '.' || c == ',') && i + 1 < len && isDigit(s.charAt(i + 1))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Interpreta un numero con separatori di migliaia o decimali sia in formato
+     * "1,234.5" che "1.234,5": l'ultimo separatore e' decimale se i due tipi sono
+     * mescolati o se non e' seguito da esattamente tre cifre.
+     */
+    static double parseNumber(String s, int start, int end) {
+        int lastSep = -1;
+        char lastSepChar = 0;
+        boolean mixed = false;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '.' || c == ',') {
+                if (lastSepChar != 0 && c != lastSepChar) {
+                    mixed = true;
+                }
+                lastSep = i;
+                lastSepChar = c;
+            }
+        }
+        boolean decimal = lastSep >= 0 && (mixed || end - lastSep - 1 != 3);
+
+        double value = 0;
+        double scale = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (isDigit(c)) {
+                if (scale > 0) {
+                    value += (c - '0') * scale;
+                    scale /= 10;
+                } else {
+                    value = value * 10 + (c - '0');
+                }
+            } else if (decimal && i == lastSep) {
+                scale = 0.1;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Riconosce un'unita' di misura (B, KB, MB, GB, TB, PB, anche KiB...) in
+     * posizione start. Restituisce l'indice dopo l'unita', o -1.
+     */
+    private static int scanUnit(String s, int start) {
+        int len = s.length();
+        int i = start;
+        if (i < len && "KMGTP".indexOf(Character.toUpperCase(s.charAt(i))) >= 0) {
+            i++;
+            if (i < len && s.charAt(i) == 'i') {
+                i++;
+            }
+        }
+        if (i < len && s.charAt(i) == 'B' && !isLetterAt(s, i + 1)) {
+            return i + 1;
+        }
+        return -1;
+    }
+
+    private static double unitMultiplier(String s, int start) {
+        int idx = "KMGTP".indexOf(Character.toUpperCase(s.charAt(start)));
+        return Math.pow(1024, idx + 1);
+    }
+}
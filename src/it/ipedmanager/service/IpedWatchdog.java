@@ -0,0 +1,291 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
+import it.ipedmanager.utils.ProcessUtils;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Supervisiona un'elaborazione IPED e la riprende automaticamente dopo un
+ * crash.
+ * <p>
+ * Se IPED termina con exit code diverso da 0, oppure non produce output per
+ * piu' del tempo di stallo (il processo viene allora terminato), l'elaborazione
+ * viene rilanciata con {@code --continue} fino a esaurire i tentativi. Si
+ * riprende solo un tentativo che ha davvero elaborato (righe di avanzamento di
+ * IPED), che e' andato in stallo o che ha esaurito la memoria: un errore
+ * immediato (argomenti non validi, evidenze mancanti, cartella di destinazione
+ * con un caso gia' presente) termina subito, senza forzare {@code --continue}
+ * su un caso che non e' di questa elaborazione. Se
+ * nell'output e' comparso un {@code OutOfMemoryError} la memoria (-Xmx) del
+ * tentativo successivo viene aumentata del 50%, nei limiti concessi dal
+ * chiamante. Impostazioni in LocalConfig:
+ * <ul>
+ * <li>{@code managerMaxRetries}: riprese automatiche (default 3, 0 =
+ * disattivato)</li>
+ * <li>{@code managerStallMinutes}: minuti senza output prima di considerare
+ * IPED bloccato (default 60, 0 = disattivato)</li>
+ * <li>{@code managerMemoryEscalation}: aumento della memoria dopo un
+ * OutOfMemoryError (default true)</li>
+ * <li>{@code managerRetryDelaySec}: secondi di attesa prima di una ripresa
+ * (default 30)</li>
+ * </ul>
+ */
+public class IpedWatchdog {
+
+    public static final String KEY_MAX_RETRIES = "managerMaxRetries";
+    public static final String KEY_STALL_MINUTES = "managerStallMinutes";
+    public static final String KEY_MEMORY_ESCALATION = "managerMemoryEscalation";
+    public static final String KEY_RETRY_DELAY_SEC = "managerRetryDelaySec";
+
+    private static final String LOG_PREFIX = "[watchdog] ";
+    private static final String OOM_MARKER = "OutOfMemoryError";
+    private static final double MEMORY_ESCALATION_FACTOR = 1.5;
+    private static final long CHECK_INTERVAL_MS = 10_000;
+    private static final long KILL_GRACE_MS = 30_000;
+
+    private final IpedExecutor executor;
+    private int maxRetries = 3;
+    private long stallTimeoutMs = 60 * 60_000L;
+    private boolean escalateMemory = true;
+    private long retryDelayMs = 30_000;
+    private IntUnaryOperator memoryLimiter = IntUnaryOperator.identity();
+    private BooleanSupplier cancelled = () -> false;
+    private Consumer<Process> processListener;
+    private ObjIntConsumer<List<String>> launchListener;
+    private Consumer<String> logListener;
+
+    // Stato del tentativo in corso
+    private volatile long lastOutput;
+    private volatile boolean oomSeen;
+    private volatile boolean progressSeen;
+    private volatile boolean stalled;
+
+    public IpedWatchdog(IpedExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Legge le impostazioni da LocalConfig (null = valori di default).
+     */
+    public IpedWatchdog loadSettings(PropertiesConfigFile localConfig) {
+        if (localConfig != null) {
+            maxRetries = Math.max(0, localConfig.getInt(KEY_MAX_RETRIES, maxRetries));
+            stallTimeoutMs = Math.max(0, localConfig.getInt(KEY_STALL_MINUTES, 60)) * 60_000L;
+            escalateMemory = localConfig.getBoolean(KEY_MEMORY_ESCALATION, true);
+            retryDelayMs = Math.max(0, localConfig.getInt(KEY_RETRY_DELAY_SEC, 30)) * 1000L;
+        }
+        return this;
+    }
+
+    public IpedWatchdog setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    /**
+     * @param stallTimeoutMs tempo senza output dopo cui IPED e' considerato
+     *                       bloccato, 0 per disattivare
+     */
+    public IpedWatchdog setStallTimeoutMs(long stallTimeoutMs) {
+        this.stallTimeoutMs = stallTimeoutMs;
+        return this;
+    }
+
+    public IpedWatchdog setRetryDelayMs(long retryDelayMs) {
+        this.retryDelayMs = retryDelayMs;
+        return this;
+    }
+
+    /**
+     * Riceve la memoria desiderata (GB) per il tentativo successivo e restituisce
+     * quella concessa.
+     */
+    public IpedWatchdog setMemoryLimiter(IntUnaryOperator memoryLimiter) {
+        this.memoryLimiter = memoryLimiter;
+        return this;
+    }
+
+    /**
+     * Se restituisce true non vengono fatti altri tentativi.
+     */
+    public IpedWatchdog setCancelled(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+        return this;
+    }
+
+    public IpedWatchdog setProcessListener(Consumer<Process> processListener) {
+        this.processListener = processListener;
+        return this;
+    }
+
+    /**
+     * Chiamato prima di ogni avvio di IPED con il comando e il numero del
+     * tentativo (da 1).
+     */
+    public IpedWatchdog setLaunchListener(ObjIntConsumer<List<String>> launchListener) {
+        this.launchListener = launchListener;
+        return this;
+    }
+
+    /**
+     * Riceve i messaggi del watchdog (ripresa, blocco, memoria); se non
+     * impostato vanno nell'output di IPED.
+     */
+    public IpedWatchdog setLogListener(Consumer<String> logListener) {
+        this.logListener = logListener;
+        return this;
+    }
+
+    /**
+     * Esegue IPED riprendendo l'elaborazione dopo le terminazioni anomale.
+     *
+     * @return exit code dell'ultimo tentativo
+     */
+    public int run(List<Evidence> evidences, String outputPath, String profile, ProcessingOptions options,
+            Consumer<String> output) throws Exception {
+        Consumer<String> log = logListener != null ? logListener : output;
+        ProcessingOptions attemptOptions = options;
+        int attempt = 1;
+        while (true) {
+            List<String> cmd = executor.buildCommand(evidences, outputPath, profile, attemptOptions);
+            if (launchListener != null) {
+                launchListener.accept(cmd, attempt);
+            }
+            int exitCode = runAttempt(cmd, output, log);
+
+            if (exitCode == 0 || cancelled.getAsBoolean())
+                return exitCode;
+            if (!progressSeen && !oomSeen && !stalled) {
+                log.accept(LOG_PREFIX + "IPED failed before processing started (exit code " + exitCode
+                        + "), not resuming");
+                return exitCode;
+            }
+            if (attempt > maxRetries) {
+                if (maxRetries > 0) {
+                    log.accept(LOG_PREFIX + "Retry budget exhausted (" + maxRetries + "), giving up");
+                }
+                return exitCode;
+            }
+
+            String reason = stalled ? "no output for " + (stallTimeoutMs / 60_000) + " min"
+                    : "exit code " + exitCode;
+            attemptOptions = resumeOptions(attemptOptions, log);
+            log.accept(LOG_PREFIX + "IPED terminated abnormally (" + reason + "), resuming with --continue in "
+                    + (retryDelayMs / 1000) + " s (attempt " + (attempt + 1) + "/" + (maxRetries + 1) + ")");
+            if (!sleepUnlessCancelled(retryDelayMs))
+                return exitCode;
+            attempt++;
+        }
+    }
+
+    private int runAttempt(List<String> cmd, Consumer<String> output, Consumer<String> log) throws Exception {
+        lastOutput = System.currentTimeMillis();
+        oomSeen = false;
+        progressSeen = false;
+        stalled = false;
+
+        AtomicReference<Process> current = new AtomicReference<>();
+        Thread monitor = stallTimeoutMs > 0 ? startStallMonitor(current, log) : null;
+        try {
+            return executor.execute(cmd, line -> {
+                lastOutput = System.currentTimeMillis();
+                if (!oomSeen && line.contains(OOM_MARKER)) {
+                    oomSeen = true;
+                }
+                if (!progressSeen && IpedProgressParser.progressMessageStart(line) >= 0) {
+                    progressSeen = true;
+                }
+                output.accept(line);
+            }, p -> {
+                current.set(p);
+                if (processListener != null) {
+                    processListener.accept(p);
+                }
+            });
+        } finally {
+            if (monitor != null) {
+                monitor.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Termina IPED (con i processi figli) se non produce output per il tempo di
+     * stallo: l'uscita anomala fa poi scattare la ripresa.
+     */
+    private Thread startStallMonitor(AtomicReference<Process> current, Consumer<String> log) {
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(Math.min(CHECK_INTERVAL_MS, stallTimeoutMs));
+                    Process p = current.get();
+                    if (p == null || !p.isAlive())
+                        continue;
+                    if (System.currentTimeMillis() - lastOutput < stallTimeoutMs)
+                        continue;
+
+                    stalled = true;
+                    log.accept(LOG_PREFIX + "No output for " + (stallTimeoutMs / 60_000)
+                            + " min, terminating IPED");
+                    ProcessUtils.destroyTree(p, false);
+                    Thread.sleep(KILL_GRACE_MS);
+                    if (p.isAlive()) {
+                        ProcessUtils.destroyTree(p, true);
+                    }
+                    return;
+                }
+            } catch (InterruptedException e) {
+                // Tentativo terminato
+            }
+        }, "iped-watchdog");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    /**
+     * Opzioni per la ripresa: --continue al posto di --restart, memoria
+     * aumentata se IPED ha esaurito l'heap.
+     */
+    private ProcessingOptions resumeOptions(ProcessingOptions previous, Consumer<String> log) {
+        ProcessingOptions o = previous.copy();
+        o.continueProcessing = true;
+        o.restart = false;
+        // --continue riprende anche un'aggiunta (--append) interrotta
+        o.append = false;
+        if (oomSeen && escalateMemory && previous.maxMemoryGB > 0) {
+            int wanted = (int) Math.ceil(previous.maxMemoryGB * MEMORY_ESCALATION_FACTOR);
+            int granted = memoryLimiter.applyAsInt(wanted);
+            if (granted > previous.maxMemoryGB) {
+                o.maxMemoryGB = granted;
+                log.accept(LOG_PREFIX + "OutOfMemoryError detected, raising heap from "
+                        + previous.maxMemoryGB + " to " + granted + " GB");
+            } else {
+                log.accept(LOG_PREFIX + "OutOfMemoryError detected, no memory available to raise the heap");
+            }
+        }
+        return o;
+    }
+
+    private boolean sleepUnlessCancelled(long ms) {
+        long end = System.currentTimeMillis() + ms;
+        try {
+            while (System.currentTimeMillis() < end) {
+                if (cancelled.getAsBoolean())
+                    return false;
+                Thread.sleep(Math.min(1000, Math.max(1, end - System.currentTimeMillis())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !cancelled.getAsBoolean();
+    }
+}
@@ -0,0 +1,379 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
+import it.ipedmanager.utils.ProcessUtils;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Un caso da elaborare con IPED: evidenze, destinazione, profilo e opzioni
+ * fotografati al momento dell'accodamento, piu' lo stato di esecuzione.
+ */
+public class Job {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+    private static final long LINE_RATE_WINDOW_MS = 5000;
+
+    private final int id;
+    private final String name;
+    private final List<Evidence> evidences;
+    private final String outputPath;
+    private final String profile;
+    private final ProcessingOptions options;
+    private final IpedProgressParser progressParser = new IpedProgressParser();
+    // Ultimi 5 minuti di CPU, memoria e I/O del processo IPED
+    private final ProcessSampler sampler = new ProcessSampler(300);
+    private final long submitTime = System.currentTimeMillis();
+
+    // Risorse richieste (thread di elaborazione e heap in GB)
+    private int threads;
+    private int memoryGB;
+    // Risorse assegnate dal ResourceGovernor all'avvio
+    private volatile int effectiveThreads;
+    private volatile int effectiveMemoryGB;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile int exitCode = -1;
+    private volatile String errorMessage;
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile List<String> command;
+    private volatile Consumer<String> outputListener;
+    private volatile Process process;
+    private volatile boolean cancelRequested = false;
+    private volatile int attempts = 0;
+    private volatile CaseArchiver.Migration migration;
+    // Destinato ai worker remoti, deciso all'ammissione
+    private volatile boolean remote;
+    // Worker remoto (host:porta) che elabora il job, null se locale
+    private volatile String worker;
+    // Elaborazione a blocchi: blocco in corso (da 0) e numero di blocchi
+    private volatile int shardIndex;
+    private volatile int shardCount;
+    // Righe di output ricevute e righe al secondo nell'ultima finestra di
+    // LINE_RATE_WINDOW_MS
+    private volatile long outputLines;
+    private double linesPerSecond;
+    private long lineWindowStart;
+    private long lineWindowCount;
+
+    public Job(List<Evidence> evidences, String outputPath, String profile, ProcessingOptions options) {
+        this.id = NEXT_ID.getAndIncrement();
+        // Copia: le modifiche alla tabella dopo l'accodamento non toccano il job
+        List<Evidence> copy = new ArrayList<>();
+        for (Evidence ev : evidences) {
+            copy.add(ev.copy());
+        }
+        this.evidences = Collections.unmodifiableList(copy);
+        this.outputPath = outputPath;
+        this.profile = profile;
+        this.options = options;
+        this.name = new File(outputPath).getName().isEmpty() ? outputPath : new File(outputPath).getName();
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.memoryGB = options.maxMemoryGB;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Evidence> getEvidences() {
+        return evidences;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public ProcessingOptions getOptions() {
+        return options;
+    }
+
+    public IpedProgress getProgress() {
+        return progressParser.getProgress();
+    }
+
+    /**
+     * Uso di risorse del processo IPED (vuoto se non supportato dal sistema).
+     */
+    public ProcessSampler getSampler() {
+        return sampler;
+    }
+
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getMemoryGB() {
+        return memoryGB;
+    }
+
+    /**
+     * Imposta le risorse richieste dal job, usate dallo scheduler per decidere
+     * quanti job possono girare insieme.
+     */
+    public void setResources(int threads, int memoryGB) {
+        this.threads = Math.max(1, threads);
+        this.memoryGB = Math.max(0, memoryGB);
+    }
+
+    public int getEffectiveThreads() {
+        return effectiveThreads;
+    }
+
+    public int getEffectiveMemoryGB() {
+        return effectiveMemoryGB;
+    }
+
+    void setEffectiveResources(int threads, int memoryGB) {
+        this.effectiveThreads = threads;
+        this.effectiveMemoryGB = memoryGB;
+    }
+
+    /**
+     * Opzioni con cui lanciare IPED: quelle del caso con heap e thread
+     * effettivi assegnati dal governor.
+     */
+    ProcessingOptions getEffectiveOptions() {
+        ProcessingOptions o = options.copy();
+        if (effectiveMemoryGB > 0) {
+            o.maxMemoryGB = effectiveMemoryGB;
+        }
+        if (effectiveThreads > 0) {
+            o.maxThreads = effectiveThreads;
+        }
+        return o;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+        if (status == Status.RUNNING) {
+            startTime = System.currentTimeMillis();
+        } else if (status.isFinished()) {
+            endTime = System.currentTimeMillis();
+        }
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    void setExitCode(int exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Comando IPED lanciato, null finche' il job non e' partito.
+     */
+    public List<String> getCommand() {
+        return command;
+    }
+
+    void setCommand(List<String> command) {
+        this.command = command;
+    }
+
+    /**
+     * Numero di avvii di IPED: maggiore di 1 se il watchdog ha ripreso
+     * l'elaborazione dopo un crash.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * Vero se lo scheduler ha ammesso il job per i worker remoti invece che
+     * per questa macchina.
+     */
+    public boolean isRemote() {
+        return remote;
+    }
+
+    void setRemote(boolean remote) {
+        this.remote = remote;
+    }
+
+    /**
+     * Worker remoto (host:porta) a cui e' stato inviato il job, null se
+     * elaborato su questa macchina.
+     */
+    public String getWorker() {
+        return worker;
+    }
+
+    void setWorker(String worker) {
+        this.worker = worker;
+    }
+
+    /**
+     * Blocco in corso (da 0) nell'elaborazione a blocchi.
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * Numero di blocchi, 0 se il caso e' elaborato in un'unica esecuzione.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    void setShard(int index, int count) {
+        this.shardIndex = index;
+        this.shardCount = count;
+    }
+
+    /**
+     * Spostamento del caso nell'archivio, null se non previsto.
+     */
+    public CaseArchiver.Migration getMigration() {
+        return migration;
+    }
+
+    void setMigration(CaseArchiver.Migration migration) {
+        this.migration = migration;
+    }
+
+    /**
+     * Riceve le righe di output di IPED. Chiamato dal thread del job.
+     */
+    public void setOutputListener(Consumer<String> outputListener) {
+        this.outputListener = outputListener;
+    }
+
+    /**
+     * Righe di output ricevute da IPED (o dal worker remoto).
+     */
+    public long getOutputLines() {
+        return outputLines;
+    }
+
+    /**
+     * Righe di output al secondo negli ultimi secondi, 0 se l'output e' fermo.
+     */
+    public synchronized double getLinesPerSecond() {
+        long elapsed = System.currentTimeMillis() - lineWindowStart;
+        // Finestra non chiusa da troppo tempo: nessuna riga recente
+        if (lineWindowStart == 0 || elapsed > 2 * LINE_RATE_WINDOW_MS)
+            return 0;
+        // Prima finestra ancora aperta: velocita' parziale
+        if (linesPerSecond == 0 && elapsed >= 1000)
+            return lineWindowCount * 1000.0 / elapsed;
+        return linesPerSecond;
+    }
+
+    void output(String line) {
+        countLine();
+        progressParser.accept(line);
+        Consumer<String> listener = outputListener;
+        if (listener != null) {
+            listener.accept(line);
+        }
+    }
+
+    /**
+     * Messaggio dell'IPEDManager (copia, archiviazione, worker...): va nel log
+     * come l'output di IPED ma non nell'avanzamento, per non falsarne
+     * velocita', ETA e metriche.
+     */
+    void log(String line) {
+        countLine();
+        Consumer<String> listener = outputListener;
+        if (listener != null) {
+            listener.accept(line);
+        }
+    }
+
+    private synchronized void countLine() {
+        outputLines++;
+        long now = System.currentTimeMillis();
+        if (lineWindowStart == 0) {
+            lineWindowStart = now;
+        }
+        lineWindowCount++;
+        if (now - lineWindowStart >= LINE_RATE_WINDOW_MS) {
+            linesPerSecond = lineWindowCount * 1000.0 / (now - lineWindowStart);
+            lineWindowStart = now;
+            lineWindowCount = 0;
+        }
+    }
+
+    void setProcess(Process process) {
+        this.process = process;
+        sampler.attach(process);
+        if (cancelRequested && process != null) {
+            ProcessUtils.destroyTree(process, false);
+        }
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * Chiede l'interruzione del job; se IPED e' in esecuzione il processo viene
+     * terminato. I job in coda vanno annullati tramite {@link JobScheduler#cancel}.
+     */
+    void requestCancel() {
+        cancelRequested = true;
+        Process p = process;
+        if (p != null) {
+            ProcessUtils.destroyTree(p, false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + name;
+    }
+}
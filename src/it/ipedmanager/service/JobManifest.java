@@ -0,0 +1,207 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Descrizione di un caso da elaborare senza interfaccia grafica, letta da un
+ * file nello stesso formato chiave = valore dei file di configurazione di IPED:
+ *
+ * <pre>
+ * ipedJar = C:\iped-4.2.2\iped.jar      (opzionale)
+ * java = C:\iped-4.2.2\jre\bin\java.exe (opzionale)
+ * output = D:\Casi\2024-001
+ * profile = forensic                    (opzionale)
+ * evidence.1 = E:\Immagini\pc.E01
+ * evidence.1.dname = PC-01              (opzionali: dname, password,
+ * evidence.2 = E:\Immagini\phone.ufdr    timezone, params)
+ * nogui = true                          (default true; anche continue,
+ * maxMemoryGB = 16                       restart, append, nolog, portable,
+ * extraParams = ...                      addOwner, noPstAttachs,
+ *                                        downloadInternetData, splash)
+ * shards = 3                            (opzionale: elaborazione a blocchi)
+ * </pre>
+ *
+ * I valori non vengono interpretati (niente escape), cosi' i percorsi Windows
+ * si scrivono cosi' come sono.
+ */
+public class JobManifest {
+
+    private static final String EVIDENCE_PREFIX = "evidence.";
+
+    private String ipedJar;
+    private String java;
+    private String output;
+    private String profile;
+    private final List<Evidence> evidences = new ArrayList<>();
+    private final ProcessingOptions options = new ProcessingOptions();
+
+    private JobManifest() {
+    }
+
+    /**
+     * Legge e valida un manifest.
+     *
+     * @throws IllegalArgumentException se il file non e' leggibile o non e'
+     *                                  valido (il messaggio descrive l'errore)
+     */
+    public static JobManifest load(Path file) {
+        PropertiesConfigFile props = new PropertiesConfigFile(file);
+        if (!props.load()) {
+            throw new IllegalArgumentException("Cannot read manifest: " + file);
+        }
+        return parse(props);
+    }
+
+    private static JobManifest parse(PropertiesConfigFile props) {
+        JobManifest m = new JobManifest();
+        m.ipedJar = emptyToNull(props.get("ipedJar"));
+        m.java = emptyToNull(props.get("java"));
+        m.output = emptyToNull(props.get("output"));
+        m.profile = emptyToNull(props.get("profile"));
+
+        if (m.output == null) {
+            throw new IllegalArgumentException("Missing 'output'");
+        }
+
+        // evidence.N in ordine numerico
+        TreeMap<Integer, String> paths = new TreeMap<>();
+        for (String key : props.getKeys()) {
+            if (!key.startsWith(EVIDENCE_PREFIX))
+                continue;
+            String index = key.substring(EVIDENCE_PREFIX.length());
+            if (index.indexOf('.') >= 0)
+                continue; // Attributo di un'evidenza
+            try {
+                paths.put(Integer.parseInt(index), props.get(key));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid evidence key: " + key);
+            }
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("No evidence.N entries");
+        }
+        for (Integer index : paths.keySet()) {
+            File f = new File(paths.get(index));
+            if (!f.exists()) {
+                throw new IllegalArgumentException("Evidence not found: " + f);
+            }
+            String prefix = EVIDENCE_PREFIX + index + ".";
+            Evidence ev = new Evidence(f);
+            String dname = emptyToNull(props.get(prefix + "dname"));
+            if (dname != null) {
+                ev.setDname(dname);
+            }
+            ev.setPassword(props.get(prefix + "password", ""));
+            ev.setTimezone(props.get(prefix + "timezone", ""));
+            ev.setAdditionalCommands(props.get(prefix + "params", ""));
+            m.evidences.add(ev);
+        }
+
+        ProcessingOptions o = m.options;
+        o.continueProcessing = props.getBoolean("continue", false);
+        o.restart = props.getBoolean("restart", false);
+        o.append = props.getBoolean("append", false);
+        // Senza interfaccia grafica IPED non deve aprire la sua finestra di avanzamento
+        o.nogui = props.getBoolean("nogui", true);
+        o.nolog = props.getBoolean("nolog", false);
+        o.portable = props.getBoolean("portable", false);
+        o.addOwner = props.getBoolean("addOwner", false);
+        o.noPstAttachs = props.getBoolean("noPstAttachs", false);
+        o.downloadInternetData = props.getBoolean("downloadInternetData", false);
+        o.maxMemoryGB = props.getInt("maxMemoryGB", 0);
+        o.extraParams = props.get("extraParams", "");
+        o.splashMessage = props.get("splash", "");
+        o.shards = Math.max(0, props.getInt("shards", 0));
+
+        if (o.continueProcessing && o.restart) {
+            throw new IllegalArgumentException("'continue' and 'restart' are mutually exclusive");
+        }
+        return m;
+    }
+
+    /**
+     * Testo del manifest di un caso (senza ipedJar e java: vale l'IPED di chi
+     * lo esegue). Usato per inviare i casi ai worker remoti.
+     */
+    public static String format(List<Evidence> evidences, String output, String profile, ProcessingOptions o) {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "output", output);
+        if (profile != null && !profile.isEmpty()) {
+            line(sb, "profile", profile);
+        }
+        for (int i = 0; i < evidences.size(); i++) {
+            Evidence ev = evidences.get(i);
+            String prefix = EVIDENCE_PREFIX + (i + 1);
+            line(sb, prefix, ev.getFilePath());
+            line(sb, prefix + ".dname", ev.getDname());
+            line(sb, prefix + ".password", ev.getPassword());
+            line(sb, prefix + ".timezone", ev.getTimezone());
+            line(sb, prefix + ".params", ev.getAdditionalCommands());
+        }
+        line(sb, "continue", String.valueOf(o.continueProcessing));
+        line(sb, "restart", String.valueOf(o.restart));
+        line(sb, "append", String.valueOf(o.append));
+        line(sb, "nogui", String.valueOf(o.nogui));
+        line(sb, "nolog", String.valueOf(o.nolog));
+        line(sb, "portable", String.valueOf(o.portable));
+        line(sb, "addOwner", String.valueOf(o.addOwner));
+        line(sb, "noPstAttachs", String.valueOf(o.noPstAttachs));
+        line(sb, "downloadInternetData", String.valueOf(o.downloadInternetData));
+        line(sb, "maxMemoryGB", String.valueOf(o.maxMemoryGB));
+        line(sb, "extraParams", o.extraParams);
+        line(sb, "splash", o.splashMessage);
+        line(sb, "shards", String.valueOf(o.shards));
+        return sb.toString();
+    }
+
+    private static void line(StringBuilder sb, String key, String value) {
+        if (value == null)
+            return;
+        // Il formato non ha escape: gli a capo spezzerebbero la riga
+        sb.append(key).append(" = ").append(value.replace('\r', ' ').replace('\n', ' ')).append('\n');
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.trim().isEmpty() ? null : s.trim();
+    }
+
+    /**
+     * Percorso di iped.jar indicato nel manifest, null se assente.
+     */
+    public String getIpedJar() {
+        return ipedJar;
+    }
+
+    /**
+     * Eseguibile java con cui lanciare IPED, null se assente.
+     */
+    public String getJava() {
+        return java;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public List<Evidence> getEvidences() {
+        return evidences;
+    }
+
+    /**
+     * Opzioni di elaborazione; maxMemoryGB e' 0 se non indicato nel manifest.
+     */
+    public ProcessingOptions getOptions() {
+        return options;
+    }
+}
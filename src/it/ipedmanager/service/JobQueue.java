@@ -0,0 +1,100 @@
+package it.ipedmanager.service;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Coda FIFO dei job in attesa, piu' l'elenco di tutti i job della sessione
+ * (in coda, in esecuzione e terminati). Thread-safe.
+ */
+public class JobQueue {
+
+    private final Deque<Job> pending = new ArrayDeque<>();
+    private final List<Job> all = new ArrayList<>();
+
+    public synchronized void add(Job job) {
+        pending.addLast(job);
+        all.add(job);
+    }
+
+    /**
+     * Primo job in attesa, senza rimuoverlo; null se la coda e' vuota.
+     */
+    public synchronized Job peek() {
+        return pending.peekFirst();
+    }
+
+    /**
+     * Rimuove un job dalla coda d'attesa (resta nell'elenco della sessione).
+     *
+     * @return true se il job era in attesa
+     */
+    public synchronized boolean remove(Job job) {
+        return pending.remove(job);
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Posizione del job nella coda d'attesa (0 = il prossimo), -1 se non in coda.
+     */
+    public synchronized int indexOf(Job job) {
+        int i = 0;
+        for (Job j : pending) {
+            if (j == job)
+                return i;
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Copia dell'elenco dei job della sessione, in ordine di accodamento.
+     */
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(all);
+    }
+
+    /**
+     * Toglie dall'elenco i job terminati, tranne quelli il cui caso e' ancora
+     * in archiviazione (tengono occupata la cartella di output).
+     */
+    public synchronized void clearFinished() {
+        all.removeIf(j -> !holdsOutput(j));
+    }
+
+    /**
+     * Verifica se la cartella di output e' gia' usata da un job non terminato
+     * o da un job concluso il cui caso e' ancora in archiviazione: due processi
+     * IPED sullo stesso caso si corromperebbero a vicenda, e quanto aggiunto
+     * durante la copia andrebbe perso con la cancellazione dell'originale.
+     */
+    public synchronized boolean isOutputInUse(String outputPath) {
+        return isOutputInUse(outputPath, null);
+    }
+
+    /**
+     * Come {@link #isOutputInUse(String)}, ignorando il job {@code except}.
+     */
+    public synchronized boolean isOutputInUse(String outputPath, Job except) {
+        File target = new File(outputPath).getAbsoluteFile();
+        for (Job j : all) {
+            if (j != except && holdsOutput(j) && new File(j.getOutputPath()).getAbsoluteFile().equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean holdsOutput(Job job) {
+        if (!job.getStatus().isFinished())
+            return true;
+        CaseArchiver.Migration m = job.getMigration();
+        return m != null && !m.isFinished();
+    }
+}
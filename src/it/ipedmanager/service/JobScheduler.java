@@ -0,0 +1,330 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.model.RunRecord;
+import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Esegue i job della {@link JobQueue} in ordine di accodamento, uno alla volta
+ * oppure in parallelo entro un budget di job, thread e memoria.
+ * <p>
+ * Un job viene avviato solo se il {@link ResourceGovernor} puo' assegnargli
+ * heap e thread senza superare il budget; altrimenti attende (anche i job
+ * successivi, per non scavalcare i casi grandi). Se non gira nulla il primo
+ * job parte comunque, ridotto al budget. I limiti si leggono da LocalConfig:
+ * <ul>
+ * <li>{@code managerMaxConcurrentJobs}: job contemporanei (default 1)</li>
+ * <li>{@code managerCpuBudget}: thread totali (default 0 = numero di
+ * core)</li>
+ * <li>{@code managerMemoryBudgetGB}: heap totale in GB (default 0 =
+ * calcolato dalla RAM fisica)</li>
+ * </ul>
+ * Con la cache locale attiva ({@link EvidenceStager}) le evidenze del primo
+ * job in coda vengono copiate mentre girano i precedenti. I casi con
+ * {@code shards} nelle opzioni vengono elaborati a blocchi ({@link ShardedRun}),
+ * con la copia di ciascun blocco durante il precedente. Con l'archivio
+ * configurato ({@link CaseArchiver}) i casi conclusi vengono spostati in
+ * background, senza occupare il posto del job: il successivo parte subito.
+ * <p>
+ * Con dei worker configurati ({@link RemoteDispatcher}) i job non girano su
+ * questa macchina ma vengono inviati, appena accodati, al worker meno carico
+ * con un posto libero; il budget locale non si applica.
+ */
+public class JobScheduler {
+
+    public static final String KEY_MAX_CONCURRENT_JOBS = "managerMaxConcurrentJobs";
+    public static final String KEY_CPU_BUDGET = "managerCpuBudget";
+    public static final String KEY_MEMORY_BUDGET_GB = "managerMemoryBudgetGB";
+
+    private final IpedExecutor executor;
+    private final JobQueue queue = new JobQueue();
+    private final List<Job> running = new ArrayList<>();
+    private final List<Consumer<Job>> listeners = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "iped-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ResourceGovernor governor = new ResourceGovernor();
+    private final EvidenceStager stager = new EvidenceStager();
+    private final CaseArchiver archiver = new CaseArchiver();
+    private final RemoteDispatcher remote = new RemoteDispatcher();
+    private Thread dispatcher;
+
+    public JobScheduler(IpedExecutor executor) {
+        this.executor = executor;
+    }
+
+    public JobQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Registra un listener chiamato a ogni cambio di stato di un job. Viene
+     * invocato dai thread dello scheduler, non dall'EDT.
+     */
+    public void addListener(Consumer<Job> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Job> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Accoda un job. Le risorse richieste vengono lette da LocalConfig
+     * (numThreads) e dalle opzioni del job (maxMemoryGB).
+     */
+    public void submit(Job job) {
+        PropertiesConfigFile lc = getLocalConfig();
+        if (lc != null) {
+            job.setResources(lc.getInt("numThreads", Runtime.getRuntime().availableProcessors()),
+                    job.getMemoryGB());
+        }
+        synchronized (this) {
+            queue.add(job);
+            if (dispatcher == null) {
+                dispatcher = new Thread(this::dispatchLoop, "job-scheduler");
+                dispatcher.setDaemon(true);
+                dispatcher.start();
+            }
+            notifyAll();
+        }
+        fireChanged(job);
+    }
+
+    /**
+     * Annulla un job: se e' in coda viene tolto, se e' in esecuzione il processo
+     * IPED viene terminato.
+     */
+    public void cancel(Job job) {
+        boolean removed;
+        synchronized (this) {
+            removed = queue.remove(job);
+            if (removed) {
+                job.setStatus(Job.Status.CANCELLED);
+                notifyAll();
+            }
+        }
+        if (removed) {
+            stager.release(job);
+            fireChanged(job);
+        } else if (job.getStatus() == Job.Status.RUNNING) {
+            job.requestCancel();
+            // Se sta ancora copiando le evidenze IPED non viene avviato
+            stager.release(job);
+        }
+    }
+
+    public synchronized List<Job> getRunningJobs() {
+        return new ArrayList<>(running);
+    }
+
+    /**
+     * Da chiamare dopo aver modificato i limiti in LocalConfig, per avviare
+     * subito i job che ora rientrano nel budget.
+     */
+    public synchronized void limitsChanged() {
+        notifyAll();
+    }
+
+    /**
+     * Vero se non ci sono job in attesa e i job in esecuzione sono meno del
+     * massimo: usato da chi prende i casi da fonti esterne ({@link JobSpool})
+     * per non accumularli in questa coda.
+     */
+    public synchronized boolean hasFreeSlot() {
+        return queue.getPendingCount() == 0 && running.size() < getMaxConcurrentJobs();
+    }
+
+    public int getMaxConcurrentJobs() {
+        PropertiesConfigFile lc = getLocalConfig();
+        return lc != null ? Math.max(1, lc.getInt(KEY_MAX_CONCURRENT_JOBS, 1)) : 1;
+    }
+
+    /**
+     * Budget e risorse in uso (valori coerenti solo sotto il lock dello
+     * scheduler; per la UI sono indicativi).
+     */
+    public ResourceGovernor getGovernor() {
+        return governor;
+    }
+
+    private void configureGovernor() {
+        PropertiesConfigFile lc = getLocalConfig();
+        if (lc != null) {
+            governor.configure(lc.getInt(KEY_MEMORY_BUDGET_GB, 0), lc.getInt(KEY_CPU_BUDGET, 0));
+        } else {
+            governor.configure(0, 0);
+        }
+    }
+
+    private PropertiesConfigFile getLocalConfig() {
+        ConfigManager cm = ConfigManager.getInstance();
+        return cm.isValid() ? cm.getLocalConfig() : null;
+    }
+
+    private synchronized void dispatchLoop() {
+        while (true) {
+            Job next = queue.peek();
+            boolean remoteEnabled = remote.loadSettings(getLocalConfig()).isEnabled();
+            if (next != null && next.getOptions().shards <= 1 && !remoteEnabled) {
+                // La copia locale delle evidenze del prossimo job si sovrappone
+                // all'elaborazione di quelli in corso
+                stager.loadSettings(getLocalConfig()).prefetch(next, next.getEvidences(), next::log);
+            }
+            // I job remoti attendono un worker libero nel proprio thread
+            if (next != null && (remoteEnabled || canAdmit(next))) {
+                queue.remove(next);
+                next.setRemote(remoteEnabled);
+                start(next);
+                continue;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private boolean canAdmit(Job job) {
+        int maxConcurrent = getMaxConcurrentJobs();
+        if (running.size() >= maxConcurrent)
+            return false;
+        configureGovernor();
+        return governor.tryAdmit(job, running.size(), queue.getPendingCount() - 1, maxConcurrent);
+    }
+
+    private void start(Job job) {
+        running.add(job);
+        job.setStatus(Job.Status.RUNNING);
+        workers.execute(() -> run(job));
+    }
+
+    private void run(Job job) {
+        // Cartelle accodate prima che la tabella ne finisse il calcolo
+        FolderSizeCalculator.resolveSizes(job.getEvidences());
+        RunRecord record = RunHistoryStore.startRecord(job.getEvidences(), job.getOutputPath(), job.getProfile(),
+                executor.getIpedJarPath());
+        try {
+            int exitCode;
+            if (job.isRemote()) {
+                exitCode = remote.run(job);
+            } else if (job.getOptions().shards > 1) {
+                exitCode = runSharded(job);
+            } else {
+                List<Evidence> evidences = stager.await(job, job.getEvidences(), job::log);
+                // Annullato durante la copia delle evidenze: IPED non viene avviato
+                exitCode = job.isCancelRequested() ? -1 : runIped(job, evidences, job.getEffectiveOptions());
+            }
+            job.setExitCode(exitCode);
+            if (job.isCancelRequested()) {
+                job.setStatus(Job.Status.CANCELLED);
+            } else {
+                job.setStatus(exitCode == 0 ? Job.Status.COMPLETED : Job.Status.FAILED);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            job.setErrorMessage(e.getMessage());
+            job.setStatus(job.isCancelRequested() ? Job.Status.CANCELLED : Job.Status.FAILED);
+        } finally {
+            stager.release(job);
+            job.getSampler().stop();
+            synchronized (this) {
+                running.remove(job);
+                governor.release(job);
+                notifyAll();
+            }
+        }
+        if (job.getWorker() != null) {
+            record.setHost(job.getWorker());
+        }
+        record.setThreads(job.getEffectiveThreads());
+        record.setMemoryGB(job.getEffectiveMemoryGB());
+        RunHistoryStore.finishRecord(record, job.getStatus().name(), job.getExitCode(), job.getAttempts(),
+                job.getProgress(), job.getSampler().getSamples());
+        RunHistoryStore.getInstance().append(record);
+        fireChanged(job);
+        // I casi remoti li archivia il worker con le sue impostazioni
+        if (job.getStatus() == Job.Status.COMPLETED && job.getWorker() == null) {
+            archive(job, record);
+        }
+    }
+
+    /**
+     * Avvia lo spostamento del caso nell'archivio, se configurato. A
+     * spostamento verificato la nuova posizione viene registrata nello storico.
+     */
+    private void archive(Job job, RunRecord record) {
+        archiver.loadSettings(getLocalConfig());
+        if (!archiver.isEnabled())
+            return;
+        job.setMigration(archiver.submit(Paths.get(job.getOutputPath()), job::log, m -> {
+            if (m.getState() == CaseArchiver.Migration.State.DONE) {
+                record.setArchivePath(m.getTarget().toString());
+                RunHistoryStore.getInstance().update(record);
+            }
+            fireChanged(job);
+        }, () -> queue.isOutputInUse(job.getOutputPath(), job)));
+        fireChanged(job);
+    }
+
+    /**
+     * Elabora il caso a blocchi: i blocchi gia' conclusi in un'esecuzione
+     * precedente vengono saltati.
+     */
+    private int runSharded(Job job) throws Exception {
+        stager.loadSettings(getLocalConfig());
+        ShardedRun sharded = new ShardedRun(job.getEvidences(), job.getOutputPath(), job.getEffectiveOptions(),
+                job.getOptions().shards)
+                .setStager(stager, job)
+                .setCancelled(job::isCancelRequested)
+                .setListener((index, count) -> {
+                    job.setShard(index, count);
+                    fireChanged(job);
+                });
+        return sharded.run((evidences, options) -> runIped(job, evidences, options), job::log);
+    }
+
+    private int runIped(Job job, List<Evidence> evidences, ProcessingOptions options) throws Exception {
+        IpedWatchdog watchdog = new IpedWatchdog(executor)
+                .loadSettings(getLocalConfig())
+                .setCancelled(job::isCancelRequested)
+                .setProcessListener(job::setProcess)
+                .setLogListener(job::log)
+                .setMemoryLimiter(gb -> growMemory(job, gb))
+                .setLaunchListener((cmd, attempt) -> {
+                    job.setCommand(cmd);
+                    job.setAttempts(attempt);
+                    // Notifica prima dell'output, con il comando gia' disponibile
+                    fireChanged(job);
+                });
+        return watchdog.run(evidences, job.getOutputPath(), job.getProfile(), options, job::output);
+    }
+
+    private synchronized int growMemory(Job job, int wantedGB) {
+        return governor.grow(job, wantedGB);
+    }
+
+    private void fireChanged(Job job) {
+        for (Consumer<Job> listener : listeners) {
+            try {
+                listener.accept(job);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
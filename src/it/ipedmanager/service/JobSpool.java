@@ -0,0 +1,506 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.config.PropertiesConfigFile;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Coda di casi su una cartella condivisa: piu' IPEDManager (interfaccia o
+ * {@code --worker --spool}) prendono i casi dalla stessa cartella senza
+ * servizi di rete.
+ *
+ * <pre>
+ * spool/pending/   manifest in attesa ({@link JobManifest})
+ * spool/claimed/   manifest in elaborazione, nome@nodo
+ * spool/done/      manifest conclusi, con nome.result
+ * spool/failed/    manifest falliti, annullati o non validi, con nome.result
+ * </pre>
+ *
+ * Un caso si prende spostandolo da pending a claimed: la rinomina e' atomica,
+ * quindi un solo nodo ci riesce. Finche' lo elabora il nodo aggiorna la data
+ * di modifica del file (heartbeat); se un file in claimed non cambia per la
+ * durata del lease il nodo e' considerato perso e il caso torna in pending,
+ * da riprendere con {@code --continue}. La scadenza si misura con l'orologio
+ * di chi osserva, non con le date del file, e lo stesso vale per l'attesa
+ * dei file appena copiati in pending: orologi non allineati tra le macchine
+ * non contano.
+ * <p>
+ * {@code ipedJar} e {@code java} dei manifest vengono ignorati: vale l'IPED
+ * di ciascun nodo. Impostazioni in LocalConfig:
+ * <ul>
+ * <li>{@code managerSpoolDir}: cartella della coda (vuoto = disattivata)</li>
+ * <li>{@code managerSpoolLeaseSec}: durata del lease (default 300)</li>
+ * </ul>
+ */
+public class JobSpool {
+
+    public static final String KEY_SPOOL_DIR = "managerSpoolDir";
+    public static final String KEY_LEASE_SEC = "managerSpoolLeaseSec";
+
+    public static final String PENDING = "pending";
+    public static final String CLAIMED = "claimed";
+    public static final String DONE = "done";
+    public static final String FAILED = "failed";
+    public static final String RESULT_SUFFIX = ".result";
+
+    private static final String LOG_PREFIX = "[spool] ";
+    private static final String NODE_SEPARATOR = "@";
+    private static final int DEFAULT_LEASE_SEC = 300;
+    private static final long POLL_INTERVAL_MS = 10_000;
+    // File copiati a mano in pending: si aspetta che non cambino per questo tempo
+    private static final long SETTLE_MS = 5_000;
+
+    private final JobScheduler scheduler;
+    private final String node;
+    private volatile Path root;
+    // Cartella fissata da riga di comando invece che da LocalConfig
+    private Path fixedRoot;
+    private volatile long leaseMs = DEFAULT_LEASE_SEC * 1000L;
+    // Casi presi da questo nodo, per job
+    private final Map<Job, Claim> claims = new HashMap<>();
+    // File in claimed di altri nodi: data di modifica e quando e' cambiata l'ultima volta
+    private final Map<String, long[]> observed = new HashMap<>();
+    // File in pending: data di modifica, dimensione e quando sono cambiate l'ultima volta
+    private final Map<String, long[]> pendingSeen = new HashMap<>();
+    private long lastHeartbeat = 0;
+    private Thread thread;
+
+    /**
+     * @param scheduler scheduler a cui passare i casi presi, null per usare la
+     *                  coda solo per accodare ({@link #submit})
+     */
+    public JobSpool(JobScheduler scheduler) {
+        this.scheduler = scheduler;
+        this.node = getNodeName();
+        if (scheduler != null) {
+            scheduler.addListener(this::jobChanged);
+        }
+    }
+
+    /**
+     * Legge le impostazioni da LocalConfig (null = coda disattivata), salvo
+     * cartella fissata con {@link #setRoot}.
+     */
+    public JobSpool loadSettings(PropertiesConfigFile localConfig) {
+        int leaseSec = localConfig != null ? localConfig.getInt(KEY_LEASE_SEC, DEFAULT_LEASE_SEC) : DEFAULT_LEASE_SEC;
+        leaseMs = Math.max(30, leaseSec) * 1000L;
+        if (fixedRoot != null) {
+            root = fixedRoot;
+        } else {
+            String dir = localConfig != null ? localConfig.get(KEY_SPOOL_DIR) : null;
+            root = dir != null && !dir.trim().isEmpty() ? Paths.get(dir.trim()) : null;
+        }
+        return this;
+    }
+
+    /**
+     * Usa la cartella indicata invece di {@code managerSpoolDir}.
+     */
+    public JobSpool setRoot(Path root) {
+        this.fixedRoot = root;
+        this.root = root;
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return root != null;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Avvia il thread che prende i casi quando lo scheduler ha un posto
+     * libero. La cartella viene riletta da LocalConfig a ogni giro.
+     */
+    public synchronized void start() {
+        if (thread != null || scheduler == null)
+            return;
+        thread = new Thread(this::pollLoop, "job-spool");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Accoda un manifest nella cartella pending, scrivendolo prima con un nome
+     * temporaneo perche' nessun nodo lo prenda a meta'.
+     *
+     * @return file accodato
+     */
+    public Path submit(String name, String manifest) throws IOException {
+        Path pending = dir(PENDING);
+        String base = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + "-" + sanitize(name);
+        Path tmp = pending.resolve("." + base + ".tmp");
+        Files.write(tmp, manifest.getBytes(StandardCharsets.UTF_8));
+        for (int i = 1;; i++) {
+            Path target = pending.resolve(i == 1 ? base : base + "-" + i);
+            try {
+                moveNoReplace(tmp, target);
+                return target;
+            } catch (FileAlreadyExistsException e) {
+                // Stesso nome nello stesso millisecondo
+            }
+        }
+    }
+
+    private void pollLoop() {
+        while (true) {
+            try {
+                ConfigManager cm = ConfigManager.getInstance();
+                loadSettings(cm.isValid() ? cm.getLocalConfig() : null);
+                if (isEnabled()) {
+                    poll();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Un giro: heartbeat dei casi presi, recupero di quelli scaduti degli
+     * altri nodi e nuovi casi finche' lo scheduler ha posti liberi.
+     */
+    void poll() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastHeartbeat >= leaseMs / 4) {
+            heartbeat();
+            lastHeartbeat = now;
+        }
+        reclaimExpired();
+        while (scheduler.hasFreeSlot()) {
+            Claim claim = claim();
+            if (claim == null)
+                break;
+            startJob(claim);
+        }
+    }
+
+    /**
+     * Prende il primo manifest in pending (in ordine di nome, cioe' di
+     * accodamento).
+     *
+     * @return null se non ce ne sono
+     */
+    Claim claim() throws IOException {
+        Path pending = dir(PENDING);
+        Path claimed = dir(CLAIMED);
+        List<Path> files = list(pending);
+        long now = System.currentTimeMillis();
+        Set<String> names = new HashSet<>();
+        for (Path file : files) {
+            names.add(file.getFileName().toString());
+        }
+        pendingSeen.keySet().retainAll(names);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+                if (name.startsWith(".") || name.endsWith(".tmp") || !isSettled(file, name, now))
+                    continue;
+                Path target = claimed.resolve(name + NODE_SEPARATOR + node);
+                moveNoReplace(file, target);
+                pendingSeen.remove(name);
+                // Il lease parte da ora
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                return new Claim(name, target);
+            } catch (NoSuchFileException | FileAlreadyExistsException e) {
+                // Preso da un altro nodo
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Vero se data e dimensione del file non cambiano da {@value #SETTLE_MS}
+     * ms, contati dalla prima volta che questo nodo le ha viste.
+     */
+    private boolean isSettled(Path file, String name, long now) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long mtime = attrs.lastModifiedTime().toMillis();
+        long[] state = pendingSeen.get(name);
+        if (state == null || state[0] != mtime || state[1] != attrs.size()) {
+            pendingSeen.put(name, new long[] { mtime, attrs.size(), now });
+            return false;
+        }
+        return now - state[2] >= SETTLE_MS;
+    }
+
+    private void startJob(Claim claim) throws IOException {
+        JobManifest manifest;
+        try {
+            manifest = JobManifest.load(claim.file);
+        } catch (IllegalArgumentException e) {
+            System.err.println(LOG_PREFIX + claim.name + ": " + e.getMessage());
+            finish(claim, FAILED, "INVALID", -1, e.getMessage());
+            return;
+        }
+        if (scheduler.getQueue().isOutputInUse(manifest.getOutput())) {
+            finish(claim, FAILED, "INVALID", -1, "output already in use on " + node);
+            return;
+        }
+        IpedExecutor.ProcessingOptions options = manifest.getOptions();
+        if (options.maxMemoryGB <= 0) {
+            // Come l'interfaccia: memoria da LocalConfig di questa macchina
+            ConfigManager cm = ConfigManager.getInstance();
+            PropertiesConfigFile lc = cm.isValid() ? cm.getLocalConfig() : null;
+            options.maxMemoryGB = lc != null ? lc.getInt("maxMemoryGB", 8) : 8;
+        }
+        Job job = new Job(manifest.getEvidences(), manifest.getOutput(), manifest.getProfile(), options);
+        synchronized (claims) {
+            claims.put(job, claim);
+        }
+        job.log(LOG_PREFIX + "claimed " + claim.name + " from " + root + " as " + node);
+        System.out.println(LOG_PREFIX + "claimed " + claim.name + " -> " + manifest.getOutput());
+        scheduler.submit(job);
+    }
+
+    private void jobChanged(Job job) {
+        if (!job.getStatus().isFinished())
+            return;
+        Claim claim;
+        synchronized (claims) {
+            claim = claims.remove(job);
+        }
+        if (claim == null)
+            return;
+        try {
+            finish(claim, job.getStatus() == Job.Status.COMPLETED ? DONE : FAILED, job.getStatus().name(),
+                    job.getExitCode(), job.getErrorMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sposta il manifest in done o failed con accanto il file .result.
+     */
+    private void finish(Claim claim, String folder, String status, int exitCode, String error) throws IOException {
+        Path target = dir(folder);
+        Properties result = new Properties();
+        result.setProperty("status", status);
+        result.setProperty("exitCode", String.valueOf(exitCode));
+        result.setProperty("node", node);
+        result.setProperty("claimed", String.valueOf(claim.claimTime));
+        result.setProperty("finished", String.valueOf(System.currentTimeMillis()));
+        if (error != null) {
+            result.setProperty("error", error);
+        }
+        for (int i = 1;; i++) {
+            String name = i == 1 ? claim.name : claim.name + "-" + i;
+            Path file = target.resolve(name);
+            try {
+                moveNoReplace(claim.file, file);
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            } catch (NoSuchFileException e) {
+                System.err.println(LOG_PREFIX + claim.name + ": lease lost, result not recorded");
+                return;
+            }
+            try (OutputStream out = Files.newOutputStream(target.resolve(name + RESULT_SUFFIX))) {
+                result.store(out, "IPEDManager spool result");
+            }
+            return;
+        }
+    }
+
+    /**
+     * Aggiorna la data dei casi presi. Un caso che nel frattempo e' stato
+     * recuperato da un altro nodo (es. rete assente per piu' del lease) viene
+     * annullato, per non avere due IPED sullo stesso caso.
+     */
+    private void heartbeat() {
+        List<Job> lost = new ArrayList<>();
+        synchronized (claims) {
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            for (Map.Entry<Job, Claim> e : claims.entrySet()) {
+                try {
+                    Files.setLastModifiedTime(e.getValue().file, now);
+                } catch (NoSuchFileException ex) {
+                    lost.add(e.getKey());
+                } catch (IOException ex) {
+                    // Share non raggiungibile: si riprova al prossimo giro
+                    System.err.println(LOG_PREFIX + "heartbeat failed: " + ex.getMessage());
+                }
+            }
+            for (Job job : lost) {
+                claims.remove(job);
+            }
+        }
+        for (Job job : lost) {
+            job.log(LOG_PREFIX + "lease lost, the case was taken over by another node: cancelling");
+            scheduler.cancel(job);
+        }
+    }
+
+    /**
+     * Rimette in pending i casi di altri nodi fermi da piu' del lease.
+     */
+    void reclaimExpired() throws IOException {
+        Path claimed = dir(CLAIMED);
+        long now = System.currentTimeMillis();
+        Map<String, long[]> seen = new HashMap<>();
+        for (Path file : list(claimed)) {
+            String name = file.getFileName().toString();
+            int sep = name.lastIndexOf(NODE_SEPARATOR);
+            if (sep <= 0 || name.substring(sep + 1).equals(node))
+                continue;
+            long mtime;
+            try {
+                mtime = Files.getLastModifiedTime(file).toMillis();
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            long[] state = observed.get(name);
+            if (state == null || state[0] != mtime) {
+                state = new long[] { mtime, now };
+            }
+            seen.put(name, state);
+            if (now - state[1] >= leaseMs) {
+                reclaim(file, name.substring(0, sep), name.substring(sep + 1));
+                seen.remove(name);
+            }
+        }
+        observed.clear();
+        observed.putAll(seen);
+    }
+
+    private void reclaim(Path file, String name, String deadNode) throws IOException {
+        // Prima lo si prende (un solo nodo ci riesce), poi lo si rimette in coda
+        Path mine = file.resolveSibling(name + NODE_SEPARATOR + node);
+        try {
+            moveNoReplace(file, mine);
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            return;
+        }
+        try {
+            markResume(mine);
+        } catch (IOException e) {
+            System.err.println(LOG_PREFIX + name + ": cannot mark for resume: " + e.getMessage());
+        }
+        Path target = dir(PENDING).resolve(name);
+        for (int i = 2; Files.exists(target); i++) {
+            target = dir(PENDING).resolve(name + "-" + i);
+        }
+        Files.move(mine, target, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println(LOG_PREFIX + name + ": lease of " + deadNode + " expired, back in the queue");
+    }
+
+    /**
+     * Fa riprendere il caso con {@code --continue} se IPED ha gia' creato il
+     * caso nella destinazione. I casi a blocchi si riprendono da soli
+     * ({@link ShardedRun}).
+     */
+    private static void markResume(Path manifestFile) throws IOException {
+        PropertiesConfigFile props = new PropertiesConfigFile(manifestFile);
+        if (!props.load())
+            return;
+        String output = props.get("output");
+        if (output == null || props.getInt("shards", 0) > 1 || !Files.isDirectory(Paths.get(output.trim(), "iped")))
+            return;
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+            String key = line.indexOf('=') > 0 ? line.substring(0, line.indexOf('=')).trim() : "";
+            if (!key.equals("continue") && !key.equals("restart") && !key.equals("append")) {
+                lines.add(line);
+            }
+        }
+        lines.add("continue = true");
+        Path tmp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path dir(String name) throws IOException {
+        Path root = this.root;
+        if (root == null)
+            throw new IOException("Spool folder not configured");
+        return Files.createDirectories(root.resolve(name));
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (Files.isRegularFile(p)) {
+                    files.add(p);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Rinomina atomica che fallisce se la destinazione esiste: ATOMIC_MOVE da
+     * sola potrebbe sovrascriverla.
+     */
+    private static void moveNoReplace(Path source, Path target) throws IOException {
+        if (Files.exists(target))
+            throw new FileAlreadyExistsException(target.toString());
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String sanitize(String name) {
+        String s = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return s.isEmpty() ? "case" : s;
+    }
+
+    /**
+     * Nome del nodo: host e pid, cosi' due istanze sulla stessa macchina non si
+     * confondono.
+     */
+    private static String getNodeName() {
+        // "pid@host"
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        String node = at > 0 ? name.substring(at + 1) + "-" + name.substring(0, at) : name;
+        return sanitize(node).replace(NODE_SEPARATOR, "_");
+    }
+
+    /**
+     * Caso preso da questo nodo.
+     */
+    static class Claim {
+
+        final String name;
+        final Path file;
+        final long claimTime = System.currentTimeMillis();
+
+        Claim(String name, Path file) {
+            this.name = name;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package it.ipedmanager.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Buffer circolare lock-free tra il thread che legge l'output di IPED e la UI.
+ * <p>
+ * Piu' produttori possono inserire righe senza lock; un singolo consumatore
+ * (il timer della UI) le preleva a blocchi. Quando il buffer e' pieno la riga
+ * viene scartata e contata ({@link OverflowPolicy#DROP}) oppure il produttore
+ * attende che si liberi spazio ({@link OverflowPolicy#BLOCK}).
+ */
+public class LogRingBuffer {
+
+    public enum OverflowPolicy {
+        DROP, BLOCK
+    }
+
+    private static final long RATE_WINDOW_MS = 1000;
+
+    private final String[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final OverflowPolicy policy;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0; // Scritto solo dal consumatore
+
+    private final LongAdder totalLines = new LongAdder();
+    private final LongAdder droppedLines = new LongAdder();
+
+    // Statistiche calcolate dal consumatore
+    private volatile double linesPerSecond = 0;
+    private long rateWindowStart = System.currentTimeMillis();
+    private long rateWindowLines = 0;
+
+    /**
+     * @param capacity numero massimo di righe in coda (arrotondato alla potenza di
+     *                 2 successiva)
+     */
+    public LogRingBuffer(int capacity, OverflowPolicy policy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.buffer = new String[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * Inserisce una riga. Con policy DROP restituisce false se il buffer e' pieno
+     * (la riga viene contata come scartata).
+     */
+    public boolean offer(String line) {
+        while (true) {
+            long pos = tail.get();
+            int idx = (int) (pos & mask);
+            long dif = sequences.get(idx) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[idx] = line;
+                    sequences.lazySet(idx, pos + 1);
+                    totalLines.increment();
+                    return true;
+                }
+            } else if (dif < 0) {
+                // Buffer pieno
+                if (policy == OverflowPolicy.DROP) {
+                    droppedLines.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(1_000_000L);
+                if (Thread.currentThread().isInterrupted()) {
+                    droppedLines.increment();
+                    return false;
+                }
+            }
+            // dif > 0: un altro produttore ha preso la posizione, riprova
+        }
+    }
+
+    /**
+     * Preleva fino a maxLines righe passandole al consumer. Da chiamare sempre
+     * dallo stesso thread.
+     *
+     * @return numero di righe prelevate
+     */
+    public int drain(Consumer<String> consumer, int maxLines) {
+        int count = 0;
+        long pos = head;
+        while (count < maxLines) {
+            int idx = (int) (pos & mask);
+            if (sequences.get(idx) != pos + 1)
+                break; // Vuoto (o scrittura non ancora completata)
+            String line = buffer[idx];
+            buffer[idx] = null;
+            sequences.lazySet(idx, pos + mask + 1);
+            pos++;
+            count++;
+            consumer.accept(line);
+        }
+        head = pos;
+        updateRate(count);
+        return count;
+    }
+
+    private void updateRate(int drained) {
+        rateWindowLines += drained;
+        long now = System.currentTimeMillis();
+        long elapsed = now - rateWindowStart;
+        if (elapsed >= RATE_WINDOW_MS) {
+            linesPerSecond = rateWindowLines * 1000.0 / elapsed;
+            rateWindowLines = 0;
+            rateWindowStart = now;
+        }
+    }
+
+    /**
+     * Righe in attesa di essere prelevate.
+     */
+    public int getQueueDepth() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    public long getTotalLines() {
+        return totalLines.sum();
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.sum();
+    }
+
+    /**
+     * Righe al secondo consegnate alla UI (media sull'ultimo secondo).
+     */
+    public double getLinesPerSecond() {
+        return linesPerSecond;
+    }
+}
@@ -0,0 +1,310 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.utils.ProcessUtils;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Campiona ogni secondo l'uso di risorse del processo IPED e dei suoi
+ * discendenti (la JVM di elaborazione e i parser esterni) leggendo
+ * {@code /proc/<pid>/stat}, {@code status} e {@code io}.
+ * <p>
+ * I valori, sommati su tutto l'albero, finiscono in un {@link SampleRing}:
+ * CPU alta con poco I/O indica un caso CPU-bound (aumentare numThreads se ci
+ * sono core liberi), CPU bassa con I/O o attesa disco alti un caso I/O-bound
+ * (ridurre numImageReaders o spostare i temporanei), page fault maggiori e
+ * swap in crescita indicano che la memoria non basta.
+ * <p>
+ * Solo Linux: altrove {@link #isSupported()} e' false e {@link #attach} non fa
+ * nulla. I contatori non leggibili (es. {@code io} di processi di altri
+ * utenti) valgono 0.
+ */
+public class ProcessSampler {
+
+    public static final int CPU_PERCENT = 0; // % di un core (800 = 8 core)
+    public static final int RSS_BYTES = 1;
+    public static final int SWAP_BYTES = 2;
+    public static final int READ_BYTES_PER_SEC = 3;
+    public static final int WRITE_BYTES_PER_SEC = 4;
+    public static final int MAJOR_FAULTS_PER_SEC = 5;
+    public static final int THREADS = 6;
+    public static final int IO_WAIT_PERCENT = 7; // richiede il delay accounting del kernel
+    public static final int METRICS = 8;
+
+    private static final int INTERVAL_MS = 1000;
+    // Il PID dei discendenti cambia di rado: l'elenco viene aggiornato ogni 5 campioni
+    private static final int DESCENDANTS_REFRESH = 5;
+    // USER_HZ: 100 su tutte le architetture Linux comuni
+    private static final double CLOCK_TICKS = 100.0;
+
+    // Contatori cumulativi per processo
+    private static final int C_CPU_TICKS = 0;
+    private static final int C_READ = 1;
+    private static final int C_WRITE = 2;
+    private static final int C_MAJFLT = 3;
+    private static final int C_BLKIO_TICKS = 4;
+    private static final int COUNTERS = 5;
+
+    private static final boolean SUPPORTED = new File("/proc/self/stat").canRead();
+
+    private final SampleRing ring;
+    private final byte[] buf = new byte[16384];
+    private final double[] sample = new double[METRICS];
+    private final long[] counters = new long[COUNTERS];
+    private final long[] delta = new long[COUNTERS];
+    private final long[] gauges = new long[3]; // rss, swap, thread
+    private final Map<Long, long[]> previous = new HashMap<>();
+    private final Set<Long> seen = new HashSet<>();
+
+    private volatile Process process;
+    private Thread thread;
+    private long[] pids = new long[0];
+    private long lastSampleTime;
+    private int samplesSinceRefresh;
+
+    /**
+     * @param capacity campioni conservati (secondi di storia)
+     */
+    public ProcessSampler(int capacity) {
+        this.ring = new SampleRing(capacity, METRICS);
+    }
+
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    public SampleRing getSamples() {
+        return ring;
+    }
+
+    /**
+     * Inizia a campionare un processo. Chiamato di nuovo (ripresa dopo un crash)
+     * prosegue la stessa serie con il nuovo processo.
+     */
+    public synchronized void attach(Process process) {
+        if (!SUPPORTED || process == null)
+            return;
+        this.process = process;
+        if (thread == null) {
+            thread = new Thread(this::loop, "process-sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        process = null;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void loop() {
+        Process current = null;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Process p = process;
+                if (p != current) {
+                    // Nuovo processo: i contatori ripartono da zero
+                    current = p;
+                    previous.clear();
+                    samplesSinceRefresh = DESCENDANTS_REFRESH;
+                    lastSampleTime = 0;
+                }
+                if (p != null && p.isAlive()) {
+                    sample(p);
+                }
+                Thread.sleep(INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            // Fermato
+        }
+    }
+
+    private void sample(Process p) {
+        if (samplesSinceRefresh++ >= DESCENDANTS_REFRESH) {
+            samplesSinceRefresh = 1;
+            List<Long> descendants = ProcessUtils.getDescendantPids(p);
+            long root = ProcessUtils.getPid(p);
+            pids = new long[descendants.size() + 1];
+            pids[0] = root;
+            for (int i = 0; i < descendants.size(); i++) {
+                pids[i + 1] = descendants.get(i);
+            }
+        }
+        if (pids.length == 0 || pids[0] < 0)
+            return;
+
+        long now = System.nanoTime();
+        double elapsedSec = lastSampleTime > 0 ? (now - lastSampleTime) / 1e9 : 0;
+        lastSampleTime = now;
+
+        Arrays.fill(delta, 0);
+        long rss = 0, swap = 0, threads = 0;
+        seen.clear();
+        for (long pid : pids) {
+            if (!readProcess(pid))
+                continue;
+            rss += gauges[0];
+            swap += gauges[1];
+            threads += gauges[2];
+
+            // Delta solo per i processi gia' visti: un processo terminato non
+            // fa scendere i totali, uno nuovo conta dal campione successivo
+            long[] prev = previous.get(pid);
+            if (prev == null) {
+                prev = new long[COUNTERS];
+                previous.put(pid, prev);
+            } else {
+                for (int c = 0; c < COUNTERS; c++) {
+                    delta[c] += Math.max(0, counters[c] - prev[c]);
+                }
+            }
+            System.arraycopy(counters, 0, prev, 0, COUNTERS);
+            seen.add(pid);
+        }
+        previous.keySet().retainAll(seen);
+        if (elapsedSec <= 0)
+            return; // Primo campione: solo i valori di riferimento
+
+        sample[CPU_PERCENT] = delta[C_CPU_TICKS] / CLOCK_TICKS / elapsedSec * 100;
+        sample[RSS_BYTES] = rss;
+        sample[SWAP_BYTES] = swap;
+        sample[READ_BYTES_PER_SEC] = delta[C_READ] / elapsedSec;
+        sample[WRITE_BYTES_PER_SEC] = delta[C_WRITE] / elapsedSec;
+        sample[MAJOR_FAULTS_PER_SEC] = delta[C_MAJFLT] / elapsedSec;
+        sample[THREADS] = threads;
+        sample[IO_WAIT_PERCENT] = delta[C_BLKIO_TICKS] / CLOCK_TICKS / elapsedSec * 100;
+        ring.add(System.currentTimeMillis(), sample);
+    }
+
+    /**
+     * Legge i contatori di un processo in {@link #counters} e {@link #gauges}.
+     *
+     * @return false se il processo non esiste piu'
+     */
+    private boolean readProcess(long pid) {
+        String dir = "/proc/" + pid + "/";
+        int len = read(dir + "stat");
+        if (len <= 0)
+            return false;
+
+        // Il nome (campo 2) puo' contenere spazi e parentesi: si parte dall'ultima ')'
+        int pos = len - 1;
+        while (pos > 0 && buf[pos] != ')') {
+            pos--;
+        }
+        // Campi dal 3 (stato) in poi; numerazione come in proc(5)
+        int field = 3;
+        pos += 2;
+        long utime = 0, stime = 0, majflt = 0, threads = 0, blkio = 0;
+        while (pos < len && field <= 42) {
+            int end = pos;
+            while (end < len && buf[end] != ' ') {
+                end++;
+            }
+            switch (field) {
+                case 12:
+                    majflt = parseLong(pos, end);
+                    break;
+                case 14:
+                    utime = parseLong(pos, end);
+                    break;
+                case 15:
+                    stime = parseLong(pos, end);
+                    break;
+                case 20:
+                    threads = parseLong(pos, end);
+                    break;
+                case 42:
+                    blkio = parseLong(pos, end);
+                    break;
+                default:
+                    break;
+            }
+            field++;
+            pos = end + 1;
+        }
+        counters[C_CPU_TICKS] = utime + stime;
+        counters[C_MAJFLT] = majflt;
+        counters[C_BLKIO_TICKS] = blkio;
+        gauges[2] = threads;
+
+        len = read(dir + "status");
+        gauges[0] = findValue(len, "VmRSS:") * 1024;
+        gauges[1] = findValue(len, "VmSwap:") * 1024;
+
+        // io e' leggibile solo per i processi dello stesso utente
+        len = read(dir + "io");
+        counters[C_READ] = findValue(len, "read_bytes:");
+        counters[C_WRITE] = findValue(len, "write_bytes:");
+        return true;
+    }
+
+    /**
+     * Legge un file di /proc nel buffer riutilizzato.
+     *
+     * @return byte letti, -1 se il file non e' leggibile
+     */
+    private int read(String path) {
+        try (FileInputStream in = new FileInputStream(path)) {
+            int total = 0;
+            int n;
+            while (total < buf.length && (n = in.read(buf, total, buf.length - total)) > 0) {
+                total += n;
+            }
+            return total;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Valore numerico della riga "chiave: valore" (status, io), 0 se assente.
+     */
+    private long findValue(int len, String key) {
+        int keyLen = key.length();
+        int lineStart = 0;
+        while (lineStart < len) {
+            boolean match = lineStart + keyLen <= len;
+            for (int i = 0; match && i < keyLen; i++) {
+                match = buf[lineStart + i] == key.charAt(i);
+            }
+            if (match) {
+                int pos = lineStart + keyLen;
+                while (pos < len && (buf[pos] == ' ' || buf[pos] == '\t')) {
+                    pos++;
+                }
+                int end = pos;
+                while (end < len && buf[end] >= '0' && buf[end] <= '9') {
+                    end++;
+                }
+                return parseLong(pos, end);
+            }
+            while (lineStart < len && buf[lineStart] != '\n') {
+                lineStart++;
+            }
+            lineStart++;
+        }
+        return 0;
+    }
+
+    private long parseLong(int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9')
+                break;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,204 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Invio dei job in coda ai {@link WorkerAgent} di altre macchine.
+ * <p>
+ * Ogni job va al worker meno carico con un posto libero (job in esecuzione e
+ * in coda rispetto ai suoi slot; a parita', quello con piu' core); se sono
+ * tutti occupati il job attende, nell'ordine della coda. L'output del worker
+ * viene ritrasmesso al job locale, cosi' monitor e avanzamento funzionano come
+ * per le elaborazioni locali. Impostazioni in LocalConfig:
+ * <ul>
+ * <li>{@code managerWorkers}: worker separati da virgola, host[:porta]
+ * (vuoto = elaborazione locale)</li>
+ * <li>{@code managerWorkerToken}: token dei worker</li>
+ * </ul>
+ */
+public class RemoteDispatcher {
+
+    public static final String KEY_WORKERS = "managerWorkers";
+    public static final String KEY_WORKER_TOKEN = "managerWorkerToken";
+
+    private static final String LOG_PREFIX = "[remote] ";
+    private static final long POLL_INTERVAL_MS = 1000;
+    private static final long WAIT_INTERVAL_MS = 5000;
+    // Oltre questo tempo senza risposte il worker e' considerato perso
+    private static final long UNREACHABLE_TIMEOUT_MS = 5 * 60_000L;
+    // Messaggi dell'IPEDManager del worker, da non passare all'avanzamento
+    private static final Pattern MANAGER_LINE = Pattern.compile(
+            "\\[(watchdog|staging|remote|spool|shards|archive)\\] ");
+
+    private volatile List<WorkerClient> workers = new ArrayList<>();
+    // I job in attesa di un worker vengono serviti in ordine di arrivo
+    private final ReentrantLock dispatchLock = new ReentrantLock(true);
+
+    /**
+     * Legge le impostazioni da LocalConfig (null = nessun worker).
+     */
+    public RemoteDispatcher loadSettings(PropertiesConfigFile localConfig) {
+        String list = localConfig != null ? localConfig.get(KEY_WORKERS) : null;
+        String token = localConfig != null ? localConfig.get(KEY_WORKER_TOKEN) : null;
+        List<WorkerClient> clients = new ArrayList<>();
+        if (list != null) {
+            for (String address : list.split(",")) {
+                if (!address.trim().isEmpty()) {
+                    clients.add(new WorkerClient(address, token));
+                }
+            }
+        }
+        workers = clients;
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return !workers.isEmpty();
+    }
+
+    /**
+     * Worker meno carico con almeno un posto libero, null se sono tutti
+     * occupati o irraggiungibili.
+     *
+     * @param secureOnly solo worker in HTTPS o locali (casi con password)
+     */
+    WorkerClient pickWorker(Consumer<String> log, boolean secureOnly) {
+        WorkerClient best = null;
+        double bestLoad = Double.MAX_VALUE;
+        int bestCores = 0;
+        for (WorkerClient w : workers) {
+            if (secureOnly && !w.isSecure())
+                continue;
+            try {
+                Map<String, String> s = w.getStatus();
+                int slots = Math.max(1, parseInt(s.get("slots")));
+                int busy = parseInt(s.get("running")) + parseInt(s.get("queued"));
+                int cores = parseInt(s.get("cores"));
+                if (busy >= slots)
+                    continue;
+                double load = (double) busy / slots;
+                if (load < bestLoad || (load == bestLoad && cores > bestCores)) {
+                    best = w;
+                    bestLoad = load;
+                    bestCores = cores;
+                }
+            } catch (IOException e) {
+                log.accept(LOG_PREFIX + "worker " + w + " unreachable: " + e.getMessage());
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Elabora il job su un worker: attende un posto libero, invia il caso e ne
+     * segue l'output fino alla fine.
+     *
+     * @return exit code di IPED sul worker (-1 se annullato)
+     */
+    int run(Job job) throws Exception {
+        // Le password delle evidenze non viaggiano in chiaro sulla rete
+        boolean secureOnly = hasPasswords(job.getEvidences());
+        if (secureOnly && workers.stream().noneMatch(WorkerClient::isSecure))
+            throw new IOException("the case has evidence passwords and no worker uses HTTPS: "
+                    + "not sending them in cleartext");
+        WorkerClient worker;
+        int remoteId;
+        dispatchLock.lockInterruptibly();
+        try {
+            boolean announced = false;
+            while (true) {
+                if (job.isCancelRequested())
+                    return -1;
+                worker = pickWorker(job::log, secureOnly);
+                if (worker != null)
+                    break;
+                if (!announced) {
+                    job.log(LOG_PREFIX + "all workers busy, waiting for a free one");
+                    announced = true;
+                }
+                Thread.sleep(WAIT_INTERVAL_MS);
+            }
+            // Memoria e thread li decide il worker in base al suo LocalConfig
+            ProcessingOptions options = job.getOptions().copy();
+            options.maxMemoryGB = 0;
+            options.maxThreads = 0;
+            remoteId = worker.submit(JobManifest.format(job.getEvidences(), job.getOutputPath(), job.getProfile(),
+                    options));
+        } finally {
+            dispatchLock.unlock();
+        }
+        job.setWorker(worker.getAddress());
+        job.log(LOG_PREFIX + "sent to " + worker + " as job #" + remoteId);
+        return follow(job, worker, remoteId);
+    }
+
+    private int follow(Job job, WorkerClient worker, int remoteId) throws Exception {
+        long nextLine = 0;
+        long lastContact = System.currentTimeMillis();
+        boolean cancelSent = false;
+        Consumer<String> relay = line -> {
+            if (MANAGER_LINE.matcher(line).lookingAt()) {
+                job.log(line);
+            } else {
+                job.output(line);
+            }
+        };
+        while (true) {
+            try {
+                if (job.isCancelRequested() && !cancelSent) {
+                    worker.cancel(remoteId);
+                    cancelSent = true;
+                }
+                nextLine = worker.readLog(remoteId, nextLine, relay);
+                Map<String, String> status = worker.getJob(remoteId);
+                lastContact = System.currentTimeMillis();
+                String name = status.get("status");
+                if (name == null)
+                    throw new IOException("invalid response from " + worker);
+                Job.Status s = Job.Status.valueOf(name);
+                job.setAttempts(Math.max(1, parseInt(status.get("attempts"))));
+                if (s.isFinished()) {
+                    // Ultime righe scritte prima della fine
+                    worker.readLog(remoteId, nextLine, relay);
+                    if (status.get("error") != null && !status.get("error").isEmpty()) {
+                        job.setErrorMessage(status.get("error"));
+                    }
+                    if (s == Job.Status.COMPLETED)
+                        return 0;
+                    int exitCode = parseInt(status.get("exitCode"));
+                    return exitCode != 0 ? exitCode : -1;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                if (System.currentTimeMillis() - lastContact > UNREACHABLE_TIMEOUT_MS) {
+                    throw new IOException("worker " + worker + " unreachable: " + e.getMessage(), e);
+                }
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private static boolean hasPasswords(List<Evidence> evidences) {
+        for (Evidence ev : evidences) {
+            if (ev.getPassword() != null && !ev.getPassword().isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value.trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
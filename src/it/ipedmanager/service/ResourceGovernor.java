@@ -0,0 +1,188 @@
+package it.ipedmanager.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Ripartisce RAM fisica e core tra i processi IPED in esecuzione.
+ * <p>
+ * Il budget di heap e' la RAM fisica meno una riserva per sistema operativo,
+ * IPEDManager e memoria non-heap dei processi IPED; il budget di thread e' il
+ * numero di core. Entrambi possono essere forzati da LocalConfig
+ * ({@code managerMemoryBudgetGB}, {@code managerCpuBudget}).
+ * <p>
+ * La quota equa di un job e' il budget diviso per i job contemporanei
+ * consentiti. Se altri job sono in esecuzione o in attesa, ogni job riceve al
+ * massimo la sua quota (IPED non puo' ridimensionarsi dopo l'avvio); da solo
+ * riceve quanto richiesto. Un job viene trattenuto in coda se non puo'
+ * ottenere almeno la sua quota, cosi' i processi insieme non superano mai la
+ * macchina. Non thread-safe: usato sotto il lock dello
+ * scheduler.
+ */
+public class ResourceGovernor {
+
+    private static final long GB = 1024L * 1024 * 1024;
+    // Riserva per SO e IPEDManager: il 15% della RAM, almeno 2 GB
+    private static final double RESERVE_FRACTION = 0.15;
+    private static final int MIN_RESERVE_GB = 2;
+    // Ogni JVM IPED usa oltre all'heap metaspace, buffer nativi e parser esterni
+    private static final double NON_HEAP_OVERHEAD = 1.25;
+    private static final int MIN_HEAP_GB = 1;
+
+    private final int physicalMemoryGB;
+    private final int cores;
+
+    private int memoryBudgetGB;
+    private int threadBudget;
+    private int usedMemoryGB = 0;
+    private int usedThreads = 0;
+
+    public ResourceGovernor() {
+        this(detectPhysicalMemoryGB(), Runtime.getRuntime().availableProcessors());
+    }
+
+    ResourceGovernor(int physicalMemoryGB, int cores) {
+        this.physicalMemoryGB = physicalMemoryGB;
+        this.cores = cores;
+        configure(0, 0);
+    }
+
+    /**
+     * Imposta i budget; 0 = automatico (da RAM fisica e numero di core).
+     */
+    public void configure(int memoryBudgetGB, int threadBudget) {
+        this.memoryBudgetGB = memoryBudgetGB > 0 ? memoryBudgetGB : getAutomaticMemoryBudgetGB();
+        this.threadBudget = threadBudget > 0 ? threadBudget : cores;
+    }
+
+    /**
+     * Heap totale assegnabile ai processi IPED in base alla RAM fisica.
+     */
+    public int getAutomaticMemoryBudgetGB() {
+        if (physicalMemoryGB <= 0) {
+            return 0; // RAM non rilevabile: nessun limite
+        }
+        int reserve = Math.max(MIN_RESERVE_GB, (int) Math.ceil(physicalMemoryGB * RESERVE_FRACTION));
+        return Math.max(MIN_HEAP_GB, (int) ((physicalMemoryGB - reserve) / NON_HEAP_OVERHEAD));
+    }
+
+    /**
+     * Tenta di riservare le risorse per un job. Se riesce imposta su di esso
+     * heap e thread effettivi.
+     *
+     * @param runningJobs   job gia' in esecuzione
+     * @param waitingJobs   altri job in coda dopo questo
+     * @param maxConcurrent job contemporanei consentiti (per la quota equa)
+     * @return true se il job puo' partire
+     */
+    public boolean tryAdmit(Job job, int runningJobs, int waitingJobs, int maxConcurrent) {
+        int shares = Math.max(1, maxConcurrent);
+        boolean shared = shares > 1 && (runningJobs > 0 || waitingJobs > 0);
+        int requestedThreads = job.getThreads();
+        // Senza -Xmx esplicito il job riceve la quota equa
+        int requestedMemory = job.getMemoryGB() > 0 ? job.getMemoryGB() : memoryBudgetGB / shares;
+
+        int threads = grant(requestedThreads, threadBudget, usedThreads, shares, 1, shared);
+        int memory = memoryBudgetGB > 0
+                ? grant(requestedMemory, memoryBudgetGB, usedMemoryGB, shares, MIN_HEAP_GB, shared)
+                : requestedMemory;
+        if (runningJobs > 0 && (threads <= 0 || (memoryBudgetGB > 0 && memory <= 0)))
+            return false;
+
+        // Con la macchina libera il job parte comunque, ridotto al budget
+        if (threads <= 0) {
+            threads = Math.max(1, Math.min(requestedThreads, threadBudget));
+        }
+        if (memoryBudgetGB > 0 && memory <= 0) {
+            memory = Math.max(MIN_HEAP_GB, Math.min(requestedMemory, memoryBudgetGB));
+        }
+
+        job.setEffectiveResources(threads, memory);
+        usedThreads += threads;
+        usedMemoryGB += memory;
+        return true;
+    }
+
+    /**
+     * Quantita' assegnabile: la richiesta ridotta a quanto resta (e alla quota
+     * equa se la macchina e' condivisa), purche' non scenda sotto la quota equa
+     * o la richiesta, se minore. 0 = non assegnabile ora.
+     */
+    private static int grant(int requested, int budget, int used, int shares, int minimum, boolean shared) {
+        int free = budget - used;
+        int fairShare = Math.max(minimum, budget / shares);
+        int needed = Math.min(requested, fairShare);
+        if (free < needed)
+            return 0;
+        int granted = Math.min(requested, free);
+        return shared ? Math.min(granted, fairShare) : granted;
+    }
+
+    /**
+     * Aumenta l'heap di un job in esecuzione (ripresa dopo un
+     * OutOfMemoryError), nei limiti della memoria libera.
+     *
+     * @return heap effettivo del job dopo l'aumento
+     */
+    public int grow(Job job, int wantedGB) {
+        int current = job.getEffectiveMemoryGB();
+        if (wantedGB <= current)
+            return current;
+        int granted = wantedGB;
+        if (memoryBudgetGB > 0) {
+            int free = memoryBudgetGB - usedMemoryGB;
+            granted = current + Math.max(0, Math.min(wantedGB - current, free));
+        }
+        usedMemoryGB += granted - current;
+        job.setEffectiveResources(job.getEffectiveThreads(), granted);
+        return granted;
+    }
+
+    /**
+     * Restituisce al budget le risorse di un job terminato.
+     */
+    public void release(Job job) {
+        usedThreads = Math.max(0, usedThreads - job.getEffectiveThreads());
+        usedMemoryGB = Math.max(0, usedMemoryGB - job.getEffectiveMemoryGB());
+    }
+
+    public int getPhysicalMemoryGB() {
+        return physicalMemoryGB;
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public int getMemoryBudgetGB() {
+        return memoryBudgetGB;
+    }
+
+    public int getThreadBudget() {
+        return threadBudget;
+    }
+
+    public int getUsedMemoryGB() {
+        return usedMemoryGB;
+    }
+
+    public int getUsedThreads() {
+        return usedThreads;
+    }
+
+    /**
+     * RAM fisica in GB, 0 se non rilevabile (JVM senza com.sun.management).
+     */
+    static int detectPhysicalMemoryGB() {
+        try {
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                long bytes = ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+                return (int) Math.round((double) bytes / GB);
+            }
+        } catch (Throwable t) {
+            System.err.println("Cannot read physical memory: " + t.getMessage());
+        }
+        return 0;
+    }
+}
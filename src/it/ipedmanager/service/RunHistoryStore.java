@@ -0,0 +1,479 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.model.RunRecord;
+import it.ipedmanager.utils.AppPaths;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Storico delle elaborazioni: un {@link RunRecord} per ogni caso concluso.
+ * <p>
+ * I record sono aggiunti in coda a {@code runs.dat} (solo append, ciascuno
+ * preceduto dalla lunghezza) e la loro posizione in {@code runs.idx}, un
+ * array di offset a 8 byte: il record i-esimo si legge con due seek senza
+ * scorrere il file. Se l'indice manca o non corrisponde ai dati (es.
+ * interruzione durante una scrittura) viene ricostruito scorrendo
+ * {@code runs.dat}; un record finale incompleto viene scartato.
+ * <p>
+ * Un record gia' presente si aggiorna ({@link #update}) aggiungendo la nuova
+ * versione in coda ai dati e spostando su di essa la sua voce dell'indice: la
+ * posizione nello storico non cambia e la versione precedente resta nei dati
+ * senza essere piu' referenziata. Un record e' identificato da avvio, host e
+ * cartella di destinazione.
+ */
+public class RunHistoryStore {
+
+    private static final String DATA_FILE = "runs.dat";
+    private static final String INDEX_FILE = "runs.idx";
+    private static final int DATA_MAGIC = 0x49505248; // "IPRH"
+    private static final int INDEX_MAGIC = 0x49505249; // "IPRI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private static RunHistoryStore instance;
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private boolean checked = false;
+
+    RunHistoryStore(Path dataFile, Path indexFile) {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+    }
+
+    public static synchronized RunHistoryStore getInstance() {
+        if (instance == null) {
+            instance = new RunHistoryStore(AppPaths.resolve(DATA_FILE), AppPaths.resolve(INDEX_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * Aggiunge un record allo storico. Gli errori di scrittura vengono solo
+     * segnalati: lo storico non deve mai far fallire un'elaborazione.
+     */
+    public synchronized void append(RunRecord record) {
+        try {
+            ensureConsistent();
+            long offset = appendData(record);
+            try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                if (index.size() == 0) {
+                    writeFully(index, header(INDEX_MAGIC), 0);
+                }
+                ByteBuffer entry = ByteBuffer.allocate(8);
+                entry.putLong(offset).flip();
+                writeFully(index, entry, index.size());
+            }
+        } catch (IOException e) {
+            System.err.println("Run history: cannot write " + dataFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sostituisce un record gia' nello storico (es. dopo l'archiviazione del
+     * caso), cercandolo dal piu' recente. Se non c'e' viene aggiunto.
+     */
+    public synchronized void update(RunRecord record) {
+        try {
+            ensureConsistent();
+            int count = indexCount();
+            int slot = -1;
+            try (RandomAccessFile index = new RandomAccessFile(indexFile.toFile(), "r");
+                    RandomAccessFile data = new RandomAccessFile(dataFile.toFile(), "r")) {
+                for (int i = count - 1; i >= 0 && slot < 0; i--) {
+                    index.seek(HEADER_SIZE + (long) i * 8);
+                    data.seek(index.readLong());
+                    byte[] payload = new byte[data.readInt()];
+                    data.readFully(payload);
+                    if (identity(deserialize(payload)).equals(identity(record))) {
+                        slot = i;
+                    }
+                }
+            } catch (IOException e) {
+                // Storico vuoto o illeggibile: si aggiunge
+            }
+            if (slot < 0) {
+                append(record);
+                return;
+            }
+            long offset = appendData(record);
+            try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                ByteBuffer entry = ByteBuffer.allocate(8);
+                entry.putLong(offset).flip();
+                writeFully(index, entry, HEADER_SIZE + (long) slot * 8);
+            }
+        } catch (IOException e) {
+            System.err.println("Run history: cannot write " + dataFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Scrive un record in coda ai dati e ne restituisce la posizione.
+     */
+    private long appendData(RunRecord record) throws IOException {
+        byte[] payload = serialize(record);
+        try (FileChannel data = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (data.size() == 0) {
+                writeFully(data, header(DATA_MAGIC), 0);
+            }
+            long offset = data.size();
+            ByteBuffer buf = ByteBuffer.allocate(4 + payload.length);
+            buf.putInt(payload.length).put(payload).flip();
+            writeFully(data, buf, offset);
+            data.force(false);
+            return offset;
+        }
+    }
+
+    private static String identity(RunRecord r) {
+        return r.getStartTime() + "|" + r.getHost() + "|" + r.getOutputPath();
+    }
+
+    /**
+     * Numero di record nello storico.
+     */
+    public synchronized int size() {
+        try {
+            ensureConsistent();
+            return indexCount();
+        } catch (IOException e) {
+            System.err.println("Run history: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Legge gli ultimi record, dal piu' vecchio al piu' recente.
+     *
+     * @param max numero massimo di record (0 = tutti)
+     */
+    public synchronized List<RunRecord> readLatest(int max) {
+        List<RunRecord> result = new ArrayList<>();
+        try {
+            ensureConsistent();
+            int count = indexCount();
+            int from = max > 0 ? Math.max(0, count - max) : 0;
+            if (count == from)
+                return result;
+            try (RandomAccessFile index = new RandomAccessFile(indexFile.toFile(), "r");
+                    RandomAccessFile data = new RandomAccessFile(dataFile.toFile(), "r")) {
+                index.seek(HEADER_SIZE + (long) from * 8);
+                for (int i = from; i < count; i++) {
+                    data.seek(index.readLong());
+                    byte[] payload = new byte[data.readInt()];
+                    data.readFully(payload);
+                    result.add(deserialize(payload));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Run history: cannot read " + dataFile + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    private int indexCount() throws IOException {
+        if (!Files.exists(indexFile))
+            return 0;
+        return (int) Math.max(0, (Files.size(indexFile) - HEADER_SIZE) / 8);
+    }
+
+    /**
+     * Al primo accesso verifica che l'indice copra esattamente i dati (il
+     * record piu' in fondo ai dati deve finire alla fine del file), altrimenti
+     * lo ricostruisce.
+     */
+    private void ensureConsistent() throws IOException {
+        if (checked)
+            return;
+        checked = true;
+        if (!Files.exists(dataFile)) {
+            Files.deleteIfExists(indexFile);
+            return;
+        }
+        long dataSize = Files.size(dataFile);
+        long expectedEnd = HEADER_SIZE;
+        boolean valid = Files.exists(indexFile) && (Files.size(indexFile) - HEADER_SIZE) % 8 == 0;
+        if (valid) {
+            try (RandomAccessFile index = new RandomAccessFile(indexFile.toFile(), "r");
+                    RandomAccessFile data = new RandomAccessFile(dataFile.toFile(), "r")) {
+                valid = index.readInt() == INDEX_MAGIC && index.readInt() == VERSION
+                        && data.readInt() == DATA_MAGIC && data.readInt() == VERSION;
+                if (valid && index.length() > HEADER_SIZE) {
+                    // Dopo un update l'ultima voce non e' per forza l'ultimo record
+                    long last = 0;
+                    for (long n = (index.length() - HEADER_SIZE) / 8; n > 0; n--) {
+                        last = Math.max(last, index.readLong());
+                    }
+                    data.seek(last);
+                    expectedEnd = last + 4 + data.readInt();
+                }
+            } catch (IOException e) {
+                valid = false;
+            }
+        }
+        if (!valid || expectedEnd != dataSize) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Ricostruisce l'indice dai dati. Delle versioni di uno stesso record
+     * resta l'ultima, nella posizione della prima.
+     */
+    private void rebuildIndex() throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        Map<String, Integer> slots = new HashMap<>();
+        long validEnd = HEADER_SIZE;
+        try (RandomAccessFile data = new RandomAccessFile(dataFile.toFile(), "rw")) {
+            if (data.length() < HEADER_SIZE || data.readInt() != DATA_MAGIC || data.readInt() != VERSION) {
+                System.err.println("Run history: unsupported format, starting a new " + dataFile);
+                data.setLength(0);
+                Files.deleteIfExists(indexFile);
+                return;
+            }
+            long length = data.length();
+            long pos = HEADER_SIZE;
+            while (pos + 4 <= length) {
+                data.seek(pos);
+                int size = data.readInt();
+                if (size <= 0 || size > MAX_RECORD_SIZE || pos + 4 + size > length)
+                    break;
+                byte[] payload = new byte[size];
+                data.readFully(payload);
+                Integer slot = slots.putIfAbsent(identity(deserialize(payload)), offsets.size());
+                if (slot != null) {
+                    offsets.set(slot, pos);
+                } else {
+                    offsets.add(pos);
+                }
+                pos += 4 + size;
+            }
+            validEnd = pos;
+            if (validEnd < length) {
+                // Coda incompleta di una scrittura interrotta
+                System.err.println("Run history: discarding " + (length - validEnd) + " trailing bytes");
+                data.setLength(validEnd);
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + offsets.size() * 8);
+        buf.putInt(INDEX_MAGIC).putInt(VERSION);
+        for (long offset : offsets) {
+            buf.putLong(offset);
+        }
+        buf.flip();
+        try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(index, buf, 0);
+        }
+    }
+
+    private static ByteBuffer header(int magic) {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE);
+        buf.putInt(magic).putInt(VERSION).flip();
+        return buf;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static byte[] serialize(RunRecord r) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(r.getStartTime());
+            out.writeLong(r.getEndTime());
+            out.writeUTF(r.getHost());
+            out.writeUTF(r.getIpedVersion());
+            out.writeUTF(r.getCaseName());
+            out.writeUTF(r.getOutputPath());
+            out.writeUTF(r.getProfile());
+            out.writeUTF(r.getStatus());
+            out.writeInt(r.getExitCode());
+            out.writeInt(r.getAttempts());
+            out.writeInt(r.getEvidenceCount());
+            out.writeLong(r.getEvidenceBytes());
+            out.writeInt(r.getEnabledTasks().size());
+            for (String task : r.getEnabledTasks()) {
+                out.writeUTF(task);
+            }
+            out.writeLong(r.getItemsProcessed());
+            out.writeLong(r.getBytesProcessed());
+            out.writeLong(r.getPeakRssBytes());
+            out.writeInt(r.getThreads());
+            out.writeInt(r.getMemoryGB());
+            out.writeUTF(r.getArchivePath());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static RunRecord deserialize(byte[] payload) throws IOException {
+        RunRecord r = new RunRecord();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            r.setStartTime(in.readLong());
+            r.setEndTime(in.readLong());
+            r.setHost(in.readUTF());
+            r.setIpedVersion(in.readUTF());
+            r.setCaseName(in.readUTF());
+            r.setOutputPath(in.readUTF());
+            r.setProfile(in.readUTF());
+            r.setStatus(in.readUTF());
+            r.setExitCode(in.readInt());
+            r.setAttempts(in.readInt());
+            r.setEvidenceCount(in.readInt());
+            r.setEvidenceBytes(in.readLong());
+            int tasks = in.readInt();
+            List<String> enabled = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                enabled.add(in.readUTF());
+            }
+            r.setEnabledTasks(enabled);
+            r.setItemsProcessed(in.readLong());
+            r.setBytesProcessed(in.readLong());
+            r.setPeakRssBytes(in.readLong());
+            r.setThreads(in.readInt());
+            r.setMemoryGB(in.readInt());
+            // Campo aggiunto in coda: assente nei record meno recenti
+            if (in.available() > 0) {
+                r.setArchivePath(in.readUTF());
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Record con i dati noti all'avvio di un caso: configurazione e task
+     * abilitati vengono fotografati prima che l'utente possa modificarli.
+     */
+    public static RunRecord startRecord(List<Evidence> evidences, String outputPath, String profile,
+            String ipedJarPath) {
+        RunRecord r = new RunRecord();
+        r.setStartTime(System.currentTimeMillis());
+        r.setHost(getHostName());
+        r.setIpedVersion(detectIpedVersion(ipedJarPath));
+        r.setOutputPath(outputPath);
+        String name = new File(outputPath).getName();
+        r.setCaseName(name.isEmpty() ? outputPath : name);
+        r.setProfile(profile);
+        r.setEvidenceCount(evidences.size());
+        long bytes = 0;
+        for (Evidence ev : evidences) {
+            if (ev.isSizeKnown()) {
+                bytes += ev.getSize();
+            }
+        }
+        r.setEvidenceBytes(bytes);
+        if (ipedJarPath != null) {
+            Path jar = Paths.get(ipedJarPath).toAbsolutePath();
+            r.setEnabledTasks(readEnabledTasks(jar.getParent(), profile));
+        }
+        return r;
+    }
+
+    /**
+     * Completa il record con i risultati dell'elaborazione.
+     *
+     * @param samples campioni del processo (null se non disponibili)
+     */
+    public static void finishRecord(RunRecord r, String status, int exitCode, int attempts, IpedProgress progress,
+            SampleRing samples) {
+        r.setEndTime(System.currentTimeMillis());
+        r.setStatus(status);
+        r.setExitCode(exitCode);
+        r.setAttempts(attempts);
+        if (progress != null) {
+            r.setItemsProcessed(progress.getItemsProcessed());
+            r.setBytesProcessed(progress.getBytesProcessed());
+            // Le cartelle non ancora misurate: vale il totale riportato da IPED
+            r.setEvidenceBytes(Math.max(r.getEvidenceBytes(), progress.getBytesTotal()));
+        }
+        if (samples != null) {
+            r.setPeakRssBytes(Math.round(samples.getPeak(ProcessSampler.RSS_BYTES)));
+        }
+    }
+
+    /**
+     * Task "enableXxx = true" di IPEDConfig.txt, con le modifiche del profilo.
+     */
+    static List<String> readEnabledTasks(Path ipedDir, String profile) {
+        TreeSet<String> enabled = new TreeSet<>();
+        if (ipedDir == null)
+            return new ArrayList<>(enabled);
+        applyEnabled(ipedDir.resolve(ConfigManager.IPED_CONFIG), enabled);
+        if (profile != null && !profile.isEmpty()) {
+            applyEnabled(ipedDir.resolve("profiles").resolve(profile).resolve(ConfigManager.IPED_CONFIG), enabled);
+        }
+        return new ArrayList<>(enabled);
+    }
+
+    private static void applyEnabled(Path configFile, TreeSet<String> enabled) {
+        if (!Files.exists(configFile))
+            return;
+        PropertiesConfigFile config = new PropertiesConfigFile(configFile);
+        if (!config.load())
+            return;
+        for (String key : config.getKeys()) {
+            if (!key.startsWith("enable"))
+                continue;
+            if (config.getBoolean(key, false)) {
+                enabled.add(key);
+            } else {
+                enabled.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Versione di IPED dal manifest di iped.jar, altrimenti il nome della
+     * cartella di installazione (es. "iped-4.2.2").
+     */
+    static String detectIpedVersion(String ipedJarPath) {
+        if (ipedJarPath == null)
+            return "";
+        File jar = new File(ipedJarPath);
+        try (JarFile jf = new JarFile(jar)) {
+            Manifest mf = jf.getManifest();
+            String version = mf != null ? mf.getMainAttributes().getValue("Implementation-Version") : null;
+            if (version != null && !version.isEmpty())
+                return version;
+        } catch (IOException e) {
+            // Non e' un jar valido: si usa la cartella
+        }
+        File dir = jar.getAbsoluteFile().getParentFile();
+        return dir != null ? dir.getName() : "";
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            String host = System.getenv("COMPUTERNAME");
+            return host != null ? host : System.getenv("HOSTNAME");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package it.ipedmanager.service;
+
+import java.util.Arrays;
+
+/**
+ * Serie temporali a dimensione fissa su array primitivi: un campione contiene
+ * un valore per ciascuna metrica e sovrascrive il piu' vecchio quando il
+ * buffer e' pieno. Nessuna allocazione dopo la costruzione.
+ * <p>
+ * Un solo thread scrive (il campionatore), la UI legge con
+ * {@link #copySeries}.
+ */
+public class SampleRing {
+
+    private final double[][] values;
+    private final long[] timestamps;
+    private final double[] peaks;
+    private final int capacity;
+    private int next = 0;
+    private int size = 0;
+    private long totalSamples = 0;
+
+    public SampleRing(int capacity, int metrics) {
+        this.capacity = capacity;
+        this.values = new double[metrics][capacity];
+        this.timestamps = new long[capacity];
+        this.peaks = new double[metrics];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMetricCount() {
+        return values.length;
+    }
+
+    /**
+     * Aggiunge un campione; {@code sample} deve avere un valore per metrica.
+     */
+    public synchronized void add(long timestamp, double[] sample) {
+        for (int m = 0; m < values.length; m++) {
+            values[m][next] = sample[m];
+            peaks[m] = Math.max(peaks[m], sample[m]);
+        }
+        timestamps[next] = timestamp;
+        next = (next + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+        totalSamples++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Campioni aggiunti dalla creazione (anche quelli gia' sovrascritti): la UI
+     * lo usa per ridisegnare solo quando arriva un campione nuovo.
+     */
+    public synchronized long getTotalSamples() {
+        return totalSamples;
+    }
+
+    /**
+     * Ultimo valore della metrica, NaN se non ci sono campioni.
+     */
+    public synchronized double getLast(int metric) {
+        if (size == 0)
+            return Double.NaN;
+        return values[metric][(next - 1 + capacity) % capacity];
+    }
+
+    /**
+     * Valore massimo della metrica dalla creazione, anche tra i campioni gia'
+     * sovrascritti (es. picco di memoria dell'intera elaborazione).
+     */
+    public synchronized double getPeak(int metric) {
+        return peaks[metric];
+    }
+
+    /**
+     * Copia la serie di una metrica, dal campione piu' vecchio al piu' recente.
+     *
+     * @param dest array di almeno {@link #getCapacity()} elementi
+     * @return numero di valori copiati
+     */
+    public synchronized int copySeries(int metric, double[] dest) {
+        int start = (next - size + capacity) % capacity;
+        int first = Math.min(size, capacity - start);
+        System.arraycopy(values[metric], start, dest, 0, first);
+        System.arraycopy(values[metric], 0, dest, first, size - first);
+        return size;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+        Arrays.fill(peaks, 0);
+    }
+}
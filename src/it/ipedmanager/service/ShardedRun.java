@@ -0,0 +1,322 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Elaborazione di un caso grande a blocchi: le evidenze vengono divise in
+ * blocchi di dimensione simile e il caso si costruisce con piu' esecuzioni di
+ * IPED, la prima normale e le successive con {@code --append}.
+ * <p>
+ * IPED non permette a due processi di scrivere sullo stesso caso, quindi i
+ * blocchi vengono elaborati uno dopo l'altro; si sovrappone quello che IPED
+ * consente: con la cache locale attiva ({@link EvidenceStager}) le evidenze
+ * del blocco successivo vengono copiate durante l'elaborazione del blocco in
+ * corso. I blocchi sono in ordine di dimensione decrescente, cosi' ogni copia
+ * e' nascosta da un'elaborazione almeno altrettanto lunga.
+ * <p>
+ * Lo stato dei blocchi e' salvato nella cartella del caso
+ * ({@value #STATE_FILE}): rilanciando lo stesso caso con le stesse evidenze i
+ * blocchi conclusi vengono saltati e quello interrotto ripreso con
+ * {@code --continue}.
+ */
+public class ShardedRun {
+
+    public static final String STATE_FILE = "IPEDManager-shards.properties";
+
+    private static final String LOG_PREFIX = "[shards] ";
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_DONE = "DONE";
+
+    /**
+     * Esecuzione di IPED su un blocco.
+     */
+    public interface ShardRunner {
+        int run(List<Evidence> evidences, ProcessingOptions options) throws Exception;
+    }
+
+    /**
+     * Notifica l'avvio di un blocco (indice da 0).
+     */
+    public interface ShardListener {
+        void shardStarted(int index, int count);
+    }
+
+    private final List<Evidence> evidences;
+    private final Path outputDir;
+    private final ProcessingOptions options;
+    private final int shardCount;
+    private EvidenceStager stager;
+    private Object owner;
+    private BooleanSupplier cancelled = () -> false;
+    private ShardListener listener;
+
+    public ShardedRun(List<Evidence> evidences, String outputPath, ProcessingOptions options, int shardCount) {
+        this.evidences = evidences;
+        this.outputDir = Paths.get(outputPath);
+        this.options = options;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Copia locale delle evidenze blocco per blocco. {@code owner} e' la chiave
+     * del blocco in corso (rilasciarla annulla la copia in attesa).
+     */
+    public ShardedRun setStager(EvidenceStager stager, Object owner) {
+        this.stager = stager;
+        this.owner = owner;
+        return this;
+    }
+
+    public ShardedRun setCancelled(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+        return this;
+    }
+
+    public ShardedRun setListener(ShardListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Elabora i blocchi non ancora conclusi.
+     *
+     * @return exit code del primo blocco fallito, 0 se tutti conclusi
+     */
+    public int run(ShardRunner runner, Consumer<String> log) throws Exception {
+        Path stateFile = outputDir.resolve(STATE_FILE);
+        Properties state = loadState(stateFile);
+        List<List<Evidence>> shards = restorePlan(state);
+        if (shards == null) {
+            if (!state.isEmpty()) {
+                log.accept(LOG_PREFIX + "the evidence list changed, previous shard state discarded");
+            }
+            shards = plan(evidences, shardCount);
+            state = new Properties();
+            state.setProperty("shards", String.valueOf(shards.size()));
+            for (int i = 0; i < shards.size(); i++) {
+                List<String> paths = new ArrayList<>();
+                for (Evidence ev : shards.get(i)) {
+                    paths.add(ev.getFilePath());
+                }
+                state.setProperty("shard." + i, String.join("\n", paths));
+            }
+        }
+        log.accept(LOG_PREFIX + describe(shards));
+
+        // Chiave per la copia anticipata del blocco successivo
+        Object nextOwner = Arrays.asList(owner, "next");
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                String status = state.getProperty("shard." + i + ".status", "");
+                if (STATUS_DONE.equals(status)) {
+                    log.accept(LOG_PREFIX + "shard " + (i + 1) + "/" + shards.size() + " already done, skipped");
+                    continue;
+                }
+                if (cancelled.getAsBoolean())
+                    return -1;
+                if (listener != null) {
+                    listener.shardStarted(i, shards.size());
+                }
+                log.accept(LOG_PREFIX + "shard " + (i + 1) + "/" + shards.size() + ": "
+                        + shards.get(i).size() + " evidences, " + Evidence.formatSize(sizeOf(shards.get(i))));
+
+                List<Evidence> shard = shards.get(i);
+                if (stager != null) {
+                    shard = stager.await(owner, shard, log);
+                    stager.release(nextOwner);
+                    if (i + 1 < shards.size()) {
+                        stager.prefetch(nextOwner, shards.get(i + 1), log);
+                    }
+                    if (cancelled.getAsBoolean())
+                        return -1;
+                }
+
+                ProcessingOptions o = options.copy();
+                if (STATUS_RUNNING.equals(status)) {
+                    // Interrotto in un'esecuzione precedente
+                    o.continueProcessing = true;
+                    o.append = false;
+                    o.restart = false;
+                } else if (i > 0) {
+                    o.continueProcessing = false;
+                    o.append = true;
+                    o.restart = false;
+                }
+                state.setProperty("shard." + i + ".status", STATUS_RUNNING);
+                saveState(stateFile, state);
+
+                int exitCode = runner.run(shard, o);
+                if (stager != null) {
+                    stager.release(owner);
+                }
+                if (exitCode != 0)
+                    return exitCode;
+                state.setProperty("shard." + i + ".status", STATUS_DONE);
+                saveState(stateFile, state);
+            }
+            return 0;
+        } finally {
+            if (stager != null) {
+                stager.release(nextOwner);
+            }
+        }
+    }
+
+    /**
+     * Piano salvato in un'esecuzione precedente, se riguarda esattamente le
+     * stesse evidenze; le evidenze restituite sono quelle attuali (password,
+     * dname... aggiornati).
+     */
+    private List<List<Evidence>> restorePlan(Properties state) {
+        int count;
+        try {
+            count = Integer.parseInt(state.getProperty("shards", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        Map<String, List<Evidence>> byPath = new HashMap<>();
+        for (Evidence ev : evidences) {
+            byPath.computeIfAbsent(ev.getFilePath(), k -> new ArrayList<>()).add(ev);
+        }
+        List<List<Evidence>> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String paths = state.getProperty("shard." + i);
+            if (paths == null)
+                return null;
+            List<Evidence> shard = new ArrayList<>();
+            for (String path : paths.split("\n")) {
+                List<Evidence> same = byPath.get(path);
+                if (same == null || same.isEmpty())
+                    return null;
+                shard.add(same.remove(0));
+            }
+            shards.add(shard);
+        }
+        for (List<Evidence> left : byPath.values()) {
+            if (!left.isEmpty())
+                return null;
+        }
+        return shards;
+    }
+
+    /**
+     * Divide le evidenze in blocchi bilanciati per dimensione: dalla piu'
+     * grande, ciascuna va al blocco meno carico (a parita', con meno
+     * evidenze). Le evidenze di dimensione ignota contano come la media di
+     * quelle note. Nei blocchi resta l'ordine della tabella; i blocchi sono in
+     * ordine di dimensione decrescente.
+     */
+    static List<List<Evidence>> plan(List<Evidence> evidences, int shardCount) {
+        int n = Math.max(1, Math.min(shardCount, evidences.size()));
+        long known = 0;
+        int knownCount = 0;
+        for (Evidence ev : evidences) {
+            if (ev.isSizeKnown()) {
+                known += ev.getSize();
+                knownCount++;
+            }
+        }
+        long unknownSize = knownCount > 0 ? known / knownCount : 1;
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < evidences.size(); i++) {
+            order.add(i);
+        }
+        long[] sizes = new long[evidences.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            Evidence ev = evidences.get(i);
+            sizes[i] = ev.isSizeKnown() ? ev.getSize() : unknownSize;
+        }
+        order.sort((a, b) -> Long.compare(sizes[b], sizes[a]));
+
+        long[] load = new long[n];
+        List<List<Integer>> assigned = new ArrayList<>();
+        for (int s = 0; s < n; s++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (int idx : order) {
+            int best = 0;
+            for (int s = 1; s < n; s++) {
+                if (load[s] < load[best]
+                        || (load[s] == load[best] && assigned.get(s).size() < assigned.get(best).size())) {
+                    best = s;
+                }
+            }
+            load[best] += sizes[idx];
+            assigned.get(best).add(idx);
+        }
+
+        List<Integer> shardOrder = new ArrayList<>();
+        for (int s = 0; s < n; s++) {
+            shardOrder.add(s);
+        }
+        shardOrder.sort((a, b) -> Long.compare(load[b], load[a]));
+        List<List<Evidence>> shards = new ArrayList<>();
+        for (int s : shardOrder) {
+            List<Integer> indexes = assigned.get(s);
+            Collections.sort(indexes);
+            List<Evidence> shard = new ArrayList<>();
+            for (int idx : indexes) {
+                shard.add(evidences.get(idx));
+            }
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    private static String describe(List<List<Evidence>> shards) {
+        StringBuilder sb = new StringBuilder(shards.size() + " shards:");
+        for (List<Evidence> shard : shards) {
+            sb.append(' ').append(Evidence.formatSize(sizeOf(shard)));
+        }
+        return sb.toString();
+    }
+
+    private static long sizeOf(List<Evidence> shard) {
+        long total = 0;
+        for (Evidence ev : shard) {
+            if (ev.isSizeKnown()) {
+                total += ev.getSize();
+            }
+        }
+        return total;
+    }
+
+    private static Properties loadState(Path file) {
+        Properties p = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                p.load(in);
+            } catch (IOException e) {
+                System.err.println("Cannot read " + file + ": " + e.getMessage());
+            }
+        }
+        return p;
+    }
+
+    private static void saveState(Path file, Properties state) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            state.store(out, "IPEDManager sharded run");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
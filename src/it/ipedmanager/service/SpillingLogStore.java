@@ -0,0 +1,198 @@
+package it.ipedmanager.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Log a memoria limitata per esecuzioni di piu' giorni.
+ * <p>
+ * Solo le ultime righe restano in memoria; tutte le righe vengono scritte in
+ * segmenti su disco di {@value #SEGMENT_LINES} righe ciascuno, e le righe piu'
+ * vecchie vengono ricaricate un segmento alla volta quando servono (es.
+ * scorrendo verso l'alto). L'uso di heap resta costante qualunque sia la
+ * durata dell'esecuzione. Non thread-safe: va usato da un solo thread (EDT).
+ */
+public class SpillingLogStore implements Closeable {
+
+    private static final int SEGMENT_LINES = 4096;
+    private static final int CACHED_SEGMENTS = 8;
+    private static final String UNAVAILABLE = "[...]";
+
+    private final String[] tail;
+    private Path dir;
+    private int lineCount = 0;
+
+    private BufferedWriter writer;
+    private int writerSegment = -1;
+    private boolean spillFailed = false;
+
+    // Segmenti riletti da disco, in ordine di accesso (LRU)
+    private final Map<Integer, String[]> segmentCache = new LinkedHashMap<Integer, String[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+
+    /**
+     * @param memoryLines numero di righe piu' recenti tenute in memoria (se la
+     *                    cartella temporanea non e' disponibile si conservano
+     *                    solo queste)
+     */
+    public SpillingLogStore(int memoryLines) {
+        this.tail = new String[Math.max(SEGMENT_LINES, memoryLines)];
+        try {
+            this.dir = Files.createTempDirectory("ipedmanager-log");
+        } catch (IOException e) {
+            System.err.println("Log spill disabled: " + e.getMessage());
+            this.spillFailed = true;
+        }
+    }
+
+    /**
+     * Aggiunge testo al log; il testo con piu' righe viene diviso.
+     */
+    public void append(String text) {
+        if (text.isEmpty()) {
+            appendLine(text);
+            return;
+        }
+        int start = 0;
+        int nl;
+        while ((nl = text.indexOf('\n', start)) >= 0) {
+            appendLine(text.substring(start, nl));
+            start = nl + 1;
+        }
+        if (start < text.length()) {
+            appendLine(text.substring(start));
+        }
+    }
+
+    private void appendLine(String line) {
+        if (line.indexOf('\r') >= 0) {
+            // Un CR isolato spezzerebbe la riga nel segmento su disco
+            line = line.replace("\r", "");
+        }
+        int index = lineCount++;
+        tail[index % tail.length] = line;
+        spill(index, line);
+    }
+
+    private void spill(int index, String line) {
+        if (spillFailed)
+            return;
+        int segment = index / SEGMENT_LINES;
+        try {
+            if (segment != writerSegment) {
+                if (writer != null) {
+                    writer.close();
+                }
+                writer = Files.newBufferedWriter(segmentPath(segment), StandardCharsets.UTF_8);
+                writerSegment = segment;
+            }
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            System.err.println("Log spill disabled: " + e.getMessage());
+            spillFailed = true;
+        }
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Restituisce la riga richiesta, dalla memoria o dal disco.
+     */
+    public String getLine(int index) {
+        if (index < 0 || index >= lineCount)
+            return null;
+        if (index >= lineCount - tail.length) {
+            return tail[index % tail.length];
+        }
+        String[] segment = loadSegment(index / SEGMENT_LINES);
+        int offset = index % SEGMENT_LINES;
+        return segment != null && offset < segment.length && segment[offset] != null ? segment[offset] : UNAVAILABLE;
+    }
+
+    private String[] loadSegment(int segment) {
+        String[] lines = segmentCache.get(segment);
+        if (lines != null || dir == null)
+            return lines;
+        try {
+            if (segment == writerSegment && writer != null) {
+                writer.flush();
+            }
+            lines = new String[SEGMENT_LINES];
+            try (BufferedReader reader = Files.newBufferedReader(segmentPath(segment), StandardCharsets.UTF_8)) {
+                for (int i = 0; i < SEGMENT_LINES; i++) {
+                    String line = reader.readLine();
+                    if (line == null)
+                        break;
+                    lines[i] = line;
+                }
+            }
+            // Il segmento in scrittura cambia ancora: non metterlo in cache
+            if (segment != writerSegment) {
+                segmentCache.put(segment, lines);
+            }
+            return lines;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scrive su disco le righe ancora nel buffer di scrittura.
+     */
+    public void flush() {
+        try {
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            // Ignora: il dato resta comunque in memoria o verra' riscritto
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return dir.resolve(String.format("segment-%06d.log", segment));
+    }
+
+    /**
+     * Chiude il log ed elimina i segmenti su disco.
+     */
+    @Override
+    public void close() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            // Ignora
+        }
+        writer = null;
+        segmentCache.clear();
+        if (dir == null)
+            return;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            System.err.println("Cannot delete log spill dir " + dir + ": " + e.getMessage());
+        }
+    }
+}
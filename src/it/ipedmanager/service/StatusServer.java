@@ -0,0 +1,340 @@
+package it.ipedmanager.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import it.ipedmanager.config.PropertiesConfigFile;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+
+/**
+ * Server HTTP in sola lettura con lo stato dei job dello {@link JobScheduler},
+ * per schermi di monitoraggio e Prometheus:
+ *
+ * <pre>
+ * GET /status    JSON: coda e, per ogni job, avanzamento, velocita', ETA,
+ *                CPU e memoria del processo IPED
+ * GET /metrics   le stesse grandezze nel formato testo di Prometheus
+ * </pre>
+ *
+ * Impostazioni in LocalConfig (lette all'avvio):
+ * <ul>
+ * <li>{@code managerStatusPort}: porta (default 0 = disattivato)</li>
+ * <li>{@code managerStatusBind}: indirizzo di ascolto (default 127.0.0.1,
+ * solo la macchina locale; 0.0.0.0 per tutte le interfacce)</li>
+ * </ul>
+ */
+public class StatusServer {
+
+    public static final String KEY_PORT = "managerStatusPort";
+    public static final String KEY_BIND = "managerStatusBind";
+    public static final String DEFAULT_BIND = "127.0.0.1";
+
+    private static final String METRIC_PREFIX = "ipedmanager_";
+
+    private final JobScheduler scheduler;
+    private final HttpServer server;
+    private final String host;
+
+    public StatusServer(JobScheduler scheduler, InetSocketAddress address) throws IOException {
+        this.scheduler = scheduler;
+        this.host = getHostName();
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/status", this::handleStatus);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "status-http");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * Avvia il server se la porta e' configurata in LocalConfig.
+     *
+     * @return il server avviato, null se disattivato o se la porta non e'
+     *         disponibile (errore su stderr)
+     */
+    public static StatusServer startFromSettings(JobScheduler scheduler, PropertiesConfigFile localConfig) {
+        int port = localConfig != null ? localConfig.getInt(KEY_PORT, 0) : 0;
+        if (port <= 0)
+            return null;
+        String bind = localConfig.get(KEY_BIND);
+        try {
+            // Nessuna autenticazione: fuori dalla macchina solo se richiesto
+            InetSocketAddress address = new InetSocketAddress(
+                    bind != null && !bind.trim().isEmpty() ? bind.trim() : DEFAULT_BIND, port);
+            StatusServer status = new StatusServer(scheduler, address);
+            status.start();
+            System.out.println("Status endpoint on http://" + address.getHostString() + ":" + status.getPort()
+                    + "/status and /metrics");
+            return status;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot start the status endpoint on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleStatus(HttpExchange ex) throws IOException {
+        try {
+            send(ex, "application/json; charset=utf-8", statusJson());
+        } catch (Exception e) {
+            e.printStackTrace();
+            ex.sendResponseHeaders(500, -1);
+            ex.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange ex) throws IOException {
+        try {
+            send(ex, "text/plain; version=0.0.4; charset=utf-8", metrics());
+        } catch (Exception e) {
+            e.printStackTrace();
+            ex.sendResponseHeaders(500, -1);
+            ex.close();
+        }
+    }
+
+    String statusJson() {
+        List<Job> jobs = scheduler.getQueue().getJobs();
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"host\":").append(quote(host));
+        sb.append(",\"time\":").append(System.currentTimeMillis());
+        sb.append(",\"queued\":").append(scheduler.getQueue().getPendingCount());
+        sb.append(",\"running\":").append(scheduler.getRunningJobs().size());
+        sb.append(",\"maxConcurrentJobs\":").append(scheduler.getMaxConcurrentJobs());
+        sb.append(",\"jobs\":[");
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = jobs.get(i);
+            IpedProgress p = job.getProgress();
+            SampleRing samples = job.getSampler().getSamples();
+            boolean running = job.getStatus() == Job.Status.RUNNING;
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(job.getId());
+            sb.append(",\"name\":").append(quote(job.getName()));
+            sb.append(",\"output\":").append(quote(job.getOutputPath()));
+            sb.append(",\"status\":").append(quote(job.getStatus().name()));
+            sb.append(",\"queuePosition\":").append(scheduler.getQueue().indexOf(job));
+            sb.append(",\"worker\":").append(quote(job.getWorker()));
+            sb.append(",\"attempts\":").append(job.getAttempts());
+            sb.append(",\"startTime\":").append(job.getStartTime());
+            sb.append(",\"endTime\":").append(job.getEndTime());
+            sb.append(",\"percent\":").append(p.hasPercent() ? number(p.getPercent()) : "null");
+            sb.append(",\"etaSeconds\":")
+                    .append(p.getEtaSeconds() >= 0 ? String.valueOf(p.getEtaSeconds()) : "null");
+            sb.append(",\"itemsProcessed\":").append(count(p.getItemsProcessed()));
+            sb.append(",\"itemsTotal\":").append(count(p.getItemsTotal()));
+            sb.append(",\"bytesProcessed\":").append(count(p.getBytesProcessed()));
+            sb.append(",\"bytesTotal\":").append(count(p.getBytesTotal()));
+            sb.append(",\"itemsPerSecond\":").append(rate(p.getItemsPerSecond()));
+            sb.append(",\"bytesPerSecond\":").append(rate(p.getBytesPerSecond()));
+            sb.append(",\"outputLines\":").append(job.getOutputLines());
+            sb.append(",\"linesPerSecond\":").append(running ? number(job.getLinesPerSecond()) : "null");
+            boolean sampled = running && samples.size() > 0;
+            sb.append(",\"cpuPercent\":")
+                    .append(sampled ? number(samples.getLast(ProcessSampler.CPU_PERCENT)) : "null");
+            sb.append(",\"rssBytes\":")
+                    .append(sampled ? String.valueOf(Math.round(samples.getLast(ProcessSampler.RSS_BYTES))) : "null");
+            if (job.getShardCount() > 1) {
+                sb.append(",\"shard\":").append(job.getShardIndex() + 1);
+                sb.append(",\"shards\":").append(job.getShardCount());
+            }
+            if (job.getErrorMessage() != null) {
+                sb.append(",\"error\":").append(quote(job.getErrorMessage()));
+            }
+            sb.append('}');
+        }
+        sb.append("]}\n");
+        return sb.toString();
+    }
+
+    String metrics() {
+        List<Job> jobs = scheduler.getQueue().getJobs();
+        StringBuilder sb = new StringBuilder(2048);
+        gauge(sb, "queue_length", "Jobs waiting in the queue");
+        sb.append(METRIC_PREFIX).append("queue_length ").append(scheduler.getQueue().getPendingCount()).append('\n');
+        gauge(sb, "jobs_running", "Jobs being processed");
+        sb.append(METRIC_PREFIX).append("jobs_running ").append(scheduler.getRunningJobs().size()).append('\n');
+        gauge(sb, "jobs_max_concurrent", "Maximum number of concurrent jobs");
+        sb.append(METRIC_PREFIX).append("jobs_max_concurrent ").append(scheduler.getMaxConcurrentJobs()).append('\n');
+
+        int[] counts = new int[Job.Status.values().length];
+        for (Job job : jobs) {
+            counts[job.getStatus().ordinal()]++;
+        }
+        gauge(sb, "jobs", "Jobs of this session by status");
+        for (Job.Status s : Job.Status.values()) {
+            sb.append(METRIC_PREFIX).append("jobs{status=\"").append(s.name()).append("\"} ")
+                    .append(counts[s.ordinal()]).append('\n');
+        }
+
+        // Metriche per job: solo quelli in esecuzione, le serie dei conclusi
+        // scompaiono da sole in Prometheus
+        StringBuilder percent = new StringBuilder();
+        StringBuilder eta = new StringBuilder();
+        StringBuilder items = new StringBuilder();
+        StringBuilder itemsFound = new StringBuilder();
+        StringBuilder itemsRate = new StringBuilder();
+        StringBuilder bytesRate = new StringBuilder();
+        StringBuilder lines = new StringBuilder();
+        StringBuilder linesRate = new StringBuilder();
+        StringBuilder cpu = new StringBuilder();
+        StringBuilder rss = new StringBuilder();
+        StringBuilder attempts = new StringBuilder();
+        for (Job job : jobs) {
+            if (job.getStatus() != Job.Status.RUNNING)
+                continue;
+            String labels = "{id=\"" + job.getId() + "\",name=\"" + label(job.getName()) + "\",output=\""
+                    + label(job.getOutputPath()) + "\"}";
+            IpedProgress p = job.getProgress();
+            if (p.hasPercent()) {
+                sample(percent, "job_percent", labels, number(p.getPercent()));
+            }
+            if (p.getEtaSeconds() >= 0) {
+                sample(eta, "job_eta_seconds", labels, String.valueOf(p.getEtaSeconds()));
+            }
+            if (p.getItemsProcessed() >= 0) {
+                sample(items, "job_items_processed", labels, String.valueOf(p.getItemsProcessed()));
+            }
+            if (p.getItemsTotal() >= 0) {
+                sample(itemsFound, "job_items_found", labels, String.valueOf(p.getItemsTotal()));
+            }
+            if (p.getItemsPerSecond() >= 0) {
+                sample(itemsRate, "job_items_per_second", labels, number(p.getItemsPerSecond()));
+            }
+            if (p.getBytesPerSecond() >= 0) {
+                sample(bytesRate, "job_bytes_per_second", labels, number(p.getBytesPerSecond()));
+            }
+            sample(lines, "job_output_lines_total", labels, String.valueOf(job.getOutputLines()));
+            sample(linesRate, "job_output_lines_per_second", labels, number(job.getLinesPerSecond()));
+            SampleRing samples = job.getSampler().getSamples();
+            if (samples.size() > 0) {
+                sample(cpu, "job_cpu_percent", labels, number(samples.getLast(ProcessSampler.CPU_PERCENT)));
+                sample(rss, "job_rss_bytes", labels,
+                        String.valueOf(Math.round(samples.getLast(ProcessSampler.RSS_BYTES))));
+            }
+            sample(attempts, "job_attempts", labels, String.valueOf(job.getAttempts()));
+        }
+        family(sb, "job_percent", "gauge", "IPED progress in percent", percent);
+        family(sb, "job_eta_seconds", "gauge", "Estimated seconds to completion", eta);
+        family(sb, "job_items_processed", "gauge", "Items processed by IPED", items);
+        family(sb, "job_items_found", "gauge", "Items found by IPED", itemsFound);
+        family(sb, "job_items_per_second", "gauge", "Items processed per second", itemsRate);
+        family(sb, "job_bytes_per_second", "gauge", "Bytes processed per second", bytesRate);
+        family(sb, "job_output_lines_total", "counter", "Output lines written by IPED", lines);
+        family(sb, "job_output_lines_per_second", "gauge", "Output lines per second", linesRate);
+        family(sb, "job_cpu_percent", "gauge", "CPU of the IPED process tree, percent of one core", cpu);
+        family(sb, "job_rss_bytes", "gauge", "Resident memory of the IPED process tree", rss);
+        family(sb, "job_attempts", "gauge", "IPED launches, more than 1 after a watchdog resume", attempts);
+        return sb.toString();
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help) {
+        sb.append("# HELP ").append(METRIC_PREFIX).append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(METRIC_PREFIX).append(name).append(" gauge\n");
+    }
+
+    private static void family(StringBuilder sb, String name, String type, String help, StringBuilder samples) {
+        if (samples.length() == 0)
+            return;
+        sb.append("# HELP ").append(METRIC_PREFIX).append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(METRIC_PREFIX).append(name).append(' ').append(type).append('\n');
+        sb.append(samples);
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, String value) {
+        sb.append(METRIC_PREFIX).append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String count(long value) {
+        return value >= 0 ? String.valueOf(value) : "null";
+    }
+
+    private static String rate(double value) {
+        return value >= 0 ? number(value) : "null";
+    }
+
+    /**
+     * Stringa JSON tra virgolette, {@code null} per null.
+     */
+    static String quote(String s) {
+        if (s == null)
+            return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Valore di un'etichetta Prometheus (escape di \, " e a capo).
+     */
+    static String label(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void send(HttpExchange ex, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "localhost";
+        }
+    }
+}
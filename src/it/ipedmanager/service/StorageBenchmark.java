@@ -0,0 +1,438 @@
+package it.ipedmanager.service;
+
+import it.ipedmanager.utils.AppPaths;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Prova delle prestazioni dei volumi usati da IPED (evidenze, indexTemp,
+ * output), con FileChannel e buffer diretti:
+ * <ul>
+ * <li>lettura sequenziale a blocchi da 1 MB</li>
+ * <li>letture casuali da 4 KB (il carico tipico della lettura delle immagini
+ * forensi e degli indici Lucene)</li>
+ * <li>scrittura sequenziale forzata su disco e scritture casuali da 4 KB,
+ * ciascuna seguita da fsync (il carico dei file temporanei di Lucene)</li>
+ * </ul>
+ * Le letture usano file gia' presenti nella cartella (i piu' grandi, che
+ * difficilmente sono nella cache del sistema operativo): un file appena
+ * scritto verrebbe letto dalla cache. Se non ci sono file adatti le prove di
+ * lettura vengono saltate. Le cartelle di evidenze si provano in sola lettura.
+ * <p>
+ * I risultati sono conservati per volume (FileStore) in
+ * ~/.ipedmanager/storage-bench.bin.
+ */
+public class StorageBenchmark {
+
+    private static final String CACHE_FILE = "storage-bench.bin";
+    private static final int MAGIC = 0x49505342; // "IPSB"
+    private static final int VERSION = 1;
+
+    private static final int BLOCK = 1 << 20;
+    private static final int SMALL_BLOCK = 4096;
+    private static final long SEQUENTIAL_BYTES = 128L << 20;
+    private static final long SEQUENTIAL_READ_BYTES = 256L << 20;
+    private static final int RANDOM_READS = 1000;
+    private static final int RANDOM_WRITES = 200;
+    // Limite per prova: un disco lentissimo non deve bloccare la misura
+    private static final long MAX_TEST_MS = 10_000;
+    private static final long MIN_READ_FILE_SIZE = 16L << 20;
+    private static final int MAX_READ_FILES = 8;
+    private static final int MAX_SCAN_DEPTH = 4;
+    private static final int MAX_SCAN_ENTRIES = 5000;
+
+    private static StorageBenchmark instance;
+
+    private final Path cacheFile;
+    private final Map<String, VolumeResult> results = new ConcurrentHashMap<>();
+
+    private StorageBenchmark(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    public static synchronized StorageBenchmark getInstance() {
+        if (instance == null) {
+            instance = new StorageBenchmark(AppPaths.resolve(CACHE_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * Esegue le prove sul volume del percorso e ne conserva il risultato.
+     *
+     * @param path     cartella (o file, per le evidenze) da provare
+     * @param readOnly true per non scrivere nulla (evidenze)
+     */
+    public VolumeResult run(Path path, boolean readOnly) throws IOException {
+        path = path.toAbsolutePath().normalize();
+        String volume = volumeOf(path);
+
+        List<Path> samples = findReadSamples(path);
+        if (samples.isEmpty() && readOnly) {
+            throw new IOException("No files larger than " + (MIN_READ_FILE_SIZE >> 20) + " MB to read in " + path);
+        }
+        double seqRead = Double.NaN;
+        double randomRead = Double.NaN;
+        if (!samples.isEmpty()) {
+            seqRead = sequentialRead(samples);
+            randomRead = randomRead(samples);
+        }
+
+        double seqWrite = Double.NaN;
+        double syncWrite = Double.NaN;
+        if (!readOnly) {
+            Path dir = Files.isDirectory(path) ? path : path.getParent();
+            double[] w = writeTests(dir);
+            seqWrite = w[0];
+            syncWrite = w[1];
+        }
+
+        // Le prove saltate (sola lettura, nessun file da leggere) mantengono
+        // il valore della misura precedente dello stesso volume
+        VolumeResult previous = results.get(volume);
+        if (previous != null) {
+            if (samples.isEmpty()) {
+                seqRead = previous.sequentialReadMBps;
+                randomRead = previous.randomReadIops;
+            }
+            if (readOnly) {
+                seqWrite = previous.sequentialWriteMBps;
+                syncWrite = previous.syncWriteIops;
+            }
+        }
+        VolumeResult r = new VolumeResult(volume, path.toString(), System.currentTimeMillis(), seqRead, randomRead,
+                seqWrite, syncWrite);
+        results.put(volume, r);
+        save();
+        return r;
+    }
+
+    /**
+     * Ultimo risultato per il volume che contiene il percorso, null se il
+     * volume non e' mai stato provato.
+     */
+    public VolumeResult getCached(Path path) {
+        try {
+            return results.get(volumeOf(path.toAbsolutePath().normalize()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tutti i risultati, dal piu' recente.
+     */
+    public List<VolumeResult> getAll() {
+        List<VolumeResult> list = new ArrayList<>(results.values());
+        list.sort(Comparator.comparingLong(VolumeResult::getTimestamp).reversed());
+        return list;
+    }
+
+    public void remove(String volume) {
+        if (results.remove(volume) != null)
+            save();
+    }
+
+    /**
+     * Identificativo del volume (punto di montaggio e dispositivo) del primo
+     * antenato esistente del percorso.
+     */
+    static String volumeOf(Path path) throws IOException {
+        Path p = path;
+        while (p != null && !Files.exists(p)) {
+            p = p.getParent();
+        }
+        if (p == null)
+            throw new IOException("Path not found: " + path);
+        FileStore store = Files.getFileStore(p);
+        return store.toString();
+    }
+
+    /**
+     * I file piu' grandi (almeno 16 MB) sotto il percorso, fino a 4 livelli
+     * di profondita'. Per un file si usano il file stesso e gli altri file
+     * della sua cartella (segmenti di immagini divise).
+     */
+    private static List<Path> findReadSamples(Path path) {
+        boolean dir = Files.isDirectory(path);
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> s = Files.walk(dir ? path : path.getParent(), dir ? MAX_SCAN_DEPTH : 1)) {
+            s.limit(MAX_SCAN_ENTRIES).filter(p -> sizeOf(p) >= MIN_READ_FILE_SIZE).forEach(found::add);
+        } catch (IOException | UncheckedIOException e) {
+            // Cartelle non leggibili: si prova con quanto trovato finora
+        }
+        found.sort(Comparator.comparingLong(StorageBenchmark::sizeOf).reversed());
+        // Il file indicato viene provato per primo
+        if (!dir && found.remove(path)) {
+            found.add(0, path);
+        }
+        return found.size() > MAX_READ_FILES ? new ArrayList<>(found.subList(0, MAX_READ_FILES)) : found;
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.isRegularFile(p) ? Files.size(p) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Lettura sequenziale da un punto casuale di ciascun file, in MB/s.
+     */
+    private static double sequentialRead(List<Path> files) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(BLOCK);
+        Random rnd = new Random();
+        long perFile = Math.max(BLOCK, SEQUENTIAL_READ_BYTES / files.size());
+        long deadline = System.currentTimeMillis() + MAX_TEST_MS;
+        long start = System.nanoTime();
+        long total = 0;
+        for (Path file : files) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                long span = Math.min(perFile, size);
+                long pos = size > span ? (long) (rnd.nextDouble() * ((size - span) / BLOCK)) * BLOCK : 0;
+                long end = pos + span;
+                while (pos < end && System.currentTimeMillis() < deadline) {
+                    buf.clear();
+                    int n = ch.read(buf, pos);
+                    if (n <= 0)
+                        break;
+                    pos += n;
+                    total += n;
+                }
+            }
+            if (System.currentTimeMillis() >= deadline)
+                break;
+        }
+        return total / (1024.0 * 1024.0) / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Letture casuali da 4 KB distribuite sui file in proporzione alla
+     * dimensione, in operazioni al secondo.
+     */
+    private static double randomRead(List<Path> files) throws IOException {
+        List<FileChannel> channels = new ArrayList<>();
+        try {
+            long[] cumulative = new long[files.size()];
+            long total = 0;
+            for (int i = 0; i < files.size(); i++) {
+                FileChannel ch = FileChannel.open(files.get(i), StandardOpenOption.READ);
+                channels.add(ch);
+                total += ch.size() / SMALL_BLOCK;
+                cumulative[i] = total;
+            }
+            ByteBuffer buf = ByteBuffer.allocateDirect(SMALL_BLOCK);
+            Random rnd = new Random();
+            long deadline = System.currentTimeMillis() + MAX_TEST_MS;
+            long start = System.nanoTime();
+            int ops = 0;
+            while (ops < RANDOM_READS && System.currentTimeMillis() < deadline) {
+                long block = (long) (rnd.nextDouble() * total);
+                int i = 0;
+                while (cumulative[i] <= block) {
+                    i++;
+                }
+                long inFile = block - (i > 0 ? cumulative[i - 1] : 0);
+                buf.clear();
+                channels.get(i).read(buf, inFile * SMALL_BLOCK);
+                ops++;
+            }
+            return ops / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            for (FileChannel ch : channels) {
+                ch.close();
+            }
+        }
+    }
+
+    /**
+     * Scrittura sequenziale con fsync finale (MB/s) e scritture casuali da
+     * 4 KB ciascuna forzata su disco (operazioni al secondo), su un file
+     * temporaneo cancellato al termine.
+     */
+    private static double[] writeTests(Path dir) throws IOException {
+        Path file = Files.createTempFile(dir, "ipedmanager-bench", ".tmp");
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BLOCK);
+            new Random(1).ints(BLOCK / 4).forEach(buf::putInt);
+
+            long deadline = System.currentTimeMillis() + MAX_TEST_MS;
+            long start = System.nanoTime();
+            long written = 0;
+            while (written < SEQUENTIAL_BYTES && System.currentTimeMillis() < deadline) {
+                buf.clear();
+                while (buf.hasRemaining()) {
+                    written += ch.write(buf, written);
+                }
+            }
+            ch.force(false);
+            double seqMBps = written / (1024.0 * 1024.0) / ((System.nanoTime() - start) / 1e9);
+
+            ByteBuffer small = ByteBuffer.allocateDirect(SMALL_BLOCK);
+            Random rnd = new Random(2);
+            long blocks = Math.max(1, written / SMALL_BLOCK);
+            deadline = System.currentTimeMillis() + MAX_TEST_MS;
+            start = System.nanoTime();
+            int ops = 0;
+            while (ops < RANDOM_WRITES && System.currentTimeMillis() < deadline) {
+                small.clear();
+                long pos = (long) (rnd.nextDouble() * blocks) * SMALL_BLOCK;
+                while (small.hasRemaining()) {
+                    ch.write(small, pos + small.position());
+                }
+                ch.force(false);
+                ops++;
+            }
+            double iops = ops / ((System.nanoTime() - start) / 1e9);
+            return new double[] { seqMBps, iops };
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(cacheFile))
+            return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Storage benchmark: unsupported format, ignoring " + cacheFile);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                VolumeResult r = new VolumeResult(in.readUTF(), in.readUTF(), in.readLong(), in.readDouble(),
+                        in.readDouble(), in.readDouble(), in.readDouble());
+                results.put(r.getVolume(), r);
+            }
+        } catch (Exception e) {
+            System.err.println("Storage benchmark: error loading " + cacheFile + ": " + e.getMessage());
+            results.clear();
+        }
+    }
+
+    private synchronized void save() {
+        Path tmp = cacheFile.resolveSibling(CACHE_FILE + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                List<VolumeResult> snapshot = new ArrayList<>(results.values());
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (VolumeResult r : snapshot) {
+                    out.writeUTF(r.volume);
+                    out.writeUTF(r.path);
+                    out.writeLong(r.timestamp);
+                    out.writeDouble(r.sequentialReadMBps);
+                    out.writeDouble(r.randomReadIops);
+                    out.writeDouble(r.sequentialWriteMBps);
+                    out.writeDouble(r.syncWriteIops);
+                }
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Storage benchmark: error saving " + cacheFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Risultato delle prove su un volume. Le misure non eseguite valgono NaN.
+     */
+    public static class VolumeResult {
+
+        // Sotto queste soglie il volume si comporta da disco meccanico o di rete
+        private static final double SSD_MIN_SYNC_IOPS = 400;
+        private static final double SSD_MIN_SEQ_MBPS = 200;
+        private static final double SSD_MIN_RANDOM_READ_IOPS = 1500;
+
+        private final String volume;
+        private final String path;
+        private final long timestamp;
+        private final double sequentialReadMBps;
+        private final double randomReadIops;
+        private final double sequentialWriteMBps;
+        private final double syncWriteIops;
+
+        public VolumeResult(String volume, String path, long timestamp, double sequentialReadMBps,
+                double randomReadIops, double sequentialWriteMBps, double syncWriteIops) {
+            this.volume = volume;
+            this.path = path;
+            this.timestamp = timestamp;
+            this.sequentialReadMBps = sequentialReadMBps;
+            this.randomReadIops = randomReadIops;
+            this.sequentialWriteMBps = sequentialWriteMBps;
+            this.syncWriteIops = syncWriteIops;
+        }
+
+        public String getVolume() {
+            return volume;
+        }
+
+        /**
+         * Percorso usato per la prova.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getSequentialReadMBps() {
+            return sequentialReadMBps;
+        }
+
+        public double getRandomReadIops() {
+            return randomReadIops;
+        }
+
+        public double getSequentialWriteMBps() {
+            return sequentialWriteMBps;
+        }
+
+        public double getSyncWriteIops() {
+            return syncWriteIops;
+        }
+
+        public boolean hasReadResults() {
+            return !Double.isNaN(randomReadIops);
+        }
+
+        public boolean hasWriteResults() {
+            return !Double.isNaN(syncWriteIops);
+        }
+
+        /**
+         * Comportamento da SSD in tutte le prove eseguite: molte scritture
+         * sincrone e letture casuali al secondo, buona velocita' sequenziale.
+         */
+        public boolean isSsdLike() {
+            boolean writeOk = !hasWriteResults()
+                    || (syncWriteIops >= SSD_MIN_SYNC_IOPS && sequentialWriteMBps >= SSD_MIN_SEQ_MBPS);
+            boolean readOk = !hasReadResults() || randomReadIops >= SSD_MIN_RANDOM_READ_IOPS;
+            return (hasReadResults() || hasWriteResults()) && writeOk && readOk;
+        }
+    }
+}
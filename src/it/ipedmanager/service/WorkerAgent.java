@@ -0,0 +1,401 @@
+package it.ipedmanager.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.config.PropertiesConfigFile;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Agente che riceve casi da elaborare da altri IPEDManager via HTTP(S) e li
+ * esegue con il proprio {@link JobScheduler} (stessa coda, watchdog, cache
+ * locale e archiviazione dell'interfaccia, con il LocalConfig di questa
+ * macchina).
+ * <p>
+ * Le risposte sono testo {@code chiave=valore}, una per riga, come i
+ * manifest. Se e' impostato un token ogni richiesta deve riportarlo
+ * nell'intestazione {@value #TOKEN_HEADER}.
+ *
+ * <pre>
+ * GET  /status                 carico: slots, running, queued, cores, memoryGB
+ * POST /jobs                   corpo: manifest ({@link JobManifest}); risposta id=N
+ * GET  /jobs/N                 stato del job
+ * GET  /jobs/N/log?from=L      righe di output dalla L-esima; X-Next-Line = prossima
+ * POST /jobs/N/cancel          annulla il job
+ * </pre>
+ *
+ * I percorsi di evidenze e destinazione sono quelli visti da questa macchina
+ * (tipicamente share di rete montate allo stesso modo su tutti gli host).
+ * <p>
+ * Senza keystore ({@link #loadSslContext}) il protocollo e' HTTP in chiaro:
+ * token e manifest, comprese le password delle evidenze, attraversano la rete
+ * leggibili da chiunque la osservi. I manager quindi non inviano casi con
+ * password a worker HTTP che non siano sulla stessa macchina
+ * ({@link WorkerClient#isSecure()}); in rete va usato HTTPS, con il
+ * certificato del worker tra quelli attendibili della JVM del manager
+ * ({@code javax.net.ssl.trustStore}).
+ */
+public class WorkerAgent {
+
+    public static final int DEFAULT_PORT = 8765;
+    public static final String DEFAULT_BIND = "127.0.0.1";
+    public static final String TOKEN_HEADER = "X-IPEDManager-Token";
+    public static final String NEXT_LINE_HEADER = "X-Next-Line";
+
+    private static final int MAX_LOG_LINES = 20_000;
+    private static final int MAX_FINISHED_JOBS = 100;
+    private static final int MAX_MANIFEST_BYTES = 1 << 20;
+
+    private final JobScheduler scheduler;
+    private final HttpServer server;
+    private final byte[] token;
+    private final String host;
+    // Job ricevuti per id, in ordine di arrivo
+    private final Map<Integer, RemoteJob> jobs = new LinkedHashMap<>();
+
+    public WorkerAgent(IpedExecutor executor, InetSocketAddress address, String token) throws IOException {
+        this(executor, address, token, null);
+    }
+
+    /**
+     * @param address indirizzo di ascolto: senza token solo loopback
+     * @param token   token richiesto ai client, null o vuoto per nessuno
+     * @param ssl     contesto TLS per servire HTTPS, null per HTTP
+     * @throws IllegalArgumentException se l'indirizzo non e' loopback e non
+     *                                  c'e' un token
+     */
+    public WorkerAgent(IpedExecutor executor, InetSocketAddress address, String token, SSLContext ssl)
+            throws IOException {
+        this.token = token != null && !token.isEmpty() ? token.getBytes(StandardCharsets.UTF_8) : null;
+        // Chiunque raggiunga la porta puo' far eseguire IPED: in rete solo con token
+        if (this.token == null && (address.getAddress() == null || !address.getAddress().isLoopbackAddress())) {
+            throw new IllegalArgumentException("listening on " + address.getHostString()
+                    + " requires a token (--token or IPEDMANAGER_TOKEN)");
+        }
+        this.scheduler = new JobScheduler(executor);
+        this.host = getHostName();
+        if (ssl != null) {
+            HttpsServer https = HttpsServer.create(address, 0);
+            https.setHttpsConfigurator(new HttpsConfigurator(ssl));
+            this.server = https;
+        } else {
+            this.server = HttpServer.create(address, 0);
+        }
+        server.createContext("/status", this::handleStatus);
+        server.createContext("/jobs", this::handleJobs);
+        ExecutorService pool = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "worker-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(pool);
+    }
+
+    /**
+     * Contesto TLS dal keystore indicato (PKCS12 per .p12/.pfx, altrimenti
+     * JKS), con la stessa password per keystore e chiave.
+     */
+    public static SSLContext loadSslContext(Path keystore, char[] password) throws IOException {
+        String name = keystore.getFileName().toString().toLowerCase(Locale.ROOT);
+        String type = name.endsWith(".p12") || name.endsWith(".pfx") ? "PKCS12" : "JKS";
+        try (InputStream in = Files.newInputStream(keystore)) {
+            KeyStore ks = KeyStore.getInstance(type);
+            ks.load(in, password);
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(ks, password);
+            SSLContext ssl = SSLContext.getInstance("TLS");
+            ssl.init(kmf.getKeyManagers(), null, null);
+            return ssl;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("cannot load " + keystore + ": " + e.getMessage(), e);
+        }
+    }
+
+    public boolean isHttps() {
+        return server instanceof HttpsServer;
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public JobScheduler getScheduler() {
+        return scheduler;
+    }
+
+    private void handleStatus(HttpExchange ex) throws IOException {
+        try {
+            if (!authorize(ex))
+                return;
+            int queued = scheduler.getQueue().getPendingCount();
+            int running = scheduler.getRunningJobs().size();
+            StringBuilder sb = new StringBuilder();
+            sb.append("host=").append(host).append('\n');
+            sb.append("slots=").append(scheduler.getMaxConcurrentJobs()).append('\n');
+            sb.append("running=").append(running).append('\n');
+            sb.append("queued=").append(queued).append('\n');
+            sb.append("cores=").append(HostProbe.getCores()).append('\n');
+            sb.append("memoryGB=").append(HostProbe.getPhysicalMemoryGB()).append('\n');
+            send(ex, 200, sb.toString());
+        } catch (Exception e) {
+            e.printStackTrace();
+            send(ex, 500, "error=" + oneLine(e.getMessage()) + "\n");
+        }
+    }
+
+    private void handleJobs(HttpExchange ex) throws IOException {
+        try {
+            if (!authorize(ex))
+                return;
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            // "", "jobs", id, azione
+            String method = ex.getRequestMethod();
+            if (parts.length == 2 && "POST".equals(method)) {
+                submit(ex);
+                return;
+            }
+            RemoteJob job = null;
+            if (parts.length >= 3) {
+                try {
+                    synchronized (jobs) {
+                        job = jobs.get(Integer.parseInt(parts[2]));
+                    }
+                } catch (NumberFormatException e) {
+                    // 404 sotto
+                }
+            }
+            if (job == null) {
+                send(ex, 404, "error=unknown job\n");
+            } else if (parts.length == 3 && "GET".equals(method)) {
+                send(ex, 200, describe(job.job));
+            } else if (parts.length == 4 && "log".equals(parts[3]) && "GET".equals(method)) {
+                sendLog(ex, job);
+            } else if (parts.length == 4 && "cancel".equals(parts[3]) && "POST".equals(method)) {
+                scheduler.cancel(job.job);
+                send(ex, 200, describe(job.job));
+            } else {
+                send(ex, 404, "error=not found\n");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            send(ex, 500, "error=" + oneLine(e.getMessage()) + "\n");
+        }
+    }
+
+    private void submit(HttpExchange ex) throws IOException {
+        byte[] body = readBody(ex.getRequestBody());
+        if (body == null) {
+            send(ex, 413, "error=manifest too large\n");
+            return;
+        }
+        Path tmp = Files.createTempFile("ipedmanager-job", ".txt");
+        JobManifest manifest;
+        try {
+            Files.write(tmp, body);
+            manifest = JobManifest.load(tmp);
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, "error=" + oneLine(e.getMessage()) + "\n");
+            return;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        if (scheduler.getQueue().isOutputInUse(manifest.getOutput())) {
+            send(ex, 409, "error=output already in use: " + oneLine(manifest.getOutput()) + "\n");
+            return;
+        }
+
+        IpedExecutor.ProcessingOptions options = manifest.getOptions();
+        if (options.maxMemoryGB <= 0) {
+            // Come l'interfaccia: memoria da LocalConfig di questa macchina
+            ConfigManager cm = ConfigManager.getInstance();
+            PropertiesConfigFile lc = cm.isValid() ? cm.getLocalConfig() : null;
+            options.maxMemoryGB = lc != null ? lc.getInt("maxMemoryGB", 8) : 8;
+        }
+        Job job = new Job(manifest.getEvidences(), manifest.getOutput(), manifest.getProfile(), options);
+        RemoteJob remote = new RemoteJob(job);
+        job.setOutputListener(remote::append);
+        synchronized (jobs) {
+            pruneFinished();
+            jobs.put(job.getId(), remote);
+        }
+        System.out.println("Accepted job #" + job.getId() + " " + manifest.getOutput() + " from "
+                + ex.getRemoteAddress().getAddress().getHostAddress());
+        scheduler.submit(job);
+        send(ex, 200, "id=" + job.getId() + "\n");
+    }
+
+    private void sendLog(HttpExchange ex, RemoteJob job) throws IOException {
+        long from = 0;
+        String query = ex.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("from=")) {
+                    try {
+                        from = Long.parseLong(param.substring(5));
+                    } catch (NumberFormatException e) {
+                        // da capo
+                    }
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        long next = job.read(from, sb);
+        ex.getResponseHeaders().set(NEXT_LINE_HEADER, String.valueOf(next));
+        send(ex, 200, sb.toString());
+    }
+
+    /**
+     * Stato del job come righe chiave=valore.
+     */
+    static String describe(Job job) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("id=").append(job.getId()).append('\n');
+        sb.append("status=").append(job.getStatus().name()).append('\n');
+        sb.append("exitCode=").append(job.getExitCode()).append('\n');
+        sb.append("attempts=").append(job.getAttempts()).append('\n');
+        IpedProgress p = job.getProgress();
+        sb.append("percent=").append(p.hasPercent() ? String.format(Locale.ROOT, "%.1f", p.getPercent())
+                : "-1").append('\n');
+        sb.append("eta=").append(p.getEtaSeconds()).append('\n');
+        if (job.getShardCount() > 1) {
+            sb.append("shard=").append(job.getShardIndex() + 1).append('/').append(job.getShardCount()).append('\n');
+        }
+        if (job.getErrorMessage() != null) {
+            sb.append("error=").append(oneLine(job.getErrorMessage())).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tiene al massimo {@value #MAX_FINISHED_JOBS} job conclusi (i piu'
+     * recenti). Chiamato con il lock su {@link #jobs}.
+     */
+    private void pruneFinished() {
+        int finished = 0;
+        for (RemoteJob j : jobs.values()) {
+            if (j.job.getStatus().isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<RemoteJob> it = jobs.values().iterator();
+        while (finished > MAX_FINISHED_JOBS && it.hasNext()) {
+            if (it.next().job.getStatus().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    private boolean authorize(HttpExchange ex) throws IOException {
+        if (token == null)
+            return true;
+        String sent = ex.getRequestHeaders().getFirst(TOKEN_HEADER);
+        if (sent != null && MessageDigest.isEqual(token, sent.getBytes(StandardCharsets.UTF_8)))
+            return true;
+        send(ex, 401, "error=invalid token\n");
+        return false;
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+            if (out.size() > MAX_MANIFEST_BYTES)
+                return null;
+        }
+        return out.toByteArray();
+    }
+
+    private static void send(HttpExchange ex, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            if (bytes.length > 0) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static String oneLine(String s) {
+        return s == null ? "" : s.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "localhost";
+        }
+    }
+
+    /**
+     * Job ricevuto con le ultime {@value #MAX_LOG_LINES} righe di output,
+     * numerate dall'inizio dell'elaborazione.
+     */
+    private static class RemoteJob {
+
+        final Job job;
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+        // Numero della prima riga conservata
+        private long first = 0;
+
+        RemoteJob(Job job) {
+            this.job = job;
+        }
+
+        synchronized void append(String line) {
+            lines.addLast(line);
+            if (lines.size() > MAX_LOG_LINES) {
+                lines.removeFirst();
+                first++;
+            }
+        }
+
+        /**
+         * Aggiunge a {@code sb} le righe da {@code from} (o dalla prima
+         * conservata) e restituisce il numero della riga successiva.
+         */
+        synchronized long read(long from, StringBuilder sb) {
+            long index = first;
+            for (String line : lines) {
+                if (index++ >= from) {
+                    sb.append(line).append('\n');
+                }
+            }
+            return first + lines.size();
+        }
+    }
+}
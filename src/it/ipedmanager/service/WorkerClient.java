@@ -0,0 +1,192 @@
+package it.ipedmanager.service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Client HTTP di un {@link WorkerAgent}.
+ */
+public class WorkerClient {
+
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private final String address;
+    private final URI base;
+    private final String token;
+
+    /**
+     * @param address host:porta del worker (porta di default
+     *                {@value WorkerAgent#DEFAULT_PORT})
+     * @param token   token del worker, null o vuoto se non richiesto
+     */
+    public WorkerClient(String address, String token) {
+        this.address = address.trim();
+        this.base = toUri(address);
+        this.token = token;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Vero se i dati inviati non attraversano la rete in chiaro: worker in
+     * HTTPS o sulla stessa macchina.
+     */
+    public boolean isSecure() {
+        if ("https".equalsIgnoreCase(base.getScheme()))
+            return true;
+        try {
+            return base.getHost() != null && InetAddress.getByName(base.getHost()).isLoopbackAddress();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Carico del worker (slots, running, queued, cores, memoryGB, host).
+     */
+    public Map<String, String> getStatus() throws IOException {
+        return parse(request("GET", "/status", null, null));
+    }
+
+    /**
+     * Invia un manifest e restituisce l'id del job sul worker.
+     */
+    public int submit(String manifest) throws IOException {
+        Map<String, String> r = parse(request("POST", "/jobs", manifest, null));
+        try {
+            return Integer.parseInt(r.get("id"));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid response from " + address);
+        }
+    }
+
+    public Map<String, String> getJob(int id) throws IOException {
+        return parse(request("GET", "/jobs/" + id, null, null));
+    }
+
+    /**
+     * Passa a {@code lines} le righe di output dalla {@code from}-esima e
+     * restituisce il numero della successiva.
+     */
+    public long readLog(int id, long from, Consumer<String> lines) throws IOException {
+        long[] next = { from };
+        String body = request("GET", "/jobs/" + id + "/log?from=" + from, null, next);
+        int start = 0;
+        int end;
+        while ((end = body.indexOf('\n', start)) >= 0) {
+            lines.accept(body.substring(start, end));
+            start = end + 1;
+        }
+        return next[0];
+    }
+
+    public void cancel(int id) throws IOException {
+        request("POST", "/jobs/" + id + "/cancel", "", null);
+    }
+
+    /**
+     * @param nextLine se non null riceve l'intestazione
+     *                 {@value WorkerAgent#NEXT_LINE_HEADER}
+     */
+    private String request(String method, String path, String body, long[] nextLine) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) base.resolve(path).toURL().openConnection();
+        try {
+            conn.setRequestMethod(method);
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            if (token != null && !token.isEmpty()) {
+                conn.setRequestProperty(WorkerAgent.TOKEN_HEADER, token);
+            }
+            if (body != null) {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+                conn.setFixedLengthStreamingMode(bytes.length);
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(bytes);
+                }
+            }
+            int code = conn.getResponseCode();
+            InputStream in = code < 400 ? conn.getInputStream() : conn.getErrorStream();
+            String response = in != null ? readAll(in) : "";
+            if (code >= 400) {
+                String error = parse(response).get("error");
+                throw new IOException(address + ": HTTP " + code + (error != null ? " " + error : ""));
+            }
+            if (nextLine != null) {
+                String header = conn.getHeaderField(WorkerAgent.NEXT_LINE_HEADER);
+                if (header != null) {
+                    nextLine[0] = Long.parseLong(header.trim());
+                }
+            }
+            return response;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Righe chiave=valore (senza escape, come i manifest).
+     */
+    static Map<String, String> parse(String text) throws IOException {
+        Map<String, String> map = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    map.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * URI del worker per un indirizzo host[:porta].
+     */
+    static URI toUri(String address) {
+        String a = address.trim();
+        if (!a.startsWith("http://") && !a.startsWith("https://")) {
+            a = "http://" + a;
+        }
+        if (a.endsWith("/")) {
+            a = a.substring(0, a.length() - 1);
+        }
+        if (a.indexOf(':', a.indexOf("//") + 2) < 0) {
+            a = a + ":" + WorkerAgent.DEFAULT_PORT;
+        }
+        return URI.create(a);
+    }
+
+    @Override
+    public String toString() {
+        return address;
+    }
+}
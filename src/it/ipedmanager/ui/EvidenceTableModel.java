@@ -1,9 +1,14 @@
 package it.ipedmanager.ui;
 
 import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.FolderSizeCalculator;
+import it.ipedmanager.utils.BundleManager;
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * TableModel per la tabella delle evidenze (Design V2).
@@ -20,6 +25,10 @@ public class EvidenceTableModel extends AbstractTableModel {
             "mainframe.table.header.size", "mainframe.table.header.password", "" };
     private final List<Evidence> evidences;
 
+    // Calcoli dimensione cartelle in corso e relativi totali parziali (solo EDT)
+    private final Map<Evidence, FolderSizeCalculator> pendingSizes = new IdentityHashMap<>();
+    private final Map<Evidence, Long> partialSizes = new IdentityHashMap<>();
+
     public EvidenceTableModel() {
         this.evidences = new ArrayList<>();
     }
@@ -60,7 +69,7 @@ public class EvidenceTableModel extends AbstractTableModel {
             case 2:
                 return ev.getFilePath(); // Path (Read-only)
             case 3:
-                return ev.getSizeReadable(); // Size (Read-only)
+                return getSizeText(ev); // Size (Read-only)
             case 4:
                 return ev.getPassword(); // Password (Editable)
             case 5:
@@ -98,15 +107,38 @@ public class EvidenceTableModel extends AbstractTableModel {
         return String.class;
     }
 
+    private String getSizeText(Evidence ev) {
+        if (ev.isSizeKnown())
+            return ev.getSizeReadable();
+        Long partial = partialSizes.get(ev);
+        if (partial != null && partial > 0)
+            return "\u2265 " + Evidence.formatSize(partial);
+        return BundleManager.getString("mainframe.table.size.calculating");
+    }
+
     // Metodi per gestire le evidenze
     public void addEvidence(Evidence evidence) {
         evidences.add(evidence);
         fireTableRowsInserted(evidences.size() - 1, evidences.size() - 1);
+        startSizeCalculation(evidence);
+    }
+
+    /**
+     * Aggiunge un blocco di evidenze con un unico evento di inserimento.
+     */
+    public void addEvidences(List<Evidence> batch) {
+        if (batch == null || batch.isEmpty())
+            return;
+        int first = evidences.size();
+        evidences.addAll(batch);
+        fireTableRowsInserted(first, evidences.size() - 1);
+        for (Evidence ev : batch)
+            startSizeCalculation(ev);
     }
 
     public void removeEvidence(int row) {
         if (row >= 0 && row < evidences.size()) {
-            evidences.remove(row);
+            cancelSizeCalculation(evidences.remove(row));
             fireTableRowsDeleted(row, row);
         }
     }
@@ -114,11 +146,55 @@ public class EvidenceTableModel extends AbstractTableModel {
     public void clearAll() {
         int size = evidences.size();
         if (size > 0) {
+            for (Evidence ev : evidences)
+                cancelSizeCalculation(ev);
             evidences.clear();
             fireTableRowsDeleted(0, size - 1);
         }
     }
 
+    /**
+     * Avvia il calcolo in background della dimensione di una cartella.
+     * La cella mostra un segnaposto (o il totale parziale) fino al risultato.
+     */
+    private void startSizeCalculation(Evidence ev) {
+        if (ev.isSizeKnown())
+            return;
+
+        FolderSizeCalculator calc = new FolderSizeCalculator(ev.getFile().toPath());
+        pendingSizes.put(ev, calc);
+        calc.start(partial -> SwingUtilities.invokeLater(() -> {
+            if (pendingSizes.get(ev) == calc) {
+                partialSizes.put(ev, partial);
+                fireSizeUpdated(ev);
+            }
+        })).whenComplete((total, error) -> SwingUtilities.invokeLater(() -> {
+            if (pendingSizes.get(ev) != calc)
+                return; // Rimossa o annullata nel frattempo
+            pendingSizes.remove(ev);
+            partialSizes.remove(ev);
+            ev.setSize(error == null ? total : calc.getPartialSize());
+            ev.setFileCount(calc.getFileCount());
+            fireSizeUpdated(ev);
+        }));
+    }
+
+    private void cancelSizeCalculation(Evidence ev) {
+        FolderSizeCalculator calc = pendingSizes.remove(ev);
+        partialSizes.remove(ev);
+        if (calc != null)
+            calc.cancel();
+    }
+
+    private void fireSizeUpdated(Evidence ev) {
+        for (int i = 0; i < evidences.size(); i++) {
+            if (evidences.get(i) == ev) {
+                fireTableCellUpdated(i, 3);
+                return;
+            }
+        }
+    }
+
     public Evidence getEvidence(int row) {
         if (row >= 0 && row < evidences.size()) {
             return evidences.get(row);
@@ -1,9 +1,16 @@
 package it.ipedmanager.ui;
 
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.IpedProgress;
+import it.ipedmanager.service.LogRingBuffer;
+import it.ipedmanager.service.ProcessSampler;
+import it.ipedmanager.service.SampleRing;
+import it.ipedmanager.service.SpillingLogStore;
+import it.ipedmanager.ui.components.Sparkline;
 import it.ipedmanager.utils.BundleManager;
+import it.ipedmanager.utils.PerfEvents;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.text.DefaultCaret;
 import java.awt.*;
 
 /**
@@ -13,19 +20,51 @@ public class ExecutionMonitorDialog extends JDialog {
 
     private static final long serialVersionUID = 1L;
 
-    private JTextArea logArea;
+    // Cadenza di aggiornamento del log (circa 20 fotogrammi al secondo)
+    private static final int FRAME_MS = 50;
+    private static final int LOG_QUEUE_CAPACITY = 65536;
+    private static final int MAX_LINES_PER_FRAME = 20000;
+    // Righe di log tenute in memoria; le precedenti vengono lette dal disco
+    private static final int LOG_MEMORY_LINES = 20000;
+
+    private JList<String> logList;
+    private LogListModel logModel;
     private JProgressBar progressBar;
     private JButton closeButton;
+    private JLabel statsLabel;
+    private JScrollPane logScroll;
     private boolean finished = false;
 
+    // Le righe di IPED passano dal buffer e vengono aggiunte alla UI a blocchi
+    private final LogRingBuffer logBuffer = new LogRingBuffer(LOG_QUEUE_CAPACITY,
+            LogRingBuffer.OverflowPolicy.DROP);
+    private final SpillingLogStore logStore = new SpillingLogStore(LOG_MEMORY_LINES);
+    private Timer logTimer;
+    private IpedProgress progress;
+
+    // Grafici dell'uso di risorse del processo IPED
+    private JPanel chartsPanel;
+    private Sparkline cpuChart;
+    private Sparkline memoryChart;
+    private Sparkline readChart;
+    private Sparkline writeChart;
+    private Sparkline faultsChart;
+    private SampleRing samples;
+    private double[] series;
+    private long lastSampleCount = 0;
+
     public ExecutionMonitorDialog(Window owner) {
-        super(owner, BundleManager.getString("dialog.monitor.title"), ModalityType.APPLICATION_MODAL);
+        // Non modale: mentre IPED lavora si possono preparare e accodare altri casi
+        super(owner, BundleManager.getString("dialog.monitor.title"), ModalityType.MODELESS);
         setSize(900, 600);
         setLocationRelativeTo(owner);
         setLayout(new BorderLayout());
         setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE); // Prevent closing while running
 
         initComponents();
+
+        logTimer = new Timer(FRAME_MS, e -> flushLog());
+        logTimer.start();
     }
 
     private void initComponents() {
@@ -40,28 +79,61 @@ public class ExecutionMonitorDialog extends JDialog {
         title.setIconTextGap(12);
         header.add(title, BorderLayout.CENTER);
 
-        add(header, BorderLayout.NORTH);
+        // Grafici CPU/memoria/I-O, visibili quando arrivano i primi campioni
+        cpuChart = new Sparkline(BundleManager.getString("dialog.monitor.chart.cpu"),
+                v -> String.format("%.0f%%", v));
+        memoryChart = new Sparkline(BundleManager.getString("dialog.monitor.chart.memory"),
+                v -> Evidence.formatSize(Math.round(v)));
+        readChart = new Sparkline(BundleManager.getString("dialog.monitor.chart.read"),
+                v -> Evidence.formatSize(Math.round(v)) + "/s");
+        writeChart = new Sparkline(BundleManager.getString("dialog.monitor.chart.write"),
+                v -> Evidence.formatSize(Math.round(v)) + "/s");
+        faultsChart = new Sparkline(BundleManager.getString("dialog.monitor.chart.faults"),
+                v -> String.format("%.0f/s", v));
+        readChart.setColors(new Color(5, 150, 105), new Color(100, 116, 139)); // Emerald
+        writeChart.setColors(new Color(217, 119, 6), new Color(100, 116, 139)); // Amber
+        faultsChart.setColors(new Color(220, 38, 38), new Color(100, 116, 139)); // Red
+
+        chartsPanel = new JPanel(new GridLayout(1, 5, 16, 0));
+        chartsPanel.setBackground(Color.WHITE);
+        chartsPanel.setBorder(new EmptyBorder(10, 20, 10, 20));
+        chartsPanel.add(cpuChart);
+        chartsPanel.add(memoryChart);
+        chartsPanel.add(readChart);
+        chartsPanel.add(writeChart);
+        chartsPanel.add(faultsChart);
+        chartsPanel.setVisible(false);
 
-        // Log Area
-        logArea = new JTextArea();
-        logArea.setEditable(false);
-        logArea.setFont(new Font("Consolas", Font.PLAIN, 12));
-        logArea.setBackground(new Color(250, 250, 250));
-        logArea.setMargin(new Insets(10, 10, 10, 10));
+        JPanel north = new JPanel(new BorderLayout());
+        north.add(header, BorderLayout.NORTH);
+        north.add(chartsPanel, BorderLayout.SOUTH);
+        add(north, BorderLayout.NORTH);
 
-        // Auto-scroll
-        DefaultCaret caret = (DefaultCaret) logArea.getCaret();
-        caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
+        // Log Area: lista virtualizzata, renderizza solo le righe visibili
+        logModel = new LogListModel(logStore);
+        logList = new JList<>(logModel);
+        Font logFont = new Font("Consolas", Font.PLAIN, 12);
+        logList.setFont(logFont);
+        logList.setBackground(new Color(250, 250, 250));
+        logList.setBorder(new EmptyBorder(10, 10, 10, 10));
+        // Dimensioni fisse: evita che la JList misuri tutte le righe (anche quelle su disco)
+        logList.setFixedCellHeight(logList.getFontMetrics(logFont).getHeight());
+        logList.setFixedCellWidth(4000);
 
-        JScrollPane scroll = new JScrollPane(logArea);
-        scroll.setBorder(BorderFactory.createEmptyBorder());
-        add(scroll, BorderLayout.CENTER);
+        logScroll = new JScrollPane(logList);
+        logScroll.setBorder(BorderFactory.createEmptyBorder());
+        add(logScroll, BorderLayout.CENTER);
 
         // Footer
         JPanel footer = new JPanel(new BorderLayout());
         footer.setBackground(Color.WHITE);
         footer.setBorder(new EmptyBorder(15, 20, 15, 20));
 
+        statsLabel = new JLabel(" ");
+        statsLabel.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        statsLabel.setForeground(new Color(100, 116, 139));
+        statsLabel.setBorder(new EmptyBorder(0, 0, 6, 0));
+
         progressBar = new JProgressBar();
         progressBar.setIndeterminate(true);
         progressBar.setString(BundleManager.getString("dialog.monitor.progress.working"));
@@ -72,23 +144,136 @@ public class ExecutionMonitorDialog extends JDialog {
         closeButton.setEnabled(false);
         closeButton.addActionListener(e -> dispose());
 
+        footer.add(statsLabel, BorderLayout.NORTH);
         footer.add(progressBar, BorderLayout.CENTER);
         footer.add(closeButton, BorderLayout.EAST);
 
         add(footer, BorderLayout.SOUTH);
     }
 
+    /**
+     * Accoda una riga di log. Thread-safe e non bloccante: la riga viene mostrata
+     * al prossimo aggiornamento del timer.
+     */
     public void appendLog(String text) {
-        SwingUtilities.invokeLater(() -> {
-            logArea.append(text + "\n");
-        });
+        logBuffer.offer(text);
+    }
+
+    /**
+     * Buffer delle righe di log (contatori righe/s, profondita' coda, scarti).
+     */
+    public LogRingBuffer getLogBuffer() {
+        return logBuffer;
+    }
+
+    private void flushLog() {
+        // Auto-scroll solo se l'utente e' gia' in fondo al log
+        JScrollBar bar = logScroll.getVerticalScrollBar();
+        boolean atBottom = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - logList.getFixedCellHeight();
+
+        int before = logStore.getLineCount();
+        PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.LOG_FLUSH);
+        int drained = logBuffer.drain(logStore::append, MAX_LINES_PER_FRAME);
+        if (drained > 0) {
+            logStore.flush();
+            logModel.linesAdded(before, logStore.getLineCount());
+            if (atBottom) {
+                logList.ensureIndexIsVisible(logStore.getLineCount() - 1);
+            }
+            span.end(getTitle(), drained);
+        }
+        updateStats();
+        updateProgress();
+        updateCharts();
+    }
+
+    /**
+     * Collega il modello di avanzamento alimentato dal parser dell'output.
+     */
+    public void setProgress(IpedProgress progress) {
+        this.progress = progress;
+    }
+
+    private void updateProgress() {
+        if (finished || progress == null || !progress.hasPercent())
+            return;
+        if (progressBar.isIndeterminate()) {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(1000);
+        }
+        progressBar.setValue((int) Math.round(progress.getPercent() * 10));
+
+        String items = progress.getItemsPerSecond() >= 0 ? String.format("%.1f", progress.getItemsPerSecond()) : "-";
+        String bytes = progress.getBytesPerSecond() >= 0
+                ? Evidence.formatSize(Math.round(progress.getBytesPerSecond()))
+                : "-";
+        progressBar.setString(BundleManager.getString("dialog.monitor.progress.detail",
+                String.format("%.1f", progress.getPercent()), items, bytes,
+                IpedProgress.formatDuration(progress.getEtaSeconds())));
+    }
+
+    /**
+     * Collega i campioni di CPU, memoria e I/O del processo IPED. Senza
+     * campioni (sistemi diversi da Linux) i grafici restano nascosti.
+     */
+    public void setSampler(ProcessSampler sampler) {
+        this.samples = sampler.getSamples();
+        this.series = new double[samples.getCapacity()];
+    }
+
+    private void updateCharts() {
+        if (samples == null || samples.getTotalSamples() == lastSampleCount)
+            return;
+        lastSampleCount = samples.getTotalSamples();
+
+        update(cpuChart, ProcessSampler.CPU_PERCENT);
+        update(memoryChart, ProcessSampler.RSS_BYTES);
+        update(readChart, ProcessSampler.READ_BYTES_PER_SEC);
+        update(writeChart, ProcessSampler.WRITE_BYTES_PER_SEC);
+        update(faultsChart, ProcessSampler.MAJOR_FAULTS_PER_SEC);
+
+        // Dettagli per distinguere un caso CPU-bound da uno I/O-bound o senza memoria
+        cpuChart.setToolTipText(BundleManager.getString("dialog.monitor.chart.tooltip.cpu",
+                String.format("%.0f", samples.getLast(ProcessSampler.IO_WAIT_PERCENT)),
+                Math.round(samples.getLast(ProcessSampler.THREADS))));
+        memoryChart.setToolTipText(BundleManager.getString("dialog.monitor.chart.tooltip.memory",
+                Evidence.formatSize(Math.round(samples.getLast(ProcessSampler.SWAP_BYTES)))));
+
+        if (!chartsPanel.isVisible()) {
+            chartsPanel.setVisible(true);
+            revalidate();
+        }
+    }
+
+    private void update(Sparkline chart, int metric) {
+        chart.setValues(series, samples.copySeries(metric, series));
+    }
+
+    private void updateStats() {
+        String stats = BundleManager.getString("dialog.monitor.stats",
+                Math.round(logBuffer.getLinesPerSecond()), logBuffer.getQueueDepth());
+        long dropped = logBuffer.getDroppedLines();
+        if (dropped > 0) {
+            stats += " \u00B7 " + BundleManager.getString("dialog.monitor.stats.dropped", dropped);
+        }
+        statsLabel.setText(stats);
+    }
+
+    @Override
+    public void dispose() {
+        if (logTimer != null) {
+            logTimer.stop();
+        }
+        logStore.close();
+        super.dispose();
     }
 
     public void setFinished(boolean success) {
         SwingUtilities.invokeLater(() -> {
+            flushLog();
             finished = true;
             progressBar.setIndeterminate(false);
-            progressBar.setValue(100);
+            progressBar.setValue(progressBar.getMaximum());
             progressBar.setString(success ? BundleManager.getString("dialog.monitor.status.success")
                     : BundleManager.getString("dialog.monitor.status.error"));
             setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
@@ -98,4 +283,34 @@ public class ExecutionMonitorDialog extends JDialog {
             closeButton.requestFocus();
         });
     }
+
+    /**
+     * ListModel che legge le righe dal log a memoria limitata.
+     */
+    private static class LogListModel extends AbstractListModel<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SpillingLogStore store;
+
+        LogListModel(SpillingLogStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public int getSize() {
+            return store.getLineCount();
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return store.getLine(index);
+        }
+
+        void linesAdded(int from, int to) {
+            if (to > from) {
+                fireIntervalAdded(this, from, to - 1);
+            }
+        }
+    }
 }
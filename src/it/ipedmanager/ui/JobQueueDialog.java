@@ -0,0 +1,284 @@
+package it.ipedmanager.ui;
+
+import it.ipedmanager.service.CaseArchiver;
+import it.ipedmanager.service.IpedProgress;
+import it.ipedmanager.service.Job;
+import it.ipedmanager.service.JobScheduler;
+import it.ipedmanager.service.ResourceGovernor;
+import it.ipedmanager.ui.config.VectorIcon;
+import it.ipedmanager.utils.BundleManager;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Dialog non modale con la coda delle elaborazioni: job in attesa, in corso e
+ * terminati nella sessione, con possibilita' di annullarli.
+ */
+public class JobQueueDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Color HEADER_BG = new Color(30, 58, 138); // Navy Blue (same as MainFrame)
+    private static final Color TEXT_PRIMARY = new Color(15, 23, 42);
+    private static final int REFRESH_MS = 1000;
+
+    private final JobScheduler scheduler;
+    private final JobTableModel tableModel = new JobTableModel();
+    private final Consumer<Job> schedulerListener = job -> SwingUtilities.invokeLater(this::refresh);
+    private JTable table;
+    private JLabel summaryLabel;
+    private Timer refreshTimer;
+
+    public JobQueueDialog(Frame owner, JobScheduler scheduler) {
+        super(owner, BundleManager.getString("dialog.jobs.title"), false);
+        this.scheduler = scheduler;
+
+        setSize(820, 400);
+        setLocationRelativeTo(owner);
+        initComponents();
+        refresh();
+
+        scheduler.addListener(schedulerListener);
+        // L'avanzamento dei job in corso cambia senza eventi di stato
+        refreshTimer = new Timer(REFRESH_MS, e -> {
+            if (tableModel.getRowCount() > 0) {
+                tableModel.fireTableRowsUpdated(0, tableModel.getRowCount() - 1);
+            }
+        });
+        refreshTimer.start();
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(Color.WHITE);
+
+        getRootPane().putClientProperty("JRootPane.titleBarBackground", HEADER_BG);
+        getRootPane().putClientProperty("JRootPane.titleBarForeground", Color.WHITE);
+
+        table = new JTable(tableModel);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        table.setRowHeight(26);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        table.getColumnModel().getColumn(0).setMaxWidth(50);
+        table.getColumnModel().getColumn(2).setPreferredWidth(110);
+        table.getColumnModel().getColumn(3).setPreferredWidth(220);
+
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        scroll.getViewport().setBackground(Color.WHITE);
+        add(scroll, BorderLayout.CENTER);
+
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.setBackground(Color.WHITE);
+        footer.setBorder(new EmptyBorder(5, 15, 10, 10));
+
+        summaryLabel = new JLabel(" ");
+        summaryLabel.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        summaryLabel.setForeground(new Color(100, 116, 139));
+        footer.add(summaryLabel, BorderLayout.WEST);
+
+        JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        btnPanel.setBackground(Color.WHITE);
+
+        JButton btnCancel = createButton(BundleManager.getString("dialog.jobs.button.cancel"), "trash");
+        JButton btnClear = createButton(BundleManager.getString("dialog.jobs.button.clearFinished"), "refresh");
+        JButton btnClose = createButton(BundleManager.getString("dialog.monitor.button.close"), null);
+
+        btnCancel.addActionListener(e -> cancelSelected());
+        btnClear.addActionListener(e -> {
+            scheduler.getQueue().clearFinished();
+            refresh();
+        });
+        btnClose.addActionListener(e -> dispose());
+
+        btnPanel.add(btnCancel);
+        btnPanel.add(btnClear);
+        btnPanel.add(btnClose);
+        footer.add(btnPanel, BorderLayout.EAST);
+
+        add(footer, BorderLayout.SOUTH);
+    }
+
+    private JButton createButton(String text, String iconName) {
+        JButton btn = new JButton(text);
+        btn.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        if (iconName != null) {
+            btn.setIcon(new VectorIcon(iconName, 14, TEXT_PRIMARY));
+        }
+        btn.setFocusPainted(false);
+        btn.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        return btn;
+    }
+
+    private void cancelSelected() {
+        int row = table.getSelectedRow();
+        if (row < 0)
+            return;
+        Job job = tableModel.getJob(row);
+        if (job.getStatus().isFinished())
+            return;
+        boolean confirm = DialogHelper.showConfirm(this,
+                BundleManager.getString("dialog.jobs.cancel.title"),
+                BundleManager.getString("dialog.jobs.cancel.message", job.getName()));
+        if (confirm) {
+            scheduler.cancel(job);
+        }
+    }
+
+    private void refresh() {
+        Job selected = table.getSelectedRow() >= 0 ? tableModel.getJob(table.getSelectedRow()) : null;
+        tableModel.setJobs(scheduler.getQueue().getJobs());
+        if (selected != null) {
+            int row = tableModel.indexOf(selected);
+            if (row >= 0) {
+                table.setRowSelectionInterval(row, row);
+            }
+        }
+        ResourceGovernor governor = scheduler.getGovernor();
+        summaryLabel.setText(BundleManager.getString("dialog.jobs.summary",
+                scheduler.getRunningJobs().size(), scheduler.getQueue().getPendingCount(),
+                scheduler.getMaxConcurrentJobs()) + " \u00B7 "
+                + BundleManager.getString("dialog.jobs.resources",
+                        governor.getUsedMemoryGB(), governor.getMemoryBudgetGB(),
+                        governor.getUsedThreads(), governor.getThreadBudget()));
+    }
+
+    @Override
+    public void dispose() {
+        scheduler.removeListener(schedulerListener);
+        if (refreshTimer != null) {
+            refreshTimer.stop();
+        }
+        super.dispose();
+    }
+
+    static String getStatusText(Job.Status status) {
+        switch (status) {
+            case QUEUED:
+                return BundleManager.getString("dialog.jobs.status.queued");
+            case RUNNING:
+                return BundleManager.getString("dialog.jobs.status.running");
+            case COMPLETED:
+                return BundleManager.getString("dialog.jobs.status.completed");
+            case FAILED:
+                return BundleManager.getString("dialog.jobs.status.failed");
+            default:
+                return BundleManager.getString("dialog.jobs.status.cancelled");
+        }
+    }
+
+    /**
+     * Modello della tabella dei job.
+     */
+    private static class JobTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = {
+                "#",
+                BundleManager.getString("dialog.jobs.column.case"),
+                BundleManager.getString("dialog.jobs.column.status"),
+                BundleManager.getString("dialog.jobs.column.progress"),
+                BundleManager.getString("dialog.jobs.column.output") };
+
+        private List<Job> jobs = new ArrayList<>();
+
+        void setJobs(List<Job> jobs) {
+            this.jobs = jobs;
+            fireTableDataChanged();
+        }
+
+        Job getJob(int row) {
+            return jobs.get(row);
+        }
+
+        int indexOf(Job job) {
+            return jobs.indexOf(job);
+        }
+
+        @Override
+        public int getRowCount() {
+            return jobs.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Job job = jobs.get(row);
+            switch (column) {
+                case 0:
+                    return job.getId();
+                case 1:
+                    return job.getName();
+                case 2:
+                    String status = getStatusText(job.getStatus());
+                    if (job.getAttempts() > 1) {
+                        status = BundleManager.getString("dialog.jobs.status.attempt", status, job.getAttempts());
+                    }
+                    if (job.getWorker() != null) {
+                        status = BundleManager.getString("dialog.jobs.status.worker", status, job.getWorker());
+                    }
+                    return status;
+                case 3:
+                    return getProgressText(job);
+                default:
+                    CaseArchiver.Migration m = job.getMigration();
+                    if (m != null && m.getState() == CaseArchiver.Migration.State.DONE)
+                        return m.getTarget().toString();
+                    return job.getOutputPath();
+            }
+        }
+
+        private String getProgressText(Job job) {
+            switch (job.getStatus()) {
+                case RUNNING:
+                    IpedProgress p = job.getProgress();
+                    // Nell'elaborazione a blocchi avanzamento e ETA sono del blocco in corso
+                    String shard = job.getShardCount() > 1 ? BundleManager.getString("dialog.jobs.shard",
+                            job.getShardIndex() + 1, job.getShardCount()) + "  " : "";
+                    if (!p.hasPercent())
+                        return shard + "\u2026";
+                    return shard + String.format("%.1f%%  ETA %s", p.getPercent(),
+                            IpedProgress.formatDuration(p.getEtaSeconds()));
+                case QUEUED:
+                    return "";
+                default:
+                    long seconds = (job.getEndTime() - job.getStartTime()) / 1000;
+                    String duration = job.getStartTime() > 0 ? IpedProgress.formatDuration(seconds) : "";
+                    CaseArchiver.Migration m = job.getMigration();
+                    return m != null ? duration + "  " + getMigrationText(m) : duration;
+            }
+        }
+
+        private String getMigrationText(CaseArchiver.Migration m) {
+            switch (m.getState()) {
+                case PENDING:
+                    return BundleManager.getString("dialog.jobs.archive.pending");
+                case COPYING:
+                    long total = Math.max(1, m.getBytesTotal());
+                    return BundleManager.getString("dialog.jobs.archive.copying",
+                            String.format("%.0f%%", m.getBytesCopied() * 100.0 / total));
+                case DONE:
+                    return BundleManager.getString("dialog.jobs.archive.done");
+                default:
+                    return BundleManager.getString("dialog.jobs.archive.failed");
+            }
+        }
+    }
+}
@@ -2,12 +2,18 @@ package it.ipedmanager.ui;
 
 import it.ipedmanager.Main;
 import it.ipedmanager.model.Evidence;
+import it.ipedmanager.service.EvidenceIngestor;
 import it.ipedmanager.service.IpedExecutor;
+import it.ipedmanager.service.Job;
+import it.ipedmanager.service.JobScheduler;
+import it.ipedmanager.service.JobSpool;
+import it.ipedmanager.service.StatusServer;
 import it.ipedmanager.service.IpedExecutor.ProcessingOptions;
 
 import it.ipedmanager.config.ConfigManager;
 import it.ipedmanager.config.PropertiesConfigFile;
 import it.ipedmanager.utils.BundleManager;
+import it.ipedmanager.utils.PerfEvents;
 
 import com.formdev.flatlaf.FlatIntelliJLaf;
 import it.ipedmanager.ui.config.VectorIcon;
@@ -24,7 +30,10 @@ import java.awt.dnd.*;
 import java.awt.event.*;
 import java.io.File;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Finestra principale di IPEDManager - Design Professionale
@@ -40,11 +49,12 @@ public class MainFrame extends JFrame {
     private JLabel ipedPathLabel;
 
     // Checkbox opzioni elaborazione
-    private JCheckBox chkContinue, chkRestart, chkAppend, chkNoGui, chkNoLog;
+    private JCheckBox chkContinue, chkRestart, chkAppend, chkSharded, chkNoGui, chkNoLog;
     private JCheckBox chkPortable, chkAddOwner, chkNoPstAttachs, chkDownloadInternet;
 
     // Combo e campi
     private JComboBox<String> profileCombo;
+    private boolean reloadingProfiles;
     private JComboBox<String> languageCombo;
     private JTextField splashField;
     private JTextField extraParamsField;
@@ -59,6 +69,11 @@ public class MainFrame extends JFrame {
 
     // Servizi
     private IpedExecutor ipedExecutor;
+    private EvidenceIngestor evidenceIngestor;
+    private JobScheduler jobScheduler;
+    private JobQueueDialog jobQueueDialog;
+    // Monitor aperti per i job non ancora terminati
+    private final Map<Job, ExecutionMonitorDialog> jobMonitors = new ConcurrentHashMap<>();
     private String destinationPath = "";
     private String zipDestinationPath = "";
     private File lastUsedDir; // Memory field
@@ -102,11 +117,21 @@ public class MainFrame extends JFrame {
         }
 
         this.ipedExecutor = new IpedExecutor();
+        this.jobScheduler = new JobScheduler(ipedExecutor);
+        jobScheduler.addListener(this::onJobChanged);
+        // Casi presi dalla coda condivisa, se configurata (managerSpoolDir)
+        new JobSpool(jobScheduler).start();
 
         // Initialize ConfigManager if IPED is found
         if (ipedExecutor.isIpedConfigured()) {
             ConfigManager.getInstance().initialize(ipedExecutor.getIpedJarPath());
         }
+        // Profili aggiunti o rimossi da fuori (es. copiati nella cartella di IPED)
+        ConfigManager.getInstance().addListener(this::onConfigChanged);
+        // Stato dei job e metriche via HTTP, se configurati (managerStatusPort)
+        if (ConfigManager.getInstance().isValid()) {
+            StatusServer.startFromSettings(jobScheduler, ConfigManager.getInstance().getLocalConfig());
+        }
 
         // Initialize i18n
         String locale = "it-IT";
@@ -169,6 +194,14 @@ public class MainFrame extends JFrame {
         tableModel = new EvidenceTableModel();
         evidenceTable = new JTable(tableModel);
 
+        // Le evidenze vengono costruite in background e inserite a blocchi sull'EDT
+        evidenceIngestor = new EvidenceIngestor(batch -> {
+            if (!batch.isEmpty()) {
+                tableModel.addEvidences(batch);
+            }
+            updateButtonStates();
+        }, SwingUtilities::invokeLater);
+
         destinationLabel = new JLabel(BundleManager.getString("mainframe.noFolderSelected"));
         zipDestinationLabel = new JLabel(BundleManager.getString("mainframe.destinationDefault"));
         ipedPathLabel = new JLabel(
@@ -322,6 +355,15 @@ public class MainFrame extends JFrame {
         // Profile Manager
         popup.add(createPopupItem(BundleManager.getString("mainframe.menu.profiles"), "folder",
                 e -> openProfileManager()));
+        popup.add(createPopupItem(BundleManager.getString("mainframe.menu.jobs"), "report",
+                e -> openJobQueue()));
+        popup.add(createPopupItem(BundleManager.getString("mainframe.menu.history"), "archive",
+                e -> new RunHistoryDialog(this).setVisible(true)));
+        JMenuItem jfrItem = createPopupItem(BundleManager.getString(
+                PerfEvents.isRecording() ? "mainframe.menu.jfrStop" : "mainframe.menu.jfrStart"), "report",
+                e -> toggleRecording());
+        jfrItem.setEnabled(PerfEvents.isAvailable());
+        popup.add(jfrItem);
         popup.addSeparator();
 
         // Help Section
@@ -407,7 +449,7 @@ public class MainFrame extends JFrame {
 
         // Listen for profile selection changes
         profileCombo.addItemListener(e -> {
-            if (e.getStateChange() == java.awt.event.ItemEvent.SELECTED) {
+            if (e.getStateChange() == java.awt.event.ItemEvent.SELECTED && !reloadingProfiles) {
                 String selectedProfile = (String) profileCombo.getSelectedItem();
                 onProfileSelected(selectedProfile);
             }
@@ -455,7 +497,35 @@ public class MainFrame extends JFrame {
         }
     }
 
+    /**
+     * Aggiorna l'elenco dei profili se e' cambiata la cartella profiles/ o un
+     * suo profilo (chiamato dal thread di osservazione del ConfigManager).
+     */
+    private void onConfigChanged(java.nio.file.Path path) {
+        java.nio.file.Path ipedPath = ConfigManager.getInstance().getIpedPath();
+        if (ipedPath == null)
+            return;
+        java.nio.file.Path profilesDir = ipedPath.toAbsolutePath().normalize().resolve("profiles");
+        if (path.equals(profilesDir) || profilesDir.equals(path.getParent()) || path.equals(profilesDir.getParent())) {
+            SwingUtilities.invokeLater(() -> {
+                if (profileCombo != null) {
+                    reloadProfiles();
+                }
+            });
+        }
+    }
+
     private void reloadProfiles() {
+        // La ricostruzione dell'elenco non deve applicare di nuovo il profilo
+        reloadingProfiles = true;
+        try {
+            fillProfiles();
+        } finally {
+            reloadingProfiles = false;
+        }
+    }
+
+    private void fillProfiles() {
         String current = (String) profileCombo.getSelectedItem();
         profileCombo.removeAllItems();
         profileCombo.addItem(BundleManager.getString("mainframe.profile.custom"));
@@ -668,6 +738,8 @@ public class MainFrame extends JFrame {
                 BundleManager.getString("mainframe.check.restart.desc"));
         chkAppend = cb(BundleManager.getString("mainframe.check.append"),
                 BundleManager.getString("mainframe.check.append.desc"));
+        chkSharded = cb(BundleManager.getString("mainframe.check.sharded"),
+                BundleManager.getString("mainframe.check.sharded.desc"));
 
         // Logic: Mutual Exclusion (Radio Button behavior)
         chkContinue.addActionListener(e -> {
@@ -697,7 +769,7 @@ public class MainFrame extends JFrame {
         // Card 1: Modalità
         cardsRow.add(createCard(BundleManager.getString("mainframe.card.mode"), "settings",
                 createOptionGroup(new JCheckBox[] {
-                        chkContinue, chkRestart, chkAppend
+                        chkContinue, chkRestart, chkAppend, chkSharded
                 }), BundleManager.getString("mainframe.card.help.mode")));
 
         // Card 2: Output
@@ -1023,7 +1095,13 @@ public class MainFrame extends JFrame {
                         setHorizontalAlignment(JLabel.RIGHT);
                         setFont(new Font("Consolas", Font.PLAIN, 10));
                         setForeground(isSelected ? Color.BLACK : new Color(100, 100, 100));
-                        setToolTipText(null);
+                        Evidence sizedEv = tableModel.getEvidence(row);
+                        if (sizedEv != null && sizedEv.isDirectory() && sizedEv.isSizeKnown()) {
+                            setToolTipText(BundleManager.getString("mainframe.table.tooltip.fileCount",
+                                    sizedEv.getFileCount()));
+                        } else {
+                            setToolTipText(null);
+                        }
                         break;
                     case 4: // Password - show dots if present
                         setHorizontalAlignment(JLabel.CENTER);
@@ -1217,7 +1295,9 @@ public class MainFrame extends JFrame {
     private void updateButtonStates() {
         boolean hasFiles = !tableModel.isEmpty();
         boolean hasDest = !destinationPath.isEmpty();
-        boolean canProcess = hasFiles && hasDest && ipedExecutor.isIpedConfigured();
+        // Con evidenze ancora in aggiunta il job partirebbe con una lista parziale
+        boolean ingesting = evidenceIngestor != null && evidenceIngestor.getPendingCount() > 0;
+        boolean canProcess = hasFiles && hasDest && !ingesting && ipedExecutor.isIpedConfigured();
 
         processButton.setEnabled(canProcess);
         previewButton.setEnabled(hasFiles);
@@ -1296,6 +1376,9 @@ public class MainFrame extends JFrame {
 
         // Apri il dialog
         it.ipedmanager.ui.config.ConfigManagerDialog.showDialog(this);
+
+        // I limiti della coda potrebbero essere cambiati
+        jobScheduler.limitsChanged();
     }
 
     private void showHelp() {
@@ -1308,6 +1391,27 @@ public class MainFrame extends JFrame {
         DialogHelper.showInfo(this, BundleManager.getString("mainframe.menu.paramGuide"), params, "terminal");
     }
 
+    /**
+     * Avvia o ferma la registrazione JFR della sessione, da allegare alle
+     * segnalazioni di lentezza.
+     */
+    private void toggleRecording() {
+        String title = BundleManager.getString("mainframe.jfr.title");
+        try {
+            if (PerfEvents.isRecording()) {
+                java.nio.file.Path file = PerfEvents.stopRecording();
+                DialogHelper.showSuccess(this, title, BundleManager.getString("mainframe.jfr.saved", file));
+            } else {
+                java.nio.file.Path file = PerfEvents.newRecordingFile();
+                PerfEvents.startRecording(file);
+                DialogHelper.showInfo(this, title, BundleManager.getString("mainframe.jfr.started", file));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            DialogHelper.showError(this, title, BundleManager.getString("mainframe.jfr.error", e.getMessage()));
+        }
+    }
+
     private void showAbout() {
         String about = BundleManager.getString("mainframe.about.content", Main.VERSION, Main.AUTHOR);
         DialogHelper.showInfo(this, BundleManager.getString("mainframe.about.title"), about, "info");
@@ -1323,8 +1427,7 @@ public class MainFrame extends JFrame {
                 SUPPORTED_EXTENSIONS));
         if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             lastUsedDir = fc.getCurrentDirectory();
-            for (File f : fc.getSelectedFiles())
-                tableModel.addEvidence(new Evidence(f));
+            evidenceIngestor.submit(Arrays.asList(fc.getSelectedFiles()), null);
             updateButtonStates();
         }
     }
@@ -1337,7 +1440,7 @@ public class MainFrame extends JFrame {
             fc.setCurrentDirectory(lastUsedDir);
         if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             lastUsedDir = fc.getCurrentDirectory();
-            tableModel.addEvidence(new Evidence(fc.getSelectedFile()));
+            evidenceIngestor.submit(Arrays.asList(fc.getSelectedFile()), null);
             updateButtonStates();
         }
     }
@@ -1380,6 +1483,7 @@ public class MainFrame extends JFrame {
         o.downloadInternetData = chkDownloadInternet.isSelected();
         o.splashMessage = splashField.getText();
         o.extraParams = extraParamsField.getText();
+        o.shards = chkSharded.isSelected() ? 3 : 0;
 
         // Fix: Read RAM from LocalConfig
         try {
@@ -1391,6 +1495,9 @@ public class MainFrame extends JFrame {
                 it.ipedmanager.config.PropertiesConfigFile lc = cm.getLocalConfig();
                 if (lc != null) {
                     o.maxMemoryGB = lc.getInt("maxMemoryGB", 8); // Default 8GB
+                    if (o.shards > 0) {
+                        o.shards = Math.max(2, lc.getInt("managerShards", o.shards));
+                    }
                 }
             }
         } catch (Exception e) {
@@ -1434,6 +1541,14 @@ public class MainFrame extends JFrame {
     }
 
     private void processEvidences() {
+        int ingesting = evidenceIngestor.getPendingCount();
+        if (ingesting > 0) {
+            JOptionPane.showMessageDialog(this,
+                    BundleManager.getString("mainframe.dialog.warning.evidencePending", ingesting),
+                    BundleManager.getString("dialog.warning.title"),
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         if (tableModel.isEmpty()) {
             JOptionPane.showMessageDialog(this, BundleManager.getString("mainframe.dialog.warning.noEvidence"),
                     BundleManager.getString("dialog.warning.title"),
@@ -1457,40 +1572,69 @@ public class MainFrame extends JFrame {
             return;
         }
 
-        // Open Monitor Dialog
-        ExecutionMonitorDialog monitor = new ExecutionMonitorDialog(this);
-        monitor.setLocationRelativeTo(this);
+        // Due processi IPED sulla stessa destinazione si corromperebbero a vicenda
+        if (jobScheduler.getQueue().isOutputInUse(destinationPath)) {
+            DialogHelper.showWarning(this,
+                    BundleManager.getString("dialog.warning.title"),
+                    BundleManager.getString("mainframe.dialog.warning.outputInUse", destinationPath));
+            return;
+        }
 
-        new Thread(() -> {
-            try {
-                SwingUtilities.invokeLater(() -> monitor.setVisible(true));
+        // Il caso viene fotografato e accodato: la finestra resta libera per il successivo
+        Job job = new Job(tableModel.getEvidences(), destinationPath,
+                (String) profileCombo.getSelectedItem(), getOpts());
 
-                List<String> cmd = ipedExecutor.buildCommand(
-                        tableModel.getEvidences(), destinationPath,
-                        (String) profileCombo.getSelectedItem(), getOpts());
+        ExecutionMonitorDialog monitor = new ExecutionMonitorDialog(this);
+        monitor.setTitle(BundleManager.getString("dialog.monitor.title") + " - " + job);
+        monitor.setProgress(job.getProgress());
+        monitor.setSampler(job.getSampler());
+        job.setOutputListener(monitor::appendLog);
+        jobMonitors.put(job, monitor);
+
+        int waiting = jobScheduler.getQueue().getPendingCount() + jobScheduler.getRunningJobs().size();
+        if (waiting > 0) {
+            monitor.appendLog(BundleManager.getString("dialog.monitor.queued", job.getId(), waiting));
+        }
+        monitor.setVisible(true);
+        jobScheduler.submit(job);
+    }
 
-                monitor.appendLog(
-                        BundleManager.getString("dialog.monitor.command") + ": " + String.join(" ", cmd) + "\n");
+    /**
+     * Aggiorna il monitor del job a ogni cambio di stato (thread dello scheduler).
+     */
+    private void onJobChanged(Job job) {
+        if (job.getStatus() == Job.Status.RUNNING && job.getCommand() != null) {
+            // Chiamato sul thread del job prima dell'output: il comando precede il log di IPED
+            ExecutionMonitorDialog monitor = jobMonitors.get(job);
+            if (monitor != null) {
+                monitor.appendLog(BundleManager.getString("dialog.monitor.command") + ": "
+                        + String.join(" ", job.getCommand()) + "\n");
                 monitor.appendLog("---------------------------------------------------\n");
+            }
+            return;
+        }
+        if (!job.getStatus().isFinished())
+            return;
 
-                ipedExecutor.execute(cmd, line -> monitor.appendLog(line));
-
-                SwingUtilities.invokeLater(() -> {
-                    monitor.setFinished(true);
-                    updateButtonStates();
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() -> {
-                    monitor.appendLog(
-                            "\n" + BundleManager.getString("mainframe.dialog.error.critical") + " " + e.getMessage());
-                    monitor.setFinished(false);
-                    JOptionPane.showMessageDialog(this,
-                            BundleManager.getString("dialog.error.title") + ": " + e.getMessage(),
-                            BundleManager.getString("dialog.error.title"), JOptionPane.ERROR_MESSAGE);
-                });
+        SwingUtilities.invokeLater(() -> {
+            ExecutionMonitorDialog monitor = jobMonitors.remove(job);
+            if (monitor == null)
+                return;
+            if (job.getErrorMessage() != null) {
+                monitor.appendLog("\n" + BundleManager.getString("mainframe.dialog.error.critical") + " "
+                        + job.getErrorMessage());
             }
-        }).start();
+            monitor.setFinished(job.getStatus() == Job.Status.COMPLETED);
+            updateButtonStates();
+        });
+    }
+
+    private void openJobQueue() {
+        if (jobQueueDialog == null || !jobQueueDialog.isDisplayable()) {
+            jobQueueDialog = new JobQueueDialog(this, jobScheduler);
+        }
+        jobQueueDialog.setVisible(true);
+        jobQueueDialog.toFront();
     }
 
     private void openReport() {
@@ -1591,10 +1735,8 @@ public class MainFrame extends JFrame {
                     List<File> files = (List<File>) e.getTransferable()
                             .getTransferData(DataFlavor.javaFileListFlavor);
 
-                    for (File f : files) {
-                        if (isValid(f))
-                            tableModel.addEvidence(new Evidence(f));
-                    }
+                    // Validazione e costruzione delle evidenze avvengono in background
+                    evidenceIngestor.submit(files, MainFrame.this::isValid);
                     updateButtonStates();
                     e.dropComplete(true);
                 } catch (Exception ex) {
@@ -0,0 +1,387 @@
+package it.ipedmanager.ui;
+
+import it.ipedmanager.model.Evidence;
+import it.ipedmanager.model.RunRecord;
+import it.ipedmanager.service.IpedProgress;
+import it.ipedmanager.service.Job;
+import it.ipedmanager.service.RunHistoryStore;
+import it.ipedmanager.utils.BundleManager;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Storico delle elaborazioni: confronto della velocita' media per macchina,
+ * profilo o versione di IPED (solo casi completati) e l'elenco dei singoli
+ * casi, dal piu' recente.
+ */
+public class RunHistoryDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Color HEADER_BG = new Color(30, 58, 138); // Navy Blue (same as MainFrame)
+    private static final Color BAR_COLOR = new Color(30, 58, 138, 60);
+    private static final int MAX_RECORDS = 2000;
+
+    private final List<RunRecord> records;
+    private final GroupTableModel groupModel = new GroupTableModel();
+    private JComboBox<String> cmbGroup;
+
+    public RunHistoryDialog(Frame owner) {
+        super(owner, BundleManager.getString("dialog.history.title"), false);
+        records = RunHistoryStore.getInstance().readLatest(MAX_RECORDS);
+
+        setSize(1000, 600);
+        setLocationRelativeTo(owner);
+        initComponents();
+        regroup();
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(Color.WHITE);
+
+        getRootPane().putClientProperty("JRootPane.titleBarBackground", HEADER_BG);
+        getRootPane().putClientProperty("JRootPane.titleBarForeground", Color.WHITE);
+
+        // === Confronto per gruppo ===
+        JPanel top = new JPanel(new BorderLayout(0, 6));
+        top.setBackground(Color.WHITE);
+        top.setBorder(new EmptyBorder(10, 10, 0, 10));
+
+        JPanel groupRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        groupRow.setBackground(Color.WHITE);
+        JLabel lblGroup = new JLabel(BundleManager.getString("dialog.history.groupBy"));
+        lblGroup.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        cmbGroup = new JComboBox<>(new String[] {
+                BundleManager.getString("dialog.history.group.host"),
+                BundleManager.getString("dialog.history.group.profile"),
+                BundleManager.getString("dialog.history.group.ipedVersion") });
+        cmbGroup.addActionListener(e -> regroup());
+        groupRow.add(lblGroup);
+        groupRow.add(cmbGroup);
+        JLabel hint = new JLabel(BundleManager.getString("dialog.history.completedOnly"));
+        hint.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        hint.setForeground(new Color(100, 116, 139));
+        groupRow.add(Box.createHorizontalStrut(10));
+        groupRow.add(hint);
+        top.add(groupRow, BorderLayout.NORTH);
+
+        JTable groupTable = createTable(groupModel);
+        groupTable.getColumnModel().getColumn(3).setCellRenderer(new BarRenderer());
+        groupTable.getColumnModel().getColumn(0).setPreferredWidth(200);
+        JScrollPane groupScroll = new JScrollPane(groupTable);
+        groupScroll.getViewport().setBackground(Color.WHITE);
+        groupScroll.setPreferredSize(new Dimension(100, 160));
+        top.add(groupScroll, BorderLayout.CENTER);
+
+        // === Elenco dei casi ===
+        RunTableModel runModel = new RunTableModel(records);
+        JTable runTable = new JTable(runModel) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String getToolTipText(MouseEvent e) {
+                // Task abilitati del caso
+                int row = rowAtPoint(e.getPoint());
+                if (row < 0)
+                    return null;
+                RunRecord r = runModel.getRecord(row);
+                return BundleManager.getString("dialog.history.tooltip.tasks",
+                        r.getEnabledTasks().isEmpty() ? "-" : String.join(", ", r.getEnabledTasks()));
+            }
+        };
+        styleTable(runTable);
+        runTable.getColumnModel().getColumn(0).setPreferredWidth(120);
+        runTable.getColumnModel().getColumn(1).setPreferredWidth(150);
+
+        JScrollPane runScroll = new JScrollPane(runTable);
+        runScroll.getViewport().setBackground(Color.WHITE);
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, top, runScroll);
+        split.setBorder(BorderFactory.createEmptyBorder());
+        split.setResizeWeight(0.35);
+        add(split, BorderLayout.CENTER);
+
+        // Footer
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.setBackground(Color.WHITE);
+        footer.setBorder(new EmptyBorder(5, 15, 10, 10));
+
+        JLabel summary = new JLabel(BundleManager.getString("dialog.history.summary", records.size()));
+        summary.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        summary.setForeground(new Color(100, 116, 139));
+        footer.add(summary, BorderLayout.WEST);
+
+        JButton btnClose = new JButton(BundleManager.getString("dialog.monitor.button.close"));
+        btnClose.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        btnClose.setFocusPainted(false);
+        btnClose.addActionListener(e -> dispose());
+        footer.add(btnClose, BorderLayout.EAST);
+
+        add(footer, BorderLayout.SOUTH);
+    }
+
+    private JTable createTable(AbstractTableModel model) {
+        JTable table = new JTable(model);
+        styleTable(table);
+        return table;
+    }
+
+    private void styleTable(JTable table) {
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        table.setRowHeight(24);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+    }
+
+    private void regroup() {
+        Function<RunRecord, String> key;
+        switch (cmbGroup.getSelectedIndex()) {
+            case 1:
+                key = RunRecord::getProfile;
+                break;
+            case 2:
+                key = RunRecord::getIpedVersion;
+                break;
+            default:
+                key = RunRecord::getHost;
+                break;
+        }
+        Map<String, GroupStats> groups = new LinkedHashMap<>();
+        for (RunRecord r : records) {
+            if (!Job.Status.COMPLETED.name().equals(r.getStatus()) || r.getWallSeconds() <= 0)
+                continue;
+            String k = key.apply(r);
+            groups.computeIfAbsent(k.isEmpty() ? "-" : k, GroupStats::new).add(r);
+        }
+        groupModel.setGroups(new ArrayList<>(groups.values()));
+    }
+
+    static String formatRate(double mbPerSecond) {
+        return String.format("%.1f MB/s", mbPerSecond);
+    }
+
+    /**
+     * Valori aggregati di un gruppo di casi completati.
+     */
+    private static class GroupStats {
+        final String name;
+        int runs;
+        long bytes;
+        long seconds;
+        long items;
+        double bestMBPerSecond;
+        long peakRss;
+
+        GroupStats(String name) {
+            this.name = name;
+        }
+
+        void add(RunRecord r) {
+            runs++;
+            bytes += r.getBytesProcessed() > 0 ? r.getBytesProcessed() : r.getEvidenceBytes();
+            seconds += r.getWallSeconds();
+            items += r.getItemsProcessed();
+            bestMBPerSecond = Math.max(bestMBPerSecond, r.getMBPerSecond());
+            peakRss = Math.max(peakRss, r.getPeakRssBytes());
+        }
+
+        /** Media pesata sulla durata: i casi lunghi contano di piu'. */
+        double getMBPerSecond() {
+            return seconds > 0 ? bytes / (1024.0 * 1024.0) / seconds : 0;
+        }
+
+        double getItemsPerSecond() {
+            return seconds > 0 ? (double) items / seconds : 0;
+        }
+    }
+
+    private static class GroupTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = {
+                BundleManager.getString("dialog.history.column.group"),
+                BundleManager.getString("dialog.history.column.runs"),
+                BundleManager.getString("dialog.history.column.data"),
+                BundleManager.getString("dialog.history.column.avgRate"),
+                BundleManager.getString("dialog.history.column.bestRate"),
+                BundleManager.getString("dialog.history.column.itemsRate"),
+                BundleManager.getString("dialog.history.column.peakRss") };
+        private List<GroupStats> groups = new ArrayList<>();
+        private double maxRate = 0;
+
+        void setGroups(List<GroupStats> groups) {
+            this.groups = groups;
+            maxRate = 0;
+            for (GroupStats g : groups) {
+                maxRate = Math.max(maxRate, g.getMBPerSecond());
+            }
+            fireTableDataChanged();
+        }
+
+        double getRelativeRate(int row) {
+            return maxRate > 0 ? groups.get(row).getMBPerSecond() / maxRate : 0;
+        }
+
+        @Override
+        public int getRowCount() {
+            return groups.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            GroupStats g = groups.get(row);
+            switch (column) {
+                case 0:
+                    return g.name;
+                case 1:
+                    return g.runs;
+                case 2:
+                    return Evidence.formatSize(g.bytes);
+                case 3:
+                    return formatRate(g.getMBPerSecond());
+                case 4:
+                    return formatRate(g.bestMBPerSecond);
+                case 5:
+                    return String.format("%.1f", g.getItemsPerSecond());
+                default:
+                    return g.peakRss > 0 ? Evidence.formatSize(g.peakRss) : "-";
+            }
+        }
+    }
+
+    /**
+     * Velocita' media con una barra proporzionale al gruppo piu' veloce.
+     */
+    private static class BarRenderer extends DefaultTableCellRenderer {
+
+        private static final long serialVersionUID = 1L;
+
+        private double fraction;
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            fraction = ((GroupTableModel) table.getModel()).getRelativeRate(row);
+            setOpaque(isSelected);
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(BAR_COLOR);
+            g.fillRect(0, 2, (int) Math.round((getWidth() - 1) * fraction), getHeight() - 4);
+            super.paintComponent(g);
+        }
+    }
+
+    private static class RunTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = {
+                BundleManager.getString("dialog.history.column.date"),
+                BundleManager.getString("dialog.jobs.column.case"),
+                BundleManager.getString("dialog.history.group.host"),
+                BundleManager.getString("dialog.history.group.ipedVersion"),
+                BundleManager.getString("dialog.history.group.profile"),
+                BundleManager.getString("dialog.history.column.data"),
+                BundleManager.getString("dialog.history.column.duration"),
+                BundleManager.getString("dialog.history.column.itemsRate"),
+                BundleManager.getString("dialog.history.column.rate"),
+                BundleManager.getString("dialog.history.column.peakRss"),
+                BundleManager.getString("dialog.jobs.column.status") };
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        private final List<RunRecord> records;
+
+        RunTableModel(List<RunRecord> chronological) {
+            // Dal piu' recente
+            records = new ArrayList<>(chronological);
+            Collections.reverse(records);
+        }
+
+        RunRecord getRecord(int row) {
+            return records.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return records.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            RunRecord r = records.get(row);
+            switch (column) {
+                case 0:
+                    return dateFormat.format(new Date(r.getStartTime()));
+                case 1:
+                    return r.getCaseName();
+                case 2:
+                    return r.getHost();
+                case 3:
+                    return r.getIpedVersion();
+                case 4:
+                    return r.getProfile().isEmpty() ? "-" : r.getProfile();
+                case 5:
+                    return Evidence.formatSize(r.getEvidenceBytes());
+                case 6:
+                    return IpedProgress.formatDuration(r.getWallSeconds());
+                case 7:
+                    return String.format("%.1f", r.getItemsPerSecond());
+                case 8:
+                    return formatRate(r.getMBPerSecond());
+                case 9:
+                    return r.getPeakRssBytes() > 0 ? Evidence.formatSize(r.getPeakRssBytes()) : "-";
+                default:
+                    String status = getStatusText(r.getStatus());
+                    return r.getAttempts() > 1
+                            ? BundleManager.getString("dialog.jobs.status.attempt", status, r.getAttempts())
+                            : status;
+            }
+        }
+
+        private static String getStatusText(String status) {
+            try {
+                return JobQueueDialog.getStatusText(Job.Status.valueOf(status));
+            } catch (IllegalArgumentException e) {
+                return status;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package it.ipedmanager.ui.components;
+
+import java.awt.*;
+import java.util.function.DoubleFunction;
+import javax.swing.*;
+
+/**
+ * Compact line chart showing the recent history of a single metric, with a
+ * title and the latest value. The series is scaled to its own maximum (or to a
+ * fixed maximum, e.g. 100 for percentages).
+ *
+ * @author William Tritapepe
+ */
+public class Sparkline extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String title;
+    private final DoubleFunction<String> formatter;
+    private double[] values = new double[0];
+    private int count = 0;
+    private double fixedMax = 0;
+
+    // Colors
+    private Color lineColor = new Color(30, 58, 138); // Navy Blue
+    private Color fillColor = new Color(30, 58, 138, 40);
+    private Color textColor = new Color(100, 116, 139); // Slate 500
+
+    private final Font titleFont = new Font("Segoe UI", Font.PLAIN, 11);
+    private final Font valueFont = new Font("Segoe UI", Font.BOLD, 11);
+
+    public Sparkline(String title, DoubleFunction<String> formatter) {
+        this.title = title;
+        this.formatter = formatter;
+        setPreferredSize(new Dimension(150, 48));
+        setOpaque(false);
+    }
+
+    /**
+     * Sets the series to draw, oldest value first. The array is reused by the
+     * caller: only the first {@code count} values are read, during this call.
+     */
+    public void setValues(double[] source, int count) {
+        if (values.length < count) {
+            values = new double[source.length];
+        }
+        System.arraycopy(source, 0, values, 0, count);
+        this.count = count;
+        repaint();
+    }
+
+    /**
+     * Fixed upper bound of the chart, 0 to scale to the series maximum.
+     */
+    public void setFixedMax(double fixedMax) {
+        this.fixedMax = fixedMax;
+        repaint();
+    }
+
+    public void setColors(Color line, Color text) {
+        this.lineColor = line;
+        this.fillColor = new Color(line.getRed(), line.getGreen(), line.getBlue(), 40);
+        this.textColor = text;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int w = getWidth();
+        int h = getHeight();
+
+        // Header: title on the left, latest value on the right
+        g2.setFont(titleFont);
+        FontMetrics fm = g2.getFontMetrics();
+        int textY = fm.getAscent();
+        g2.setColor(textColor);
+        g2.drawString(title, 0, textY);
+
+        String last = count > 0 ? formatter.apply(values[count - 1]) : "-";
+        g2.setFont(valueFont);
+        g2.setColor(lineColor);
+        g2.drawString(last, w - g2.getFontMetrics().stringWidth(last), textY);
+
+        int top = fm.getHeight() + 2;
+        int chartH = h - top - 1;
+        if (count >= 2 && chartH > 4) {
+            double max = fixedMax;
+            if (max <= 0) {
+                for (int i = 0; i < count; i++) {
+                    max = Math.max(max, values[i]);
+                }
+            }
+            if (max <= 0) {
+                max = 1;
+            }
+
+            int[] xs = new int[count + 2];
+            int[] ys = new int[count + 2];
+            for (int i = 0; i < count; i++) {
+                xs[i] = (int) Math.round((double) i * (w - 1) / (count - 1));
+                double v = Math.min(max, Math.max(0, values[i]));
+                ys[i] = top + chartH - (int) Math.round(v / max * chartH);
+            }
+            xs[count] = w - 1;
+            ys[count] = top + chartH;
+            xs[count + 1] = 0;
+            ys[count + 1] = top + chartH;
+
+            g2.setColor(fillColor);
+            g2.fillPolygon(xs, ys, count + 2);
+            g2.setColor(lineColor);
+            g2.setStroke(new BasicStroke(1.5f));
+            g2.drawPolyline(xs, ys, count);
+        } else {
+            g2.setColor(fillColor);
+            g2.drawLine(0, h - 1, w - 1, h - 1);
+        }
+
+        g2.dispose();
+    }
+}
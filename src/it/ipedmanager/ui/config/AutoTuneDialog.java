@@ -0,0 +1,412 @@
+package it.ipedmanager.ui.config;
+
+import it.ipedmanager.config.ConfigManager;
+import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.service.AutoTuner;
+import it.ipedmanager.service.AutoTuner.Recommendation;
+import it.ipedmanager.service.HostProbe;
+import it.ipedmanager.service.StorageBenchmark;
+import it.ipedmanager.service.StorageBenchmark.VolumeResult;
+import it.ipedmanager.utils.BundleManager;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ottimizzazione automatica: misura la macchina (core, RAM, volumi per i
+ * temporanei, l'output e le evidenze) e mostra le modifiche proposte con il valore attuale
+ * e il motivo. Le proposte selezionate vengono scritte nei file di
+ * configurazione, salvati poi dal pulsante Salva del gestore configurazioni.
+ */
+public class AutoTuneDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Color HEADER_BG = new Color(30, 58, 138);
+    private static final Color HINT_COLOR = new Color(100, 116, 139);
+
+    private final PropertiesConfigFile localConfig;
+    private final PropertiesConfigFile fsConfig;
+    private final PropertiesConfigFile parsingConfig;
+
+    private final RecommendationTableModel model = new RecommendationTableModel();
+    private JTextField txtTemp;
+    private JTextField txtOutput;
+    private JTextField txtEvidence;
+    private JCheckBox chkReuse;
+    private JButton btnProbe;
+    private JButton btnApply;
+    private JLabel lblStatus;
+    private boolean applied;
+
+    public AutoTuneDialog(Window owner) {
+        super(owner, BundleManager.getString("dialog.autotune.title"), ModalityType.APPLICATION_MODAL);
+        ConfigManager cm = ConfigManager.getInstance();
+        localConfig = cm.getLocalConfig();
+        fsConfig = cm.getConfigFile(ConfigManager.FILESYSTEM_CONFIG);
+        parsingConfig = cm.getConfigFile(ConfigManager.PARSING_CONFIG);
+
+        setSize(1000, 520);
+        setLocationRelativeTo(owner);
+        initComponents();
+    }
+
+    /**
+     * true se almeno una proposta e' stata applicata.
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(Color.WHITE);
+
+        getRootPane().putClientProperty("JRootPane.titleBarBackground", HEADER_BG);
+        getRootPane().putClientProperty("JRootPane.titleBarForeground", Color.WHITE);
+
+        // === Volumi da provare ===
+        JPanel top = new JPanel(new GridBagLayout());
+        top.setBackground(Color.WHITE);
+        top.setBorder(new EmptyBorder(10, 12, 6, 12));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(3, 3, 3, 3);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        JLabel host = new JLabel(BundleManager.getString("dialog.autotune.host", HostProbe.getCores(),
+                HostProbe.getPhysicalMemoryGB()));
+        host.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.gridwidth = 3;
+        top.add(host, gbc);
+        gbc.gridwidth = 1;
+
+        txtTemp = new JTextField(String.join(File.pathSeparator, getDefaultTempCandidates()));
+        txtTemp.setToolTipText(BundleManager.getString("dialog.autotune.tooltip.temp", File.pathSeparator));
+        addPathRow(top, gbc, 1, "dialog.autotune.temp", txtTemp, true, JFileChooser.DIRECTORIES_ONLY);
+
+        txtOutput = new JTextField();
+        txtOutput.setToolTipText(BundleManager.getString("dialog.autotune.tooltip.output"));
+        addPathRow(top, gbc, 2, "dialog.autotune.output", txtOutput, false, JFileChooser.DIRECTORIES_ONLY);
+
+        txtEvidence = new JTextField();
+        txtEvidence.setToolTipText(BundleManager.getString("dialog.autotune.tooltip.evidence"));
+        addPathRow(top, gbc, 3, "dialog.autotune.evidence", txtEvidence, false,
+                JFileChooser.FILES_AND_DIRECTORIES);
+
+        chkReuse = new JCheckBox(BundleManager.getString("dialog.autotune.reuse"), true);
+        chkReuse.setToolTipText(BundleManager.getString("dialog.autotune.tooltip.reuse"));
+        chkReuse.setBackground(Color.WHITE);
+        gbc.gridx = 1;
+        gbc.gridy = 4;
+        top.add(chkReuse, gbc);
+
+        add(top, BorderLayout.NORTH);
+
+        // === Proposte ===
+        JTable table = new JTable(model) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String getToolTipText(MouseEvent e) {
+                int row = rowAtPoint(e.getPoint());
+                return row >= 0 ? model.getReason(row) : null;
+            }
+        };
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        table.setRowHeight(24);
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        table.getColumnModel().getColumn(0).setMaxWidth(60);
+        table.getColumnModel().getColumn(1).setPreferredWidth(150);
+        table.getColumnModel().getColumn(2).setPreferredWidth(140);
+        table.getColumnModel().getColumn(5).setPreferredWidth(420);
+
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.getViewport().setBackground(Color.WHITE);
+        scroll.setBorder(BorderFactory.createCompoundBorder(new EmptyBorder(0, 12, 0, 12), scroll.getBorder()));
+        add(scroll, BorderLayout.CENTER);
+
+        // Footer
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.setBackground(Color.WHITE);
+        footer.setBorder(new EmptyBorder(6, 15, 10, 10));
+
+        lblStatus = new JLabel(BundleManager.getString("dialog.autotune.status.idle"));
+        lblStatus.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        lblStatus.setForeground(HINT_COLOR);
+        footer.add(lblStatus, BorderLayout.WEST);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+        buttons.setBackground(Color.WHITE);
+        btnProbe = createButton("dialog.autotune.button.probe");
+        btnProbe.addActionListener(e -> startProbe());
+        btnApply = createButton("dialog.autotune.button.apply");
+        btnApply.setEnabled(false);
+        btnApply.addActionListener(e -> applySelected());
+        JButton btnClose = createButton("dialog.monitor.button.close");
+        btnClose.addActionListener(e -> dispose());
+        buttons.add(btnProbe);
+        buttons.add(btnApply);
+        buttons.add(btnClose);
+        footer.add(buttons, BorderLayout.EAST);
+
+        add(footer, BorderLayout.SOUTH);
+    }
+
+    private void addPathRow(JPanel panel, GridBagConstraints gbc, int row, String labelKey, JTextField field,
+            boolean append, int selectionMode) {
+        gbc.gridy = row;
+        gbc.gridx = 0;
+        gbc.weightx = 0;
+        JLabel label = new JLabel(BundleManager.getString(labelKey));
+        label.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        panel.add(label, gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1;
+        panel.add(field, gbc);
+
+        gbc.gridx = 2;
+        gbc.weightx = 0;
+        JButton browse = new JButton("...");
+        browse.setFocusPainted(false);
+        browse.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileSelectionMode(selectionMode);
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+                return;
+            String path = chooser.getSelectedFile().getAbsolutePath();
+            String current = field.getText().trim();
+            // Per i temporanei il volume scelto si aggiunge ai candidati
+            field.setText(append && !current.isEmpty() ? current + File.pathSeparator + path : path);
+        });
+        panel.add(browse, gbc);
+    }
+
+    private JButton createButton(String key) {
+        JButton btn = new JButton(BundleManager.getString(key));
+        btn.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        btn.setFocusPainted(false);
+        return btn;
+    }
+
+    /**
+     * indexTemp attuale (se impostato) e la cartella temporanea di sistema.
+     */
+    private List<String> getDefaultTempCandidates() {
+        Set<String> result = new LinkedHashSet<>();
+        String indexTemp = localConfig != null ? localConfig.get("indexTemp") : null;
+        if (indexTemp != null && !indexTemp.trim().isEmpty() && !"default".equalsIgnoreCase(indexTemp.trim())) {
+            result.add(indexTemp.trim());
+        }
+        result.add(System.getProperty("java.io.tmpdir"));
+        return new ArrayList<>(result);
+    }
+
+    private void startProbe() {
+        List<Path> temps = new ArrayList<>();
+        for (String p : txtTemp.getText().split(File.pathSeparator)) {
+            if (!p.trim().isEmpty())
+                temps.add(Paths.get(p.trim()));
+        }
+        Path output = toPath(txtOutput.getText());
+        Path evidence = toPath(txtEvidence.getText());
+        boolean reuse = chkReuse.isSelected();
+
+        btnProbe.setEnabled(false);
+        btnApply.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        Thread t = new Thread(() -> {
+            AutoTuner tuner = new AutoTuner(HostProbe.getCores(), HostProbe.getPhysicalMemoryGB());
+            List<String> errors = new ArrayList<>();
+            for (Path dir : temps) {
+                VolumeResult r = probe(dir, false, reuse, errors);
+                if (r != null)
+                    tuner.addTempCandidate(r);
+            }
+            if (output != null) {
+                tuner.setOutput(probe(output, false, reuse, errors));
+            }
+            if (evidence != null) {
+                tuner.setEvidence(probe(evidence, true, reuse, errors));
+            }
+            List<Recommendation> recs = tuner.recommend(localConfig, fsConfig, parsingConfig);
+            SwingUtilities.invokeLater(() -> {
+                model.setRecommendations(recs);
+                lblStatus.setText(errors.isEmpty() ? BundleManager.getString("dialog.autotune.status.done")
+                        : BundleManager.getString("dialog.autotune.status.errors", String.join("; ", errors)));
+                btnProbe.setEnabled(true);
+                btnApply.setEnabled(!recs.isEmpty());
+                setCursor(Cursor.getDefaultCursor());
+            });
+        }, "autotune-probe");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static Path toPath(String text) {
+        return text.trim().isEmpty() ? null : Paths.get(text.trim());
+    }
+
+    /**
+     * Misura il volume, o riusa la misura salvata se contiene le prove
+     * richieste (scrittura per temporanei e output, lettura per le evidenze).
+     */
+    private VolumeResult probe(Path path, boolean readOnly, boolean reuse, List<String> errors) {
+        if (reuse) {
+            VolumeResult cached = StorageBenchmark.getInstance().getCached(path);
+            if (cached != null && (readOnly ? cached.hasReadResults() : cached.hasWriteResults()))
+                return cached;
+        }
+        setStatus(BundleManager.getString("dialog.autotune.status.probing", path));
+        try {
+            if (!readOnly)
+                Files.createDirectories(path);
+            return HostProbe.probeDisk(path, readOnly);
+        } catch (IOException e) {
+            e.printStackTrace();
+            errors.add(path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void setStatus(String text) {
+        SwingUtilities.invokeLater(() -> lblStatus.setText(text));
+    }
+
+    private void applySelected() {
+        int count = 0;
+        for (int i = 0; i < model.getRowCount(); i++) {
+            if (!model.isSelected(i))
+                continue;
+            Recommendation rec = model.getRecommendation(i);
+            PropertiesConfigFile config = getConfigFor(rec.getConfigFile());
+            if (config != null) {
+                rec.apply(config);
+                count++;
+            }
+        }
+        applied = count > 0;
+        lblStatus.setText(BundleManager.getString("dialog.autotune.status.applied", count));
+        if (applied)
+            dispose();
+    }
+
+    private PropertiesConfigFile getConfigFor(String name) {
+        if (ConfigManager.FILESYSTEM_CONFIG.equals(name))
+            return fsConfig;
+        if (ConfigManager.PARSING_CONFIG.equals(name))
+            return parsingConfig;
+        return localConfig;
+    }
+
+    /**
+     * Proposte con colonna di selezione; di default sono selezionate solo
+     * quelle che cambiano il valore attuale.
+     */
+    private static class RecommendationTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private List<Recommendation> recs = new ArrayList<>();
+        private List<Boolean> selected = new ArrayList<>();
+
+        private final String[] columns = {
+                BundleManager.getString("dialog.autotune.col.apply"),
+                BundleManager.getString("dialog.autotune.col.key"),
+                BundleManager.getString("dialog.autotune.col.file"),
+                BundleManager.getString("dialog.autotune.col.current"),
+                BundleManager.getString("dialog.autotune.col.proposed"),
+                BundleManager.getString("dialog.autotune.col.reason") };
+
+        void setRecommendations(List<Recommendation> recs) {
+            this.recs = recs;
+            selected = new ArrayList<>();
+            for (Recommendation r : recs) {
+                selected.add(r.isChange());
+            }
+            fireTableDataChanged();
+        }
+
+        Recommendation getRecommendation(int row) {
+            return recs.get(row);
+        }
+
+        boolean isSelected(int row) {
+            return selected.get(row);
+        }
+
+        String getReason(int row) {
+            Recommendation r = recs.get(row);
+            return BundleManager.getString(r.getReasonKey(), r.getReasonArgs());
+        }
+
+        @Override
+        public int getRowCount() {
+            return recs.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? Boolean.class : String.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return column == 0;
+        }
+
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            if (column == 0) {
+                selected.set(row, Boolean.TRUE.equals(value));
+                fireTableCellUpdated(row, column);
+            }
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Recommendation r = recs.get(row);
+            switch (column) {
+                case 0:
+                    return selected.get(row);
+                case 1:
+                    return r.getKey();
+                case 2:
+                    return r.getConfigFile();
+                case 3:
+                    return r.getCurrentValue().isEmpty() ? "-" : r.getCurrentValue();
+                case 4:
+                    return r.getProposedValue();
+                case 5:
+                    return getReason(row);
+                default:
+                    return "";
+            }
+        }
+    }
+}
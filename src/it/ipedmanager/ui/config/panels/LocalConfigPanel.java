@@ -1,11 +1,25 @@
 package it.ipedmanager.ui.config.panels;
 
 import it.ipedmanager.config.PropertiesConfigFile;
+import it.ipedmanager.service.StorageBenchmark;
+import it.ipedmanager.service.StorageBenchmark.VolumeResult;
+import it.ipedmanager.ui.config.AutoTuneDialog;
 import it.ipedmanager.utils.BundleManager;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 /**
  * Panel for local environment configuration.
@@ -13,14 +27,39 @@ import java.awt.*;
  */
 public class LocalConfigPanel extends BaseConfigPanel {
 
+    private static final Color WARNING_COLOR = new Color(180, 83, 9);
+
     private JTextField txtHashesDB;
     private JTextField txtMPlayer;
     private JTextField txtIndexTemp;
+    private JLabel lblIndexTempWarning;
     private JCheckBox chkIndexTempOnSSD;
     private JCheckBox chkOutputOnSSD;
     private JSpinner spnThreads;
     private JSpinner spnMemoryGB;
+    private JSpinner spnMaxJobs;
+    private JSpinner spnCpuBudget;
+    private JSpinner spnMemoryBudget;
+    private JSpinner spnMaxRetries;
+    private JSpinner spnStallMinutes;
+    private JSpinner spnRetryDelay;
+    private JCheckBox chkMemoryEscalation;
+    private JTextField txtStagingDir;
+    private JSpinner spnStagingMaxGB;
+    private JCheckBox chkStagingFullVerify;
+    private JSpinner spnShards;
+    private JTextField txtArchiveDir;
+    private JSpinner spnArchiveThreads;
+    private JSpinner spnArchiveMaxMBps;
+    private JCheckBox chkArchiveDeleteSource;
+    private JTextField txtWorkers;
+    private JTextField txtWorkerToken;
+    private JTextField txtSpoolDir;
+    private JSpinner spnStatusPort;
     private JComboBox<LanguageItem> cmbLocale;
+    private final VolumeTableModel volumeModel = new VolumeTableModel();
+    private JButton[] volumeButtons;
+    private JLabel lblVolumeStatus;
     private PropertiesConfigFile config;
 
     // Helper class for language selection
@@ -51,6 +90,7 @@ public class LocalConfigPanel extends BaseConfigPanel {
 
     public LocalConfigPanel() {
         initComponents();
+        refreshVolumes();
     }
 
     public void setConfig(PropertiesConfigFile config) {
@@ -82,6 +122,29 @@ public class LocalConfigPanel extends BaseConfigPanel {
         txtIndexTemp.setToolTipText(BundleManager.getString("panel.local.tooltip.indexTemp"));
         addFileField(pathsSection, BundleManager.getString("panel.local.indexTemp"), txtIndexTemp, true, 2);
 
+        // Avviso se l'ultima misura del volume di indexTemp e' da disco lento
+        lblIndexTempWarning = new JLabel();
+        lblIndexTempWarning.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        lblIndexTempWarning.setForeground(WARNING_COLOR);
+        lblIndexTempWarning.setVisible(false);
+        addFullWidthComponent(pathsSection, lblIndexTempWarning, 3);
+        txtIndexTemp.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateIndexTempWarning();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateIndexTempWarning();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateIndexTempWarning();
+            }
+        });
+
         content.add(pathsSection);
         content.add(Box.createVerticalStrut(15));
 
@@ -138,10 +201,202 @@ public class LocalConfigPanel extends BaseConfigPanel {
         ssdRow.add(chkOutputOnSSD);
         addFullWidthComponent(perfSection, ssdRow, 1);
 
+        // Row 2: Ottimizzazione automatica
+        JButton btnAutoTune = createStyledButton(BundleManager.getString("panel.local.autotune"));
+        btnAutoTune.setToolTipText(BundleManager.getString("panel.local.tooltip.autotune"));
+        btnAutoTune.addActionListener(e -> openAutoTune());
+        JPanel autoTuneRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        autoTuneRow.setBackground(BG_COLOR);
+        autoTuneRow.add(btnAutoTune);
+        addFullWidthComponent(perfSection, autoTuneRow, 2);
+
         content.add(perfSection);
         content.add(Box.createVerticalStrut(15));
 
-        // === SECTION 3: LINGUA ===
+        // === SECTION 2b: VOLUMI (misure salvate per volume) ===
+        JPanel volumeSection = createSectionPanel(BundleManager.getString("panel.local.volumes"));
+
+        JTable volumeTable = new JTable(volumeModel);
+        volumeTable.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        volumeTable.setRowHeight(22);
+        volumeTable.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        volumeTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        volumeTable.getColumnModel().getColumn(0).setPreferredWidth(200);
+        volumeTable.getColumnModel().getColumn(1).setPreferredWidth(200);
+        JScrollPane volumeScroll = new JScrollPane(volumeTable);
+        volumeScroll.getViewport().setBackground(BG_COLOR);
+        volumeScroll.setPreferredSize(new Dimension(100, 130));
+        addFullWidthComponent(volumeSection, volumeScroll, 0);
+
+        JButton btnBenchTemp = createStyledButton(BundleManager.getString("panel.local.bench.indexTemp"));
+        btnBenchTemp.setToolTipText(BundleManager.getString("panel.local.tooltip.bench.indexTemp"));
+        btnBenchTemp.addActionListener(e -> runBenchmark(getIndexTempPath(), false));
+        JButton btnBenchFolder = createStyledButton(BundleManager.getString("panel.local.bench.folder"));
+        btnBenchFolder.setToolTipText(BundleManager.getString("panel.local.tooltip.bench.folder"));
+        btnBenchFolder.addActionListener(e -> chooseAndBenchmark(false));
+        JButton btnBenchEvidence = createStyledButton(BundleManager.getString("panel.local.bench.evidence"));
+        btnBenchEvidence.setToolTipText(BundleManager.getString("panel.local.tooltip.bench.evidence"));
+        btnBenchEvidence.addActionListener(e -> chooseAndBenchmark(true));
+        JButton btnBenchRemove = createStyledButton(BundleManager.getString("panel.local.bench.remove"));
+        btnBenchRemove.addActionListener(e -> {
+            int row = volumeTable.getSelectedRow();
+            if (row >= 0) {
+                StorageBenchmark.getInstance().remove(volumeModel.getResult(row).getVolume());
+                refreshVolumes();
+            }
+        });
+        volumeButtons = new JButton[] { btnBenchTemp, btnBenchFolder, btnBenchEvidence, btnBenchRemove };
+
+        lblVolumeStatus = new JLabel(" ");
+        lblVolumeStatus.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        lblVolumeStatus.setForeground(TEXT_SECONDARY);
+
+        JPanel volumeRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        volumeRow.setBackground(BG_COLOR);
+        for (JButton b : volumeButtons) {
+            volumeRow.add(b);
+        }
+        volumeRow.add(Box.createHorizontalStrut(8));
+        volumeRow.add(lblVolumeStatus);
+        addFullWidthComponent(volumeSection, volumeRow, 1);
+
+        content.add(volumeSection);
+        content.add(Box.createVerticalStrut(15));
+
+        // === SECTION 3: CODA ELABORAZIONI (IPEDManager) ===
+        JPanel queueSection = createSectionPanel(BundleManager.getString("panel.local.queue"));
+
+        spnMaxJobs = createStyledSpinner();
+        spnMaxJobs.setModel(new SpinnerNumberModel(1, 1, 32, 1));
+        spnMaxJobs.setToolTipText(BundleManager.getString("panel.local.tooltip.maxJobs"));
+
+        spnCpuBudget = createStyledSpinner();
+        spnCpuBudget.setModel(new SpinnerNumberModel(0, 0, 1024, 1));
+        spnCpuBudget.setToolTipText(BundleManager.getString("panel.local.tooltip.cpuBudget"));
+
+        spnMemoryBudget = createStyledSpinner();
+        spnMemoryBudget.setModel(new SpinnerNumberModel(0, 0, 4096, 1));
+        spnMemoryBudget.setToolTipText(BundleManager.getString("panel.local.tooltip.memoryBudget"));
+
+        JPanel queueRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        queueRow.setBackground(BG_COLOR);
+        queueRow.add(createStyledLabel(BundleManager.getString("panel.local.maxJobs")));
+        queueRow.add(spnMaxJobs);
+        queueRow.add(Box.createHorizontalStrut(12));
+        queueRow.add(createStyledLabel(BundleManager.getString("panel.local.cpuBudget")));
+        queueRow.add(spnCpuBudget);
+        queueRow.add(Box.createHorizontalStrut(12));
+        queueRow.add(createStyledLabel(BundleManager.getString("panel.local.memoryBudget")));
+        queueRow.add(spnMemoryBudget);
+        addFullWidthComponent(queueSection, queueRow, 0);
+
+        spnMaxRetries = createStyledSpinner();
+        spnMaxRetries.setModel(new SpinnerNumberModel(3, 0, 20, 1));
+        spnMaxRetries.setToolTipText(BundleManager.getString("panel.local.tooltip.maxRetries"));
+
+        spnStallMinutes = createStyledSpinner();
+        spnStallMinutes.setModel(new SpinnerNumberModel(60, 0, 1440, 5));
+        spnStallMinutes.setToolTipText(BundleManager.getString("panel.local.tooltip.stallMinutes"));
+
+        spnRetryDelay = createStyledSpinner();
+        spnRetryDelay.setModel(new SpinnerNumberModel(30, 0, 3600, 10));
+        spnRetryDelay.setToolTipText(BundleManager.getString("panel.local.tooltip.retryDelay"));
+
+        chkMemoryEscalation = createStyledCheckBox(BundleManager.getString("panel.local.memoryEscalation"));
+        chkMemoryEscalation.setToolTipText(BundleManager.getString("panel.local.tooltip.memoryEscalation"));
+
+        JPanel retryRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        retryRow.setBackground(BG_COLOR);
+        retryRow.add(createStyledLabel(BundleManager.getString("panel.local.maxRetries")));
+        retryRow.add(spnMaxRetries);
+        retryRow.add(Box.createHorizontalStrut(12));
+        retryRow.add(createStyledLabel(BundleManager.getString("panel.local.stallMinutes")));
+        retryRow.add(spnStallMinutes);
+        retryRow.add(Box.createHorizontalStrut(12));
+        retryRow.add(createStyledLabel(BundleManager.getString("panel.local.retryDelay")));
+        retryRow.add(spnRetryDelay);
+        retryRow.add(Box.createHorizontalStrut(12));
+        retryRow.add(chkMemoryEscalation);
+        addFullWidthComponent(queueSection, retryRow, 1);
+
+        // Cache locale delle evidenze (copia da share di rete prima di IPED)
+        txtStagingDir = createStyledTextField();
+        txtStagingDir.setToolTipText(BundleManager.getString("panel.local.tooltip.stagingDir"));
+        addFileField(queueSection, BundleManager.getString("panel.local.stagingDir"), txtStagingDir, true, 2);
+
+        spnStagingMaxGB = createStyledSpinner();
+        spnStagingMaxGB.setModel(new SpinnerNumberModel(0, 0, 1 << 20, 10));
+        spnStagingMaxGB.setToolTipText(BundleManager.getString("panel.local.tooltip.stagingMaxGB"));
+
+        chkStagingFullVerify = createStyledCheckBox(BundleManager.getString("panel.local.stagingFullVerify"));
+        chkStagingFullVerify.setToolTipText(BundleManager.getString("panel.local.tooltip.stagingFullVerify"));
+
+        JPanel stagingRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        stagingRow.setBackground(BG_COLOR);
+        stagingRow.add(createStyledLabel(BundleManager.getString("panel.local.stagingMaxGB")));
+        stagingRow.add(spnStagingMaxGB);
+        stagingRow.add(Box.createHorizontalStrut(12));
+        stagingRow.add(chkStagingFullVerify);
+        stagingRow.add(Box.createHorizontalStrut(12));
+        spnShards = createStyledSpinner();
+        spnShards.setModel(new SpinnerNumberModel(3, 2, 64, 1));
+        spnShards.setToolTipText(BundleManager.getString("panel.local.tooltip.shards"));
+        stagingRow.add(createStyledLabel(BundleManager.getString("panel.local.shards")));
+        stagingRow.add(spnShards);
+        addFullWidthComponent(queueSection, stagingRow, 3);
+
+        // Archivio dei casi conclusi (spostamento dal disco di lavoro)
+        txtArchiveDir = createStyledTextField();
+        txtArchiveDir.setToolTipText(BundleManager.getString("panel.local.tooltip.archiveDir"));
+        addFileField(queueSection, BundleManager.getString("panel.local.archiveDir"), txtArchiveDir, true, 4);
+
+        spnArchiveThreads = createStyledSpinner();
+        spnArchiveThreads.setModel(new SpinnerNumberModel(4, 1, 32, 1));
+        spnArchiveThreads.setToolTipText(BundleManager.getString("panel.local.tooltip.archiveThreads"));
+
+        spnArchiveMaxMBps = createStyledSpinner();
+        spnArchiveMaxMBps.setModel(new SpinnerNumberModel(0, 0, 100000, 10));
+        spnArchiveMaxMBps.setToolTipText(BundleManager.getString("panel.local.tooltip.archiveMaxMBps"));
+
+        chkArchiveDeleteSource = createStyledCheckBox(BundleManager.getString("panel.local.archiveDeleteSource"));
+        chkArchiveDeleteSource.setToolTipText(BundleManager.getString("panel.local.tooltip.archiveDeleteSource"));
+
+        JPanel archiveRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        archiveRow.setBackground(BG_COLOR);
+        archiveRow.add(createStyledLabel(BundleManager.getString("panel.local.archiveThreads")));
+        archiveRow.add(spnArchiveThreads);
+        archiveRow.add(Box.createHorizontalStrut(12));
+        archiveRow.add(createStyledLabel(BundleManager.getString("panel.local.archiveMaxMBps")));
+        archiveRow.add(spnArchiveMaxMBps);
+        archiveRow.add(Box.createHorizontalStrut(12));
+        archiveRow.add(chkArchiveDeleteSource);
+        addFullWidthComponent(queueSection, archiveRow, 5);
+
+        // Worker remoti (IPEDManager --worker su altre macchine)
+        txtWorkers = createStyledTextField();
+        txtWorkers.setToolTipText(BundleManager.getString("panel.local.tooltip.workers"));
+        addField(queueSection, BundleManager.getString("panel.local.workers"), txtWorkers, 6);
+
+        txtWorkerToken = createStyledTextField();
+        txtWorkerToken.setToolTipText(BundleManager.getString("panel.local.tooltip.workerToken"));
+        addField(queueSection, BundleManager.getString("panel.local.workerToken"), txtWorkerToken, 7);
+
+        // Coda su cartella condivisa tra piu' IPEDManager
+        txtSpoolDir = createStyledTextField();
+        txtSpoolDir.setToolTipText(BundleManager.getString("panel.local.tooltip.spoolDir"));
+        addFileField(queueSection, BundleManager.getString("panel.local.spoolDir"), txtSpoolDir, true, 8);
+
+        // Stato dei job e metriche Prometheus via HTTP
+        spnStatusPort = createStyledSpinner();
+        spnStatusPort.setModel(new SpinnerNumberModel(0, 0, 65535, 1));
+        spnStatusPort.setEditor(new JSpinner.NumberEditor(spnStatusPort, "#"));
+        spnStatusPort.setToolTipText(BundleManager.getString("panel.local.tooltip.statusPort"));
+        addField(queueSection, BundleManager.getString("panel.local.statusPort"), spnStatusPort, 9);
+
+        content.add(queueSection);
+        content.add(Box.createVerticalStrut(15));
+
+        // === SECTION 4: LINGUA ===
         JPanel langSection = createSectionPanel(BundleManager.getString("panel.local.language"));
 
         cmbLocale = createStyledComboBox(new LanguageItem[] {
@@ -177,6 +432,162 @@ public class LocalConfigPanel extends BaseConfigPanel {
         add(scroll, BorderLayout.CENTER);
     }
 
+    private Path getIndexTempPath() {
+        String value = txtIndexTemp.getText().trim();
+        return value.isEmpty() || "default".equalsIgnoreCase(value) ? Paths.get(System.getProperty("java.io.tmpdir"))
+                : Paths.get(value);
+    }
+
+    private void updateIndexTempWarning() {
+        VolumeResult r = null;
+        try {
+            r = StorageBenchmark.getInstance().getCached(getIndexTempPath());
+        } catch (InvalidPathException e) {
+            // Percorso in digitazione
+        }
+        boolean slow = r != null && r.hasWriteResults() && !r.isSsdLike();
+        if (slow) {
+            lblIndexTempWarning.setText(BundleManager.getString("panel.local.indexTempSlow",
+                    Math.round(r.getSyncWriteIops()), formatRate(r.getSequentialWriteMBps())));
+        }
+        lblIndexTempWarning.setVisible(slow);
+    }
+
+    private void refreshVolumes() {
+        volumeModel.setResults(StorageBenchmark.getInstance().getAll());
+        updateIndexTempWarning();
+    }
+
+    private void chooseAndBenchmark(boolean evidence) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(evidence ? JFileChooser.FILES_AND_DIRECTORIES : JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            runBenchmark(chooser.getSelectedFile().toPath(), evidence);
+        }
+    }
+
+    /**
+     * Esegue le prove in background; le evidenze vengono solo lette.
+     */
+    private void runBenchmark(Path path, boolean readOnly) {
+        for (JButton b : volumeButtons) {
+            b.setEnabled(false);
+        }
+        lblVolumeStatus.setText(BundleManager.getString("panel.local.bench.running", path));
+        Thread t = new Thread(() -> {
+            String status;
+            try {
+                StorageBenchmark.getInstance().run(path, readOnly);
+                status = " ";
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                status = BundleManager.getString("panel.local.bench.error", e.getMessage());
+            }
+            String message = status;
+            SwingUtilities.invokeLater(() -> {
+                lblVolumeStatus.setText(message);
+                for (JButton b : volumeButtons) {
+                    b.setEnabled(true);
+                }
+                refreshVolumes();
+            });
+        }, "storage-benchmark");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static String formatRate(double mbps) {
+        return Double.isNaN(mbps) ? "-" : String.format("%.0f MB/s", mbps);
+    }
+
+    private static String formatIops(double iops) {
+        return Double.isNaN(iops) ? "-" : String.format("%.0f IOPS", iops);
+    }
+
+    /**
+     * Misure salvate, una riga per volume.
+     */
+    private static class VolumeTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = {
+                BundleManager.getString("panel.local.volumes.col.volume"),
+                BundleManager.getString("panel.local.volumes.col.path"),
+                BundleManager.getString("panel.local.volumes.col.seqRead"),
+                BundleManager.getString("panel.local.volumes.col.randomRead"),
+                BundleManager.getString("panel.local.volumes.col.seqWrite"),
+                BundleManager.getString("panel.local.volumes.col.syncWrite"),
+                BundleManager.getString("panel.local.volumes.col.type"),
+                BundleManager.getString("panel.local.volumes.col.date") };
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        private List<VolumeResult> results = new ArrayList<>();
+
+        void setResults(List<VolumeResult> results) {
+            this.results = results;
+            fireTableDataChanged();
+        }
+
+        VolumeResult getResult(int row) {
+            return results.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return results.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            VolumeResult r = results.get(row);
+            switch (column) {
+                case 0:
+                    return r.getVolume();
+                case 1:
+                    return r.getPath();
+                case 2:
+                    return formatRate(r.getSequentialReadMBps());
+                case 3:
+                    return formatIops(r.getRandomReadIops());
+                case 4:
+                    return formatRate(r.getSequentialWriteMBps());
+                case 5:
+                    return formatIops(r.getSyncWriteIops());
+                case 6:
+                    return BundleManager.getString(r.isSsdLike() ? "panel.local.volumes.ssd"
+                            : "panel.local.volumes.slow");
+                case 7:
+                    return dateFormat.format(new Date(r.getTimestamp()));
+                default:
+                    return "";
+            }
+        }
+    }
+
+    private void openAutoTune() {
+        if (config == null)
+            return;
+        // Le modifiche dell'interfaccia non ancora salvate devono essere il
+        // punto di partenza del confronto
+        saveConfig();
+        AutoTuneDialog dialog = new AutoTuneDialog(SwingUtilities.getWindowAncestor(this));
+        dialog.setVisible(true);
+        if (dialog.isApplied()) {
+            loadConfig();
+        }
+        refreshVolumes();
+    }
+
     @Override
     public void loadConfig() {
         if (config == null || !config.isLoaded())
@@ -202,6 +613,27 @@ public class LocalConfigPanel extends BaseConfigPanel {
         chkIndexTempOnSSD.setSelected(config.getBoolean("indexTempOnSSD", false));
         chkOutputOnSSD.setSelected(config.getBoolean("outputOnSSD", false));
 
+        // Chiavi di IPEDManager (ignorate da IPED)
+        spnMaxJobs.setValue(Math.max(1, config.getInt("managerMaxConcurrentJobs", 1)));
+        spnCpuBudget.setValue(Math.max(0, config.getInt("managerCpuBudget", 0)));
+        spnMemoryBudget.setValue(Math.max(0, config.getInt("managerMemoryBudgetGB", 0)));
+        spnMaxRetries.setValue(Math.min(20, Math.max(0, config.getInt("managerMaxRetries", 3))));
+        spnStallMinutes.setValue(Math.min(1440, Math.max(0, config.getInt("managerStallMinutes", 60))));
+        spnRetryDelay.setValue(Math.min(3600, Math.max(0, config.getInt("managerRetryDelaySec", 30))));
+        chkMemoryEscalation.setSelected(config.getBoolean("managerMemoryEscalation", true));
+        txtStagingDir.setText(getOr(config.getString("managerStagingDir"), ""));
+        spnStagingMaxGB.setValue(Math.max(0, config.getInt("managerStagingMaxGB", 0)));
+        chkStagingFullVerify.setSelected(config.getBoolean("managerStagingFullVerify", false));
+        spnShards.setValue(Math.max(2, Math.min(64, config.getInt("managerShards", 3))));
+        txtArchiveDir.setText(getOr(config.getString("managerArchiveDir"), ""));
+        spnArchiveThreads.setValue(Math.max(1, Math.min(32, config.getInt("managerArchiveThreads", 4))));
+        spnArchiveMaxMBps.setValue(Math.max(0, config.getInt("managerArchiveMaxMBps", 0)));
+        chkArchiveDeleteSource.setSelected(config.getBoolean("managerArchiveDeleteSource", true));
+        txtWorkers.setText(getOr(config.getString("managerWorkers"), ""));
+        txtWorkerToken.setText(getOr(config.getString("managerWorkerToken"), ""));
+        txtSpoolDir.setText(getOr(config.getString("managerSpoolDir"), ""));
+        spnStatusPort.setValue(Math.max(0, Math.min(65535, config.getInt("managerStatusPort", 0))));
+
         // Locale Loading
         String currentLocale = getOr(config.getString("locale"), "en");
 
@@ -249,6 +681,25 @@ public class LocalConfigPanel extends BaseConfigPanel {
         config.setInt("maxMemoryGB", (Integer) spnMemoryGB.getValue());
         config.setBoolean("indexTempOnSSD", chkIndexTempOnSSD.isSelected());
         config.setBoolean("outputOnSSD", chkOutputOnSSD.isSelected());
+        config.setInt("managerMaxConcurrentJobs", (Integer) spnMaxJobs.getValue());
+        config.setInt("managerCpuBudget", (Integer) spnCpuBudget.getValue());
+        config.setInt("managerMemoryBudgetGB", (Integer) spnMemoryBudget.getValue());
+        config.setInt("managerMaxRetries", (Integer) spnMaxRetries.getValue());
+        config.setInt("managerStallMinutes", (Integer) spnStallMinutes.getValue());
+        config.setInt("managerRetryDelaySec", (Integer) spnRetryDelay.getValue());
+        config.setBoolean("managerMemoryEscalation", chkMemoryEscalation.isSelected());
+        config.setString("managerStagingDir", txtStagingDir.getText().trim());
+        config.setInt("managerStagingMaxGB", (Integer) spnStagingMaxGB.getValue());
+        config.setBoolean("managerStagingFullVerify", chkStagingFullVerify.isSelected());
+        config.setInt("managerShards", (Integer) spnShards.getValue());
+        config.setString("managerArchiveDir", txtArchiveDir.getText().trim());
+        config.setInt("managerArchiveThreads", (Integer) spnArchiveThreads.getValue());
+        config.setInt("managerArchiveMaxMBps", (Integer) spnArchiveMaxMBps.getValue());
+        config.setBoolean("managerArchiveDeleteSource", chkArchiveDeleteSource.isSelected());
+        config.setString("managerWorkers", txtWorkers.getText().trim());
+        config.setString("managerWorkerToken", txtWorkerToken.getText().trim());
+        config.setString("managerSpoolDir", txtSpoolDir.getText().trim());
+        config.setInt("managerStatusPort", (Integer) spnStatusPort.getValue());
 
         LanguageItem selected = (LanguageItem) cmbLocale.getSelectedItem();
         if (selected != null) {
@@ -0,0 +1,37 @@
+package it.ipedmanager.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Percorsi dei dati locali di IPEDManager (cache, storico, ecc.).
+ */
+public class AppPaths {
+
+    private static final String DATA_DIR_NAME = ".ipedmanager";
+
+    private AppPaths() {
+    }
+
+    /**
+     * Cartella dati dell'utente (~/.ipedmanager), creata se non esiste.
+     */
+    public static Path getDataDir() {
+        Path dir = Paths.get(System.getProperty("user.home"), DATA_DIR_NAME);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            System.err.println("Cannot create data dir " + dir + ": " + e.getMessage());
+        }
+        return dir;
+    }
+
+    /**
+     * File nella cartella dati.
+     */
+    public static Path resolve(String name) {
+        return getDataDir().resolve(name);
+    }
+}
@@ -0,0 +1,283 @@
+package it.ipedmanager.utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eventi Java Flight Recorder sui punti lenti di IPEDManager (avvio, lettura e
+ * salvataggio della configurazione, dimensione delle evidenze, esecuzione di
+ * IPED, log del monitor), per vedere dove va il tempo quando e' l'interfaccia
+ * ad essere lenta.
+ * <p>
+ * Le API di JFR ({@code jdk.jfr}, Java 11+) sono usate via reflection perche'
+ * il codice e' compilato per Java 8: gli eventi sono definiti a runtime con
+ * {@code EventFactory}. Su una JVM senza JFR, o se nessuna registrazione li
+ * ha abilitati, {@link #begin} restituisce uno span che non fa nulla.
+ *
+ * <pre>
+ * PerfEvents.Span span = PerfEvents.begin(PerfEvents.Kind.CONFIG_LOAD);
+ * ...
+ * span.end(path.toString(), lines);
+ * </pre>
+ *
+ * Gli eventi finiscono in qualsiasi registrazione attiva (anche
+ * {@code -XX:StartFlightRecording} o {@code jcmd JFR.start}); con
+ * {@link #startRecording} IPEDManager ne avvia una propria su file. Con
+ * {@code -Dipedmanager.jfr=file.jfr} la registrazione parte all'avvio.
+ */
+public final class PerfEvents {
+
+    /** Proprieta' di sistema: registra dall'avvio nel file indicato. */
+    public static final String RECORD_PROPERTY = "ipedmanager.jfr";
+
+    private static final String CATEGORY = "IPEDManager";
+
+    /**
+     * Tipi di evento: nome JFR, etichetta ed etichetta del contatore.
+     */
+    public enum Kind {
+        STARTUP("Startup", "Startup phase", "Count"),
+        CONFIG_GET("ConfigGet", "Config cache miss", "Loaded"),
+        CONFIG_LOAD("ConfigLoad", "Config file load", "Properties"),
+        CONFIG_SAVE("ConfigSave", "Config file save", "Changed keys"),
+        CONFIG_SAVE_ALL("ConfigSaveAll", "Save all config files", "Files"),
+        EVIDENCE_SIZE("EvidenceSize", "Evidence size scan", "Bytes"),
+        IPED_EXECUTE("IpedExecute", "IPED process", "Output lines"),
+        LOG_FLUSH("LogFlush", "Monitor log flush", "Lines");
+
+        final String eventName;
+        final String label;
+        final String countLabel;
+
+        Kind(String name, String label, String countLabel) {
+            this.eventName = "it.ipedmanager." + name;
+            this.label = label;
+            this.countLabel = countLabel;
+        }
+    }
+
+    /**
+     * Misura in corso; {@code end} va chiamato una sola volta. Uno span non
+     * concluso viene semplicemente scartato.
+     */
+    public static final class Span {
+
+        private final Object event;
+
+        private Span(Object event) {
+            this.event = event;
+        }
+
+        public void end() {
+            end(null, 0);
+        }
+
+        public void end(String detail) {
+            end(detail, 0);
+        }
+
+        public void end(String detail, long count) {
+            if (event == null)
+                return;
+            try {
+                eventEnd.invoke(event);
+                if ((Boolean) eventShouldCommit.invoke(event)) {
+                    eventSet.invoke(event, 0, detail);
+                    eventSet.invoke(event, 1, count);
+                    eventCommit.invoke(event);
+                }
+            } catch (Exception e) {
+                // Un evento perso non deve disturbare l'applicazione
+            }
+        }
+    }
+
+    private static final Span NOOP = new Span(null);
+
+    private static final boolean AVAILABLE;
+    private static final Map<Kind, Object> FACTORIES = new EnumMap<>(Kind.class);
+    private static Method factoryNewEvent;
+    private static Method eventBegin;
+    private static Method eventEnd;
+    private static Method eventShouldCommit;
+    private static Method eventSet;
+    private static Method eventCommit;
+    private static Method eventIsEnabled;
+
+    private static Object recording;
+    private static Path recordingFile;
+
+    static {
+        boolean ok;
+        try {
+            defineEvents();
+            ok = true;
+        } catch (Throwable t) {
+            // Java 8 senza JFR o modulo jdk.jfr assente
+            ok = false;
+        }
+        AVAILABLE = ok;
+    }
+
+    private PerfEvents() {
+    }
+
+    /**
+     * Vero se la JVM supporta gli eventi personalizzati di JFR.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Inizia la misura di un'operazione. Costa una creazione di evento via
+     * reflection, solo se JFR e' disponibile: non usare per riga di log.
+     */
+    public static Span begin(Kind kind) {
+        if (!AVAILABLE)
+            return NOOP;
+        try {
+            Object event = factoryNewEvent.invoke(FACTORIES.get(kind));
+            if (!(Boolean) eventIsEnabled.invoke(event))
+                return NOOP;
+            eventBegin.invoke(event);
+            return new Span(event);
+        } catch (Exception e) {
+            return NOOP;
+        }
+    }
+
+    /**
+     * Avvia una registrazione JFR (configurazione "profile") che viene scritta
+     * in {@code file} all'arresto o all'uscita dall'applicazione.
+     *
+     * @throws IllegalStateException se JFR non e' disponibile o una
+     *                               registrazione e' gia' attiva
+     */
+    public static synchronized void startRecording(Path file) throws Exception {
+        if (!AVAILABLE)
+            throw new IllegalStateException("Java Flight Recorder is not available in this JVM");
+        if (recording != null)
+            throw new IllegalStateException("A recording is already running: " + recordingFile);
+        try {
+            Class<?> configClass = Class.forName("jdk.jfr.Configuration");
+            Object config = configClass.getMethod("getConfiguration", String.class).invoke(null, "profile");
+            Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+            Object r = recordingClass.getConstructor(configClass).newInstance(config);
+            recordingClass.getMethod("setName", String.class).invoke(r, "IPEDManager");
+            recordingClass.getMethod("setDestination", Path.class).invoke(r, file);
+            recordingClass.getMethod("setDumpOnExit", boolean.class).invoke(r, true);
+            recordingClass.getMethod("start").invoke(r);
+            recording = r;
+            recordingFile = file;
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Ferma la registrazione avviata con {@link #startRecording} e la scrive su
+     * file.
+     *
+     * @return file scritto, null se non c'era una registrazione
+     */
+    public static synchronized Path stopRecording() throws Exception {
+        if (recording == null)
+            return null;
+        Object r = recording;
+        Path file = recordingFile;
+        recording = null;
+        recordingFile = null;
+        try {
+            r.getClass().getMethod("stop").invoke(r);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        } finally {
+            r.getClass().getMethod("close").invoke(r);
+        }
+        return file;
+    }
+
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    public static synchronized Path getRecordingFile() {
+        return recordingFile;
+    }
+
+    /**
+     * File di registrazione predefinito nella cartella dati, con data e ora.
+     */
+    public static Path newRecordingFile() {
+        return AppPaths.resolve("ipedmanager-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jfr");
+    }
+
+    /**
+     * Avvia la registrazione se richiesto con {@value #RECORD_PROPERTY}
+     * ("true" = file predefinito).
+     */
+    public static void startRecordingFromProperty() {
+        String value = System.getProperty(RECORD_PROPERTY);
+        if (value == null || value.trim().isEmpty() || "false".equalsIgnoreCase(value.trim()))
+            return;
+        Path file = "true".equalsIgnoreCase(value.trim()) ? newRecordingFile()
+                : Paths.get(value.trim());
+        try {
+            startRecording(file);
+            System.out.println("Recording JFR events to " + file);
+        } catch (Exception e) {
+            System.err.println("Cannot start the JFR recording: " + e.getMessage());
+        }
+    }
+
+    private static Exception unwrap(InvocationTargetException e) {
+        return e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void defineEvents() throws Exception {
+        Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+        Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+        Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+        Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        Class<? extends Annotation> nameAnn = (Class<? extends Annotation>) Class.forName("jdk.jfr.Name");
+        Class<? extends Annotation> labelAnn = (Class<? extends Annotation>) Class.forName("jdk.jfr.Label");
+        Class<? extends Annotation> categoryAnn = (Class<? extends Annotation>) Class.forName("jdk.jfr.Category");
+        Constructor<?> newAnnotation = annotationElement.getConstructor(Class.class, Object.class);
+        Constructor<?> newField = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+        Method create = eventFactory.getMethod("create", List.class, List.class);
+
+        for (Kind kind : Kind.values()) {
+            List<Object> annotations = Arrays.asList(
+                    newAnnotation.newInstance(nameAnn, kind.eventName),
+                    newAnnotation.newInstance(labelAnn, kind.label),
+                    newAnnotation.newInstance(categoryAnn, new String[] { CATEGORY }));
+            List<Object> fields = new ArrayList<>();
+            fields.add(newField.newInstance(String.class, "detail",
+                    Collections.singletonList(newAnnotation.newInstance(labelAnn, "Detail"))));
+            fields.add(newField.newInstance(long.class, "count",
+                    Collections.singletonList(newAnnotation.newInstance(labelAnn, kind.countLabel))));
+            FACTORIES.put(kind, create.invoke(null, annotations, fields));
+        }
+        factoryNewEvent = eventFactory.getMethod("newEvent");
+        eventBegin = eventClass.getMethod("begin");
+        eventEnd = eventClass.getMethod("end");
+        eventShouldCommit = eventClass.getMethod("shouldCommit");
+        eventSet = eventClass.getMethod("set", int.class, Object.class);
+        eventCommit = eventClass.getMethod("commit");
+        eventIsEnabled = eventClass.getMethod("isEnabled");
+    }
+}
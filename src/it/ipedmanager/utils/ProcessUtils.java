@@ -0,0 +1,76 @@
+package it.ipedmanager.utils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Utility per i processi figli (IPED avvia a sua volta una seconda JVM).
+ * Le API ProcessHandle di Java 9+ sono usate via reflection perche' il codice
+ * e' compilato per Java 8; su una JVM 8 si ripiega su Process.destroy().
+ */
+public class ProcessUtils {
+
+    private ProcessUtils() {
+    }
+
+    /**
+     * PID del processo, -1 se non disponibile.
+     */
+    public static long getPid(Process process) {
+        try {
+            Method pid = Process.class.getMethod("pid");
+            return (Long) pid.invoke(process);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * PID dei discendenti del processo (figli, nipoti...), vuoto su Java 8 o se
+     * il processo e' terminato.
+     */
+    public static List<Long> getDescendantPids(Process process) {
+        List<Long> pids = new ArrayList<>();
+        try {
+            Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+            Object handle = Process.class.getMethod("toHandle").invoke(process);
+            Method pid = handleClass.getMethod("pid");
+            Stream<?> children = (Stream<?>) handleClass.getMethod("descendants").invoke(handle);
+            for (Iterator<?> it = children.iterator(); it.hasNext();) {
+                pids.add((Long) pid.invoke(it.next()));
+            }
+        } catch (Exception e) {
+            // Java 8: nessun discendente noto
+        }
+        return pids;
+    }
+
+    /**
+     * Termina il processo e tutti i suoi discendenti.
+     *
+     * @param force true per terminare senza attendere la chiusura ordinata
+     */
+    public static void destroyTree(Process process, boolean force) {
+        try {
+            // Metodi dell'interfaccia pubblica: l'implementazione non e' accessibile
+            Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+            Object handle = Process.class.getMethod("toHandle").invoke(process);
+            Method destroy = handleClass.getMethod(force ? "destroyForcibly" : "destroy");
+            Stream<?> children = (Stream<?>) handleClass.getMethod("descendants").invoke(handle);
+            // Prima i figli: senza padre la JVM di elaborazione non si fermerebbe
+            for (Iterator<?> it = children.iterator(); it.hasNext();) {
+                destroy.invoke(it.next());
+            }
+        } catch (Exception e) {
+            // Java 8: solo il processo diretto
+        }
+        if (force) {
+            process.destroyForcibly();
+        } else {
+            process.destroy();
+        }
+    }
+}